@@ -0,0 +1,78 @@
+package convex.benchmarks;
+
+import java.util.ArrayList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.core.data.ACell;
+import convex.core.data.AHashMap;
+import convex.core.data.ASet;
+import convex.core.data.MapEntry;
+import convex.core.data.Maps;
+import convex.core.data.Sets;
+import convex.core.data.prim.CVMLong;
+
+/**
+ * Benchmarks for constructing and merging large hash maps and sets, comparing
+ * incremental assoc / include with bulk construction and structural merges.
+ */
+public class BulkBuildBenchmark {
+
+	static final int SIZE = 10000;
+
+	static final CVMLong[] ELEMENTS = new CVMLong[SIZE];
+	static final ArrayList<MapEntry<CVMLong, CVMLong>> ENTRIES = new ArrayList<>();
+	static final AHashMap<CVMLong, CVMLong> MAP;
+	static final AHashMap<CVMLong, CVMLong> MAP_CHANGED;
+	static {
+		for (int i = 0; i < SIZE; i++) {
+			CVMLong x = CVMLong.create(i);
+			ELEMENTS[i] = x;
+			ENTRIES.add(MapEntry.create(x, x));
+		}
+		MAP = Maps.create(ENTRIES);
+		MAP_CHANGED = MAP.assoc(CVMLong.create(SIZE), CVMLong.ONE).assoc(CVMLong.ONE, CVMLong.ZERO);
+		MAP.getHash();
+		MAP_CHANGED.getHash();
+	}
+
+	@Benchmark
+	public AHashMap<CVMLong, CVMLong> mapAssoc() {
+		AHashMap<CVMLong, CVMLong> m = Maps.empty();
+		for (MapEntry<CVMLong, CVMLong> e : ENTRIES) {
+			m = m.assocEntry(e);
+		}
+		return m;
+	}
+
+	@Benchmark
+	public AHashMap<CVMLong, CVMLong> mapBulk() {
+		return Maps.create(ENTRIES);
+	}
+
+	@Benchmark
+	public ASet<CVMLong> setInclude() {
+		ASet<CVMLong> s = Sets.empty();
+		for (CVMLong x : ELEMENTS) {
+			s = s.include(x);
+		}
+		return s;
+	}
+
+	@Benchmark
+	public ASet<CVMLong> setBulk() {
+		return Sets.of((ACell[]) ELEMENTS);
+	}
+
+	@Benchmark
+	public AHashMap<CVMLong, CVMLong> mapMerge() {
+		return MAP.merge(MAP_CHANGED);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options opt = Benchmarks.createOptions(BulkBuildBenchmark.class);
+		new Runner(opt).run();
+	}
+}
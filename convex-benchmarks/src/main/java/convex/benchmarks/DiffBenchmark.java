@@ -0,0 +1,72 @@
+package convex.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.core.data.AHashMap;
+import convex.core.data.AVector;
+import convex.core.data.Diffs;
+import convex.core.data.Maps;
+import convex.core.data.Vectors;
+import convex.core.data.prim.CVMLong;
+import convex.core.util.Utils;
+
+/**
+ * Benchmarks for finding changes between two large values differing in a single
+ * element, comparing a structural diff with a full element by element scan.
+ */
+public class DiffBenchmark {
+
+	static final int SIZE = 100000;
+
+	static final AVector<CVMLong> VECTOR;
+	static final AVector<CVMLong> VECTOR_CHANGED;
+	static final AHashMap<CVMLong, CVMLong> MAP;
+	static final AHashMap<CVMLong, CVMLong> MAP_CHANGED;
+	static {
+		CVMLong[] elements = new CVMLong[SIZE];
+		AHashMap<CVMLong, CVMLong> m = Maps.empty();
+		for (int i = 0; i < SIZE; i++) {
+			CVMLong x = CVMLong.create(i);
+			elements[i] = x;
+			m = m.assoc(x, x);
+		}
+		VECTOR = Vectors.create(elements);
+		VECTOR_CHANGED = VECTOR.assoc(SIZE / 2, CVMLong.ZERO);
+		MAP = m;
+		MAP_CHANGED = m.assoc(CVMLong.create(SIZE / 2), CVMLong.ZERO);
+		VECTOR.getHash();
+		VECTOR_CHANGED.getHash();
+		MAP.getHash();
+		MAP_CHANGED.getHash();
+	}
+
+	@Benchmark
+	public long vectorScan() {
+		long changes = 0;
+		for (long i = 0; i < SIZE; i++) {
+			if (!Utils.equals(VECTOR.get(i), VECTOR_CHANGED.get(i))) changes++;
+		}
+		return changes;
+	}
+
+	@Benchmark
+	public long vectorDiff() {
+		long[] changes = new long[1];
+		Diffs.diff(VECTOR, VECTOR_CHANGED, (change, path, a, b) -> changes[0]++);
+		return changes[0];
+	}
+
+	@Benchmark
+	public long mapDiff() {
+		long[] changes = new long[1];
+		Diffs.diff(MAP, MAP_CHANGED, (change, path, a, b) -> changes[0]++);
+		return changes[0];
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options opt = Benchmarks.createOptions(DiffBenchmark.class);
+		new Runner(opt).run();
+	}
+}
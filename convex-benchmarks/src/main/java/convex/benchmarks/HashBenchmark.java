@@ -1,23 +1,46 @@
 package  convex.benchmarks;
 
+import java.security.MessageDigest;
+import java.util.Random;
+
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.Options;
 
 import convex.core.crypto.Hashing;
+import convex.core.crypto.KeccakDigest;
 import convex.core.data.AArrayBlob;
 import convex.core.data.Blob;
 import convex.core.data.Format;
+import convex.core.data.Hash;
 import convex.core.data.prim.CVMLong;
 
 /**
  * Benchmarks for hashing performance.
- * 
+ *
  * Included to test hashing algorithm performance, since this might be a
  * bottleneck in some scenarios.
+ *
+ * Compares the Convex SHA3-256 implementation with the JCA provider, for both
+ * small cell encodings and larger data, and batch hashing of many small encodings.
  */
 public class HashBenchmark {
 
+	private static final byte[] SMALL = Format.encodedBlob(CVMLong.create(17L)).getBytes();
+	private static final byte[] KILOBYTE = new byte[1024];
+
+	private static final int BATCH_SIZE = 100;
+	private static final Blob[] BATCH = new Blob[BATCH_SIZE];
+	static {
+		Random r = new Random(1234);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			BATCH[i] = Format.encodedBlob(CVMLong.create(r.nextLong()));
+		}
+	}
+
+	private static final ThreadLocal<MessageDigest> PROVIDER_SHA3 = ThreadLocal.withInitial(Hashing::createProviderSHA3Digest);
+	private static final ThreadLocal<MessageDigest> CONVEX_SHA3 = ThreadLocal.withInitial(KeccakDigest::createSHA3);
+
 	@Benchmark
 	public void longHash_SHA_256() {
 		CVMLong l = CVMLong.create(17L);
@@ -31,6 +54,40 @@ public class HashBenchmark {
 		b.getHash();
 	}
 
+	@Benchmark
+	public byte[] smallHash_SHA3_provider() {
+		return PROVIDER_SHA3.get().digest(SMALL);
+	}
+
+	@Benchmark
+	public byte[] smallHash_SHA3_convex() {
+		return CONVEX_SHA3.get().digest(SMALL);
+	}
+
+	@Benchmark
+	public byte[] kilobyteHash_SHA3_provider() {
+		return PROVIDER_SHA3.get().digest(KILOBYTE);
+	}
+
+	@Benchmark
+	public byte[] kilobyteHash_SHA3_convex() {
+		return CONVEX_SHA3.get().digest(KILOBYTE);
+	}
+
+	@Benchmark
+	public Hash[] batchHash_SHA3_individual() {
+		Hash[] result = new Hash[BATCH_SIZE];
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			result[i] = BATCH[i].computeHash(Hashing.getSHA3Digest());
+		}
+		return result;
+	}
+
+	@Benchmark
+	public Hash[] batchHash_SHA3_batch() {
+		return Hashing.sha3(BATCH);
+	}
+
 	public static void main(String[] args) throws Exception {
 		Options opt = Benchmarks.createOptions(HashBenchmark.class);
 		new Runner(opt).run();
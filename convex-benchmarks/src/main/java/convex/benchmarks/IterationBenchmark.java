@@ -0,0 +1,94 @@
+package convex.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.core.data.AHashMap;
+import convex.core.data.ASet;
+import convex.core.data.AVector;
+import convex.core.data.Maps;
+import convex.core.data.Sets;
+import convex.core.data.Vectors;
+import convex.core.data.prim.CVMLong;
+
+/**
+ * Benchmarks for iterating over large persistent data structures, comparing indexed
+ * access with iterators and (parallel) streams.
+ */
+public class IterationBenchmark {
+
+	static final int SIZE = 100000;
+
+	static final AVector<CVMLong> VECTOR;
+	static final ASet<CVMLong> SET;
+	static final AHashMap<CVMLong, CVMLong> MAP;
+	static {
+		AVector<CVMLong> v = Vectors.empty();
+		AHashMap<CVMLong, CVMLong> m = Maps.empty();
+		for (int i = 0; i < SIZE; i++) {
+			CVMLong x = CVMLong.create(i);
+			v = v.conj(x);
+			m = m.assoc(x, x);
+		}
+		VECTOR = v;
+		SET = Sets.create(v);
+		MAP = m;
+	}
+
+	@Benchmark
+	public long vectorIndexed() {
+		long sum = 0;
+		for (long i = 0; i < SIZE; i++) {
+			sum += VECTOR.get(i).longValue();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long vectorStream() {
+		return VECTOR.stream().mapToLong(CVMLong::longValue).sum();
+	}
+
+	@Benchmark
+	public long vectorParallelStream() {
+		return VECTOR.stream().parallel().mapToLong(CVMLong::longValue).sum();
+	}
+
+	@Benchmark
+	public long setIndexed() {
+		long sum = 0;
+		for (long i = 0; i < SIZE; i++) {
+			sum += SET.get(i).longValue();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long setIterator() {
+		long sum = 0;
+		for (CVMLong x : SET) {
+			sum += x.longValue();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long mapIndexed() {
+		long sum = 0;
+		for (long i = 0; i < SIZE; i++) {
+			sum += MAP.entryAt(i).getValue().longValue();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long mapParallelStream() {
+		return MAP.entryStream().parallel().mapToLong(e -> e.getValue().longValue()).sum();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options opt = Benchmarks.createOptions(IterationBenchmark.class);
+		new Runner(opt).run();
+	}
+}
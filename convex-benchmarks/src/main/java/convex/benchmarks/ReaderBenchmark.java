@@ -0,0 +1,57 @@
+package convex.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.core.data.ACell;
+import convex.core.lang.reader.AntlrReader;
+import convex.core.lang.reader.FastReader;
+import convex.core.util.Utils;
+
+/**
+ * Benchmarks for parsing Convex Lisp source.
+ *
+ * Compares the hand-written FastReader with the ANTLR reader, for a large source file
+ * (core.cvx) and a small query form as typically submitted to the REST API.
+ */
+public class ReaderBenchmark {
+
+	private static final String CORE_SOURCE;
+	static {
+		try {
+			CORE_SOURCE = Utils.readResourceAsString("convex/core.cvx");
+		} catch (IOException e) {
+			throw new Error(e);
+		}
+	}
+
+	private static final String QUERY = "(do (import convex.fungible :as fun) (fun/balance #128 *address*))";
+
+	@Benchmark
+	public ACell readCore_ANTLR() {
+		return AntlrReader.readAll(CORE_SOURCE);
+	}
+
+	@Benchmark
+	public ACell readCore_Fast() {
+		return FastReader.readAll(CORE_SOURCE);
+	}
+
+	@Benchmark
+	public ACell readQuery_ANTLR() {
+		return AntlrReader.read(QUERY);
+	}
+
+	@Benchmark
+	public ACell readQuery_Fast() {
+		return FastReader.read(QUERY);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options opt = Benchmarks.createOptions(ReaderBenchmark.class);
+		new Runner(opt).run();
+	}
+}
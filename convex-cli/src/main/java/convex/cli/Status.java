@@ -70,14 +70,14 @@ public class Status implements Runnable {
 		try {
 			Result result = convex.requestStatus().get(timeout, TimeUnit.MILLISECONDS);
 			AVector<ACell> resultVector = (AVector<ACell>) result.getValue();
-			ABlob stateHash = (ABlob) resultVector.get(1);
+			ABlob historyHash = (ABlob) resultVector.get(1);
 			// Hash hash = Hash.wrap(stateHash.getBytes());
 
 			//AVector<AccountStatus> accountList = state.getAccounts();
 			//BlobMap<AccountKey, PeerStatus> peerList = state.getPeers();
 
 			RecordOutput output=new RecordOutput();
-			output.addField("State hash", stateHash.toString());
+			output.addField("History hash", historyHash.toString());
 			//output.addField("Timestamp",state.getTimeStamp().toString());
 			//output.addField("Timestamp value", Text.dateFormat(state.getTimeStamp().longValue()));
 			//output.addField("Global Fees", Text.toFriendlyBalance(state.getGlobalFees().longValue()));
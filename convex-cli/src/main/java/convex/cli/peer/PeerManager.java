@@ -120,7 +120,7 @@ public class PeerManager implements IServerEvent {
 		List<Hash> hashList = new ArrayList<Hash>(5);
 		AVector<ACell> values = result.getValue();
 		hashList.add(RT.ensureHash(values.get(0)));		// beliefHash
-		hashList.add(RT.ensureHash(values.get(1)));		// stateHash
+		hashList.add(RT.ensureHash(values.get(1)));		// historyHash
 		hashList.add(RT.ensureHash(values.get(2)));		// netwokIdHash
 		hashList.add(RT.ensureHash(values.get(4)));		// consensusHash
 
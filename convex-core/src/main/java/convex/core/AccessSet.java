@@ -0,0 +1,154 @@
+package convex.core;
+
+import java.util.HashSet;
+
+/**
+ * Records the parts of a State read and written during execution of a transaction, so that
+ * transactions executed speculatively in parallel can be checked for conflicts with earlier
+ * transactions in the same Block.
+ *
+ * Account reads and writes are tracked by individual Address. Other State components are tracked
+ * as a whole. The States before and after execution of the transaction are also recorded, since
+ * memory accounting depends on the size of the whole State and must be checked separately.
+ *
+ * Recording is enabled for the current thread with {@link #begin()} and disabled with {@link #end()}.
+ * All State access methods record into the current AccessSet, if any.
+ */
+public final class AccessSet {
+
+	private static final ThreadLocal<AccessSet> current = new ThreadLocal<>();
+
+	// Flags for State components
+	static final int PEERS = 1;
+	static final int SCHEDULE = 2;
+	static final int FEES = 4;
+	static final int COUNT = 8;
+	static final int ALL = 16;
+
+	private final HashSet<Long> accountReads = new HashSet<>();
+	private final HashSet<Long> accountWrites = new HashSet<>();
+	private int reads = 0;
+	private int writes = 0;
+
+	/**
+	 * States used for memory accounting, i.e. after preparation and after execution of the transaction
+	 */
+	State prepared;
+	State executed;
+
+	/**
+	 * Starts recording State access for the current thread
+	 * @return New AccessSet which will record all State accesses until end() is called
+	 */
+	public static AccessSet begin() {
+		AccessSet a = new AccessSet();
+		current.set(a);
+		return a;
+	}
+
+	/**
+	 * Stops recording State access for the current thread
+	 */
+	public static void end() {
+		current.remove();
+	}
+
+	static void readAccount(long ix) {
+		AccessSet a = current.get();
+		if (a != null) a.accountReads.add(ix);
+	}
+
+	static void writeAccount(long ix) {
+		AccessSet a = current.get();
+		if (a != null) a.accountWrites.add(ix);
+	}
+
+	/**
+	 * Records appending a new account, which depends on and changes the account count
+	 * @param ix Index of new account
+	 */
+	static void appendAccount(long ix) {
+		AccessSet a = current.get();
+		if (a != null) {
+			a.accountWrites.add(ix);
+			a.reads |= COUNT;
+			a.writes |= COUNT;
+		}
+	}
+
+	/**
+	 * Records the States between which memory usage of a transaction is computed
+	 * @param prepared State after transaction preparation
+	 * @param executed State after transaction execution, before completion
+	 */
+	static void recordExecution(State prepared, State executed) {
+		AccessSet a = current.get();
+		if (a != null) {
+			a.prepared = prepared;
+			a.executed = executed;
+		}
+	}
+
+	/**
+	 * Records a read of the entire State, e.g. where the State is made available to user code
+	 */
+	public static void readAll() {
+		read(ALL);
+	}
+
+	static void read(int flags) {
+		AccessSet a = current.get();
+		if (a != null) a.reads |= flags;
+	}
+
+	static void write(int flags) {
+		AccessSet a = current.get();
+		if (a != null) a.writes |= flags;
+	}
+
+	/**
+	 * Checks if this AccessSet conflicts with the writes of earlier transactions, i.e. if a
+	 * transaction executed against an earlier State might have a different outcome.
+	 *
+	 * Fee writes do not conflict with each other, since fees are accumulated. Writes to
+	 * the same account always conflict, since they are merged by replacing the account.
+	 *
+	 * @param prior AccessSet containing writes of all earlier transactions
+	 * @return true if there is a conflict, false otherwise
+	 */
+	boolean conflictsWith(AccessSet prior) {
+		if (prior.writes == 0 && prior.accountWrites.isEmpty()) return false;
+		if ((reads & ALL) != 0) return true;
+		if ((prior.writes & ALL) != 0) return true;
+		if ((((reads | writes) & ~FEES) & prior.writes) != 0) return true;
+		if (((reads & FEES) != 0) && ((prior.writes & FEES) != 0)) return true;
+		for (Long ix : accountReads) {
+			if (prior.accountWrites.contains(ix)) return true;
+		}
+		for (Long ix : accountWrites) {
+			if (prior.accountWrites.contains(ix)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Accumulates the writes of another AccessSet into this one
+	 * @param other AccessSet to include
+	 */
+	void addWrites(AccessSet other) {
+		accountWrites.addAll(other.accountWrites);
+		writes |= other.writes;
+	}
+
+	/**
+	 * Gets the account indexes written, in ascending order
+	 * @return Array of account indexes
+	 */
+	long[] getAccountWrites() {
+		return accountWrites.stream().mapToLong(Long::longValue).sorted().toArray();
+	}
+
+	boolean writes(int flags) {
+		return (writes & flags) != 0;
+	}
+}
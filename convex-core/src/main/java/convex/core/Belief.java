@@ -22,7 +22,6 @@ import convex.core.data.Format;
 import convex.core.data.Hash;
 import convex.core.data.Keywords;
 import convex.core.data.MapEntry;
-import convex.core.data.PeerStatus;
 import convex.core.data.SignedData;
 import convex.core.data.Tag;
 import convex.core.data.prim.CVMLong;
@@ -59,6 +58,12 @@ public class Belief extends ARecord {
 	 */
 	private final long timestamp;
 
+	/**
+	 * Vote tally from the most recent merge of this Belief, used as the basis for
+	 * incremental tallies in subsequent merges. Not part of the Belief value.
+	 */
+	private VoteTally tally;
+
 	// private final long timeStamp;
 
 	private Belief(BlobMap<AccountKey,SignedData<Order>> orders, long timestamp) {
@@ -172,6 +177,7 @@ public class Belief extends ARecord {
 		long newTimestamp = mc.getTimeStamp();
 		if ((orders == resultOrders) && (timestamp == newTimestamp)) return this;
 		final Belief result = new Belief(resultOrders, newTimestamp);
+		result.tally = tally;
 
 		return result;
 	}
@@ -187,6 +193,9 @@ public class Belief extends ARecord {
 		// Initialise result with existing Orders from this Belief
 		BlobMap<AccountKey, SignedData<Order>> result = this.orders;
 		
+		// Check signatures of all received Orders in a single batch
+		checkOrderSignatures(mc, beliefs);
+		
 		// Iterate over each received Belief
 		for (Belief belief : beliefs) {
 			if (belief == null) continue; // ignore null beliefs, might happen if invalidated
@@ -237,6 +246,31 @@ public class Belief extends ARecord {
 		return result;
 	}
 
+	/**
+	 * Checks signatures for all Orders from other Peers in the given Beliefs as a single batch.
+	 * Results are cached in each SignedData instance.
+	 * @param mc
+	 * @param beliefs
+	 */
+	private void checkOrderSignatures(MergeContext mc, Belief[] beliefs) {
+		ArrayList<SignedData<Order>> toCheck=new ArrayList<>();
+		for (Belief belief : beliefs) {
+			if (belief == null) continue;
+			if (belief.equals(this)) continue;
+			BlobMap<AccountKey, SignedData<Order>> bOrders = belief.orders;
+			long bcount=bOrders.count();
+			for (long i=0; i<bcount; i++) {
+				MapEntry<AccountKey,SignedData<Order>> be=bOrders.entryAt(i);
+				ABlob key=be.getKey();
+				if(key.equalsBytes(mc.getAccountKey())) continue; 
+				SignedData<Order> b=be.getValue();
+				if ((b == null)||b.isSignatureChecked()) continue;
+				toCheck.add(b);
+			}
+		}
+		SignedData.checkSignatures(toCheck);
+	}
+
 	/**
 	 * Conducts a stake-weighted vote across a map of consistent chains, in the
 	 * given merge context
@@ -274,16 +308,20 @@ public class Belief extends ARecord {
 		// Current Consensus Point
 		long consensusPoint = myOrder.getConsensusPoint();
 
-		// Compute stake for all peers in consensus state
-		AMap<AccountKey, PeerStatus> peers = votingState.getPeers();
-		HashMap<AccountKey, Double> weightedStakes = votingState.computeStakes();
+		// Get stake for all peers in consensus state. This is cached per State.
+		Map<AccountKey, Double> weightedStakes = votingState.getStakes();
 		double totalStake = weightedStakes.get(null);
 
 		// Extract unique proposed chains from provided map, computing vote for each.
 		// compute the total weighted vote at the same time in accumulator
 		// Peers with no stake should be ignored (might be old peers etc.)
-		HashMap<Order, Double> stakedOrders = new HashMap<>(peers.size());
-		double consideredStake = prepareStakedOrders(filteredOrders, weightedStakes, stakedOrders);
+		// Only Orders changed since the previous merge need to be re-tallied
+		VoteTally prevTally = tally;
+		VoteTally newTally = (prevTally == null) ? VoteTally.create(filteredOrders, weightedStakes)
+				: prevTally.update(filteredOrders, weightedStakes);
+		tally = newTally;
+		HashMap<Order, Double> stakedOrders = newTally.getStakedOrders();
+		double consideredStake = newTally.getConsideredStake();
 
 		// Get the winning chain for this peer, including new blocks encountered
 		AVector<SignedData<Block>> winningBlocks = computeWinningOrder(stakedOrders, consensusPoint, consideredStake);
@@ -293,12 +331,12 @@ public class Belief extends ARecord {
 		Order winningOrder = myOrder.updateBlocks(winningBlocks);
 
 		final double P_THRESHOLD = totalStake * Constants.PROPOSAL_THRESHOLD;
-		final Order proposedOrder = updateProposal(winningOrder, stakedOrders, P_THRESHOLD);
+		final Order proposedOrder = updateProposal(winningOrder, newTally, P_THRESHOLD);
 
 		assert (proposedOrder != null);
 
 		final double C_THRESHOLD = totalStake * Constants.CONSENSUS_THRESHOLD;
-		final Order consensusOrder = updateConsensus(proposedOrder, stakedOrders, C_THRESHOLD);
+		final Order consensusOrder = updateConsensus(proposedOrder, newTally, C_THRESHOLD);
 
 		BlobMap<AccountKey, SignedData<Order>> resultOrders = filteredOrders;
 		if (!consensusOrder.equals(myOrder)) {
@@ -310,10 +348,10 @@ public class Belief extends ARecord {
 	}
 
 	/**
-	 * Updates the consensus point for the winning Order, given an overall map of
+	 * Updates the consensus point for the winning Order, given a tally of
 	 * staked orders and consensus threshold.
 	 */
-	private Order updateConsensus(Order proposedOrder, HashMap<Order, Double> stakedOrders, double THRESHOLD) {
+	private Order updateConsensus(Order proposedOrder, VoteTally tally, double THRESHOLD) {
 		AVector<SignedData<Block>> proposedBlocks = proposedOrder.getBlocks();
 		ArrayList<Order> agreedChains = Utils.sortListBy(new Function<Order, Long>() {
 			@Override
@@ -329,16 +367,16 @@ public class Belief extends ARecord {
 																				// consensus
 				return -match;
 			}
-		}, stakedOrders.keySet());
+		}, tally.getStakedOrders().keySet());
 		int numAgreed = agreedChains.size();
 		// assert(proposedChain.equals(agreedChains.get(0)));
-		double accumulatedStake = 0.0;
+		// stake is accumulated exactly, and only converted for comparison with the threshold
+		long accumulatedStake = 0;
 		int i = 0;
 		for (; i < numAgreed; i++) {
 			Order c = agreedChains.get(i);
-			Double chainStake = stakedOrders.get(c);
-			accumulatedStake += chainStake;
-			if (accumulatedStake > THRESHOLD) break;
+			accumulatedStake += tally.getStake(c);
+			if ((double) accumulatedStake > THRESHOLD) break;
 		}
 
 		if (i < numAgreed) {
@@ -357,25 +395,24 @@ public class Belief extends ARecord {
 	}
 
 	/**
-	 * Updates the proposal point for the winning Order, given an overall map of
+	 * Updates the proposal point for the winning Order, given a tally of
 	 * staked Orders and consensus threshold.
 	 */
-	private Order updateProposal(Order winningOrder, HashMap<Order, Double> stakedOrders, double THRESHOLD) {
+	private Order updateProposal(Order winningOrder, VoteTally tally, double THRESHOLD) {
 		AVector<SignedData<Block>> winningBlocks = winningOrder.getBlocks();
 
 		// sort all chains according to extent of agreement with winning chain
-		ArrayList<Order> agreedOrders = sortByAgreement(stakedOrders, winningBlocks);
+		ArrayList<Order> agreedOrders = sortByAgreement(tally.getStakedOrders(), winningBlocks);
 		int numAgreed = agreedOrders.size();
 
 		// accumulate stake to see how many agreed chains are required to meet proposal
 		// threshold
-		double accumulatedStake = 0.0;
+		long accumulatedStake = 0;
 		int i = 0;
 		for (; i < numAgreed; i++) {
 			Order c = agreedOrders.get(i);
-			double orderStake = stakedOrders.get(c);
-			accumulatedStake += orderStake;
-			if (accumulatedStake > THRESHOLD) break;
+			accumulatedStake += tally.getStake(c);
+			if ((double) accumulatedStake > THRESHOLD) break;
 		}
 
 		if (i < numAgreed) {
@@ -587,7 +624,7 @@ public class Belief extends ARecord {
 	 * @return The total stake of all chains among peers under consideration 
 	 */
 	public static double prepareStakedOrders(AMap<AccountKey, SignedData<Order>> peerOrders,
-			HashMap<AccountKey, Double> peerStakes, HashMap<Order, Double> dest) {
+			Map<AccountKey, Double> peerStakes, HashMap<Order, Double> dest) {
 		return peerOrders.reduceValues((acc, signedOrder) -> {
 			try {
 				// Get the Order for this peer
@@ -188,6 +188,49 @@ public class Constants {
 	 */
 	public static final long PEER_SYNC_TIMEOUT = 60000;
 
+	/**
+	 * Default timeout in milliseconds for execution of a query by a Peer
+	 */
+	public static final long DEFAULT_QUERY_TIMEOUT = 10000;
+
+	/**
+	 * Default maximum number of queries executing concurrently for each client connection
+	 */
+	public static final int DEFAULT_QUERY_LIMIT = 4;
+
+	/**
+	 * Default number of recent States retained in memory by a Peer. Older States are
+	 * reloaded from the store when needed.
+	 */
+	public static final long PEER_HISTORY_LIMIT = 1000;
+
+	/**
+	 * Maximum number of hashes in a single MISSING_DATA request
+	 */
+	public static final int MISSING_DATA_MAX_HASHES = 16;
+
+	/**
+	 * Approximate limit in bytes of cell encodings sent in response to a MISSING_DATA request,
+	 * including descendants of the requested cells
+	 */
+	public static final int MISSING_DATA_RESPONSE_LIMIT = Format.LIMIT_ENCODING_LENGTH*2;
+
+	/**
+	 * Default number of MISSING_DATA requests a client keeps in flight while acquiring data
+	 */
+	public static final int DEFAULT_ACQUIRE_WINDOW = 4;
+
+	/**
+	 * Time in milliseconds after which a client re-requests missing data that has not arrived
+	 */
+	public static final long ACQUIRE_RETRY_INTERVAL = 1000;
+
+	/**
+	 * Minimum number of transactions in a Block for speculative parallel execution.
+	 * Smaller Blocks are executed sequentially.
+	 */
+	public static final int PARALLEL_BLOCK_THRESHOLD = 8;
+
 	/**
 	 * Number of fields in a Peer STATUS message
 	 */
@@ -204,6 +247,21 @@ public class Constants {
 	// TODO: Should ultimately be true for production usage
 	public static final boolean OPT_STATIC = false;
 
+	/**
+	 * Option to use the Convex SHA3-256 implementation rather than the JCA provider
+	 */
+	public static final boolean OPT_NATIVE_SHA3 = true;
+
+	/**
+	 * Maximum number of compiled top level forms retained in the compile cache
+	 */
+	public static final int COMPILE_CACHE_SIZE = 1000;
+
+	/**
+	 * Approximate memory budget in bytes for each Store's cache of decoded cells
+	 */
+	public static final long BLOB_CACHE_SIZE = 16 * 1024 * 1024;
+
 	/**
 	 * Char to represent bad Unicode characters in printing
 	 */
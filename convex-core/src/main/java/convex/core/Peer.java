@@ -1,14 +1,18 @@
 package convex.core;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 import convex.core.crypto.AKeyPair;
+import convex.core.data.ABlob;
 import convex.core.data.ACell;
 import convex.core.data.AMap;
 import convex.core.data.AVector;
 import convex.core.data.AccountKey;
 import convex.core.data.Address;
+import convex.core.data.Blob;
 import convex.core.data.BlobMap;
 import convex.core.data.Hash;
 import convex.core.data.Keyword;
@@ -43,7 +47,8 @@ import convex.core.util.Utils;
  *
  * <p>
  * Must have at least one state, the initial state. New states will be added as
- * consensus updates happen.
+ * consensus updates happen. Only recent States are retained in memory, older States
+ * and BlockResults are indexed by Hash and reloaded from the store on demand.
  * </p>
  *
  *
@@ -71,23 +76,44 @@ public class Peer {
 	private final long timestamp;
 
 	/**
-	 * Vector of states
+	 * Vector of recent states. The first State in the vector has index getHistoryStart()
 	 */
 	private final AVector<State> states;
 
 	/**
-	 * Vector of results
+	 * Vector of results for recent blocks. The BlockResult at each position is the result of
+	 * applying a Block to the State at the same position.
 	 */
 	private final AVector<BlockResult> blockResults;
 
+	/**
+	 * Index of States no longer retained in memory, starting from the genesis State. Each entry
+	 * contains the State timestamp, the State Hash and the Hash of the following BlockResult.
+	 */
+	private final ABlob history;
+
+	/**
+	 * Minimum number of recent States retained in memory
+	 */
+	private final long historyLimit;
+
+	private static final int HISTORY_ENTRY_LENGTH = 8 + 2 * Hash.LENGTH;
+
+	/**
+	 * Cached Hash of the complete history index, see getHistoryIndexHash()
+	 */
+	private Hash historyIndexHash = null;
+
 	private Peer(AKeyPair kp, SignedData<Belief> belief, AVector<State> states, AVector<BlockResult> results,
-			long timeStamp) {
+			ABlob history, long timeStamp, long historyLimit) {
 		this.keyPair = kp;
 		this.peerKey = kp.getAccountKey();
 		this.belief = belief;
 		this.states = states;
 		this.blockResults = results;
+		this.history = history;
 		this.timestamp = timeStamp;
+		this.historyLimit = historyLimit;
 	}
 
 	/**
@@ -101,8 +127,10 @@ public class Peer {
 		SignedData<Belief> belief=(SignedData<Belief>) peerData.get(Keywords.BELIEF);
 		AVector<BlockResult> results=(AVector<BlockResult>) peerData.get(Keywords.RESULTS);
 		AVector<State> states=(AVector<State>) peerData.get(Keywords.STATES);
+		ABlob history=(ABlob) peerData.get(Keywords.HISTORY);
+		if (history==null) history=Blob.EMPTY;
 		long timestamp=belief.getValue().getTimestamp();
-		return new Peer(keyPair,belief,states,results,timestamp);
+		return new Peer(keyPair,belief,states,results,history,timestamp,Constants.PEER_HISTORY_LIMIT);
 	}
 
 	/**
@@ -113,7 +141,8 @@ public class Peer {
 		return Maps.of(
 			Keywords.BELIEF,belief,
 			Keywords.RESULTS,blockResults,
-			Keywords.STATES,states
+			Keywords.STATES,states,
+			Keywords.HISTORY,history
 		);
 	}
 
@@ -138,7 +167,7 @@ public class Peer {
 			throw new Error("Belief not correctly persisted! "+sb.getHash());
 		}
 
-		return new Peer(peerKP, sb, states, Vectors.empty(), initialState.getTimeStamp().longValue());
+		return new Peer(peerKP, sb, states, Vectors.empty(), Blob.EMPTY, initialState.getTimeStamp().longValue(), Constants.PEER_HISTORY_LIMIT);
 	}
 	
 	/**
@@ -242,7 +271,20 @@ public class Peer {
 	 */
 	public Peer updateTimestamp(long newTimestamp) {
 		if (newTimestamp < timestamp) return this;
-		return new Peer(keyPair, belief, states, blockResults, timestamp);
+		return new Peer(keyPair, belief, states, blockResults, history, timestamp, historyLimit);
+	}
+
+	/**
+	 * Sets the number of recent States this Peer retains in memory. Up to twice as many may be
+	 * retained, so that older States can be dropped in batches.
+	 *
+	 * @param limit Minimum number of States to retain (must be positive)
+	 * @return Updated Peer
+	 */
+	public Peer withHistoryLimit(long limit) {
+		if (limit<1) throw new IllegalArgumentException("History limit must be positive");
+		if (limit==historyLimit) return this;
+		return new Peer(keyPair, belief, states, blockResults, history, timestamp, limit);
 	}
 
 	/**
@@ -253,8 +295,22 @@ public class Peer {
 	 * @param address Address to use for query execution. If null, core address will be used
 	 * @return The Context containing the query results. Will be NOBODY error if address / account does not exist
 	 */
-	@SuppressWarnings("unchecked")
 	public <T extends ACell> Context<T> executeQuery(ACell form, Address address) {
+		return executeQuery(form,address,0);
+	}
+
+	/**
+	 * Compiles and executes a query on the current consensus state of this Peer, with a
+	 * limit on execution time. The timeout starts when this method is called.
+	 *
+	 * @param <T> Type of result
+	 * @param form Form to compile and execute.
+	 * @param address Address to use for query execution. If null, core address will be used
+	 * @param timeout Timeout in milliseconds, or zero for no timeout
+	 * @return The Context containing the query results. Will be TIMEOUT error if the query runs out of time
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends ACell> Context<T> executeQuery(ACell form, Address address, long timeout) {
 		State state=getConsensusState();
 
 		if (address==null) {
@@ -263,6 +319,7 @@ public class Peer {
 		}
 
 		Context<?> ctx= Context.createFake(state, address);
+		if (timeout>0) ctx=ctx.withDeadline(System.currentTimeMillis()+timeout);
 
 		if (state.getAccount(address)==null) {
 			return ctx.withError(ErrorCodes.NOBODY,"Account does not exist for query: "+address);
@@ -423,24 +480,116 @@ public class Peer {
 		if (belief.getValue() == newBelief) return this;
 		Order myOrder = newBelief.getOrder(peerKey); // this peer's chain from new belief
 		long consensusPoint = myOrder.getConsensusPoint();
-		long stateIndex = states.count() - 1; // index of last state
+		long stateIndex = getStateCount() - 1; // index of last state
 		AVector<SignedData<Block>> blocks = myOrder.getBlocks();
 
 		// need to advance states
 		AVector<State> newStates = this.states;
 		AVector<BlockResult> newResults = this.blockResults;
+		State s = getConsensusState();
 		while (stateIndex < consensusPoint) { // add states until last state is at consensus point
-			State s = newStates.get(stateIndex);
 			SignedData<Block> block = blocks.get(stateIndex);
 			
 			// TODO: Block signature validation here?
 			BlockResult br = s.applyBlock(block.getValue());
-			newStates = newStates.append(br.getState());
+			s = br.getState();
+			newStates = newStates.append(s);
 			newResults = newResults.append(br);
 			stateIndex++;
 		}
+
+		// Drop old States once the retained window has doubled, so the cost is amortised
+		ABlob newHistory = this.history;
+		long excess = newStates.count() - historyLimit;
+		if (excess > historyLimit) {
+			newHistory = appendHistory(newHistory, newStates, newResults, excess);
+			newStates = newStates.slice(excess, newStates.count());
+			newResults = newResults.slice(excess, newResults.count());
+		}
+
 		SignedData<Belief> sb = keyPair.signData(newBelief);
-		return new Peer(keyPair, sb, newStates, newResults, timestamp);
+		return new Peer(keyPair, sb, newStates, newResults, newHistory, timestamp, historyLimit);
+	}
+
+	/**
+	 * Appends the first n States and BlockResults to the history index. These are persisted,
+	 * so that they can be reloaded from the store after they are dropped from memory.
+	 */
+	private static ABlob appendHistory(ABlob history, AVector<State> states, AVector<BlockResult> results, long n) {
+		return history.append(historyEntries(states, results, n, true));
+	}
+
+	/**
+	 * Creates history index entries for the first n States and BlockResults, optionally persisting them
+	 */
+	private static Blob historyEntries(AVector<State> states, AVector<BlockResult> results, long n, boolean persist) {
+		byte[] bs = new byte[Utils.checkedInt(n * HISTORY_ENTRY_LENGTH)];
+		int pos = 0;
+		for (long i = 0; i < n; i++) {
+			State s = states.get(i);
+			BlockResult br = results.get(i);
+			if (persist) {
+				s = ACell.createPersisted(s).getValue();
+				br = ACell.createPersisted(br).getValue();
+			}
+			pos = Utils.writeLong(bs, pos, s.getTimeStamp().longValue());
+			s.getHash().getBytes(bs, pos);
+			pos += Hash.LENGTH;
+			br.getHash().getBytes(bs, pos);
+			pos += Hash.LENGTH;
+		}
+		return Blob.wrap(bs);
+	}
+
+	/**
+	 * Gets the Hash of the complete history index, with entries for every State since genesis that 
+	 * has a following BlockResult, whether or not it is still retained in memory. This depends only 
+	 * on the chain of States, so is the same for Peers with different history limits.
+	 * @return Hash of complete history index
+	 */
+	public Hash getHistoryIndexHash() {
+		Hash h = historyIndexHash;
+		if (h == null) {
+			// Blob hashes depend only on content, so unchanged parts of the history index are not rehashed
+			ABlob index = history.append(historyEntries(states, blockResults, blockResults.count(), false));
+			h = index.getHash();
+			historyIndexHash = h;
+		}
+		return h;
+	}
+
+	/**
+	 * Gets a Hash from the history index
+	 * @param i Index of State
+	 * @param offset Offset of Hash within history entry
+	 * @return Hash
+	 */
+	private Hash getHistoryHash(long i, int offset) {
+		long pos = i * HISTORY_ENTRY_LENGTH + offset;
+		return Hash.wrap(history.slice(pos, pos + Hash.LENGTH));
+	}
+
+	/**
+	 * Gets the Hashes of all States and BlockResults in the history index. These are no longer 
+	 * retained in memory and only reachable by Hash, so must be retained explicitly by any garbage 
+	 * collection of the store.
+	 * @return List of Hashes
+	 */
+	public List<Hash> getHistoryHashes() {
+		long n = getHistoryStart();
+		ArrayList<Hash> result = new ArrayList<>(Utils.checkedInt(2 * n));
+		for (long i = 0; i < n; i++) {
+			result.add(getHistoryHash(i, 8));
+			result.add(getHistoryHash(i, 8 + Hash.LENGTH));
+		}
+		return result;
+	}
+
+	private long getStateTimestamp(long i) {
+		long start = getHistoryStart();
+		if (i >= start) return states.get(i - start).getTimeStamp().longValue();
+		long pos = i * HISTORY_ENTRY_LENGTH;
+		return Utils.readLong(history.slice(pos, pos + 8).getBytes(), 0);
 	}
 
 	/**
@@ -461,12 +610,16 @@ public class Peer {
 		AVector<BlockResult> newResults = this.blockResults;
 		newResults=ACell.createPersisted(newResults).getValue();
 
-		return new Peer(this.keyPair, sb, newStates, newResults, this.timestamp);
+		// Persist history index
+		ABlob newHistory=ACell.createPersisted(this.history).getValue();
+
+		return new Peer(this.keyPair, sb, newStates, newResults, newHistory, this.timestamp, this.historyLimit);
 	}
 
 	/**
-	 * Gets the vector of States maintained by this Peer, starting from the
-	 * Genesis state (index 0).
+	 * Gets the vector of recent States retained in memory by this Peer. The first State
+	 * in the vector has index getHistoryStart(), which is the Genesis State (index 0) unless
+	 * older States have been dropped.
 	 * 
 	 * @return Vector of states
 	 */
@@ -474,6 +627,34 @@ public class Peer {
 		return states;
 	}
 
+	/**
+	 * Gets the index of the oldest State retained in memory
+	 * @return Index of first State in getStates()
+	 */
+	public long getHistoryStart() {
+		return history.count() / HISTORY_ENTRY_LENGTH;
+	}
+
+	/**
+	 * Gets the total number of States since Genesis, including those no longer retained in memory
+	 * @return Number of States
+	 */
+	public long getStateCount() {
+		return getHistoryStart() + states.count();
+	}
+
+	/**
+	 * Gets the State at a specific index, loading from the current store if no longer retained in memory
+	 * @param i Index of State (0 = Genesis State)
+	 * @return State
+	 */
+	public State getState(long i) {
+		long start = getHistoryStart();
+		if (i >= start) return states.get(i - start);
+		Ref<State> ref = Ref.forHash(getHistoryHash(i, 8));
+		return ref.getValue();
+	}
+
 	/**
 	 * Gets the result of a specific transaction
 	 * @param blockIndex Index of Block in Order
@@ -481,16 +662,19 @@ public class Peer {
 	 * @return Result from transaction
 	 */
 	public Result getResult(long blockIndex, long txIndex) {
-		return blockResults.get(blockIndex).getResult(txIndex);
+		return getBlockResult(blockIndex).getResult(txIndex);
 	}
 
 	/**
-	 * Gets the BlockResult of a specific block index
+	 * Gets the BlockResult of a specific block index, loading from the current store if no longer retained in memory
 	 * @param i Index of Block
 	 * @return BlockResult
 	 */
 	public BlockResult getBlockResult(long i) {
-		return blockResults.get(i);
+		long start = getHistoryStart();
+		if (i >= start) return blockResults.get(i - start);
+		Ref<BlockResult> ref = Ref.forHash(getHistoryHash(i, 8 + Hash.LENGTH));
+		return ref.getValue();
 	}
 
 	/**
@@ -555,7 +739,31 @@ public class Peer {
 	 * @return State or null.
 	 */
 	public State asOf(CVMLong timestamp) {
-		return Utils.stateAsOf(states, timestamp);
+		long i = indexAsOf(timestamp.longValue());
+		if (i < 0) return null;
+		return getState(i);
+	}
+
+	/**
+	 * Leftmost binary search for a State by timestamp, using the history index for older States
+	 * so that only the resulting State needs to be loaded.
+	 * @param timestamp Timestamp in milliseconds
+	 * @return Index of State, or -1 if timestamp is too old
+	 */
+	private long indexAsOf(long timestamp) {
+		long n = getStateCount();
+		long min = 0;
+		long max = n;
+		while (min < max) {
+			long midpoint = (min + max) / 2;
+			if (getStateTimestamp(midpoint) < timestamp) {
+				min = midpoint + 1;
+			} else {
+				max = midpoint;
+			}
+		}
+		if ((min < n) && (getStateTimestamp(min) == timestamp)) return min;
+		return min - 1;
 	}
 
 	/**
@@ -567,7 +775,13 @@ public class Peer {
 	 * @return Vector of States.
 	 */
 	public AVector<State> asOfRange(CVMLong timestamp, long interval, int count) {
-		return Utils.statesAsOfRange(states, timestamp, interval, count);
+		AVector<State> v = Vectors.empty();
+		long ts = timestamp.longValue();
+		for (int i = 0; i < count; i++) {
+			v = v.conj(asOf(CVMLong.create(ts)));
+			ts += interval;
+		}
+		return v;
 	}
 
 	/**
@@ -575,6 +789,7 @@ public class Peer {
 	 * @return Network ID
 	 */
 	public Hash getNetworkID() {
-		return getStates().get(0).getHash();
+		if (getHistoryStart() == 0) return states.get(0).getHash();
+		return getHistoryHash(0, 8);
 	}
 }
@@ -2,7 +2,16 @@ package convex.core;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +26,7 @@ import convex.core.data.AccountStatus;
 import convex.core.data.Address;
 import convex.core.data.BlobMap;
 import convex.core.data.BlobMaps;
+import convex.core.data.Diffs;
 import convex.core.data.Format;
 import convex.core.data.Hash;
 import convex.core.data.Keyword;
@@ -39,6 +49,8 @@ import convex.core.lang.Context;
 import convex.core.lang.RT;
 import convex.core.lang.Symbols;
 import convex.core.lang.impl.RecordFormat;
+import convex.core.store.AStore;
+import convex.core.store.Stores;
 import convex.core.transactions.ATransaction;
 import convex.core.util.Counters;
 import convex.core.util.Utils;
@@ -88,6 +100,25 @@ public class State extends ARecord {
 	private final AVector<ACell> globals;
 	private final BlobMap<ABlob, AVector<ACell>> schedule;
 
+	/**
+	 * Cached weighted stakes for peers in this State
+	 */
+	private Map<AccountKey, Double> stakes;
+
+	/**
+	 * Recently used stake tables, keyed by Hash of the peers map. Most States share their peers
+	 * map with the previous State, so stakes need only be recomputed when peers change.
+	 */
+	private static final int STAKE_CACHE_SIZE = 16;
+	private static final LinkedHashMap<Hash, Map<AccountKey, Double>> stakeCache = new LinkedHashMap<Hash, Map<AccountKey, Double>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Hash, Map<AccountKey, Double>> eldest) {
+			return size() > STAKE_CACHE_SIZE;
+		}
+	};
+
 	private State(AVector<AccountStatus> accounts, BlobMap<AccountKey, PeerStatus> peers,
 			AVector<ACell> globals, BlobMap<ABlob, AVector<ACell>> schedule) {
 		super(FORMAT);
@@ -99,6 +130,7 @@ public class State extends ARecord {
 
 	@Override
 	public ACell get(ACell k) {
+		AccessSet.read(AccessSet.ALL);
 		if (Keywords.ACCOUNTS.equals(k)) return accounts;
 		if (Keywords.PEERS.equals(k)) return peers;
 		if (Keywords.GLOBALS.equals(k)) return globals;
@@ -231,15 +263,35 @@ public class State extends ARecord {
 	 * @return Vector of Accounts
 	 */
 	public AVector<AccountStatus> getAccounts() {
+		AccessSet.read(AccessSet.ALL);
 		return accounts;
 	}
 
+	/**
+	 * Gets the Addresses of all Accounts that differ between a previous State and this
+	 * State, including new Accounts. Subtrees of the accounts vector shared by both
+	 * States are skipped, so cost scales with the number of changed Accounts.
+	 *
+	 * @param previous Previous State to compare with
+	 * @return Vector of changed Addresses, in ascending order
+	 */
+	public AVector<Address> getChangedAccounts(State previous) {
+		ArrayList<Address> changed = new ArrayList<>();
+		Diffs.diff(previous.accounts, accounts, (change, path, oldValue, newValue) -> {
+			Address address = Address.create(((CVMLong) path.get(0)).longValue());
+			int n = changed.size();
+			if ((n == 0) || !changed.get(n - 1).equals(address)) changed.add(address);
+		});
+		return Vectors.create(changed);
+	}
+
 	/**
 	 * Gets the map of Peers for this State
 	 *
 	 * @return A map of addresses to PeerStatus records
 	 */
 	public BlobMap<AccountKey, PeerStatus> getPeers() {
+		AccessSet.read(AccessSet.PEERS);
 		return peers;
 	}
 
@@ -273,8 +325,25 @@ public class State extends ARecord {
 	 * @return The BlockResult from applying the given Block to this State
 	 */
 	public BlockResult applyBlock(Block block) {
+		return applyBlock(block,block.length()>=Constants.PARALLEL_BLOCK_THRESHOLD);
+	}
+
+	/**
+	 * Block level state transition function, optionally executing transactions in parallel.
+	 *
+	 * In parallel mode, all transactions are first executed speculatively against the State at the
+	 * start of the Block. Results are then committed in Block order, and any transaction which read
+	 * or wrote State modified by an earlier transaction is executed again sequentially. The BlockResult
+	 * is identical to that produced by sequential execution.
+	 *
+	 * @param block Block to Apply
+	 * @param parallel True to use speculative parallel execution
+	 * @return The BlockResult from applying the given Block to this State
+	 */
+	public BlockResult applyBlock(Block block, boolean parallel) {
 		Counters.applyBlock++;
 		State state = prepareBlock(block);
+		if (parallel) return state.applyTransactionsParallel(block);
 		return state.applyTransactions(block);
 	}
 
@@ -369,6 +438,7 @@ public class State extends ARecord {
 
 	private State withSchedule(BlobMap<ABlob, AVector<ACell>> newSchedule) {
 		if (schedule == newSchedule) return this;
+		AccessSet.write(AccessSet.SCHEDULE);
 		return new State(accounts, peers, globals, newSchedule);
 	}
 
@@ -407,6 +477,180 @@ public class State extends ARecord {
 		return BlockResult.create(state, results);
 	}
 
+	/**
+	 * Outcome of speculative execution of a transaction against the State at the start of a Block
+	 */
+	private static class Speculation {
+		Context<?> ctx;
+		AccessSet access;
+	}
+
+	/**
+	 * Number of threads for speculative execution. The calling thread also executes part of each
+	 * Block, so this is one less than the number of available processors.
+	 */
+	private static final int SPECULATION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+	/**
+	 * Dedicated executor for speculative execution. Access is recorded via a thread local AccessSet, 
+	 * so each task must run to completion on a single thread without executing any other task, 
+	 * which is not guaranteed by the work stealing common ForkJoinPool. If the queue is full, work 
+	 * runs on the calling thread.
+	 */
+	private static final ThreadPoolExecutor speculationExecutor;
+	static {
+		AtomicInteger count = new AtomicInteger(0);
+		speculationExecutor = new ThreadPoolExecutor(SPECULATION_THREADS, SPECULATION_THREADS, 10, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(SPECULATION_THREADS * 4), r -> {
+					Thread t = new Thread(r, "Speculative Executor #" + count.getAndIncrement());
+					t.setDaemon(true);
+					return t;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		speculationExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	private BlockResult applyTransactionsParallel(Block block) {
+		int blockLength = block.length();
+		Result[] results = new Result[blockLength];
+		AVector<SignedData<ATransaction>> transactions = block.getTransactions();
+
+		// Speculative execution of all transactions against this State. Failures
+		// are left as null, and will be re-executed sequentially.
+		Speculation[] specs = new Speculation[blockLength];
+		AStore store = Stores.current();
+		int chunks = Math.min(SPECULATION_THREADS + 1, blockLength);
+		ArrayList<Future<?>> futures = new ArrayList<>(chunks);
+		for (int c = 1; c < chunks; c++) {
+			int start = (int) ((long) blockLength * c / chunks);
+			int end = (int) ((long) blockLength * (c + 1) / chunks);
+			futures.add(speculationExecutor.submit(() -> speculateRange(transactions, specs, store, start, end)));
+		}
+		speculateRange(transactions, specs, store, 0, blockLength / Math.max(1, chunks));
+
+		boolean interrupted = false;
+		for (Future<?> f : futures) {
+			while (true) {
+				try {
+					f.get();
+					break;
+				} catch (InterruptedException e) {
+					// keep waiting, since speculations are needed, but preserve interrupt status
+					interrupted = true;
+				} catch (ExecutionException e) {
+					// ignore, failed speculations will re-execute
+					break;
+				}
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+
+		// Commit in Block order
+		State state = this;
+		AccessSet committed = new AccessSet();
+		for (int i = 0; i < blockLength; i++) {
+			Speculation spec = specs[i];
+			if ((spec != null) && !spec.access.conflictsWith(committed) && state.checkMemory(this, spec.access)) {
+				state = state.mergeSpeculation(this, spec.ctx.getState(), spec.access);
+				results[i] = Result.fromContext(CVMLong.create(i), spec.ctx);
+				committed.addWrites(spec.access);
+				Counters.speculationCommits++;
+				continue;
+			}
+
+			// Conflict or failed speculation, so execute against the latest State
+			Counters.speculationRetries++;
+			AccessSet access = AccessSet.begin();
+			try {
+				Context<?> ctx = state.applyTransaction(transactions.get(i));
+				results[i] = Result.fromContext(CVMLong.create(i),ctx);
+				state = ctx.getState();
+			} catch (Throwable t) {
+				String msg= "Unexpected fatal exception applying transaction: "+t.toString();
+				results[i] = Result.create(CVMLong.create(i), Strings.create(msg),ErrorCodes.UNEXPECTED);
+				t.printStackTrace();
+				log.error(msg);
+			} finally {
+				AccessSet.end();
+			}
+			committed.addWrites(access);
+		}
+
+		return BlockResult.create(state, results);
+	}
+
+	/**
+	 * Speculatively executes a range of transactions against this State, each with its own AccessSet
+	 */
+	private void speculateRange(AVector<SignedData<ATransaction>> transactions, Speculation[] specs, AStore store, int start, int end) {
+		AStore savedStore = Stores.current();
+		Stores.setCurrent(store);
+		try {
+			for (int i = start; i < end; i++) {
+				AccessSet access = AccessSet.begin();
+				try {
+					Context<?> ctx = applyTransaction(transactions.get(i));
+					ctx.getState(); // ensure any pending State updates are recorded
+					Speculation spec = new Speculation();
+					spec.ctx = ctx;
+					spec.access = access;
+					specs[i] = spec;
+				} catch (Throwable t) {
+					// ignore, will re-execute
+				} finally {
+					AccessSet.end();
+				}
+			}
+		} finally {
+			Stores.setCurrent(savedStore);
+		}
+	}
+
+	/**
+	 * Checks that a speculatively executed transaction would see the same memory usage if
+	 * executed against this State. Memory size is a property of the whole State, so may differ
+	 * even where there are no conflicts in accessed accounts (e.g. due to changes in embedding).
+	 *
+	 * @param base State against which the transaction was executed
+	 * @param access Access recorded during the transaction
+	 * @return true if memory usage is unchanged, false otherwise
+	 */
+	private boolean checkMemory(State base, AccessSet access) {
+		State prepared = access.prepared;
+		State executed = access.executed;
+		if (prepared == null) return true; // transaction not executed, so no memory accounting
+		long memUsed = executed.getMemorySize() - prepared.getMemorySize();
+		long newPrepared = mergeSpeculation(base, prepared, access).getMemorySize();
+		long newExecuted = mergeSpeculation(base, executed, access).getMemorySize();
+		return memUsed == (newExecuted - newPrepared);
+	}
+
+	/**
+	 * Applies the writes of a speculatively executed transaction to this State. Assumes
+	 * that the transaction does not conflict with any changes made since the base State.
+	 *
+	 * @param base State against which the transaction was executed
+	 * @param spec State resulting from the transaction
+	 * @param access Access recorded during the transaction
+	 * @return Updated State
+	 */
+	private State mergeSpeculation(State base, State spec, AccessSet access) {
+		State result = this;
+		long n = spec.accounts.count();
+		for (long ix : access.getAccountWrites()) {
+			// may be beyond the end if a new account was rolled back
+			if (ix >= n) break;
+			result = result.putAccount(Address.create(ix), spec.accounts.get(ix));
+		}
+		if (access.writes(AccessSet.PEERS)) result = result.withPeers(spec.peers);
+		if (access.writes(AccessSet.SCHEDULE)) result = result.withSchedule(spec.schedule);
+		if (access.writes(AccessSet.FEES)) {
+			long fees = ((CVMLong) spec.globals.get(GLOBAL_FEES)).longValue()
+					- ((CVMLong) base.globals.get(GLOBAL_FEES)).longValue();
+			result = result.addGlobalFees(fees);
+		}
+		return result;
+	}
+
 
 	/**
 	 * Applies a signed transaction to the State.
@@ -466,6 +710,7 @@ public class State extends ARecord {
 
 		// apply transaction. This may result in an error!
 		ctx = t.apply(ctx);
+		AccessSet.recordExecution(preparedState, ctx.getState());
 
 		// complete transaction
 		// NOTE: completeTransaction handles error cases as well
@@ -524,6 +769,30 @@ public class State extends ARecord {
 		return hm;
 	}
 
+	/**
+	 * Gets the weighted stake for each peer, as per computeStakes(). Stakes are cached, so
+	 * this is cheap for States with the same peers. The resulting map is shared and unmodifiable.
+	 *
+	 * @return Map of Stakes, with the total stake under the null key
+	 */
+	public Map<AccountKey, Double> getStakes() {
+		Map<AccountKey, Double> result = stakes;
+		if (result != null) return result;
+
+		Hash peersHash = peers.getHash();
+		synchronized (stakeCache) {
+			result = stakeCache.get(peersHash);
+		}
+		if (result == null) {
+			result = Collections.unmodifiableMap(computeStakes());
+			synchronized (stakeCache) {
+				stakeCache.put(peersHash, result);
+			}
+		}
+		stakes = result;
+		return result;
+	}
+
 	/**
 	 * Updates the Accounts in this State
 	 * @param newAccounts New Accounts vector
@@ -531,6 +800,7 @@ public class State extends ARecord {
 	 */
 	public State withAccounts(AVector<AccountStatus> newAccounts) {
 		if (newAccounts == accounts) return this;
+		AccessSet.write(AccessSet.ALL);
 		return create(newAccounts, peers,globals, schedule);
 	}
 
@@ -551,12 +821,15 @@ public class State extends ARecord {
 		AVector<AccountStatus> newAccounts;
 		if (ix==n) {
 			// adding a new account in next position
+			AccessSet.appendAccount(ix);
 			newAccounts=accounts.conj(accountStatus);
 		} else {
+			AccessSet.writeAccount(ix);
 			newAccounts = accounts.assoc(ix, accountStatus);
 		}
 
-		return withAccounts(newAccounts);
+		if (newAccounts == accounts) return this;
+		return create(newAccounts, peers,globals, schedule);
 	}
 
 	/**
@@ -567,7 +840,11 @@ public class State extends ARecord {
 	 */
 	public AccountStatus getAccount(Address target) {
 		long ix=target.toExactLong();
-		if ((ix<0)||(ix>=accounts.count())) return null;
+		if ((ix<0)||(ix>=accounts.count())) {
+			AccessSet.read(AccessSet.COUNT);
+			return null;
+		}
+		AccessSet.readAccount(ix);
 		return accounts.get(ix);
 	}
 
@@ -590,6 +867,7 @@ public class State extends ARecord {
 	 */
 	public State withPeers(BlobMap<AccountKey, PeerStatus> newPeers) {
 		if (peers == newPeers) return this;
+		AccessSet.write(AccessSet.PEERS);
 		return create(accounts, newPeers, globals, schedule);
 	}
 
@@ -606,8 +884,7 @@ public class State extends ARecord {
 	 */
 	public State addActor() {
 		AccountStatus as = AccountStatus.createActor();
-		AVector<AccountStatus> newAccounts = accounts.conj(as);
-		return withAccounts(newAccounts);
+		return putAccount(nextAddress(), as);
 	}
 
 	/**
@@ -668,7 +945,7 @@ public class State extends ARecord {
 		AVector<ACell> v = Vectors.of(address, op);
 
 		LongBlob key = LongBlob.create(time);
-		AVector<ACell> list = schedule.get(key);
+		AVector<ACell> list = getSchedule().get(key);
 		if (list == null) {
 			list = Vectors.of(v);
 		} else {
@@ -685,6 +962,7 @@ public class State extends ARecord {
 	 * @return The schedule data structure.
 	 */
 	public BlobMap<ABlob, AVector<ACell>> getSchedule() {
+		AccessSet.read(AccessSet.SCHEDULE);
 		return schedule;
 	}
 
@@ -693,6 +971,7 @@ public class State extends ARecord {
 	 * @return Global Fees
 	 */
 	public CVMLong getGlobalFees() {
+		AccessSet.read(AccessSet.FEES);
 		return (CVMLong) globals.get(GLOBAL_FEES);
 	}
 
@@ -702,9 +981,24 @@ public class State extends ARecord {
 	 * @return Updated State
 	 */
 	public State withGlobalFees(CVMLong newFees) {
+		AccessSet.read(AccessSet.FEES);
+		AccessSet.write(AccessSet.FEES);
 		return withGlobals(globals.assoc(GLOBAL_FEES,newFees));
 	}
 
+	/**
+	 * Adds to the Global Fees. Unlike reading and updating the fees, this does not
+	 * depend on the previous fee total, so does not conflict with other transactions
+	 * adding fees in the same Block.
+	 * @param fees Fees to add
+	 * @return Updated State
+	 */
+	public State addGlobalFees(long fees) {
+		AccessSet.write(AccessSet.FEES);
+		long oldFees=((CVMLong) globals.get(GLOBAL_FEES)).longValue();
+		return withGlobals(globals.assoc(GLOBAL_FEES,CVMLong.create(oldFees+fees)));
+	}
+
 
 	/**
 	 * Gets the PeerStatus record for the given Address, or null if it does not
@@ -714,6 +1008,7 @@ public class State extends ARecord {
 	 * @return PeerStatus
 	 */
 	public PeerStatus getPeer(AccountKey peerAddress) {
+		// recorded as a read of all Peers by getPeers()
 		return getPeers().get(peerAddress);
 	}
 
@@ -725,7 +1020,7 @@ public class State extends ARecord {
 	 * @return Updated state
 	 */
 	public State withPeer(AccountKey peerKey, PeerStatus updatedPeer) {
-		return withPeers(peers.assoc(peerKey, updatedPeer));
+		return withPeers(getPeers().assoc(peerKey, updatedPeer));
 	}
 
 	/**
@@ -735,6 +1030,7 @@ public class State extends ARecord {
 	 * @return Next address available
 	 */
 	public Address nextAddress() {
+		AccessSet.read(AccessSet.COUNT);
 		return Address.create(accounts.count());
 	}
 
@@ -754,6 +1050,7 @@ public class State extends ARecord {
 	 * @return Vector of global values
 	 */
 	public AVector<ACell> getGlobals() {
+		AccessSet.read(AccessSet.ALL);
 		return globals;
 	}
 
@@ -763,6 +1060,7 @@ public class State extends ARecord {
 	 * @return Updated State
 	 */
 	public State withTimestamp(long timestamp) {
+		AccessSet.write(AccessSet.ALL);
 		return withGlobals(globals.assoc(GLOBAL_TIMESTAMP, CVMLong.create(timestamp)));
 	}
 	
@@ -0,0 +1,194 @@
+package convex.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import convex.core.data.AccountKey;
+import convex.core.data.BlobMap;
+import convex.core.data.MapEntry;
+import convex.core.data.SignedData;
+
+/**
+ * Stake-weighted tally of the distinct Orders held by a set of peers, as used for
+ * voting in a Belief merge.
+ *
+ * A tally can be updated for a new set of peer Orders by adjusting only for the
+ * Orders that have changed, rather than recounting every peer. Immutable once
+ * created, so it can be safely retained and used as the basis for later merges.
+ *
+ * Stakes are tallied exactly as longs, since stakes may exceed the precision of a
+ * double and repeated incremental updates would otherwise drift from a full
+ * recount. Conversion to double happens only when the tally is read.
+ */
+final class VoteTally {
+
+	/**
+	 * Weighted peer stakes used for this tally
+	 */
+	private final Map<AccountKey, Double> peerStakes;
+
+	/**
+	 * Peer Orders counted in this tally
+	 */
+	private final BlobMap<AccountKey, SignedData<Order>> orders;
+
+	/**
+	 * Exact total stake for each distinct Order
+	 */
+	private final HashMap<Order, Long> exactStakes;
+
+	/**
+	 * Total stake for each distinct Order, converted from the exact stakes
+	 */
+	private final HashMap<Order, Double> stakedOrders;
+
+	/**
+	 * Number of staked peers holding each distinct Order
+	 */
+	private final HashMap<Order, Integer> voters;
+
+	private final long consideredStake;
+
+	private VoteTally(Map<AccountKey, Double> peerStakes, BlobMap<AccountKey, SignedData<Order>> orders,
+			HashMap<Order, Long> exactStakes, HashMap<Order, Integer> voters, long consideredStake) {
+		this.peerStakes = peerStakes;
+		this.orders = orders;
+		this.exactStakes = exactStakes;
+		this.voters = voters;
+		this.consideredStake = consideredStake;
+		HashMap<Order, Double> stakedOrders = new HashMap<>(exactStakes.size());
+		exactStakes.forEach((order, stake) -> stakedOrders.put(order, (double) stake));
+		this.stakedOrders = stakedOrders;
+	}
+
+	/**
+	 * Creates a tally by counting the stake of every peer Order
+	 * @param orders Map of peer keys to signed Orders
+	 * @param peerStakes Weighted stakes for each peer
+	 * @return New VoteTally
+	 */
+	static VoteTally create(BlobMap<AccountKey, SignedData<Order>> orders, Map<AccountKey, Double> peerStakes) {
+		HashMap<Order, Long> exactStakes = new HashMap<>();
+		HashMap<Order, Integer> voters = new HashMap<>();
+		long consideredStake = 0;
+		long n = orders.count();
+		for (long i = 0; i < n; i++) {
+			consideredStake += add(exactStakes, voters, peerStakes, orders.entryAt(i).getValue());
+		}
+		return new VoteTally(peerStakes, orders, exactStakes, voters, consideredStake);
+	}
+
+	/**
+	 * Updates this tally for a new set of peer Orders. Only Orders which differ from
+	 * those already counted are re-tallied. If the peer stakes are different, the
+	 * tally is recomputed.
+	 *
+	 * @param newOrders Map of peer keys to signed Orders
+	 * @param newStakes Weighted stakes for each peer
+	 * @return Updated VoteTally, or this tally if unchanged
+	 */
+	VoteTally update(BlobMap<AccountKey, SignedData<Order>> newOrders, Map<AccountKey, Double> newStakes) {
+		if (newStakes != peerStakes) return create(newOrders, newStakes);
+		if (newOrders == orders) return this;
+
+		HashMap<Order, Long> newExactStakes = new HashMap<>(exactStakes);
+		HashMap<Order, Integer> newVoters = new HashMap<>(voters);
+		long newConsideredStake = consideredStake;
+
+		// re-tally changed and added Orders
+		long retained = 0;
+		long n = newOrders.count();
+		for (long i = 0; i < n; i++) {
+			MapEntry<AccountKey, SignedData<Order>> me = newOrders.entryAt(i);
+			SignedData<Order> b = me.getValue();
+			SignedData<Order> a = orders.get(me.getKey());
+			if (a != null) {
+				retained++;
+				if ((a == b) || a.equals(b)) continue;
+				newConsideredStake -= remove(newExactStakes, newVoters, peerStakes, a);
+			}
+			newConsideredStake += add(newExactStakes, newVoters, peerStakes, b);
+		}
+
+		// remove Orders for peers no longer present, if any
+		if (retained < orders.count()) {
+			long m = orders.count();
+			for (long i = 0; i < m; i++) {
+				MapEntry<AccountKey, SignedData<Order>> me = orders.entryAt(i);
+				if (newOrders.containsKey(me.getKey())) continue;
+				newConsideredStake -= remove(newExactStakes, newVoters, peerStakes, me.getValue());
+			}
+		}
+
+		return new VoteTally(peerStakes, newOrders, newExactStakes, newVoters, newConsideredStake);
+	}
+
+	/**
+	 * Gets the stake of the peer holding a signed Order. Peer stakes are whole
+	 * amounts, so conversion back to long is exact.
+	 */
+	private static long peerStake(Map<AccountKey, Double> peerStakes, SignedData<Order> signedOrder) {
+		Double cStake = peerStakes.get(signedOrder.getAccountKey());
+		if (cStake == null) return 0;
+		return cStake.longValue();
+	}
+
+	private static long add(HashMap<Order, Long> stakedOrders, HashMap<Order, Integer> voters,
+			Map<AccountKey, Double> peerStakes, SignedData<Order> signedOrder) {
+		long cStake = peerStake(peerStakes, signedOrder);
+		if (cStake == 0) return 0;
+		Order order = signedOrder.getValue();
+		Long stake = stakedOrders.get(order);
+		if (stake == null) {
+			stakedOrders.put(order, cStake); // new Order to consider
+			voters.put(order, 1);
+		} else {
+			stakedOrders.put(order, stake + cStake); // add stake to existing Order
+			voters.put(order, voters.get(order) + 1);
+		}
+		return cStake;
+	}
+
+	private static long remove(HashMap<Order, Long> stakedOrders, HashMap<Order, Integer> voters,
+			Map<AccountKey, Double> peerStakes, SignedData<Order> signedOrder) {
+		long cStake = peerStake(peerStakes, signedOrder);
+		if (cStake == 0) return 0;
+		Order order = signedOrder.getValue();
+		int count = voters.get(order);
+		if (count == 1) {
+			// last peer holding this Order
+			stakedOrders.remove(order);
+			voters.remove(order);
+		} else {
+			stakedOrders.put(order, stakedOrders.get(order) - cStake);
+			voters.put(order, count - 1);
+		}
+		return cStake;
+	}
+
+	/**
+	 * Gets the total stake for each distinct Order. Must not be modified.
+	 * @return Map of Orders to stake
+	 */
+	HashMap<Order, Double> getStakedOrders() {
+		return stakedOrders;
+	}
+
+	/**
+	 * Gets the exact total stake for an Order
+	 * @param order Order to check
+	 * @return Stake on the Order, or zero if not held by any staked peer
+	 */
+	long getStake(Order order) {
+		Long stake = exactStakes.get(order);
+		return (stake == null) ? 0 : stake;
+	}
+
+	/**
+	 * Gets the total stake of all peers with Orders in this tally
+	 * @return Considered stake
+	 */
+	double getConsideredStake() {
+		return consideredStake;
+	}
+}
@@ -2,10 +2,18 @@ package convex.core.crypto;
 
 import java.security.Provider;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import convex.core.data.AArrayBlob;
 import convex.core.data.AccountKey;
 import convex.core.data.Blob;
+import convex.core.util.Utils;
 
 /**
  * Abstract base class for Custom Convex security providers
@@ -26,6 +34,86 @@ public abstract class AProvider extends Provider {
 	 */
 	public abstract boolean verify(ASignature signature, AArrayBlob message, AccountKey publicKey);
 
+	/**
+	 * Minimum batch size for which verification is performed in parallel
+	 */
+	protected static final int PARALLEL_BATCH_SIZE=16;
+
+	/**
+	 * Number of verifier threads shared by all providers. The calling thread also verifies
+	 * part of each batch, so this is one less than the number of available processors.
+	 */
+	private static final int VERIFY_THREADS=Math.max(1, Runtime.getRuntime().availableProcessors()-1);
+
+	/**
+	 * Dedicated bounded executor for parallel batch verification, so that large batches do not
+	 * occupy the common ForkJoinPool. If the queue is full, work runs on the calling thread.
+	 */
+	private static final ThreadPoolExecutor verifyExecutor;
+	static {
+		AtomicInteger count=new AtomicInteger(0);
+		verifyExecutor=new ThreadPoolExecutor(VERIFY_THREADS, VERIFY_THREADS, 10, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(VERIFY_THREADS*4), r->{
+					Thread t=new Thread(r, "Signature Verifier #"+count.getAndIncrement());
+					t.setDaemon(true);
+					return t;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		verifyExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Verify a batch of Ed25519 Signatures. Arrays must be of equal length. Large batches are
+	 * split into chunks verified in parallel, so verify must be thread safe. Providers may
+	 * override this to verify batches more efficiently than individual calls to verify.
+	 * 
+	 * @param signatures Signatures
+	 * @param messages Messages
+	 * @param publicKeys Public Keys
+	 * @return Array of results, true for each signature verified, false otherwise
+	 */
+	public boolean[] verifyBatch(ASignature[] signatures, AArrayBlob[] messages, AccountKey[] publicKeys) {
+		int n=signatures.length;
+		boolean[] results=new boolean[n];
+		int chunks=Math.min(VERIFY_THREADS+1, n/PARALLEL_BATCH_SIZE);
+		if (chunks<=1) {
+			verifyRange(signatures, messages, publicKeys, results, 0, n);
+			return results;
+		}
+
+		// Submit all but the first chunk, which is verified on the calling thread
+		ArrayList<Future<?>> futures=new ArrayList<>(chunks-1);
+		for (int c=1; c<chunks; c++) {
+			int start=(int)((long)n*c/chunks);
+			int end=(int)((long)n*(c+1)/chunks);
+			futures.add(verifyExecutor.submit(()->verifyRange(signatures, messages, publicKeys, results, start, end)));
+		}
+		verifyRange(signatures, messages, publicKeys, results, 0, n/chunks);
+
+		boolean interrupted=false;
+		for (int c=1; c<chunks; c++) {
+			Future<?> f=futures.get(c-1);
+			while (true) {
+				try {
+					f.get();
+					break;
+				} catch (InterruptedException e) {
+					// keep waiting, since results are needed, but preserve interrupt status
+					interrupted=true;
+				} catch (ExecutionException e) {
+					throw Utils.sneakyThrow(e.getCause());
+				}
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+		return results;
+	}
+
+	private void verifyRange(ASignature[] signatures, AArrayBlob[] messages, AccountKey[] publicKeys, boolean[] results, int start, int end) {
+		for (int i=start; i<end; i++) {
+			results[i]=verify(signatures[i],messages[i],publicKeys[i]);
+		}
+	}
+
 	/**
 	 * Generates a secure random key pair. Uses the default SecureRandom
 	 * provider as provided by the current JVM environment.
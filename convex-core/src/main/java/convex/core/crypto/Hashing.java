@@ -4,8 +4,8 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
-import org.bouncycastle.jcajce.provider.digest.Keccak;
-
+import convex.core.Constants;
+import convex.core.data.ABlob;
 import convex.core.data.Hash;
 
 /**
@@ -35,6 +35,51 @@ public class Hashing {
 		return Hash.wrap(hash);
 	}
 
+	/**
+	 * Computes the SHA3-256 hashes of a batch of Blobs, e.g. the encodings of many small cells.
+	 * 
+	 * A single digest is used for the whole batch, and all resulting Hashes share one backing array.
+	 * 
+	 * @param blobs Blobs to hash
+	 * @return Array of SHA3-256 Hash values, in the same order as the Blobs
+	 */
+	public static Hash[] sha3(ABlob[] blobs) {
+		MessageDigest md = getSHA3Digest();
+		int n = blobs.length;
+		byte[] bs = new byte[n * Hash.LENGTH];
+		Hash[] result = new Hash[n];
+		for (int i = 0; i < n; i++) {
+			int pos = i * Hash.LENGTH;
+			blobs[i].computeHash(md, bs, pos);
+			result[i] = Hash.wrap(bs, pos);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a new SHA3-256 MessageDigest. Uses the Convex implementation unless
+	 * disabled with Constants.OPT_NATIVE_SHA3, in which case the JCA provider is used.
+	 * 
+	 * @return MessageDigest instance
+	 */
+	public static MessageDigest createSHA3Digest() {
+		if (Constants.OPT_NATIVE_SHA3) return KeccakDigest.createSHA3();
+		return createProviderSHA3Digest();
+	}
+
+	/**
+	 * Creates a new SHA3-256 MessageDigest from the installed JCA providers
+	 * 
+	 * @return MessageDigest instance
+	 */
+	public static MessageDigest createProviderSHA3Digest() {
+		try {
+			return MessageDigest.getInstance("SHA3-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new Error("SHA3-256 algorithm not available", e);
+		}
+	}
+
 	/**
 	 * Gets a thread-local instance of a SHA3-256 MessageDigest
 	 * 
@@ -63,9 +108,8 @@ public class Hashing {
 	 * @return MessageDigest
 	 */
 	public static MessageDigest getKeccak256Digest() {
-		// MessageDigest md= KECCAK_DIGEST.get();
-		// md.reset();
-		MessageDigest md = new Keccak.Digest256();
+		MessageDigest md = keccakStore.get();
+		md.reset();
 		return md;
 	}
 
@@ -119,25 +163,12 @@ public class Hashing {
 			}
 		});
 		
-		sha3Store = ThreadLocal.withInitial(() -> {
-			try {
-				return MessageDigest.getInstance("SHA3-256");
-			} catch (NoSuchAlgorithmException e) {
-				throw new Error("SHA3-256 algorithm not available", e);
-			}
-		});
+		sha3Store = ThreadLocal.withInitial(Hashing::createSHA3Digest);
 	}
+
 	/**
-	 * Threadlocal store for MessageDigest instances. TODO: figure out if this is
-	 * useful for performance. Probably not since digest initialisation is the
-	 * bottleneck anyway?
+	 * Private store for thread-local Keccak256 digests
 	 */
-	@SuppressWarnings("unused")
-	private static final ThreadLocal<MessageDigest> KECCAK_DIGEST = new ThreadLocal<MessageDigest>() {
-		@Override
-		protected MessageDigest initialValue() {
-			return new Keccak.Digest256();
-		}
-	};
+	private static final ThreadLocal<MessageDigest> keccakStore = ThreadLocal.withInitial(KeccakDigest::createKeccak256);
 
 }
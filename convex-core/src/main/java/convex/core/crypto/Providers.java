@@ -32,6 +32,10 @@ public class Providers {
 		return currentProvider.verify(signature, message, publicKey);
 	}
 
+	public static boolean[] verifyBatch(ASignature[] signatures, AArrayBlob[] messages, AccountKey[] publicKeys) {
+		return currentProvider.verifyBatch(signatures, messages, publicKeys);
+	}
+
 	public static AKeyPair generate() {
 		return currentProvider.generate();
 	}
@@ -1,7 +1,10 @@
 package convex.core.data;
 
 import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import convex.core.crypto.Hashing;
 import convex.core.data.prim.CVMLong;
@@ -165,6 +168,23 @@ public abstract class ABlob extends ACountable<CVMLong> implements Comparable<AB
 		return Hash.wrap(digest.digest());
 	}
 
+	/**
+	 * Computes the hash of the byte data stored in this Blob into an existing array, using the
+	 * given MessageDigest. Avoids allocation where the MessageDigest supports it.
+	 * 
+	 * @param digest MessageDigest instance
+	 * @param dest Destination array
+	 * @param offset Offset into destination array
+	 */
+	public final void computeHash(MessageDigest digest, byte[] dest, int offset) {
+		updateDigest(digest);
+		try {
+			digest.digest(dest, offset, Hash.LENGTH);
+		} catch (DigestException e) {
+			throw new Error("Unable to compute digest", e);
+		}
+	}
+
 	protected abstract void updateDigest(MessageDigest digest);
 
 	/**
@@ -319,6 +339,32 @@ public abstract class ABlob extends ACountable<CVMLong> implements Comparable<AB
 	 * @return A Blob containing the specified chunk data.
 	 */
 	public abstract Blob getChunk(long i);
+
+	/**
+	 * Gets an iterator over the chunks of this Blob, in order. Tree Blobs walk their
+	 * children directly rather than descending from the root for each chunk.
+	 * 
+	 * @return Iterator over chunks, as per getChunk(long)
+	 */
+	public Iterator<Blob> chunkIterator() {
+		return new ChunkIterator();
+	}
+
+	private class ChunkIterator implements Iterator<Blob> {
+		final long n = (count() + Blob.CHUNK_LENGTH - 1) / Blob.CHUNK_LENGTH;
+		long pos = 0;
+
+		@Override
+		public boolean hasNext() {
+			return pos < n;
+		}
+
+		@Override
+		public Blob next() {
+			if (pos >= n) throw new NoSuchElementException();
+			return getChunk(pos++);
+		}
+	}
 	
 	/**
 	 * Prints this Blob in a readable Hex representation, typically in the format "0x01abcd...."
@@ -2,6 +2,7 @@ package convex.core.data;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 import convex.core.data.type.AType;
@@ -44,10 +45,9 @@ public abstract class ABlobMap<K extends ABlob, V extends ACell> extends AMap<K,
 	@Override
 	public Set<Entry<K, V>> entrySet() {
 		HashSet<Entry<K,V>> hs=new HashSet<>(size());
-		long n=count();
-		for (long i=0; i<n; i++) {
-			MapEntry<K,V> me=entryAt(i);
-			hs.add(me);
+		Iterator<MapEntry<K,V>> it=entryIterator();
+		while (it.hasNext()) {
+			hs.add(it.next());
 		}
 		return Collections.unmodifiableSet(hs);
 	}
@@ -1,9 +1,11 @@
 package convex.core.data;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 import convex.core.Constants;
+import convex.core.crypto.Hashing;
 import convex.core.data.type.AType;
 import convex.core.data.type.Types;
 import convex.core.exceptions.InvalidDataException;
@@ -68,6 +70,29 @@ public abstract class ACell extends AObject implements IWriteable, IValidated {
 		return getEncoding().getContentHash();
 	}
 	
+	/**
+	 * Computes the Hashes of a batch of cells together, e.g. cells received in a single message.
+	 * Cells which already have a Hash available are skipped.
+	 * 
+	 * @param cells Cells to hash (may contain nulls)
+	 */
+	public static void computeHashes(ACell[] cells) {
+		int n=cells.length;
+		Blob[] encodings=new Blob[n];
+		int count=0;
+		for (int i=0; i<n; i++) {
+			ACell c=cells[i];
+			if ((c==null)||(c.cachedHash()!=null)) continue;
+			encodings[count++]=c.getEncoding();
+		}
+		if (count==0) return;
+		if (count<n) encodings=Arrays.copyOf(encodings, count);
+		Hash[] hashes=Hashing.sha3(encodings);
+		for (int i=0; i<count; i++) {
+			encodings[i].attachContentHash(hashes[i]);
+		}
+	}
+
 	/**
 	 * Gets the tag byte for this cell. The tag byte is always equal to the 
 	 * first byte of the Cell's canonical Encoding, and is sufficient to distinguish 
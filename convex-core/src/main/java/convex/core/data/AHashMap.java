@@ -1,5 +1,6 @@
 package convex.core.data;
 
+import java.util.Iterator;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -43,19 +44,17 @@ public abstract class AHashMap<K extends ACell, V extends ACell> extends AMap<K,
 	 * Merge another map into this map. Replaces existing entries if they are
 	 * different
 	 * 
-	 * O(n) in size of map to merge.
+	 * Subtrees present in both maps are merged structurally, so identical subtrees
+	 * are shared rather than rebuilt. At worst O(n) in size of map to merge.
 	 * 
 	 * @param m HashMap to merge into this HashMap 
 	 * @return Merged HashMap
 	 */
 	public AHashMap<K, V> merge(AHashMap<K, V> m) {
-		AHashMap<K, V> result = this;
-		long n = m.count();
-		for (int i = 0; i < n; i++) {
-			result = result.assocEntry(m.entryAt(i));
-		}
-		return result;
+		return merge(m, 0);
 	}
+
+	protected abstract AHashMap<K, V> merge(AHashMap<K, V> m, int shift);
 	
 	@Override
 	public AHashMap<K, V> merge(AMap<K, V> m) {
@@ -161,8 +160,9 @@ public abstract class AHashMap<K extends ACell, V extends ACell> extends AMap<K,
 	public AVector<K> getKeys() {
 		int n=Utils.checkedInt(count);
 		ACell[] keys=new ACell[n];
+		Iterator<MapEntry<K,V>> it=entryIterator();
 		for (int i=0; i<n; i++) {
-			keys[i]=entryAt(i).getKey();
+			keys[i]=it.next().getKey();
 		}
 		return Vectors.create(keys);
 	}
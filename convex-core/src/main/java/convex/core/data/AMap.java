@@ -2,11 +2,17 @@ package convex.core.data;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import convex.core.data.type.AType;
 import convex.core.data.type.Types;
@@ -151,15 +157,15 @@ public abstract class AMap<K extends ACell, V extends ACell> extends ADataStruct
 	@Override
 	public boolean print(BlobBuilder sb, long limit) {
 		sb.append('{');
-		long n=count();
-		for (long i=0; i<n; i++) {
-			MapEntry<K,V> e=entryAt(i);
+		Iterator<MapEntry<K,V>> it=entryIterator();
+		while (it.hasNext()) {
+			MapEntry<K,V> e=it.next();
 			K k=e.getKey();
 			if (!RT.print(sb,k,limit)) return false;
 			sb.append(' ');
 			V v=e.getValue();
 			if (!RT.print(sb,v,limit)) return false;
-			if (i<(n-1)) sb.append(',');
+			if (it.hasNext()) sb.append(',');
 		}
 		sb.append('}');
 		return sb.check(limit);
@@ -183,6 +189,65 @@ public abstract class AMap<K extends ACell, V extends ACell> extends ADataStruct
 	 */
 	public abstract MapEntry<K, V> entryAt(long i);
 	
+	/**
+	 * Gets an iterator over the entries of this map, in the map-specific order.
+	 * 
+	 * @return Iterator over map entries
+	 */
+	public Iterator<MapEntry<K, V>> entryIterator() {
+		return new EntryIterator();
+	}
+
+	/**
+	 * Gets a Spliterator over the entries of this map, in the map-specific order.
+	 * Tree maps split along child boundaries, so parallel streams scale with map size.
+	 * 
+	 * @return Spliterator over map entries
+	 */
+	public Spliterator<MapEntry<K, V>> entrySpliterator() {
+		return Spliterators.spliterator(entryIterator(), count(), ENTRY_CHARACTERISTICS);
+	}
+
+	/**
+	 * Gets a sequential Stream of the entries in this map. Call parallel() on the result
+	 * to process entries in parallel.
+	 * 
+	 * @return Stream of map entries
+	 */
+	public Stream<MapEntry<K, V>> entryStream() {
+		return StreamSupport.stream(entrySpliterator(), false);
+	}
+
+	/**
+	 * Spliterator characteristics for map entries
+	 */
+	protected static final int ENTRY_CHARACTERISTICS = Spliterator.IMMUTABLE | Spliterator.SIZED | Spliterator.SUBSIZED
+			| Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+
+	/**
+	 * Iterator over entries using entryAt, efficient for map types with direct
+	 * entry access
+	 */
+	private class EntryIterator implements Iterator<MapEntry<K, V>> {
+		long pos = 0;
+
+		@Override
+		public boolean hasNext() {
+			return pos < count();
+		}
+
+		@Override
+		public MapEntry<K, V> next() {
+			if (pos >= count()) throw new NoSuchElementException();
+			return entryAt(pos++);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException(Errors.immutable(this));
+		}
+	}
+
 	@Override
 	public Ref<MapEntry<K, V>> getElementRef(long index) {
 		return entryAt(index).getRef();
@@ -308,9 +373,9 @@ public abstract class AMap<K extends ACell, V extends ACell> extends ADataStruct
 	 */
 	public AMap<K, V> merge(AMap<K, V> m) {
 		AMap<K, V> result = this;
-		long n = m.count();
-		for (int i = 0; i < n; i++) {
-			result = result.assocEntry(m.entryAt(i));
+		Iterator<MapEntry<K, V>> it = m.entryIterator();
+		while (it.hasNext()) {
+			result = result.assocEntry(it.next());
 			if (result==null) return null;
 		}
 		return result;
@@ -333,8 +398,9 @@ public abstract class AMap<K extends ACell, V extends ACell> extends ADataStruct
 	public AVector<K> getKeys() {
 		int n=Utils.checkedInt(count);
 		ACell[] keys=new ACell[n];
+		Iterator<MapEntry<K,V>> it=entryIterator();
 		for (int i=0; i<n; i++) {
-			keys[i]=entryAt(i).getKey();
+			keys[i]=it.next().getKey();
 		}
 		return Vectors.create(keys);
 	}
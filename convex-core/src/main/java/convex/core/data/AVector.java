@@ -204,8 +204,9 @@ public abstract class AVector<T extends ACell> extends ASequence<T> {
 	public abstract long commonPrefixLength(AVector<T> b);
 
 	public AVector<T> appendAll(List<T> list) {
-		// We could potentially optimise this with chunks, though probably doesn't matter
 		// Gets used in Belief merge appending new blocks
+		// For larger lists, build the new elements in bulk and concatenate by chunks
+		if (list.size() >= Vectors.CHUNK_SIZE) return concat(Vectors.create(list));
 		AVector<T> result = this;
 		for (T value : list) {
 			result = result.append(value);
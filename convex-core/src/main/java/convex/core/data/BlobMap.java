@@ -2,7 +2,11 @@ package convex.core.data;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Spliterator;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Predicate;
@@ -50,23 +54,23 @@ public class BlobMap<K extends ABlob, V extends ACell> extends ABlobMap<K, V> {
 	 * Entry for this node of the radix tree. Invariant assumption that the prefix
 	 * is correct. May be null if there is no entry at this node.
 	 */
-	private final MapEntry<K, V> entry;
+	final MapEntry<K, V> entry;
 
 	/**
 	 * Mask of child entries, 16 bits for each hex digit that may be present.
 	 */
-	private final short mask;
+	final short mask;
 
 	/**
 	 * Depth of radix tree in number of hex digits. Top level is 0. 
 	 * Children should have depth = parent depth + parent prefixLength + 1
 	 */
-	private final long depth;
+	final long depth;
 
 	/**
 	 * Length of prefix, where the tree branches beyond depth. 0 = no prefix.
 	 */
-	private final long prefixLength;
+	final long prefixLength;
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	protected BlobMap(long depth, long prefixLength, MapEntry<K, V> entry, Ref<BlobMap>[] entries,
@@ -97,6 +101,50 @@ public class BlobMap<K extends ABlob, V extends ACell> extends ABlobMap<K, V> {
 		return new BlobMap<K, V>(depth, hexLength - depth, me, EMPTY_CHILDREN, (short) 0, 1L);
 	}
 
+	/**
+	 * Creates a BlobMap from entries sorted by key, with no duplicate keys. The radix
+	 * tree is built bottom-up in a single pass, without creating intermediate maps.
+	 * 
+	 * @param entries Array of entries, sorted by key
+	 * @param offset Offset of first entry to include
+	 * @param length Number of entries to include
+	 * @param depth Depth of the new node in hex digits
+	 * @return New BlobMap
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	static <K extends ABlob, V extends ACell> BlobMap<K, V> createSorted(MapEntry<K, V>[] entries, int offset, int length, long depth) {
+		if (length == 0) return (BlobMap<K, V>) EMPTY;
+		MapEntry<K, V> first = entries[offset];
+		if (length == 1) return createAtDepth(first, depth);
+
+		// keys are sorted, so the common prefix of all keys is that of the first and last
+		ABlob fk = first.getKey();
+		ABlob lk = entries[offset + length - 1].getKey();
+		long fkLength = fk.hexLength();
+		long pDepth = depth + fk.hexMatchLength(lk, depth, Math.min(fkLength, lk.hexLength()) - depth);
+
+		MapEntry<K, V> e = null;
+		int i = offset;
+		if (fkLength == pDepth) {
+			// first key is the prefix itself, so is the entry for this node
+			e = first;
+			i++;
+		}
+		Ref[] children = new Ref[16];
+		int n = 0;
+		int mask = 0;
+		int end = offset + length;
+		while (i < end) {
+			int digit = entries[i].getKey().getHexDigit(pDepth);
+			int j = i + 1;
+			while ((j < end) && (entries[j].getKey().getHexDigit(pDepth) == digit)) j++;
+			children[n++] = createSorted(entries, i, j - i, pDepth + 1).getRef();
+			mask |= 1 << digit;
+			i = j;
+		}
+		return new BlobMap<K, V>(depth, pDepth - depth, e, Arrays.copyOf(children, n), (short) mask, length);
+	}
+
 	public static <K extends ABlob, V extends ACell> BlobMap<K, V> create(K k, V v) {
 		MapEntry<K, V> me = MapEntry.create(k, v);
 		long hexLength = k.hexLength();
@@ -166,7 +214,7 @@ public class BlobMap<K extends ABlob, V extends ACell> extends ABlobMap<K, V> {
 	 * @param digit
 	 * @return
 	 */
-	private BlobMap<K, V> getChild(int digit) {
+	BlobMap<K, V> getChild(int digit) {
 		int i = Bits.indexForDigit(digit, mask);
 		if (i < 0) return null;
 		return (BlobMap<K, V>) children[i].getValue();
@@ -251,7 +299,7 @@ public class BlobMap<K extends ABlob, V extends ACell> extends ABlobMap<K, V> {
 	 * Typically we populate with the key of the first entry added to avoid
 	 * unnecessary blob instances being created.
 	 */
-	private ABlob getPrefix() {
+	ABlob getPrefix() {
 		if (entry!=null) return entry.getKey();
 		int n=children.length;
 		if (n==0) return Blob.EMPTY;
@@ -681,6 +729,19 @@ public class BlobMap<K extends ABlob, V extends ACell> extends ABlobMap<K, V> {
 		throw new IndexOutOfBoundsException(Errors.badIndex(ix));
 	}
 
+	@Override
+	public Iterator<MapEntry<K, V>> entryIterator() {
+		Iterator<MapEntry<K, V>> head = (entry == null) ? null : Collections.singletonList(entry).iterator();
+		return new TreeIterator<MapEntry<K, V>, BlobMap<K, V>>(head, children, c -> c.entryIterator());
+	}
+
+	@Override
+	public Spliterator<MapEntry<K, V>> entrySpliterator() {
+		Spliterator<MapEntry<K, V>> head = (entry == null) ? null : Collections.singletonList(entry).spliterator();
+		return new TreeSpliterator<MapEntry<K, V>, BlobMap<K, V>>(head, children, 0, children.length,
+				c -> c.entrySpliterator(), ENTRY_CHARACTERISTICS);
+	}
+
 	/**
 	 * Removes n leading entries from this BlobMap, in key order.
 	 * 
@@ -1,5 +1,7 @@
 package convex.core.data;
 
+import java.util.Arrays;
+
 import convex.core.lang.RT;
 import convex.core.util.Utils;
 
@@ -27,12 +29,54 @@ public class BlobMaps {
 	public static <R extends ABlobMap<K, V>, K extends ABlob, V extends ACell> R of(Object... kvs) {
 		int n = kvs.length;
 		if (Utils.isOdd(n)) throw new IllegalArgumentException("Even number of key + values required");
-		BlobMap<K, V> result = empty();
+		MapEntry<K, V>[] entries = new MapEntry[n / 2];
 		for (int i = 0; i < n; i += 2) {
 			V value=RT.cvm(kvs[i + 1]);
-			result = result.assoc((K) kvs[i], value);
+			entries[i / 2] = MapEntry.create((K) kvs[i], value);
 		}
+		return (R) build(entries, n / 2);
+	}
 
-		return (R) result;
+	/**
+	 * Creates a BlobMap containing the given entries. If keys are repeated, later
+	 * entries replace earlier ones.
+	 * 
+	 * @param <K> Key type
+	 * @param <V> Value type
+	 * @param entries Entries to include
+	 * @return BlobMap instance, or null if any key is not a Blob
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K extends ABlob, V extends ACell> BlobMap<K, V> create(java.util.List<MapEntry<K, V>> entries) {
+		int n = entries.size();
+		return build(entries.toArray(new MapEntry[n]), n);
+	}
+
+	/**
+	 * Builds a BlobMap from the first n entries of an array in a single pass. The radix
+	 * tree is constructed bottom-up from entries in key order, which avoids the
+	 * intermediate maps created by repeated assoc.
+	 * 
+	 * @param entries Array of entries, which will be sorted in place
+	 * @param n Number of entries to include
+	 * @return BlobMap instance, or null if any key is not a Blob
+	 */
+	static <K extends ABlob, V extends ACell> BlobMap<K, V> build(MapEntry<K, V>[] entries, int n) {
+		for (int i = 0; i < n; i++) {
+			ACell k = ((MapEntry<?, ?>) entries[i]).getKey();
+			if (!(k instanceof ABlob)) return null;
+		}
+		// stable sort, so entries with equal keys remain in input order
+		Arrays.sort(entries, 0, n, (a, b) -> a.getKey().compareTo(b.getKey()));
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			MapEntry<K, V> e = entries[i];
+			if ((m > 0) && (entries[m - 1].getKey().compareTo(e.getKey()) == 0)) {
+				entries[m - 1] = e;
+			} else {
+				entries[m++] = e;
+			}
+		}
+		return BlobMap.createSorted(entries, 0, m, 0);
 	}
 }
@@ -2,6 +2,7 @@ package convex.core.data;
 
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
+import java.util.Iterator;
 
 import convex.core.exceptions.BadFormatException;
 import convex.core.exceptions.InvalidDataException;
@@ -496,6 +497,11 @@ public class BlobTree extends ABlob {
 		return getChild(child).getChunk(chunkIndex - child * childSize);
 	}
 
+	@Override
+	public Iterator<Blob> chunkIterator() {
+		return new TreeIterator<Blob, ABlob>(children, c -> c.chunkIterator());
+	}
+
 	@Override
 	public void validate() throws InvalidDataException {
 		super.validate();
@@ -550,9 +556,10 @@ public class BlobTree extends ABlob {
 	public long commonHexPrefixLength(ABlob b) {
 		long cpl = 0;
 		long DIGITS_PER_CHUNK = Blob.CHUNK_LENGTH * 2;
-		long maxChunk=(Math.min(count(),b.count())-1)/Blob.CHUNK_LENGTH;
-		for (long i = 0; i<=maxChunk; i++) {
-			long cl = getChunk(i).commonHexPrefixLength(b.getChunk(i));
+		Iterator<Blob> ia = chunkIterator();
+		Iterator<Blob> ib = b.chunkIterator();
+		while (ia.hasNext() && ib.hasNext()) {
+			long cl = ia.next().commonHexPrefixLength(ib.next());
 			if (cl < DIGITS_PER_CHUNK) return cpl + cl;
 			cpl += DIGITS_PER_CHUNK;
 		}
@@ -0,0 +1,299 @@
+package convex.core.data;
+
+import java.util.Iterator;
+
+import convex.core.data.prim.CVMLong;
+import convex.core.util.Bits;
+
+/**
+ * Static utilities for computing structural differences between two values.
+ *
+ * Subtrees that are shared between both values are detected by hash and skipped
+ * without being traversed, so the cost of a diff scales with the size of the change
+ * rather than the size of the values. This makes it practical to find e.g. the
+ * accounts changed by a single block in a large State.
+ */
+public class Diffs {
+
+	/**
+	 * Types of change reported by a diff
+	 */
+	public enum Change {
+		/**
+		 * Key, index or element present only in the new value
+		 */
+		ADDED,
+
+		/**
+		 * Key, index or element present only in the old value
+		 */
+		REMOVED,
+
+		/**
+		 * Value at the path differs and cannot be compared further
+		 */
+		UPDATED
+	}
+
+	/**
+	 * Computes the differences between two values, calling the handler for each change
+	 * found. Changes are reported at the deepest path where the values can be
+	 * compared: maps, BlobMaps and records by key, vectors by index and sets by
+	 * element. Other values are reported as UPDATED.
+	 *
+	 * @param a Old value (may be null)
+	 * @param b New value (may be null)
+	 * @param handler Handler to receive changes
+	 */
+	public static void diff(ACell a, ACell b, IDiffHandler handler) {
+		diff(Vectors.empty(), a, b, handler);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void diff(AVector<ACell> path, ACell a, ACell b, IDiffHandler h) {
+		if (a == b) return;
+		if ((a != null) && (b != null)) {
+			if (a.getHash().equals(b.getHash())) return;
+			if ((a instanceof AVector) && (b instanceof AVector)) {
+				diffVectors(path, (AVector<ACell>) a, (AVector<ACell>) b, h);
+				return;
+			}
+			if ((a instanceof AHashMap) && (b instanceof AHashMap)) {
+				diffHashMaps(path, (AHashMap<ACell, ACell>) a, (AHashMap<ACell, ACell>) b, h);
+				return;
+			}
+			if ((a instanceof BlobMap) && (b instanceof BlobMap)) {
+				diffBlobMaps(path, (BlobMap<ABlob, ACell>) a, (BlobMap<ABlob, ACell>) b, h);
+				return;
+			}
+			if ((a instanceof AHashSet) && (b instanceof AHashSet)) {
+				diffSets(path, (AHashSet<ACell>) a, (AHashSet<ACell>) b, h);
+				return;
+			}
+			if ((a instanceof ARecord) && (a.getClass() == b.getClass())) {
+				diffRecords(path, (ARecord) a, (ARecord) b, h);
+				return;
+			}
+		}
+		h.change(Change.UPDATED, path, a, b);
+	}
+
+	private static boolean isSame(Ref<?> a, Ref<?> b) {
+		return (a == b) || a.getHash().equals(b.getHash());
+	}
+
+	private static void diffRecords(AVector<ACell> path, ARecord a, ARecord b, IDiffHandler h) {
+		AVector<Keyword> keys = a.getKeys();
+		long n = keys.count();
+		for (long i = 0; i < n; i++) {
+			Keyword k = keys.get(i);
+			diff(path.conj(k), a.get(k), b.get(k), h);
+		}
+	}
+
+	private static void diffVectors(AVector<ACell> path, AVector<ACell> a, AVector<ACell> b, IDiffHandler h) {
+		long na = a.count();
+		long nb = b.count();
+		long n = Math.min(na, nb);
+
+		// Compare common range in aligned blocks, largest first. Canonical vectors
+		// share the same subtree for every complete aligned block.
+		long pos = 0;
+		long size = Vectors.CHUNK_SIZE;
+		while (size * Vectors.CHUNK_SIZE <= n) size *= Vectors.CHUNK_SIZE;
+		for (; size >= Vectors.CHUNK_SIZE; size /= Vectors.CHUNK_SIZE) {
+			while (pos + size <= n) {
+				diffVectorBlock(path, a, b, pos, size, h);
+				pos += size;
+			}
+		}
+		for (; pos < n; pos++) {
+			diff(path.conj(CVMLong.create(pos)), a.get(pos), b.get(pos), h);
+		}
+
+		for (long i = n; i < na; i++) {
+			h.change(Change.REMOVED, path.conj(CVMLong.create(i)), a.get(i), null);
+		}
+		for (long i = n; i < nb; i++) {
+			h.change(Change.ADDED, path.conj(CVMLong.create(i)), null, b.get(i));
+		}
+	}
+
+	private static void diffVectorBlock(AVector<ACell> path, AVector<ACell> a, AVector<ACell> b, long start, long size, IDiffHandler h) {
+		Ref<AVector<ACell>> ra = getBlockRef(a, start, size);
+		Ref<AVector<ACell>> rb = getBlockRef(b, start, size);
+		if ((ra != null) && (rb != null) && isSame(ra, rb)) return;
+		if (size == Vectors.CHUNK_SIZE) {
+			for (long i = start; i < start + size; i++) {
+				Ref<ACell> ea = a.getElementRef(i);
+				Ref<ACell> eb = b.getElementRef(i);
+				if (isSame(ea, eb)) continue;
+				diff(path.conj(CVMLong.create(i)), ea.getValue(), eb.getValue(), h);
+			}
+			return;
+		}
+		long childSize = size / Vectors.CHUNK_SIZE;
+		for (long off = start; off < start + size; off += childSize) {
+			diffVectorBlock(path, a, b, off, childSize, h);
+		}
+	}
+
+	/**
+	 * Gets the Ref for the subtree of a canonical vector covering exactly the given
+	 * aligned block of elements.
+	 *
+	 * @return Ref to subtree, or null if there is no single subtree for the block
+	 */
+	private static Ref<AVector<ACell>> getBlockRef(AVector<ACell> v, long start, long size) {
+		while (true) {
+			if ((start == 0) && (v.count() == size)) return v.getRef();
+			if (v instanceof VectorTree) {
+				// first child of a VectorTree is always complete
+				long childSize = v.<AVector<ACell>>getRef(0).getValue().count();
+				int i = (int) (start / childSize);
+				v = v.<AVector<ACell>>getRef(i).getValue();
+				start -= i * childSize;
+			} else if ((v instanceof VectorLeaf) && (v.count() > Vectors.CHUNK_SIZE)) {
+				// VectorLeaf with a prefix, which is the first Ref
+				AVector<ACell> prefix = v.<AVector<ACell>>getRef(0).getValue();
+				if (start + size > prefix.count()) return null;
+				v = prefix;
+			} else {
+				return null;
+			}
+		}
+	}
+
+	private static void diffHashMaps(AVector<ACell> path, AHashMap<ACell, ACell> a, AHashMap<ACell, ACell> b, IDiffHandler h) {
+		if ((a instanceof MapTree) && (b instanceof MapTree)) {
+			// trees at the same level have the same shift, so children align by digit
+			MapTree<ACell, ACell> ta = (MapTree<ACell, ACell>) a;
+			MapTree<ACell, ACell> tb = (MapTree<ACell, ACell>) b;
+			for (int digit = 0; digit < 16; digit++) {
+				int ia = Bits.indexForDigit(digit, ta.mask);
+				int ib = Bits.indexForDigit(digit, tb.mask);
+				if ((ia < 0) && (ib < 0)) continue;
+				Ref<AHashMap<ACell, ACell>> ca = (ia < 0) ? Maps.emptyRef() : ta.getRef(ia);
+				Ref<AHashMap<ACell, ACell>> cb = (ib < 0) ? Maps.emptyRef() : tb.getRef(ib);
+				if (isSame(ca, cb)) continue;
+				diffHashMaps(path, ca.getValue(), cb.getValue(), h);
+			}
+			return;
+		}
+
+		// at least one side is a MapLeaf, so compare by entry
+		Iterator<MapEntry<ACell, ACell>> it = a.entryIterator();
+		while (it.hasNext()) {
+			MapEntry<ACell, ACell> ea = it.next();
+			MapEntry<ACell, ACell> eb = b.getEntry(ea.getKey());
+			if (eb == null) {
+				h.change(Change.REMOVED, path.conj(ea.getKey()), ea.getValue(), null);
+			} else {
+				diff(path.conj(ea.getKey()), ea.getValue(), eb.getValue(), h);
+			}
+		}
+		it = b.entryIterator();
+		while (it.hasNext()) {
+			MapEntry<ACell, ACell> eb = it.next();
+			if (!a.containsKey(eb.getKey())) {
+				h.change(Change.ADDED, path.conj(eb.getKey()), null, eb.getValue());
+			}
+		}
+	}
+
+	private static void diffBlobMaps(AVector<ACell> path, BlobMap<ABlob, ACell> a, BlobMap<ABlob, ACell> b, IDiffHandler h) {
+		if (a.isEmpty() || b.isEmpty()) {
+			reportAll(Change.REMOVED, path, a, h);
+			reportAll(Change.ADDED, path, b, h);
+			return;
+		}
+
+		// compare nodes by the hex position where they branch
+		long ea = a.depth + a.prefixLength;
+		long eb = b.depth + b.prefixLength;
+		long start = Math.min(a.depth, b.depth);
+		long end = Math.min(ea, eb);
+		ABlob pa = a.getPrefix();
+		ABlob pb = b.getPrefix();
+		if (pa.hexMatchLength(pb, start, end - start) < end - start) {
+			// prefixes diverge, so no keys in common
+			reportAll(Change.REMOVED, path, a, h);
+			reportAll(Change.ADDED, path, b, h);
+			return;
+		}
+
+		if (ea == eb) {
+			// aligned nodes, compare entry then children by digit
+			MapEntry<ABlob, ACell> me = a.entry;
+			MapEntry<ABlob, ACell> be = b.entry;
+			if (me == null) {
+				if (be != null) h.change(Change.ADDED, path.conj(be.getKey()), null, be.getValue());
+			} else if (be == null) {
+				h.change(Change.REMOVED, path.conj(me.getKey()), me.getValue(), null);
+			} else {
+				diff(path.conj(me.getKey()), me.getValue(), be.getValue(), h);
+			}
+			for (int digit = 0; digit < 16; digit++) {
+				BlobMap<ABlob, ACell> ca = a.getChild(digit);
+				BlobMap<ABlob, ACell> cb = b.getChild(digit);
+				if (ca == null) {
+					if (cb != null) reportAll(Change.ADDED, path, cb, h);
+				} else if (cb == null) {
+					reportAll(Change.REMOVED, path, ca, h);
+				} else if (!isSame(ca.getRef(), cb.getRef())) {
+					diffBlobMaps(path, ca, cb, h);
+				}
+			}
+		} else if (ea < eb) {
+			// all keys in b are within one branch of a
+			MapEntry<ABlob, ACell> me = a.entry;
+			if (me != null) h.change(Change.REMOVED, path.conj(me.getKey()), me.getValue(), null);
+			int bd = pb.getHexDigit(ea);
+			for (int digit = 0; digit < 16; digit++) {
+				BlobMap<ABlob, ACell> ca = a.getChild(digit);
+				if (ca == null) continue;
+				if (digit == bd) {
+					diffBlobMaps(path, ca, b, h);
+				} else {
+					reportAll(Change.REMOVED, path, ca, h);
+				}
+			}
+			if (a.getChild(bd) == null) reportAll(Change.ADDED, path, b, h);
+		} else {
+			// all keys in a are within one branch of b
+			MapEntry<ABlob, ACell> be = b.entry;
+			if (be != null) h.change(Change.ADDED, path.conj(be.getKey()), null, be.getValue());
+			int ad = pa.getHexDigit(eb);
+			for (int digit = 0; digit < 16; digit++) {
+				BlobMap<ABlob, ACell> cb = b.getChild(digit);
+				if (cb == null) continue;
+				if (digit == ad) {
+					diffBlobMaps(path, a, cb, h);
+				} else {
+					reportAll(Change.ADDED, path, cb, h);
+				}
+			}
+			if (b.getChild(ad) == null) reportAll(Change.REMOVED, path, a, h);
+		}
+	}
+
+	private static void reportAll(Change change, AVector<ACell> path, AMap<? extends ACell, ACell> m, IDiffHandler h) {
+		boolean added = (change == Change.ADDED);
+		Iterator<? extends MapEntry<? extends ACell, ACell>> it = m.entryIterator();
+		while (it.hasNext()) {
+			MapEntry<? extends ACell, ACell> e = it.next();
+			ACell v = e.getValue();
+			h.change(change, path.conj(e.getKey()), added ? null : v, added ? v : null);
+		}
+	}
+
+	private static void diffSets(AVector<ACell> path, AHashSet<ACell> a, AHashSet<ACell> b, IDiffHandler h) {
+		// set operations skip subtrees shared between both sets
+		for (ACell x : a.excludeAll(b)) {
+			h.change(Change.REMOVED, path.conj(x), x, null);
+		}
+		for (ACell x : b.excludeAll(a)) {
+			h.change(Change.ADDED, path.conj(x), null, x);
+		}
+	}
+}
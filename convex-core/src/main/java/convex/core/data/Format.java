@@ -394,10 +394,8 @@ public class Format {
 		if (len == 0) return Strings.empty();
 		if (blob.count()<pos+len) throw new BadFormatException("Insufficient bytes in blob to read UTF-8 bytes");
 
-		byte[] bs = new byte[len];
-		System.arraycopy(blob.getInternalArray(), blob.getInternalOffset()+pos, bs, 0, len);
-
-		AString s = Strings.create(Blob.wrap(bs));
+		// share bytes with the source Blob rather than copying
+		AString s = Strings.create(blob.slice(pos,pos+len));
 		return s;
 	}
 
@@ -507,7 +505,7 @@ public class Format {
 		if (tag == Tag.CORE_DEF) {
 			Symbol sym = Symbol.read(bb);
 			// TODO: consider if dependency of format on core bad?
-			ACell o = Core.ENVIRONMENT.get(sym);
+			ACell o = Core.getCoreDef(sym);
 			if (o == null) throw new BadFormatException("Core definition not found [" + sym + "]");
 			return o;
 		}
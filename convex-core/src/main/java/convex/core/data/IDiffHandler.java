@@ -0,0 +1,23 @@
+package convex.core.data;
+
+/**
+ * Functional interface for receiving the changes found by a structural diff.
+ *
+ * See {@link Diffs#diff(ACell, ACell, IDiffHandler)}
+ */
+@FunctionalInterface
+public interface IDiffHandler {
+
+	/**
+	 * Called for each change found between two values.
+	 *
+	 * The path gives the keys used to reach the changed value from the root: map and
+	 * BlobMap keys, record field Keywords, vector indexes as CVMLong, or set elements.
+	 *
+	 * @param change Type of change
+	 * @param path Path to the changed value
+	 * @param oldValue Previous value, or null if added
+	 * @param newValue New value, or null if removed
+	 */
+	public void change(Diffs.Change change, AVector<ACell> path, ACell oldValue, ACell newValue);
+}
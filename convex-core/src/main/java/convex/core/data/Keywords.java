@@ -16,6 +16,7 @@ public class Keywords {
 	public static final Keyword BELIEF = Keyword.create("belief");
 	public static final Keyword STATES = Keyword.create("states");
 	public static final Keyword RESULTS = Keyword.create("results");
+	public static final Keyword HISTORY = Keyword.create("history");
 	public static final Keyword PERSIST = Keyword.create("persist");
 	public static final Keyword POLL_DELAY = Keyword.create("poll-delay");
 
@@ -89,6 +90,11 @@ public class Keywords {
 	public static final Keyword OUTGOING_CONNECTIONS = Keyword.create("outgoing-connections");
 	public static final Keyword AUTO_MANAGE = Keyword.create("auto-manage");
 	public static final Keyword TIMEOUT = Keyword.create("timeout");
+	public static final Keyword QUERY_TIMEOUT = Keyword.create("query-timeout");
+	public static final Keyword QUERY_LIMIT = Keyword.create("query-limit");
+	public static final Keyword RECEIVE_QUEUE_SIZES = Keyword.create("receive-queue-sizes");
+	public static final Keyword HISTORY_LIMIT = Keyword.create("history-limit");
+	public static final Keyword GC_INTERVAL = Keyword.create("gc-interval");
 	public static final Keyword EVENT_HOOK = Keyword.create("event-hook");
 	public static final Keyword STATIC = Keyword.create("static");
 	
@@ -69,7 +69,7 @@ public class MapLeaf<K extends ACell, V extends ACell> extends AHashMap<K, V> {
 	protected static <K extends ACell, V extends ACell> MapLeaf<K, V> create(MapEntry<K, V>[] entries, int offset, int length) {
 		if (length == 0) return emptyMap();
 		if (length > MAX_ENTRIES) throw new IllegalArgumentException("Too many entries: " + entries.length);
-		MapEntry<K, V>[] sorted = Utils.copyOfRangeExcludeNulls(entries, offset, offset + length);
+		MapEntry<K, V>[] sorted = Utils.copyOfRangeExcludeNulls(entries, offset, length);
 		if (sorted.length == 0) return emptyMap();
 		Arrays.sort(sorted);
 		return new MapLeaf<K, V>(sorted);
@@ -555,6 +555,24 @@ public class MapLeaf<K extends ACell, V extends ACell> extends AHashMap<K, V> {
 		return Maps.createWithShift(shift, results);
 	}
 
+	@Override
+	protected AHashMap<K, V> merge(AHashMap<K, V> m, int shift) {
+		if (m instanceof MapTree) {
+			// entries in m take precedence, so only add our entries for keys not in m
+			AHashMap<K, V> result = m;
+			for (MapEntry<K, V> e : entries) {
+				if (!m.containsKey(e.getKey())) result = result.assocEntry(e, shift);
+			}
+			return result;
+		}
+		AHashMap<K, V> result = this;
+		long n = m.count();
+		for (long i = 0; i < n; i++) {
+			result = result.assocEntry(m.entryAt(i), shift);
+		}
+		return result;
+	}
+
 	@Override
 	public AHashMap<K, V> mergeDifferences(AHashMap<K, V> b, MergeFunction<V> func) {
 		return mergeDifferences(b,func,0);
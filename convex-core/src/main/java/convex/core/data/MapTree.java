@@ -2,9 +2,12 @@ package convex.core.data;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -42,7 +45,7 @@ public class MapTree<K extends ACell, V extends ACell> extends AHashMap<K, V> {
 	 * indicates all children are in the '0' digit. e.g. 0xFFFF indicates there are
 	 * children for every digit.
 	 */
-	private final short mask;
+	final short mask;
 
 	private MapTree(Ref<AHashMap<K, V>>[] blocks, int shift, short mask, long count) {
 		super(count);
@@ -92,6 +95,36 @@ public class MapTree<K extends ACell, V extends ACell> extends AHashMap<K, V> {
 		return (MapTree<K, V>) createFull(children, shift);
 	}
 
+	/**
+	 * Creates a hash map from entries sorted by key hash, with no duplicate keys. The
+	 * tree is built bottom-up in a single pass, without creating intermediate maps.
+	 * 
+	 * @param entries Array of entries, sorted by key hash
+	 * @param offset Offset of first entry to include
+	 * @param length Number of entries to include
+	 * @param shift Hex digit position of the new node
+	 * @return New map, a MapLeaf if sufficiently small
+	 */
+	@SuppressWarnings("unchecked")
+	static <K extends ACell, V extends ACell> AHashMap<K, V> createSorted(MapEntry<K, V>[] entries, int offset, int length, int shift) {
+		if (length <= MapLeaf.MAX_ENTRIES) return MapLeaf.create(entries, offset, length);
+		Ref<AHashMap<K, V>>[] children = new Ref[16];
+		int n = 0;
+		int mask = 0;
+		int end = offset + length;
+		int i = offset;
+		while (i < end) {
+			// entries for each digit are contiguous, since sorted by hash
+			int digit = entries[i].getKeyHash().getHexDigit(shift);
+			int j = i + 1;
+			while ((j < end) && (entries[j].getKeyHash().getHexDigit(shift) == digit)) j++;
+			children[n++] = createSorted(entries, i, j - i, shift + 1).getRef();
+			mask |= 1 << digit;
+			i = j;
+		}
+		return new MapTree<K, V>(Arrays.copyOf(children, n), shift, (short) mask, length);
+	}
+
 	/**
 	 * Creates a Tree map given child refs for each digit
 	 * 
@@ -220,6 +253,17 @@ public class MapTree<K extends ACell, V extends ACell> extends AHashMap<K, V> {
 		throw new IndexOutOfBoundsException("Entry index: " + i);
 	}
 
+	@Override
+	public Iterator<MapEntry<K, V>> entryIterator() {
+		return new TreeIterator<MapEntry<K, V>, AHashMap<K, V>>(children, c -> c.entryIterator());
+	}
+
+	@Override
+	public Spliterator<MapEntry<K, V>> entrySpliterator() {
+		return new TreeSpliterator<MapEntry<K, V>, AHashMap<K, V>>(null, children, 0, children.length,
+				c -> c.entrySpliterator(), ENTRY_CHARACTERISTICS);
+	}
+
 	@Override
 	protected MapEntry<K, V> getEntryByHash(Hash hash) {
 		int digit = hash.getHexDigit(shift);
@@ -601,6 +645,55 @@ public class MapTree<K extends ACell, V extends ACell> extends AHashMap<K, V> {
 		return result;
 	}
 
+	@Override
+	protected AHashMap<K, V> merge(AHashMap<K, V> m, int shift) {
+		if (m instanceof MapTree) return merge((MapTree<K, V>) m, shift);
+		AHashMap<K, V> result = this;
+		long n = m.count();
+		for (long i = 0; i < n; i++) {
+			result = result.assocEntry(m.entryAt(i), shift);
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private AHashMap<K, V> merge(MapTree<K, V> b, int shift) {
+		if (isSameSubtree(this.getRef(), b.getRef())) return this;
+		Ref<AHashMap<K, V>>[] newChildren = null;
+		for (int digit = 0; digit < 16; digit++) {
+			if ((b.mask & (1 << digit)) == 0) continue; // nothing to merge at this index
+			Ref<AHashMap<K, V>> aref = childForDigit(digit);
+			Ref<AHashMap<K, V>> bref = b.childForDigit(digit);
+			if (isSameSubtree(aref, bref)) continue; // shared subtree, no change
+			AHashMap<K, V> ac = aref.getValue();
+			AHashMap<K, V> bc = bref.getValue();
+			AHashMap<K, V> rc = ac.isEmpty() ? bc : ac.merge(bc, shift + 1);
+			if (rc == ac) continue;
+			if (newChildren == null) {
+				newChildren = (Ref<AHashMap<K, V>>[]) new Ref<?>[16];
+				for (int ii = 0; ii < 16; ii++) { // copy existing children
+					int chi = Bits.indexForDigit(ii, mask);
+					if (chi >= 0) newChildren[ii] = children[chi];
+				}
+			}
+			newChildren[digit] = (rc == bc) ? bref : rc.getRef();
+		}
+		if (newChildren == null) return this;
+		return createFull(newChildren, shift);
+	}
+
+	/**
+	 * Checks if two subtrees are known to be identical, using only object identity and
+	 * hashes that are already computed. Avoids hashing subtrees just to compare them.
+	 */
+	private static <K extends ACell, V extends ACell> boolean isSameSubtree(Ref<AHashMap<K, V>> a, Ref<AHashMap<K, V>> b) {
+		if (a == b) return true;
+		if (a.isDirect() && b.isDirect() && (a.getValue() == b.getValue())) return true;
+		Hash ha = a.cachedHash();
+		Hash hb = b.cachedHash();
+		return (ha != null) && (hb != null) && ha.equals(hb);
+	}
+
 	@Override
 	public AHashMap<K, V> mergeDifferences(AHashMap<K, V> b, MergeFunction<V> func) {
 		return mergeDifferences(b, func,0);
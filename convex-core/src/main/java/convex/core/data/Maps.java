@@ -1,6 +1,7 @@
 package convex.core.data;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import convex.core.exceptions.BadFormatException;
@@ -50,13 +51,13 @@ public class Maps {
 		if (keysAndValues.length != n * 2)
 			throw new IllegalArgumentException("Even number of values need for key-value pairs");
 
-		AMap<K, V> result = Maps.empty();
+		MapEntry<K, V>[] entries = new MapEntry[n];
 		for (int i = 0; i < n; i++) {
 			K key = (K) RT.cvm(keysAndValues[i * 2]);
 			V value = (V) RT.cvm(keysAndValues[i * 2 + 1]);
-			result = result.assoc(key, value);
+			entries[i] = MapEntry.create(key, value);
 		}
-		return (R) result;
+		return (R) build(entries, n, 0);
 	}
 	
 	/**
@@ -74,13 +75,13 @@ public class Maps {
 		if (keysAndValues.length != n * 2)
 			throw new IllegalArgumentException("Even number of values need for key-value pairs");
 
-		AMap<K, V> result = Maps.empty();
+		MapEntry<K, V>[] entries = new MapEntry[n];
 		for (int i = 0; i < n; i++) {
 			K key = (K) keysAndValues[i * 2];
 			V value = (V) keysAndValues[i * 2 + 1];
-			result = result.assoc(key, value);
+			entries[i] = MapEntry.create(key, value);
 		}
-		return (R) result;
+		return (R) build(entries, n, 0);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -118,17 +119,42 @@ public class Maps {
 	 * @param entries Entries to include
 	 * @return AHashMap instance
 	 */
+	@SuppressWarnings("unchecked")
 	public static <K extends ACell, V extends ACell> AHashMap<K, V> createWithShift(int shift, java.util.List<MapEntry<K, V>> entries) {
 		int n = entries.size();
 		if (n == 0) return empty();
-		AHashMap<K, V> result = Maps.empty();
-		for (int i=0; i<n; i++) {
-			AVector<?> v=entries.get(i);
-			@SuppressWarnings("unchecked")
-			MapEntry<K,V> e=MapEntry.convertOrNull(v); // Ensure a Map entry
-			result = result.assocEntry(e, shift);
+		MapEntry<K, V>[] es = new MapEntry[n];
+		int m = 0;
+		for (AVector<?> v : entries) {
+			MapEntry<K,V> e=(v instanceof MapEntry)?(MapEntry<K,V>)v:MapEntry.convertOrNull(v); // Ensure a Map entry
+			if (e != null) es[m++] = e;
 		}
-		return result;
+		return build(es, m, shift);
+	}
+
+	/**
+	 * Builds a hash map from the first n entries of an array in a single pass. The tree
+	 * is constructed bottom-up, which avoids the intermediate maps created by repeated
+	 * assoc. Later entries replace earlier entries with the same key.
+	 * 
+	 * @param entries Array of entries, which will be sorted in place
+	 * @param n Number of entries to include
+	 * @param shift Hex digit position of the new map
+	 * @return AHashMap instance
+	 */
+	static <K extends ACell, V extends ACell> AHashMap<K, V> build(MapEntry<K, V>[] entries, int n, int shift) {
+		// stable sort, so entries with equal keys remain in input order
+		Arrays.sort(entries, 0, n);
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			MapEntry<K, V> e = entries[i];
+			if ((m > 0) && entries[m - 1].getKeyHash().equals(e.getKeyHash())) {
+				entries[m - 1] = e;
+			} else {
+				entries[m++] = e;
+			}
+		}
+		return MapTree.createSorted(entries, 0, m, shift);
 	}
 
 	@SuppressWarnings("unchecked")
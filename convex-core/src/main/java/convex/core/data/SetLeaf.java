@@ -84,7 +84,7 @@ public class SetLeaf<T extends ACell> extends AHashSet<T> {
 	protected static <V extends ACell> SetLeaf<V> create(Ref<V>[] entries, int offset, int length) {
 		if (length == 0) return Sets.empty();
 		if (length > MAX_ELEMENTS) throw new IllegalArgumentException("Too many elements: " + entries.length);
-		Ref<V>[] sorted = Utils.copyOfRangeExcludeNulls(entries, offset, offset + length);
+		Ref<V>[] sorted = Utils.copyOfRangeExcludeNulls(entries, offset, length);
 		if (sorted.length == 0) return Sets.empty();
 		Arrays.sort(sorted);
 		return new SetLeaf<V>(sorted);
@@ -1,6 +1,9 @@
 package convex.core.data;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
 
 import convex.core.exceptions.BadFormatException;
 import convex.core.exceptions.InvalidDataException;
@@ -97,6 +100,37 @@ public class SetTree<T extends ACell> extends AHashSet<T> {
 		return (SetTree<V>) createFull(children, shift);
 	}
 
+	/**
+	 * Creates a hash set from element Refs sorted by hash, with no duplicates. The
+	 * tree is built bottom-up in a single pass, without creating intermediate sets.
+	 * 
+	 * @param elementRefs Array of element Refs, sorted by hash
+	 * @param offset Offset of first element to include
+	 * @param length Number of elements to include
+	 * @param shift Hex digit position of the new node
+	 * @return New set, a SetLeaf if sufficiently small
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends ACell> AHashSet<T> createSorted(Ref<T>[] elementRefs, int offset, int length, int shift) {
+		if (length == 0) return Sets.empty();
+		if (length <= SetLeaf.MAX_ELEMENTS) return new SetLeaf<T>(Arrays.copyOfRange(elementRefs, offset, offset + length));
+		Ref<AHashSet<T>>[] children = new Ref[16];
+		int n = 0;
+		int mask = 0;
+		int end = offset + length;
+		int i = offset;
+		while (i < end) {
+			// elements for each digit are contiguous, since sorted by hash
+			int digit = elementRefs[i].getHash().getHexDigit(shift);
+			int j = i + 1;
+			while ((j < end) && (elementRefs[j].getHash().getHexDigit(shift) == digit)) j++;
+			children[n++] = createSorted(elementRefs, i, j - i, shift + 1).getRef();
+			mask |= 1 << digit;
+			i = j;
+		}
+		return new SetTree<T>(Arrays.copyOf(children, n), shift, (short) mask, length);
+	}
+
 	/**
 	 * Creates a SetTree given child Refs for each digit
 	 * 
@@ -192,6 +226,17 @@ public class SetTree<T extends ACell> extends AHashSet<T> {
 		throw new IndexOutOfBoundsException("Entry index: " + i);
 	}
 
+	@Override
+	public Iterator<T> iterator() {
+		return new TreeIterator<T, AHashSet<T>>(children, c -> c.iterator());
+	}
+
+	@Override
+	public Spliterator<T> spliterator() {
+		return new TreeSpliterator<T, AHashSet<T>>(null, children, 0, children.length, c -> c.spliterator(),
+				Spliterator.IMMUTABLE | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT);
+	}
+
 	@Override
 	protected Ref<T> getRefByHash(Hash hash) {
 		int digit = hash.getHexDigit(shift);
@@ -449,15 +494,23 @@ public class SetTree<T extends ACell> extends AHashSet<T> {
 	private AHashSet<T> mergeWith(SetTree<T> b, int setOp, int shift) {
 		// assume two TreeMaps with identical prefix and shift
 		assert (b.shift == shift);
+		if (isSameSubtree(this.getRef(), b.getRef())) return applySelf(setOp);
 		int fullMask = mask | b.mask;
 		// We are going to build full child list only if needed
 		Ref<AHashSet<T>>[] newChildren = null;
 		for (int digit = 0; digit < 16; digit++) {
 			int bitMask = 1 << digit;
 			if ((fullMask & bitMask) == 0) continue; // nothing to merge at this index
-			AHashSet<T> ac = childForDigit(digit).getValue();
-			AHashSet<T> bc = b.childForDigit(digit).getValue();
-			AHashSet<T> rc = ac.mergeWith(bc, setOp, shift + 1);
+			Ref<AHashSet<T>> aref = childForDigit(digit);
+			Ref<AHashSet<T>> bref = b.childForDigit(digit);
+			AHashSet<T> ac = aref.getValue();
+			AHashSet<T> rc;
+			if (isSameSubtree(aref, bref)) {
+				// shared subtree, result is known without visiting elements
+				rc = ac.applySelf(setOp);
+			} else {
+				rc = ac.mergeWith(bref.getValue(), setOp, shift + 1);
+			}
 			if (ac != rc) {
 				if (newChildren == null) {
 					newChildren = (Ref<AHashSet<T>>[]) new Ref<?>[16];
@@ -473,6 +526,18 @@ public class SetTree<T extends ACell> extends AHashSet<T> {
 		return createFull(newChildren, shift);
 	}
 
+	/**
+	 * Checks if two subtrees are known to be identical, using only object identity and
+	 * hashes that are already computed. Avoids hashing subtrees just to compare them.
+	 */
+	private static <T extends ACell> boolean isSameSubtree(Ref<AHashSet<T>> a, Ref<AHashSet<T>> b) {
+		if (a == b) return true;
+		if (a.isDirect() && b.isDirect() && (a.getValue() == b.getValue())) return true;
+		Hash ha = a.cachedHash();
+		Hash hb = b.cachedHash();
+		return (ha != null) && (hb != null) && ha.equals(hb);
+	}
+
 	@SuppressWarnings("unchecked")
 	private AHashSet<T> mergeWith(SetLeaf<T> b, int setOp, int shift) {
 		Ref<AHashSet<T>>[] newChildren = null;
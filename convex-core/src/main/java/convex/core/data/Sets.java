@@ -2,6 +2,7 @@ package convex.core.data;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 import convex.core.exceptions.BadFormatException;
@@ -37,22 +38,22 @@ public class Sets {
 	@SafeVarargs
 	public static <T extends ACell> ASet<T> of(Object... elements) {
 		int n=elements.length;
-		ASet<T> result=empty();
+		Ref<T>[] refs=new Ref[n];
 		for (int i=0; i<n; i++) {
-			result=(ASet<T>) result.conj(RT.cvm(elements[i]));
+			refs[i]=Ref.get(RT.cvm(elements[i]));
 		}
-		return result;
+		return build(refs,n,0);
 	}
 	
 	@SuppressWarnings("unchecked")
 	@SafeVarargs
 	public static <T extends ACell> ASet<T> of(ACell... elements) {
 		int n=elements.length;
-		ASet<T> result=empty();
+		Ref<T>[] refs=new Ref[n];
 		for (int i=0; i<n; i++) {
-			result=(ASet<T>) result.conj(elements[i]);
+			refs[i]=(Ref<T>) Ref.get(elements[i]);
 		}
-		return result;
+		return build(refs,n,0);
  	}
 
 	/**
@@ -95,12 +96,19 @@ public class Sets {
 	 */
 	@SuppressWarnings("unchecked")
 	private static <T extends ACell> ASet<T> fromCollection(ACountable<T> source) {
-		long n=source.count();
-		ASet<?> set=EMPTY;
-		for (long i=0; i<n; i++) {
-			set=set.include(source.get(i));
+		int n=Utils.checkedInt(source.count());
+		Ref<T>[] refs=new Ref[n];
+		if (source instanceof ACollection) {
+			int i=0;
+			for (T x: (ACollection<T>)source) {
+				refs[i++]=Ref.get(x);
+			}
+		} else {
+			for (int i=0; i<n; i++) {
+				refs[i]=source.getElementRef(i);
+			}
 		}
-		return (ASet<T>) set;
+		return build(refs,n,0);
 	}
 
 	public static <T extends ACell> ASet<T> read(ByteBuffer bb) throws BadFormatException {
@@ -112,12 +120,31 @@ public class Sets {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	public static <T extends ACell> AHashSet<T> createWithShift(int shift, ArrayList<Ref<T>> values) {
-		AHashSet<T> result=Sets.empty();
-		for (Ref<T> v: values) {
-			result=result.includeRef(v, shift);
+		Ref<T>[] refs=values.toArray(new Ref[values.size()]);
+		return build(refs,refs.length,shift);
+	}
+
+	/**
+	 * Builds a hash set from the first n element Refs of an array in a single pass. The
+	 * tree is constructed bottom-up, which avoids the intermediate sets created by
+	 * repeated conj. Duplicate elements are removed.
+	 * 
+	 * @param refs Array of element Refs, which will be sorted in place
+	 * @param n Number of elements to include
+	 * @param shift Hex digit position of the new set
+	 * @return AHashSet instance
+	 */
+	static <T extends ACell> AHashSet<T> build(Ref<T>[] refs, int n, int shift) {
+		Arrays.sort(refs, 0, n);
+		int m=0;
+		for (int i=0; i<n; i++) {
+			Ref<T> r=refs[i];
+			if ((m>0)&&refs[m-1].getHash().equals(r.getHash())) continue;
+			refs[m++]=r;
 		}
-		return result;
+		return SetTree.createSorted(refs, 0, m, shift);
 	}
 
 
@@ -1,6 +1,8 @@
 package convex.core.data;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
 
 import convex.core.crypto.AKeyPair;
 import convex.core.crypto.ASignature;
@@ -235,6 +237,42 @@ public class SignedData<T extends ACell> extends ARecord {
 		return check;
 	}
 	
+	/**
+	 * Checks the signatures of a collection of SignedData values as a single batch, caching the
+	 * result for each value. Values that have already been checked are skipped, so subsequent
+	 * calls to checkSignature() on the same instances are cheap.
+	 *
+	 * @param items SignedData values to check
+	 */
+	public static void checkSignatures(Collection<? extends SignedData<?>> items) {
+		ArrayList<SignedData<?>> unchecked=new ArrayList<>(items.size());
+		for (SignedData<?> sd: items) {
+			if (!sd.isSignatureChecked()) unchecked.add(sd);
+		}
+		int n=unchecked.size();
+		if (n==0) return;
+
+		ASignature[] signatures=new ASignature[n];
+		AArrayBlob[] messages=new AArrayBlob[n];
+		AccountKey[] publicKeys=new AccountKey[n];
+		for (int i=0; i<n; i++) {
+			SignedData<?> sd=unchecked.get(i);
+			signatures[i]=sd.signature;
+			messages[i]=sd.valueRef.getHash();
+			publicKeys[i]=sd.publicKey;
+		}
+
+		boolean[] results=Providers.verifyBatch(signatures, messages, publicKeys);
+		for (int i=0; i<n; i++) {
+			SignedData<?> sd=unchecked.get(i);
+			if (results[i]) {
+				sd.markValidated();
+			} else {
+				sd.markBadSignature();
+			}
+		}
+	}
+
 	/**
 	 * Checks if the signature has already gone through verification. MAy or may 
 	 * not be a valid signature.
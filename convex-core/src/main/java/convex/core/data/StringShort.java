@@ -157,9 +157,10 @@ public class StringShort extends AString {
 	public static ACell read(long length, Blob blob, int pos) {
 		int len=Utils.checkedInt(length);
 		int dataOffset=pos+1+Format.getVLCLength(length);
-		byte[] data = new byte[len];
-		System.arraycopy(blob.getInternalArray(), blob.getInternalOffset()+dataOffset, data, 0, len);
-		StringShort result= new StringShort(data);
+		if (dataOffset+len>blob.count()) throw new IndexOutOfBoundsException("Insufficient bytes for String");
+		
+		// share bytes with the encoding, which is retained anyway
+		StringShort result= new StringShort(blob.slice(dataOffset,dataOffset+len));
 		result.attachEncoding(blob.slice(pos,dataOffset+len));
 		return result;
 	}
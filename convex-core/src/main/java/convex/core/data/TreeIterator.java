@@ -0,0 +1,65 @@
+package convex.core.data;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import convex.core.util.Errors;
+
+/**
+ * Iterator over the elements of a tree node, visiting each child in turn.
+ *
+ * Only a cursor into the current child is kept, so each step is amortised O(1) rather
+ * than a descent from the root for every element index.
+ *
+ * @param <T> Type of elements
+ * @param <C> Type of child nodes
+ */
+class TreeIterator<T, C extends ACell> implements Iterator<T> {
+	private final Ref<? extends C>[] children;
+	private final Function<? super C, Iterator<T>> childIterator;
+	private int childPos = 0;
+	private Iterator<T> current;
+
+	/**
+	 * Creates an iterator over all children of a tree node
+	 * @param children Child Refs of the node
+	 * @param childIterator Function to get an iterator for each child
+	 */
+	TreeIterator(Ref<? extends C>[] children, Function<? super C, Iterator<T>> childIterator) {
+		this(null, children, childIterator);
+	}
+
+	/**
+	 * Creates an iterator over an optional head iterator followed by all children of a
+	 * tree node
+	 * @param head Iterator for elements preceding the children, may be null
+	 * @param children Child Refs of the node
+	 * @param childIterator Function to get an iterator for each child
+	 */
+	TreeIterator(Iterator<T> head, Ref<? extends C>[] children, Function<? super C, Iterator<T>> childIterator) {
+		this.current = head;
+		this.children = children;
+		this.childIterator = childIterator;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while ((current == null) || !current.hasNext()) {
+			if (childPos >= children.length) return false;
+			current = childIterator.apply(children[childPos++].getValue());
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		return current.next();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException(Errors.immutable(this));
+	}
+}
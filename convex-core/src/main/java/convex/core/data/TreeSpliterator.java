@@ -0,0 +1,127 @@
+package convex.core.data;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spliterator over the elements of a tree node, visiting each child in turn.
+ *
+ * Splits along child boundaries, so that each part covers whole subtrees which can be
+ * traversed independently. Once a single child remains, splitting is delegated to the
+ * spliterator of that child.
+ *
+ * @param <T> Type of elements
+ * @param <C> Type of child nodes
+ */
+class TreeSpliterator<T, C extends ACountable<?>> implements Spliterator<T> {
+	private final Ref<? extends C>[] children;
+	private final Function<? super C, Spliterator<T>> childSpliterator;
+	private final int characteristics;
+	private final int end;
+
+	/**
+	 * Position of next child not yet covered by current
+	 */
+	private int childPos;
+
+	/**
+	 * Spliterator for the partially traversed child (or head elements), may be null
+	 */
+	private Spliterator<T> current;
+
+	/**
+	 * Number of elements in children from childPos to end
+	 */
+	private long rest;
+
+	/**
+	 * Creates a spliterator over an optional head spliterator followed by a range of
+	 * children of a tree node
+	 * @param head Spliterator for elements preceding the children, may be null
+	 * @param children Child Refs of the node
+	 * @param start Index of first child to include
+	 * @param end Index after last child to include
+	 * @param childSpliterator Function to get a spliterator for each child
+	 * @param characteristics Spliterator characteristics, should include SIZED and SUBSIZED
+	 */
+	TreeSpliterator(Spliterator<T> head, Ref<? extends C>[] children, int start, int end,
+			Function<? super C, Spliterator<T>> childSpliterator, int characteristics) {
+		this.current = head;
+		this.children = children;
+		this.childPos = start;
+		this.end = end;
+		this.childSpliterator = childSpliterator;
+		this.characteristics = characteristics;
+		long n = 0;
+		for (int i = start; i < end; i++) {
+			n += children[i].getValue().count();
+		}
+		this.rest = n;
+	}
+
+	private Spliterator<T> nextChild() {
+		C child = children[childPos++].getValue();
+		rest -= child.count();
+		return childSpliterator.apply(child);
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		while (true) {
+			if ((current != null) && current.tryAdvance(action)) return true;
+			if (childPos >= end) {
+				current = null;
+				return false;
+			}
+			current = nextChild();
+		}
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super T> action) {
+		if (current != null) {
+			current.forEachRemaining(action);
+			current = null;
+		}
+		while (childPos < end) {
+			nextChild().forEachRemaining(action);
+		}
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		int n = end - childPos;
+		if (n >= 2) {
+			// split off first half of remaining children, including current
+			int mid = childPos + (n >>> 1);
+			TreeSpliterator<T, C> prefix = new TreeSpliterator<>(current, children, childPos, mid, childSpliterator,
+					characteristics);
+			current = null;
+			childPos = mid;
+			rest -= prefix.rest;
+			return prefix;
+		}
+		if (current == null) {
+			if (n == 0) return null;
+			current = nextChild();
+			return current.trySplit();
+		}
+		if (n == 1) {
+			Spliterator<T> prefix = current;
+			current = null;
+			return prefix;
+		}
+		return current.trySplit();
+	}
+
+	@Override
+	public long estimateSize() {
+		return (current == null) ? rest : rest + current.estimateSize();
+	}
+
+	@Override
+	public int characteristics() {
+		return characteristics;
+	}
+}
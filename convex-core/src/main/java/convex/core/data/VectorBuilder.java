@@ -52,7 +52,7 @@ public class VectorBuilder<T extends ACell> {
 	}
 	
 	public VectorBuilder<T> append(T a) {
-		return this;
+		return conj(a);
 	}
 	
 	public VectorBuilder<T> concat(ASequence<T> b) {
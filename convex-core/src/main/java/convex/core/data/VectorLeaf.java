@@ -506,10 +506,9 @@ public class VectorLeaf<T extends ACell> extends AVector<T> {
 	public void forEach(Consumer<? super T> action) {
 		if (prefix != null) {
 			prefix.getValue().forEach(action);
-
-			for (Ref<T> r : items) {
-				action.accept(r.getValue());
-			}
+		}
+		for (Ref<T> r : items) {
+			action.accept(r.getValue());
 		}
 	}
 
@@ -571,34 +570,44 @@ public class VectorLeaf<T extends ACell> extends AVector<T> {
 	}
 
 	private class ListVectorSpliterator implements Spliterator<T> {
-		long pos = 0;
+		Spliterator<T> prefixSpliterator;
+		int pos = 0;
 
 		public ListVectorSpliterator(long position) {
 			if ((position < 0) || (position > count))
 				throw new IllegalArgumentException(Errors.illegalPosition(position));
-			this.pos = position;
+			long tc = prefixLength();
+			if (position < tc) {
+				prefixSpliterator = prefix.getValue().spliterator(position);
+			} else {
+				pos = (int) (position - tc);
+			}
 		}
 
 		@Override
 		public boolean tryAdvance(Consumer<? super T> action) {
-			if (pos >= count) return false;
-			action.accept((T) get(pos++));
+			if (prefixSpliterator != null) {
+				if (prefixSpliterator.tryAdvance(action)) return true;
+				prefixSpliterator = null;
+			}
+			if (pos >= items.length) return false;
+			action.accept(items[pos++].getValue());
 			return true;
 		}
 
 		@Override
 		public Spliterator<T> trySplit() {
-			long tlength = prefixLength();
-			if (pos < tlength) {
-				pos = tlength;
-				return prefix.getValue().spliterator(pos);
-			}
-			return null;
+			// split off the prefix, leaving the items in this leaf
+			Spliterator<T> ps = prefixSpliterator;
+			prefixSpliterator = null;
+			return ps;
 		}
 
 		@Override
 		public long estimateSize() {
-			return count;
+			long n = items.length - pos;
+			if (prefixSpliterator != null) n += prefixSpliterator.estimateSize();
+			return n;
 		}
 
 		@Override
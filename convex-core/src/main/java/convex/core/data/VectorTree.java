@@ -541,51 +541,20 @@ public class VectorTree<T extends ACell> extends AVector<T> {
 
 	@Override
 	public Spliterator<T> spliterator(long position) {
-		return new TreeVectorSpliterator(position);
-	}
-
-	private class TreeVectorSpliterator implements Spliterator<T> {
-		long pos = 0;
-
-		public TreeVectorSpliterator(long position) {
-			if ((position < 0) || (position > count))
-				throw new IllegalArgumentException(Errors.illegalPosition(position));
-			this.pos = position;
-		}
-
-		@Override
-		public boolean tryAdvance(Consumer<? super T> action) {
-			if (pos >= count) return false;
-			action.accept((T) get(pos++));
-			return true;
-		}
-
-		@Override
-		public Spliterator<T> trySplit() {
-			for (int i = 0; i < children.length; i++) {
-				long bpos = childIndex(i);
-				AVector<T> b = children[i].getValue();
-
-				long bcount = b.count();
-				long blockEnd = childIndex(i) + bcount;
-				if (pos < blockEnd) {
-					Spliterator<T> ss = b.spliterator(pos - bpos);
-					pos = blockEnd;
-					return ss;
-				}
+		if ((position < 0) || (position > count))
+			throw new IllegalArgumentException(Errors.illegalPosition(position));
+		long ix = position;
+		int n = children.length;
+		for (int i = 0; i < n; i++) {
+			AVector<T> b = children[i].getValue();
+			long bc = b.count();
+			if ((ix < bc) || (i == n - 1)) {
+				return new TreeSpliterator<T, AVector<T>>(b.spliterator(ix), children, i + 1, n, c -> c.spliterator(),
+						Spliterator.IMMUTABLE | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED);
 			}
-			return null;
-		}
-
-		@Override
-		public long estimateSize() {
-			return count;
-		}
-
-		@Override
-		public int characteristics() {
-			return Spliterator.IMMUTABLE | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED;
+			ix -= bc;
 		}
+		throw new IndexOutOfBoundsException(Errors.badIndex(position));
 	}
 
 	@Override
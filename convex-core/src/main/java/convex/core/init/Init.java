@@ -50,6 +50,18 @@ public class Init {
 	// Base for user-specified addresses
 	public static final Address GENESIS_ADDRESS = Address.create(11);
 
+	// Actor sources deployed in the base State
+	static final String[] STATIC_LIBRARIES = { "convex/registry.cvx", "convex/trust.cvx" };
+
+	// Actor sources deployed as the standard library, in deployment order
+	static final String[] STANDARD_LIBRARIES = { "convex/fungible.cvx", "convex/trusted-oracle/actor.cvx",
+			"convex/trusted-oracle.cvx", "convex/asset.cvx", "torus/exchange.cvx", "asset/nft/simple.cvx",
+			"asset/nft/tokens.cvx", "asset/box/actor.cvx", "asset/box.cvx", "asset/multi-token.cvx",
+			"convex/play.cvx", "convex/did.cvx" };
+
+	// Table of currencies deployed in the genesis State
+	static final String CURRENCIES = "torus/currencies.cvx";
+
 
 	public static State createBaseState(List<AccountKey> genesisKeys) {
 		// accumulators for initial state maps
@@ -175,8 +187,9 @@ public class Init {
 
 		// At this point we have a raw initial state with no user or peer accounts
 
-		s = doActorDeploy(s, "convex/registry.cvx");
-		s = doActorDeploy(s, "convex/trust.cvx");
+		for (String resource : STATIC_LIBRARIES) {
+			s = doActorDeploy(s, resource);
+		}
 
 		{ // Register core libraries now that registry exists
 			Context<?> ctx = Context.createFake(s, INIT_ADDRESS);
@@ -200,29 +213,41 @@ public class Init {
 		return s;
 	}
 
+	/**
+	 * Creates the genesis State for the given keys. Uses the pre-built Snapshot if
+	 * available for a single genesis key, otherwise builds the State by executing
+	 * the standard library sources.
+	 * @param genesisKeys Genesis keys, one per initial user and peer
+	 * @return Genesis State
+	 */
 	public static State createState(List<AccountKey> genesisKeys) {
+		if (genesisKeys.size() == 1) {
+			Snapshot snapshot = Snapshot.get();
+			if (snapshot != null) return snapshot.createGenesisState(genesisKeys.get(0));
+		}
+		return buildState(genesisKeys);
+	}
+
+	/**
+	 * Builds the genesis State for the given keys by executing the standard library
+	 * sources. Equivalent to createState(...), without using any Snapshot.
+	 * @param genesisKeys Genesis keys, one per initial user and peer
+	 * @return Genesis State
+	 */
+	public static State buildState(List<AccountKey> genesisKeys) {
 		try {
 			State s=createBaseState(genesisKeys);
 
 			// ============================================================
 			// Standard library deployment
-			s = doActorDeploy(s, "convex/fungible.cvx");
-			s = doActorDeploy(s, "convex/trusted-oracle/actor.cvx");
-			s = doActorDeploy(s, "convex/trusted-oracle.cvx");
-			s = doActorDeploy(s, "convex/asset.cvx");
-			s = doActorDeploy(s, "torus/exchange.cvx");
-			s = doActorDeploy(s, "asset/nft/simple.cvx");
-			s = doActorDeploy(s, "asset/nft/tokens.cvx");
-			s = doActorDeploy(s, "asset/box/actor.cvx");
-			s = doActorDeploy(s, "asset/box.cvx");
-			s = doActorDeploy(s, "asset/multi-token.cvx");
-			s = doActorDeploy(s, "convex/play.cvx");
-			s = doActorDeploy(s, "convex/did.cvx");
+			for (String resource : STANDARD_LIBRARIES) {
+				s = doActorDeploy(s, resource);
+			}
 
 			{ // Deploy Currencies
 				@SuppressWarnings("unchecked")
 				AVector<AVector<ACell>> table = (AVector<AVector<ACell>>) Reader
-						.readResourceAsData("torus/currencies.cvx");
+						.readResourceAsData(CURRENCIES);
 				for (AVector<ACell> row : table) {
 					s = doCurrencyDeploy(s, row);
 				}
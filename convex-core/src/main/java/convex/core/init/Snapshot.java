@@ -0,0 +1,321 @@
+package convex.core.init;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import convex.core.State;
+import convex.core.crypto.Hashing;
+import convex.core.data.ACell;
+import convex.core.data.AHashMap;
+import convex.core.data.AVector;
+import convex.core.data.AccountKey;
+import convex.core.data.AccountStatus;
+import convex.core.data.Blob;
+import convex.core.data.BlobMap;
+import convex.core.data.Format;
+import convex.core.data.Hash;
+import convex.core.data.PeerStatus;
+import convex.core.data.Ref;
+import convex.core.data.Symbol;
+import convex.core.data.Vectors;
+import convex.core.exceptions.BadFormatException;
+import convex.core.lang.Core;
+import convex.core.util.Utils;
+
+/**
+ * Pre-built snapshot of the core environment and genesis State, used to avoid
+ * compiling and executing the core library and standard actors at startup.
+ *
+ * The snapshot is generated at build time by running this class, and stored as a
+ * resource containing the encodings of all cells, children first. On loading, every
+ * cell is keyed by the hash of its encoding and the root hash is checked, so a
+ * corrupted snapshot cannot be used. The snapshot also records a fingerprint of the
+ * CVX source resources, so it is ignored if these change without regenerating it.
+ *
+ * If no valid snapshot is available, callers fall back to the interpreted path.
+ * Snapshots can be disabled with the system property "convex.snapshot=false".
+ */
+public class Snapshot {
+
+	private static final Logger log = LoggerFactory.getLogger(Snapshot.class.getName());
+
+	/**
+	 * Resource path for the snapshot
+	 */
+	public static final String RESOURCE = "convex/init/snapshot.dat";
+
+	/**
+	 * Placeholder key used for the single genesis key in the snapshot State
+	 */
+	static final AccountKey PLACEHOLDER_KEY = AccountKey.dummy("0");
+
+	private static final String[] CORE_RESOURCES = { "convex/core.cvx", "convex/core/metadata.cvx" };
+
+	private final AHashMap<Symbol, ACell> coreEnvironment;
+	private final AHashMap<Symbol, AHashMap<ACell, ACell>> coreMetadata;
+	private final State genesis;
+
+	private Snapshot(AHashMap<Symbol, ACell> coreEnvironment, AHashMap<Symbol, AHashMap<ACell, ACell>> coreMetadata,
+			State genesis) {
+		this.coreEnvironment = coreEnvironment;
+		this.coreMetadata = coreMetadata;
+		this.genesis = genesis;
+	}
+
+	private static Snapshot instance;
+	private static boolean loaded = false;
+
+	/**
+	 * Gets the snapshot, loading it on first use.
+	 * @return Snapshot, or null if disabled, not available or not valid for the current sources
+	 */
+	public static synchronized Snapshot get() {
+		if (!isEnabled()) return null;
+		if (!loaded) {
+			loaded = true;
+			instance = loadResource();
+		}
+		return instance;
+	}
+
+	/**
+	 * Checks if use of the snapshot is enabled, i.e. the system property "convex.snapshot" is not "false"
+	 * @return true if enabled, false otherwise
+	 */
+	static boolean isEnabled() {
+		return !"false".equals(System.getProperty("convex.snapshot"));
+	}
+
+	private static Snapshot loadResource() {
+		try (InputStream is = Snapshot.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+			if (is == null) {
+				log.debug("No snapshot available");
+				return null;
+			}
+			return load(Blob.wrap(is.readAllBytes()));
+		} catch (IOException e) {
+			log.warn("Unable to read snapshot", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Loads a snapshot from snapshot data, as produced by encode(...) on a snapshot root
+	 * @param data Snapshot data
+	 * @return Snapshot, or null if the data is invalid or does not match the current sources
+	 */
+	@SuppressWarnings("unchecked")
+	static Snapshot load(Blob data) {
+		try {
+			AVector<ACell> root = decode(data);
+			if (!computeFingerprint().equals(root.get(0))) {
+				log.warn("Snapshot does not match CVX sources, ignoring");
+				return null;
+			}
+			return new Snapshot((AHashMap<Symbol, ACell>) root.get(1), (AHashMap<Symbol, AHashMap<ACell, ACell>>) root.get(2),
+					(State) root.get(3));
+		} catch (Exception e) {
+			log.warn("Unable to load snapshot", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Creates the snapshot root for the current sources, using the interpreted path
+	 * @param genesis Genesis State to include
+	 * @return Snapshot root vector
+	 * @throws IOException If a source resource cannot be read
+	 */
+	static AVector<ACell> createRoot(State genesis) throws IOException {
+		return Vectors.of(computeFingerprint(), Core.ENVIRONMENT, Core.METADATA, genesis);
+	}
+
+	/**
+	 * Gets the core environment
+	 * @return Core environment
+	 */
+	public AHashMap<Symbol, ACell> getCoreEnvironment() {
+		return coreEnvironment;
+	}
+
+	/**
+	 * Gets the core metadata
+	 * @return Core metadata
+	 */
+	public AHashMap<Symbol, AHashMap<ACell, ACell>> getCoreMetadata() {
+		return coreMetadata;
+	}
+
+	/**
+	 * Creates the genesis State for a single genesis key, equal to Init.buildState(...)
+	 * for the same key.
+	 * @param key Genesis key, used for the genesis user, first peer and its controller
+	 * @return Genesis State
+	 */
+	public State createGenesisState(AccountKey key) {
+		long userIndex = Init.GENESIS_ADDRESS.toExactLong();
+		long peerIndex = Init.getGenesisPeerAddress(0).toExactLong();
+		AVector<AccountStatus> accounts = genesis.getAccounts();
+		accounts = accounts.assoc(userIndex, accounts.get(userIndex).withAccountKey(key));
+		accounts = accounts.assoc(peerIndex, accounts.get(peerIndex).withAccountKey(key));
+
+		PeerStatus ps = genesis.getPeers().get(PLACEHOLDER_KEY);
+		BlobMap<AccountKey, PeerStatus> peers = BlobMap.create(key, ps);
+		return genesis.withAccounts(accounts).withPeers(peers);
+	}
+
+	/**
+	 * Computes a fingerprint of all CVX resources used to build the core environment
+	 * and genesis State
+	 * @return Fingerprint hash
+	 * @throws IOException If a resource cannot be read
+	 */
+	static Hash computeFingerprint() throws IOException {
+		ArrayList<String> resources = new ArrayList<>(List.of(CORE_RESOURCES));
+		resources.addAll(List.of(Init.STATIC_LIBRARIES));
+		resources.addAll(List.of(Init.STANDARD_LIBRARIES));
+		resources.add(Init.CURRENCIES);
+
+		MessageDigest md = Hashing.getSHA3Digest();
+		for (String r : resources) {
+			md.update(r.getBytes(StandardCharsets.UTF_8));
+			md.update(Utils.readResourceAsString(r).getBytes(StandardCharsets.UTF_8));
+		}
+		return Hash.wrap(md.digest());
+	}
+
+	/**
+	 * Encodes a cell and all its branches as a snapshot Blob. Consists of the hash of the
+	 * root cell, followed by the encoding of each cell (preceded by VLC length) with
+	 * children before parents, ending with the root cell.
+	 * @param root Root cell, must not be embedded
+	 * @return Snapshot Blob
+	 */
+	static Blob encode(ACell root) {
+		ArrayList<Blob> encodings = new ArrayList<>();
+		collectEncodings(root, new HashSet<>(), encodings);
+
+		long length = Hash.LENGTH;
+		for (Blob b : encodings) {
+			length += Format.getVLCLength(b.count()) + b.count();
+		}
+		byte[] bs = new byte[Utils.checkedInt(length)];
+		root.getHash().getBytes(bs, 0);
+		int pos = Hash.LENGTH;
+		for (Blob b : encodings) {
+			pos = Format.writeVLCLong(bs, pos, b.count());
+			b.getBytes(bs, pos);
+			pos += (int) b.count();
+		}
+		return Blob.wrap(bs);
+	}
+
+	private static void collectEncodings(ACell cell, HashSet<Hash> seen, ArrayList<Blob> encodings) {
+		if (!seen.add(cell.getHash())) return;
+		collectBranches(cell, seen, encodings);
+		encodings.add(cell.getEncoding());
+	}
+
+	private static void collectBranches(ACell cell, HashSet<Hash> seen, ArrayList<Blob> encodings) {
+		int n = cell.getRefCount();
+		for (int i = 0; i < n; i++) {
+			Ref<ACell> ref = cell.getRef(i);
+			ACell child = ref.getValue();
+			if (child == null) continue;
+			if (ref.isEmbedded()) {
+				// embedded children may still have branches of their own
+				collectBranches(child, seen, encodings);
+			} else {
+				collectEncodings(child, seen, encodings);
+			}
+		}
+	}
+
+	/**
+	 * Decodes a snapshot Blob, as produced by encode(...). All cells are linked with
+	 * direct Refs, so no store is required to access them.
+	 * @param <T> Type of root cell
+	 * @param data Snapshot data
+	 * @return Root cell
+	 * @throws BadFormatException If the snapshot data is invalid
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends ACell> T decode(Blob data) throws BadFormatException {
+		int n = Utils.checkedInt(data.count());
+		if (n < Hash.LENGTH) throw new BadFormatException("Snapshot too short");
+		Hash rootHash = Hash.wrap(data.slice(0, Hash.LENGTH).getBytes());
+
+		HashMap<Hash, ACell> cells = new HashMap<>();
+		ACell cell = null;
+		int pos = Hash.LENGTH;
+		while (pos < n) {
+			long clen = Format.readVLCLong(data, pos);
+			pos += Format.getVLCLength(clen);
+			if ((clen <= 0) || (pos + clen > n)) throw new BadFormatException("Invalid cell length in snapshot: " + clen);
+			Blob encoding = data.slice(pos, pos + clen);
+			pos += (int) clen;
+
+			cell = Format.read(encoding);
+			ACell linked = link(cell, cells);
+			if (linked != cell) linked.attachEncoding(encoding);
+			cell = linked;
+			cells.put(cell.getHash(), cell);
+		}
+		if ((cell == null) || !rootHash.equals(cell.getHash())) {
+			throw new BadFormatException("Snapshot root hash does not match");
+		}
+		return (T) cell;
+	}
+
+	/**
+	 * Replaces branch Refs in a cell with direct Refs to previously decoded cells.
+	 * Embedded children are linked recursively, since their branches are counted
+	 * as branches of the containing cell.
+	 */
+	private static ACell link(ACell cell, HashMap<Hash, ACell> cells) {
+		if (cell.getRefCount() == 0) return cell;
+		return cell.updateRefs(r -> {
+			if (r.isDirect()) {
+				ACell child = r.getValue();
+				if (child == null) return r;
+				ACell linked = link(child, cells);
+				return (linked == child) ? r : linked.getRef();
+			}
+			ACell child = cells.get(r.getHash());
+			if (child == null) throw new IllegalStateException("Missing cell in snapshot: " + r.getHash());
+			return child.getRef();
+		});
+	}
+
+	/**
+	 * Generates the snapshot resource using the interpreted path. Used at build time.
+	 * @param args Output directory for resources
+	 * @throws IOException If the snapshot cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		// always build from sources, never from a previous snapshot
+		System.setProperty("convex.snapshot", "false");
+
+		State genesis = Init.buildState(List.of(PLACEHOLDER_KEY));
+		AVector<ACell> root = createRoot(genesis);
+		Blob data = encode(root);
+
+		File file = new File(args[0], RESOURCE);
+		file.getParentFile().mkdirs();
+		try (FileOutputStream fos = new FileOutputStream(file)) {
+			fos.write(data.getBytes());
+		}
+		log.info("Wrote snapshot with root " + root.getHash() + " (" + data.count() + " bytes) to " + file);
+	}
+}
@@ -33,9 +33,11 @@ import convex.core.exceptions.TODOException;
 import convex.core.init.Init;
 import convex.core.lang.impl.AExceptional;
 import convex.core.lang.impl.ATrampoline;
+import convex.core.lang.impl.CompileCache;
 import convex.core.lang.impl.CoreFn;
 import convex.core.lang.impl.ErrorValue;
 import convex.core.lang.impl.HaltValue;
+import convex.core.lang.impl.LocalStack;
 import convex.core.lang.impl.RecurValue;
 import convex.core.lang.impl.Reduced;
 import convex.core.lang.impl.ReturnValue;
@@ -94,7 +96,7 @@ public class Context<T extends ACell> extends AObject {
 	private T result;
 	private AExceptional exception;
 	private int depth;
-	private AVector<ACell> localBindings;
+	private LocalStack locals;
 	private ChainState chainState;
 
 	/**
@@ -103,6 +105,18 @@ public class Context<T extends ACell> extends AObject {
 	private AVector<AVector<ACell>> log;
 	private CompilerState compilerState;
 
+	/**
+	 * Set if expansion has depended on definitions outside the current and core environments,
+	 * in which case the result of expansion cannot be cached.
+	 */
+	private boolean externalExpansion=false;
+
+	/**
+	 * Time in milliseconds after which execution fails with a TIMEOUT error, or zero if
+	 * unlimited. Used to bound the execution time of off-chain queries.
+	 */
+	private long deadline=0;
+
 
 	/**
 	 * Inner class compiler state.
@@ -142,6 +156,15 @@ public class Context<T extends ACell> extends AObject {
 	 * which in turn controls access to most account resources and rights.
 	 */
 	private static final class ChainState {
+		/**
+		 * Maximum number of pending Account edits before they are written back to the State.
+		 * Keeps lookups in the edit buffer cheap.
+		 */
+		private static final int MAX_EDITS=16;
+
+		/**
+		 * Base State. Does not include any pending Account edits or environment changes.
+		 */
 		private final State state;
 		private final Address origin;
 		private final Address caller;
@@ -150,11 +173,34 @@ public class Context<T extends ACell> extends AObject {
 
 		/**
 		 * Cached copy of the current environment. Avoid looking up via Address each time.
+		 * 
+		 * May be ahead of the environment in the base State, if pending is true.
 		 */
 		private final AHashMap<Symbol, ACell> environment;
 		private final AHashMap<Symbol, AHashMap<ACell,ACell>> metadata;
 
-		private ChainState(State state, Address origin,Address caller, Address address,AHashMap<Symbol, ACell> environment, AHashMap<Symbol,AHashMap<ACell,ACell>> metadata, long offer) {
+		/**
+		 * True if the environment / metadata have changed and not yet been written to the State.
+		 * Definitions frequently happen in runs, so we avoid rebuilding the AccountStatus, accounts
+		 * Vector and State for every change, and only write back when the State is needed.
+		 */
+		private final boolean pending;
+
+		/**
+		 * Accounts updated since the base State, in order of first update, or null if none.
+		 * Transfers, holdings and offers often touch the same few Accounts repeatedly, so
+		 * these are buffered and written into the accounts Vector only when the State is needed.
+		 * Arrays are never modified once shared, so forks and rollbacks are unaffected.
+		 */
+		private final Address[] editAddresses;
+		private final AccountStatus[] editAccounts;
+
+		/**
+		 * State with pending changes applied. Computed lazily.
+		 */
+		private State latestState;
+
+		private ChainState(State state, Address origin,Address caller, Address address,AHashMap<Symbol, ACell> environment, AHashMap<Symbol,AHashMap<ACell,ACell>> metadata, long offer, boolean pending, Address[] editAddresses, AccountStatus[] editAccounts) {
 			this.state=state;
 			this.origin=origin;
 			this.caller=caller;
@@ -162,6 +208,10 @@ public class Context<T extends ACell> extends AObject {
 			this.environment=environment;
 			this.metadata=metadata;
 			this.offer=offer;
+			this.pending=pending;
+			this.editAddresses=editAddresses;
+			this.editAccounts=editAccounts;
+			this.latestState=(pending||(editAddresses!=null))?null:state;
 		}
 
 		public static ChainState create(State state, Address origin, Address caller, Address address, long offer) {
@@ -174,16 +224,143 @@ public class Context<T extends ACell> extends AObject {
 					metadata=as.getMetadata();
 				}
 			}
-			return new ChainState(state,origin,caller,address,environment,metadata,offer);
+			return new ChainState(state,origin,caller,address,environment,metadata,offer,false,null,null);
+		}
+
+		/**
+		 * Gets the latest State, writing back any pending Account edits and environment changes
+		 * @return Latest State
+		 */
+		private State getState() {
+			State result=latestState;
+			if (result==null) {
+				result=state;
+				if (editAddresses!=null) {
+					for (int i=0; i<editAddresses.length; i++) {
+						result=result.putAccount(editAddresses[i],editAccounts[i]);
+					}
+				}
+				if (pending) {
+					AccountStatus as=result.getAccount(address);
+					AccountStatus nas=as.withEnvironment(environment).withMetadata(metadata);
+					result=result.putAccount(address,nas);
+				}
+				latestState=result;
+			}
+			return result;
+		}
+
+		/**
+		 * Gets an Account from the edit buffer or base State, without any pending environment changes
+		 */
+		private AccountStatus getEditedAccount(Address a) {
+			if (editAddresses!=null) {
+				for (int i=editAddresses.length-1; i>=0; i--) {
+					if (editAddresses[i].equals(a)) return editAccounts[i];
+				}
+			}
+			return state.getAccount(a);
+		}
+
+		/**
+		 * Gets the latest status of an Account, without writing back to the State
+		 * @param a Address of Account
+		 * @return AccountStatus, or null if the Account does not exist
+		 */
+		private AccountStatus getAccount(Address a) {
+			AccountStatus as=getEditedAccount(a);
+			if ((as!=null)&&pending&&a.equals(address)) {
+				as=as.withEnvironment(environment).withMetadata(metadata);
+			}
+			return as;
+		}
+
+		/**
+		 * Updates an existing Account, buffering the change until the State is needed. The
+		 * AccountStatus must be derived from getAccount, so that it includes any pending environment.
+		 * @param a Address of Account, must already exist
+		 * @param as New AccountStatus
+		 * @return Updated ChainState
+		 */
+		private ChainState withAccount(Address a, AccountStatus as) {
+			Address[] newAddresses;
+			AccountStatus[] newAccounts;
+			int n=(editAddresses==null)?0:editAddresses.length;
+			int ix=-1;
+			for (int i=0; i<n; i++) {
+				if (editAddresses[i].equals(a)) {ix=i; break;}
+			}
+			if (ix>=0) {
+				newAddresses=editAddresses;
+				newAccounts=editAccounts.clone();
+				newAccounts[ix]=as;
+			} else {
+				newAddresses=new Address[n+1];
+				newAccounts=new AccountStatus[n+1];
+				if (n>0) {
+					System.arraycopy(editAddresses, 0, newAddresses, 0, n);
+					System.arraycopy(editAccounts, 0, newAccounts, 0, n);
+				}
+				newAddresses[n]=a;
+				newAccounts[n]=as;
+			}
+
+			ChainState result;
+			if (a.equals(address)) {
+				// the new AccountStatus includes the current environment, so it is no longer pending
+				result=new ChainState(state,origin,caller,address,as.getEnvironment(),as.getMetadata(),offer,false,newAddresses,newAccounts);
+			} else {
+				result=new ChainState(state,origin,caller,address,environment,metadata,offer,pending,newAddresses,newAccounts);
+			}
+			if (newAddresses.length>MAX_EDITS) {
+				result=create(result.getState(),origin,caller,address,offer);
+			}
+			return result;
+		}
+
+		/**
+		 * Creates a ChainState for execution at a different Address, carrying over any pending
+		 * edits so that the State need not be rebuilt at the call boundary.
+		 * @param newOrigin Origin Address
+		 * @param newCaller Caller Address
+		 * @param newAddress Address for execution
+		 * @param newOffer Offer for execution
+		 * @return New ChainState
+		 */
+		private ChainState forAddress(Address newOrigin, Address newCaller, Address newAddress, long newOffer) {
+			ChainState cs=this;
+			if (pending) cs=withAccount(address,getAccount(address));
+			AHashMap<Symbol, ACell> env=Core.ENVIRONMENT;
+			AHashMap<Symbol, AHashMap<ACell,ACell>> meta=Core.METADATA;
+			if (newAddress!=null) {
+				AccountStatus as=cs.getEditedAccount(newAddress);
+				if (as!=null) {
+					env=as.getEnvironment();
+					meta=as.getMetadata();
+				}
+			}
+			if (cs.editAddresses==null) {
+				return new ChainState(cs.state,newOrigin,newCaller,newAddress,env,meta,newOffer,false,null,null);
+			}
+			ChainState result=new ChainState(cs.state,newOrigin,newCaller,newAddress,env,meta,newOffer,false,cs.editAddresses,cs.editAccounts);
+			result.latestState=cs.latestState; // same edits, so same State
+			return result;
 		}
 
 		public ChainState withStateOffer(State newState,long newOffer) {
-			if ((state==newState)&&(offer==newOffer)) return this;
+			if ((getState()==newState)&&(offer==newOffer)) return this;
 			return create(newState,origin,caller,address,newOffer);
 		}
 
+		private ChainState withOffer(long newOffer) {
+			if (offer==newOffer) return this;
+			ChainState result=new ChainState(state,origin,caller,address,environment,metadata,newOffer,pending,editAddresses,editAccounts);
+			result.latestState=latestState;
+			return result;
+		}
+
 		private ChainState withState(State newState) {
-			if (state==newState) return this;
+			if (getState()==newState) return this;
 			return create(newState,origin,caller,address,offer);
 		}
 
@@ -200,25 +377,27 @@ public class Context<T extends ACell> extends AObject {
 			return environment;
 		}
 
+		/**
+		 * Gets the environment for an Account, without writing back pending changes.
+		 * @param a Address of Account
+		 * @return Environment, or null if the Account does not exist
+		 */
+		private AHashMap<Symbol, ACell> getEnvironment(Address a) {
+			if (pending&&a.equals(address)) return getEnvironment();
+			AccountStatus as=getEditedAccount(a);
+			if (as==null) return null;
+			return as.getEnvironment();
+		}
+
 		private ChainState withEnvironment(AHashMap<Symbol, ACell> newEnvironment)  {
 			if (environment==newEnvironment) return this;
-			AccountStatus as=state.getAccount(address);
-			AccountStatus nas=as.withEnvironment(newEnvironment);
-			State newState=state.putAccount(address,nas);
-			return withState(newState);
+			return new ChainState(state,origin,caller,address,newEnvironment,metadata,offer,true,editAddresses,editAccounts);
 		}
 
 		public ChainState withEnvironment(AHashMap<Symbol, ACell> newEnvironment,
 				AHashMap<Symbol, AHashMap<ACell, ACell>> newMeta) {
 			if ((environment==newEnvironment)&&(metadata==newMeta)) return this;
-			AccountStatus as=state.getAccount(address);
-			AccountStatus nas=as.withEnvironment(newEnvironment).withMetadata(newMeta);
-			State newState=state.putAccount(address,nas);
-			return withState(newState);
-		}
-
-		private ChainState withAccounts(AVector<AccountStatus> newAccounts) {
-			return withState(state.withAccounts(newAccounts));
+			return new ChainState(state,origin,caller,address,newEnvironment,newMeta,offer,true,editAddresses,editAccounts);
 		}
 
 		public AHashMap<Symbol, AHashMap<ACell, ACell>> getMetadata() {
@@ -226,13 +405,25 @@ public class Context<T extends ACell> extends AObject {
 			return metadata;
 		}
 
+		/**
+		 * Gets the metadata for an Account, without writing back pending changes.
+		 * @param a Address of Account
+		 * @return Metadata, or null if the Account does not exist
+		 */
+		private AHashMap<Symbol, AHashMap<ACell, ACell>> getMetadata(Address a) {
+			if (pending&&a.equals(address)) return getMetadata();
+			AccountStatus as=getEditedAccount(a);
+			if (as==null) return null;
+			return as.getMetadata();
+		}
+
 
 	}
 
 	protected Context(ChainState chainState, long juice, AVector<ACell> localBindings2, T result,int depth, AExceptional exception, AVector<AVector<ACell>> log, CompilerState comp) {
 		this.chainState=chainState;
 		this.juice=juice;
-		this.localBindings=localBindings2;
+		this.locals=new LocalStack(localBindings2);
 		this.result=result;
 		this.depth=depth;
 		this.exception=exception;
@@ -399,9 +590,7 @@ public class Context<T extends ACell> extends AObject {
 		// maybe add used juice to miner fees
 		if (usedJuice>0L) {
 			long transactionFees = usedJuice*juicePrice;
-			long oldFees=state.getGlobalFees().longValue();
-			long newFees=oldFees+transactionFees;
-			state=state.withGlobalFees(CVMLong.create(newFees));
+			state=state.addGlobalFees(transactionFees);
 		}
 
 		// final state update and result reporting
@@ -422,7 +611,7 @@ public class Context<T extends ACell> extends AObject {
 	 * @return State instance
 	 */
 	public State getState() {
-		return chainState.state;
+		return chainState.getState();
 	}
 
 	/**
@@ -487,7 +676,32 @@ public class Context<T extends ACell> extends AObject {
 	 * @return true if juice is sufficient, false otherwise.
 	 */
 	public boolean checkJuice(long gulp) {
-		return (juice>=gulp);
+		if (juice<gulp) return false;
+		return (deadline==0)||(System.currentTimeMillis()<=deadline);
+	}
+
+	/**
+	 * Checks if the execution deadline for this context, if any, has passed.
+	 *
+	 * @return true if timed out, false otherwise
+	 */
+	public boolean isTimedOut() {
+		return (deadline!=0)&&(System.currentTimeMillis()>deadline);
+	}
+
+	/**
+	 * Sets a deadline for execution in this context. Once passed, any further consumption
+	 * of juice fails with a TIMEOUT error. Not for use in transactions, since the outcome
+	 * would depend on the timing of each Peer.
+	 *
+	 * @param <R> Result type
+	 * @param deadline Time in milliseconds, or zero for no deadline
+	 * @return Updated context
+	 */
+	@SuppressWarnings("unchecked")
+	public <R extends ACell> Context<R> withDeadline(long deadline) {
+		this.deadline=deadline;
+		return (Context<R>) this;
 	}
 
 	/**
@@ -528,9 +742,9 @@ public class Context<T extends ACell> extends AObject {
 	 */
 	@SuppressWarnings("unchecked")
 	public <R extends ACell> Context<R> lookupDynamic(Address address, Symbol symbol) {
-		AccountStatus as=getAccountStatus(address);
-		if (as==null) return withError(ErrorCodes.NOBODY,"No account found for: "+symbol.toString());
-		MapEntry<Symbol,ACell> envEntry=lookupDynamicEntry(as,symbol);
+		AHashMap<Symbol, ACell> env=getEnvironment(address);
+		if (env==null) return withError(ErrorCodes.NOBODY,"No account found for: "+symbol.toString());
+		MapEntry<Symbol,ACell> envEntry=lookupDynamicEntry(env,symbol);
 
 		// if not found, return UNDECLARED error
 		if (envEntry==null) {
@@ -644,31 +858,40 @@ public class Context<T extends ACell> extends AObject {
 	 * @return Environment entry
 	 */
 	public MapEntry<Symbol,ACell> lookupDynamicEntry(Address address,Symbol sym) {
-		AccountStatus as=getAccountStatus(address);
-		if (as==null) return null;
-		return lookupDynamicEntry(as,sym);
+		AHashMap<Symbol, ACell> env=getEnvironment(address);
+		if (env==null) return null;
+		return lookupDynamicEntry(env,sym);
 	}
 
-
-
-	private MapEntry<Symbol,ACell> lookupDynamicEntry(AccountStatus as,Symbol sym) {
-		// Get environment for Address, or default to initial environment
-		AHashMap<Symbol, ACell> env = (as==null)?Core.ENVIRONMENT:as.getEnvironment();
-
-
+	private MapEntry<Symbol,ACell> lookupDynamicEntry(AHashMap<Symbol, ACell> env,Symbol sym) {
 		MapEntry<Symbol,ACell> result=env.getEntry(sym);
 
 		if (result==null) {
-			AccountStatus aliasAccount=getAliasedAccount(env);
-			result = lookupAliasedEntry(aliasAccount,sym);
+			AHashMap<Symbol, ACell> aliasEnv=getAliasedEnvironment(env);
+			if (aliasEnv!=null) result=aliasEnv.getEntry(sym);
 		}
 		return result;
 	}
 
-	private MapEntry<Symbol,ACell> lookupAliasedEntry(AccountStatus as,Symbol sym) {
-		if (as==null) return null;
-		AHashMap<Symbol, ACell> env = as.getEnvironment();
-		return env.getEntry(sym);
+	/**
+	 * Gets the environment for the given Address. For the current Address, this includes any
+	 * changes not yet written back to the State.
+	 *
+	 * @param address Address of Account
+	 * @return Environment of the Account, or null if the Account does not exist
+	 */
+	public AHashMap<Symbol, ACell> getEnvironment(Address address) {
+		return chainState.getEnvironment(address);
+	}
+
+	/**
+	 * Gets the environment used to resolve symbols not defined in the given environment
+	 * @param env Environment
+	 * @return Aliased environment, or null if not available
+	 */
+	public AHashMap<Symbol, ACell> getAliasedEnvironment(AHashMap<Symbol, ACell> env) {
+		// TODO: alternative core accounts
+		return getEnvironment(Init.CORE_ADDRESS);
 	}
 
 	/**
@@ -682,7 +905,7 @@ public class Context<T extends ACell> extends AObject {
 		// Possible we don't have an Address (e.g. in a Query)
 		if (a==null) return null;
 
-		return chainState.state.getAccount(a);
+		return chainState.getAccount(a);
 	}
 
 	/**
@@ -833,6 +1056,7 @@ public class Context<T extends ACell> extends AObject {
 	public <R extends ACell> Context<R> withJuiceError() {
 		// set juice to zero. Can't consume more that we have!
 		this.juice=0;
+		if (isTimedOut()) return withError(ErrorCodes.TIMEOUT,"Execution timed out");
 		return withError(ErrorCodes.JUICE,"Out of juice!");
 	}
 
@@ -1036,7 +1260,8 @@ public class Context<T extends ACell> extends AObject {
 			Symbol sym=(Symbol)bindingForm;
 			if (sym.equals(Symbols.UNDERSCORE)) return ctx;
 			// TODO: confirm must be an ACell at this point?
-			return withLocalBindings(localBindings.conj((ACell)args));
+			locals.push((ACell)args);
+			return ctx;
 		} else if (bindingForm instanceof AVector) {
 			AVector<ACell> v=(AVector<ACell>)bindingForm;
 			long vcount=v.count(); // count of binding form symbols (may include & etc.)
@@ -1102,8 +1327,13 @@ public class Context<T extends ACell> extends AObject {
 		return bb.check(limit);
 	}
 
+	/**
+	 * Gets the local bindings of the current frame as a Vector. Creates a new Vector if there are
+	 * bindings since the frame was entered, so should be avoided in performance-sensitive code.
+	 * @return Vector of local bindings
+	 */
 	public AVector<ACell> getLocalBindings() {
-		return localBindings;
+		return locals.toVector();
 	}
 
 	/**
@@ -1114,9 +1344,30 @@ public class Context<T extends ACell> extends AObject {
 	 */
 	@SuppressWarnings("unchecked")
 	public <R extends ACell> Context<R> withLocalBindings(AVector<ACell> newBindings) {
-		//if (localBindings==newBindings) return (Context<R>) this;
-		//return create(chainState,juice,newBindings,(R)result,depth);
-		localBindings=newBindings;
+		locals=new LocalStack(newBindings);
+		return (Context<R>) this;
+	}
+
+	/**
+	 * Gets the local bindings for this Context
+	 * @return Local bindings stack
+	 */
+	public LocalStack getLocals() {
+		return locals;
+	}
+
+	/**
+	 * Restores local bindings to a previous mark, at the end of a binding scope. The given
+	 * LocalStack is reinstated, since the Context may have been replaced during execution.
+	 * @param <R> Return type of Context
+	 * @param savedLocals Local bindings at the start of the binding scope
+	 * @param mark Mark obtained at the start of the binding scope
+	 * @return Updated context
+	 */
+	@SuppressWarnings("unchecked")
+	public <R extends ACell> Context<R> restoreLocals(LocalStack savedLocals, long mark) {
+		savedLocals.restore(mark);
+		locals=savedLocals;
 		return (Context<R>) this;
 	}
 
@@ -1127,7 +1378,7 @@ public class Context<T extends ACell> extends AObject {
 	 * @return AccountStatus for the specified address, or null if the account does not exist
 	 */
 	public AccountStatus getAccountStatus(Address address) {
-		return getState().getAccount(address);
+		return chainState.getAccount(address);
 	}
 
 	public int getDepth() {
@@ -1189,6 +1440,53 @@ public class Context<T extends ACell> extends AObject {
 	 * @return Updated Context with compiled Op as result
 	 */
 	public <R extends ACell> Context<AOp<R>> expandCompile(ACell form) {
+		// top level forms (transactions, queries) are frequently repeated, so use the compile cache
+		if ((depth==0)&&(compilerState==null)&&(form!=null)&&(getAddress()!=null)) {
+			return expandCompileCached(form);
+		}
+		return expandCompileUncached(form);
+	}
+
+	/**
+	 * Expand and compile a top level form, using the compile cache if possible.
+	 *
+	 * A cached result is only used if the current and core environments are unchanged since it was
+	 * compiled, and the same juice is consumed as if the form were compiled again. Results are
+	 * only cached if expansion did not depend on any other Account, and did not change the State.
+	 */
+	@SuppressWarnings("unchecked")
+	private <R extends ACell> Context<AOp<R>> expandCompileCached(ACell form) {
+		Hash hash=form.getHash();
+		Address address=getAddress();
+		AHashMap<Symbol, ACell> env=getEnvironment();
+		AHashMap<Symbol, AHashMap<ACell, ACell>> meta=getMetadata();
+		AHashMap<Symbol, ACell> coreEnv=chainState.getEnvironment(Init.CORE_ADDRESS);
+		AHashMap<Symbol, AHashMap<ACell, ACell>> coreMeta=chainState.getMetadata(Init.CORE_ADDRESS);
+
+		CompileCache cache=CompileCache.INSTANCE;
+		CompileCache.Entry e=cache.get(hash, address, env, meta, coreEnv, coreMeta, juice);
+		if (e!=null) {
+			return withResult(e.getJuice(),(AOp<R>)e.getOp());
+		}
+
+		long savedJuice=juice;
+		ChainState savedChainState=chainState;
+		AVector<AVector<ACell>> savedLog=log;
+		boolean savedExternal=externalExpansion;
+		externalExpansion=false;
+
+		Context<AOp<R>> rctx=expandCompileUncached(form);
+		boolean external=rctx.externalExpansion||externalExpansion;
+		rctx.externalExpansion=savedExternal;
+		if (rctx.isExceptional()) return rctx;
+
+		if ((!external)&&(rctx.chainState==savedChainState)&&(rctx.log==savedLog)) {
+			cache.put(hash, address, new CompileCache.Entry(env, meta, coreEnv, coreMeta, rctx.getResult(), savedJuice-rctx.juice));
+		}
+		return rctx;
+	}
+
+	private <R extends ACell> Context<AOp<R>> expandCompileUncached(ACell form) {
 		// run compiler with adjusted depth
 		int saveDepth=getDepth();
 		Context<AOp<R>> rctx =this.withDepth(saveDepth+1);
@@ -1274,10 +1572,11 @@ public class Context<T extends ACell> extends AObject {
 				ctx=ctx.withResult(null); // clear result for execution
 			}
 		}
-		AVector<ACell> savedBindings = ctx.getLocalBindings();
-		ctx=ctx.withLocalBindings(Vectors.empty());
+		LocalStack savedLocals=ctx.getLocals();
+		long mark=savedLocals.mark();
+		savedLocals.enter(EMPTY_BINDINGS);
 		Context<R> rctx= ctx.execute(op);
-		return rctx.withLocalBindings(savedBindings);
+		return rctx.restoreLocals(savedLocals,mark);
 	}
 
 	/**
@@ -1319,6 +1618,7 @@ public class Context<T extends ACell> extends AObject {
 
 		// SECURITY: eval with a context switch
 		final Context<R> exContext=Context.create(getState(), juice, EMPTY_BINDINGS, null, depth+1, getOrigin(),caller, address,0,log,null);
+		exContext.deadline=deadline;
 
 		final Context<R> rContext=exContext.eval(form);
 		// SECURITY: must handle results as if returning from an actor call
@@ -1357,6 +1657,7 @@ public class Context<T extends ACell> extends AObject {
 		// chainstate with the target address as origin.
 		ChainState cs=ChainState.create(getState(),address,null,address,DEFAULT_OFFER);
 		Context<R> ctx=Context.create(cs, juice, EMPTY_BINDINGS, null, depth,log,null);
+		ctx.deadline=deadline;
 		ctx=ctx.evalAs(address, form);
 		return handleQueryResult(ctx);
 	}
@@ -1461,11 +1762,8 @@ public class Context<T extends ACell> extends AObject {
 		if (amount<0) return withError(ErrorCodes.ARGUMENT,"Can't transfer a negative amount");
 		if (amount>Constants.MAX_SUPPLY) return withError(ErrorCodes.ARGUMENT,"Can't transfer an amount beyond maximum limit");
 
-		AVector<AccountStatus> accounts=getState().getAccounts();
-
 		Address source=getAddress();
-		long sourceIndex=source.toExactLong();
-		AccountStatus sourceAccount=accounts.get(sourceIndex);
+		AccountStatus sourceAccount=getAccountStatus(source);
 
 		long currentBalance=sourceAccount.getBalance();
 		if (currentBalance<amount) {
@@ -1474,14 +1772,13 @@ public class Context<T extends ACell> extends AObject {
 
 		long newSourceBalance=currentBalance-amount;
 		AccountStatus newSourceAccount=sourceAccount.withBalance(newSourceBalance);
-		accounts=accounts.assoc(sourceIndex, newSourceAccount);
+		ChainState cs=chainState.withAccount(source, newSourceAccount);
 
-		// new target account (note: could be source account, so we get from latest accounts)
-		long targetIndex=target.toExactLong();
-		if (targetIndex>=accounts.count()) {
+		// new target account (note: could be source account, so we get from latest state)
+		AccountStatus targetAccount=cs.getAccount(target);
+		if (targetAccount==null) {
 			return this.withError(ErrorCodes.NOBODY,"Target account for transfer "+target+" does not exist");
 		}
-		AccountStatus targetAccount=accounts.get(targetIndex);
 
 		if (targetAccount.isActor()) {
 			// (call target amount (receive-coin source amount nil))
@@ -1497,10 +1794,10 @@ public class Context<T extends ACell> extends AObject {
 			long oldTargetBalance=targetAccount.getBalance();
 			long newTargetBalance=oldTargetBalance+amount;
 			AccountStatus newTargetAccount=targetAccount.withBalance(newTargetBalance);
-			accounts=accounts.assoc(targetIndex, newTargetAccount);
+			cs=cs.withAccount(target, newTargetAccount);
 
 			// SECURITY: new context with updated accounts
-			Context<CVMLong> result=withChainState(chainState.withAccounts(accounts)).withResult(CVMLong.create(amount));
+			Context<CVMLong> result=withChainState(cs).withResult(CVMLong.create(amount));
 
 			return result;
 		}
@@ -1521,11 +1818,8 @@ public class Context<T extends ACell> extends AObject {
 		if (amount<0) return withError(ErrorCodes.ARGUMENT,"Can't transfer a negative allowance amount");
 		if (amount>Constants.MAX_SUPPLY) return withError(ErrorCodes.ARGUMENT,"Can't transfer an allowance amount beyond maximum limit");
 
-		AVector<AccountStatus> accounts=getState().getAccounts();
-
 		Address source=getAddress();
-		long sourceIndex=source.toExactLong();
-		AccountStatus sourceAccount=accounts.get(sourceIndex);
+		AccountStatus sourceAccount=getAccountStatus(source);
 
 		long currentBalance=sourceAccount.getMemory();
 		if (currentBalance<amount) {
@@ -1534,21 +1828,20 @@ public class Context<T extends ACell> extends AObject {
 
 		long newSourceBalance=currentBalance-amount;
 		AccountStatus newSourceAccount=sourceAccount.withMemory(newSourceBalance);
-		accounts=accounts.assoc(sourceIndex, newSourceAccount);
+		ChainState cs=chainState.withAccount(source, newSourceAccount);
 
-		// new target account (note: could be source account, so we get from latest accounts)
-		long targetIndex=target.toExactLong();
-		if (targetIndex>=accounts.count()) {
+		// new target account (note: could be source account, so we get from latest state)
+		AccountStatus targetAccount=cs.getAccount(target);
+		if (targetAccount==null) {
 			return withError(ErrorCodes.NOBODY,"Cannot transfer memory allowance to non-existent account: "+target);
 		}
-		AccountStatus targetAccount=accounts.get(targetIndex);
 
 		long newTargetBalance=targetAccount.getMemory()+amount;
 		AccountStatus newTargetAccount=targetAccount.withMemory(newTargetBalance);
-		accounts=accounts.assoc(targetIndex, newTargetAccount);
+		cs=cs.withAccount(target, newTargetAccount);
 
 		// SECURITY: new context with updated accounts
-		Context<CVMLong> result=withChainState(chainState.withAccounts(accounts)).withResult(amountToSend);
+		Context<CVMLong> result=withChainState(cs).withResult(amountToSend);
 		return result;
 	}
 
@@ -1559,20 +1852,18 @@ public class Context<T extends ACell> extends AObject {
 	 * @return Context indicating the price paid for the allowance change (may be zero or negative for refund)
 	 */
 	public Context<CVMLong> setMemory(long allowance) {
-		AVector<AccountStatus> accounts=getState().getAccounts();
 		if (allowance<0) return withError(ErrorCodes.ARGUMENT,"Can't transfer a negative allowance amount");
 		if (allowance>Constants.MAX_SUPPLY) return withError(ErrorCodes.ARGUMENT,"Can't transfer an allowance amount beyond maximum limit");
 
 		Address source=getAddress();
-		long sourceIndex=source.toExactLong();
-		AccountStatus sourceAccount=accounts.get(sourceIndex);
+		AccountStatus sourceAccount=getAccountStatus(source);
 
 		long current=sourceAccount.getMemory();
 		long balance=sourceAccount.getBalance();
 		long delta=allowance-current;
 		if (delta==0L) return this.withResult(CVMLong.ZERO);
 
-		AccountStatus pool=getState().getAccount(Init.MEMORY_EXCHANGE_ADDRESS);
+		AccountStatus pool=getAccountStatus(Init.MEMORY_EXCHANGE_ADDRESS);
 
 		try {
 			long poolAllowance=pool.getMemory();
@@ -1585,10 +1876,10 @@ public class Context<T extends ACell> extends AObject {
 			pool=pool.withBalances(poolBalance+price, poolAllowance-delta);
 
 			// Update accounts
-			AVector<AccountStatus> newAccounts=accounts.assoc(sourceIndex, sourceAccount);
-			newAccounts=newAccounts.assoc(Init.MEMORY_EXCHANGE_ADDRESS.toExactLong(),pool);
+			ChainState cs=chainState.withAccount(source, sourceAccount);
+			cs=cs.withAccount(Init.MEMORY_EXCHANGE_ADDRESS,pool);
 
-			return withChainState(chainState.withAccounts(newAccounts)).withResult(null);
+			return withChainState(cs).withResult(null);
 		} catch (IllegalArgumentException e) {
 			return withError(ErrorCodes.FUNDS,"Cannot trade allowance: "+e.getMessage());
 		}
@@ -1611,13 +1902,12 @@ public class Context<T extends ACell> extends AObject {
 		long offer=getOffer();
 		if (amount>offer) return this.withError(ErrorCodes.STATE,"Insufficient offered funds");
 
-		State state=getState();
 		Address addr=getAddress();
-		long balance=state.getBalance(addr);
-		state=state.withBalance(addr,balance+amount);
+		AccountStatus as=getAccountStatus(addr);
+		as=as.withBalance(as.getBalance()+amount);
 
-		// need to update both state and offer
-		ChainState cs=chainState.withStateOffer(state,offer-amount);
+		// need to update both account and offer
+		ChainState cs=chainState.withAccount(addr,as).withOffer(offer-amount);
 		Context<T> ctx=this.withChainState(cs);
 
 		return (Context<R>) ctx.withResult(Juice.ACCEPT, CVMLong.create(amount));
@@ -1649,22 +1939,22 @@ public class Context<T extends ACell> extends AObject {
 	 */
 	public <R extends ACell> Context<R> actorCall(Address target, long offer, ACell functionName, ACell... args) {
 		// SECURITY: set up state for actor call
-		State state=getState();
+		ChainState cs=chainState;
 		Symbol sym=RT.ensureSymbol(functionName);
-		AccountStatus as=state.getAccount(target);
+		AccountStatus as=cs.getAccount(target);
 		if (as==null) return this.withError(ErrorCodes.NOBODY,"Actor Account does not exist: "+target);
 
 		// Handling for non-zero offers.
 		// SECURITY: Subtract offer from balance first so we don't have double-spend issues!
 		if (offer>0L) {
 			Address senderAddress=getAddress();
-			AccountStatus cas=state.getAccount(senderAddress);
+			AccountStatus cas=cs.getAccount(senderAddress);
 			long balance=cas.getBalance();
 			if (balance<offer) {
 				return this.withFundsError("Insufficient funds for offer: "+offer +" trying to call Actor "+target+ " function ("+sym+" ...)");
 			}
 			cas=cas.withBalance(balance-offer);
-			state=state.putAccount(senderAddress, cas);
+			cs=cs.withAccount(senderAddress, cas);
 		} else if (offer<0) {
 			return this.withError(ErrorCodes.ARGUMENT, "Cannot make negative offer in Actor call: "+offer);
 		}
@@ -1676,7 +1966,7 @@ public class Context<T extends ACell> extends AObject {
 		}
 
 		// Ensure we create a forked Context for the Actor call
-		final Context<R> exContext=forkActorCall(state, target, offer);
+		final Context<R> exContext=forkActorCall(cs, target, offer);
 
 		// INVOKE ACTOR FUNCTION
 		final Context<R> rctx=exContext.invoke(fn,args);
@@ -1697,13 +1987,16 @@ public class Context<T extends ACell> extends AObject {
 	 * SECURITY: Must change address to the target Actor address.
 	 * SECURITY: Must change caller to current address.
 	 * @param <R>
-	 * @param state for forked context.
+	 * @param cs ChainState for forked context, including any pending account changes.
 	 * @param target Target actor call address, will become new *address* for context
 	 * @param offer Offer amount for actor call. Must have been pre-subtracted from caller account.
 	 * @return
 	 */
-	private <R extends ACell> Context<R> forkActorCall(State state, Address target, long offer) {
-		return Context.create(state, juice, EMPTY_BINDINGS, (R)null, depth+1, getOrigin(),getAddress(), target,offer, log,null);
+	private <R extends ACell> Context<R> forkActorCall(ChainState cs, Address target, long offer) {
+		ChainState callState=cs.forAddress(getOrigin(), getAddress(), target, offer);
+		Context<R> ctx=Context.create(callState, juice, EMPTY_BINDINGS, (R)null, depth+1, log,null);
+		ctx.deadline=deadline;
+		return ctx;
 	}
 
 	/**
@@ -1752,13 +2045,14 @@ public class Context<T extends ACell> extends AObject {
 		}
 
 		final Address address=getAddress(); // address we are returning to
-		State returnState;
+		ChainState returnState;
 
 		if (rollback) {
-			returnState=this.getState();
+			returnState=chainState;
 		} else {
-			// take state from the returning context
-			returnState=returnContext.getState();
+			// take state from the returning context, including any pending account changes
+			// SECURITY: must restore origin,caller,address, offer
+			returnState=returnContext.chainState.forAddress(getOrigin(), getCaller(), address, getOffer());
 
 			// Take log from returning context
 			log=returnContext.getLog();
@@ -1771,13 +2065,13 @@ public class Context<T extends ACell> extends AObject {
 				AccountStatus cas=returnState.getAccount(address);
 				long balance=cas.getBalance();
 				cas=cas.withBalance(balance+refund);
-				returnState=returnState.putAccount(address, cas);
+				returnState=returnState.withAccount(address, cas);
 			}
 		}
 		// Rebuild context for the current execution
 		// SECURITY: must restore origin,depth,caller,address,local bindings, offer
 
-		Context<R> result=this.withState(returnState);
+		Context<R> result=(Context<R>) this.withChainState(returnState);
 		result.juice=returnContext.juice;
 		result=this.withValue(rv);
 		return result;
@@ -1803,6 +2097,7 @@ public class Context<T extends ACell> extends AObject {
 
 		// Deployment execution context with forked context and incremented depth
 		final Context<Address> deployContext=Context.create(stateSetup, juice, EMPTY_BINDINGS, null, depth+1, getOrigin(),getAddress(), address,DEFAULT_OFFER,log,null);
+		deployContext.deadline=deadline;
 		final Context<Address> rctx=deployContext.eval(code);
 
 		Context<Address> result=this.handleStateResults(rctx,false);
@@ -1819,10 +2114,8 @@ public class Context<T extends ACell> extends AObject {
 	public Context<Address> createAccount(AccountKey key) {
 		final State initialState=getState();
 		Address address=initialState.nextAddress();
-		AVector<AccountStatus> accounts=initialState.getAccounts();
 		AccountStatus as=AccountStatus.create(0L, key);
-		accounts=accounts.conj(as);
-		final State newState=initialState.withAccounts(accounts);
+		final State newState=initialState.putAccount(address,as);
 		Context<Address> rctx=this.withState(newState);
 		return rctx.withResult(address);
 	}
@@ -2135,8 +2428,9 @@ public class Context<T extends ACell> extends AObject {
 		return withAccountStatus(getAddress(),as);
 	}
 
+	@SuppressWarnings("unchecked")
 	protected <R extends ACell> Context<R> withAccountStatus(Address target, AccountStatus accountStatus) {
-		return withState(getState().putAccount(target, accountStatus));
+		return (Context<R>) withChainState(chainState.withAccount(target, accountStatus));
 	}
 
 	/**
@@ -2155,7 +2449,9 @@ public class Context<T extends ACell> extends AObject {
 	 * @return A new forked Context
 	 */
 	public <R extends ACell> Context<R> fork() {
-		return new Context<R>(chainState, juice, localBindings, null,depth, null,log,compilerState);
+		Context<R> ctx=new Context<R>(chainState, juice, locals.toVector(), null,depth, null,log,compilerState);
+		ctx.deadline=deadline;
+		return ctx;
 	}
 
 	@Override
@@ -2263,6 +2559,8 @@ public class Context<T extends ACell> extends AObject {
 				if (!(maybeAddress instanceof Address)) return null;
 				addr = (Address)maybeAddress;
 				me = lookupMeta((Address)maybeAddress,sym);
+				// expansion depends on the metadata of another Account
+				if (!Init.CORE_ADDRESS.equals(addr)) externalExpansion=true;
 			} else {
 				return null;
 			}
@@ -2279,11 +2577,24 @@ public class Context<T extends ACell> extends AObject {
 			// expand form using specified expander and continuation expander
 			ACell v = lookupValue(addr,sym);
 			AFn<ACell> expander = RT.castFunction(v);
-			if (expander != null) return expander;
+			if (expander != null) {
+				// expanders outside the core environment may depend on arbitrary State
+				if ((addr==null)&&!isCoreDefinition(sym)) externalExpansion=true;
+				return expander;
+			}
 		}
 		return null;
 	}
 
-
+	/**
+	 * Checks if a Symbol resolved in the current context is a core definition, i.e. defined
+	 * in the core environment and not shadowed by the current environment.
+	 * @param sym Symbol to check
+	 * @return true if core definition, false otherwise
+	 */
+	private boolean isCoreDefinition(Symbol sym) {
+		if (!getEnvironment().containsKey(sym)) return true;
+		return Init.CORE_ADDRESS.equals(getAddress());
+	}
 
 }
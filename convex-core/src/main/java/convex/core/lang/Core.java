@@ -3,6 +3,7 @@ package convex.core.lang;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -46,6 +47,7 @@ import convex.core.data.prim.CVMChar;
 import convex.core.data.prim.CVMDouble;
 import convex.core.data.prim.CVMLong;
 import convex.core.data.type.Types;
+import convex.core.init.Snapshot;
 import convex.core.lang.impl.AExceptional;
 import convex.core.lang.impl.CoreFn;
 import convex.core.lang.impl.CorePred;
@@ -2703,26 +2705,58 @@ public class Core {
 
 
 
-	static {
-		// Set up `convex.core` environment
-		AHashMap<Symbol, ACell> coreEnv = Maps.empty();
-		AHashMap<Symbol, AHashMap<ACell,ACell>> coreMeta = Maps.empty();
+	/**
+	 * Intrinsic core definitions by symbol, available before the core environment is built
+	 */
+	private static final HashMap<Symbol, ACell> INTRINSICS = new HashMap<>();
 
-		try {
+	/**
+	 * Gets an intrinsic core definition, as referenced by encodings of core functions.
+	 * Available during core initialisation, unlike ENVIRONMENT.
+	 *
+	 * @param sym Symbol of core definition
+	 * @return Core definition, or null if not found
+	 */
+	public static ACell getCoreDef(Symbol sym) {
+		return INTRINSICS.get(sym);
+	}
 
-			// Register all objects from registered runtime
-			for (ACell o : tempReg) {
-				coreEnv = register(coreEnv, o);
-			}
+	/**
+	 * Builds the core environment and metadata by compiling and executing the core
+	 * library sources. Normally the core environment is loaded from the pre-built
+	 * Snapshot instead, which must be equal to the result of this function.
+	 *
+	 * @return Context containing core environment and metadata
+	 * @throws IOException If core library sources cannot be read
+	 */
+	public static Context<?> bootstrap() throws IOException {
+		AHashMap<Symbol, ACell> coreEnv = Maps.empty();
 
-			Context<?> ctx = registerCoreCode(coreEnv);
-			ctx=applyDocumentation(ctx);
+		// Register all objects from registered runtime
+		for (ACell o : tempReg) {
+			coreEnv = register(coreEnv, o);
+		}
+
+		Context<?> ctx = registerCoreCode(coreEnv);
+		return applyDocumentation(ctx);
+	}
 
-			coreEnv = ctx.getEnvironment();
-			coreMeta = ctx.getMetadata();
+	static {
+		for (ACell o : tempReg) {
+			INTRINSICS.put(symbolFor(o), o);
+		}
 
-			METADATA = coreMeta;
-			ENVIRONMENT = coreEnv;
+		// Set up `convex.core` environment
+		try {
+			Snapshot snapshot = Snapshot.get();
+			if (snapshot != null) {
+				ENVIRONMENT = snapshot.getCoreEnvironment();
+				METADATA = snapshot.getCoreMetadata();
+			} else {
+				Context<?> ctx = bootstrap();
+				ENVIRONMENT = ctx.getEnvironment();
+				METADATA = ctx.getMetadata();
+			}
 		} catch (Throwable e) {
 			e.printStackTrace();
 			throw new Error("Error initialising core!",e);
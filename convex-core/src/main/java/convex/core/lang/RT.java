@@ -1589,23 +1589,22 @@ public class RT {
 			return (T) CVMBool.create((Boolean) o);
 		if (o instanceof List) {
 			List<?> l=(List<?>)o;
-			AVector<?> v=Vectors.empty(); 
+			ACell[] cells=new ACell[l.size()];
+			int i=0;
 			for (Object val: l) {
-				v=v.conj(cvm(val));
+				cells[i++]=cvm(val);
 			}
-			return (T)v;
+			return (T)Vectors.create(cells);
 		}
 		if (o instanceof Map) {
 			Map<?,?> m= (Map<?,?>) o;
-			AMap<ACell,ACell> cm=Maps.empty();
+			ACell[] kvs=new ACell[m.size()*2];
+			int i=0;
 			for (Map.Entry<?, ?> me: m.entrySet()) {
-				Object k=me.getKey();
-				Object v=me.getValue();
-				ACell cvmk=cvm(k);
-				ACell cvmv=cvm(v);
-				cm=cm.assoc(cvmk, cvmv);
+				kvs[i++]=cvm(me.getKey());
+				kvs[i++]=cvm(me.getValue());
 			}
-			return (T) cm;
+			return (T) Maps.create(kvs);
 		}
 		
 		throw new IllegalArgumentException("Can't convert to CVM type with class: " + Utils.getClassName(o));
@@ -5,12 +5,12 @@ import java.io.IOException;
 import convex.core.data.ACell;
 import convex.core.data.AList;
 import convex.core.data.Syntax;
-import convex.core.lang.reader.AntlrReader;
+import convex.core.lang.reader.FastReader;
 import convex.core.util.Utils;
 
 /**
- * Parboiled Parser implementation which reads source code and produces a tree
- * of parsed objects.
+ * Reader which reads source code and produces a tree of parsed objects. Uses the
+ * hand-written FastReader, which accepts the same grammar as AntlrReader.
  * 
  * Supports reading in either raw form (ACell) mode or wrapping with Syntax Objects. The
  * latter is required for source references etc.
@@ -51,7 +51,7 @@ public class Reader {
 	 * @return List of Syntax Objects
 	 */
 	public static AList<ACell> readAll(String source) {
-		return AntlrReader.readAll(source);
+		return FastReader.readAll(source);
 	}
 
 	/**
@@ -61,7 +61,7 @@ public class Reader {
 	 * @return Parsed form (may be nil)
 	 */
 	public static ACell read(java.io.Reader source) throws IOException {
-		return AntlrReader.read(source);
+		return FastReader.read(source);
 	}
 	
 	/**
@@ -72,7 +72,7 @@ public class Reader {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <R extends ACell> R read(String source) {
-		return (R) AntlrReader.read(source);
+		return (R) FastReader.read(source);
 	}
 
 }
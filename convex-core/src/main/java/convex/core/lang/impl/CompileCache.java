@@ -0,0 +1,185 @@
+package convex.core.lang.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import convex.core.Constants;
+import convex.core.data.ACell;
+import convex.core.data.AHashMap;
+import convex.core.data.Address;
+import convex.core.data.Hash;
+import convex.core.data.Symbol;
+import convex.core.lang.AOp;
+
+/**
+ * Bounded cache of compiled Ops for top level forms, e.g. transactions and queries.
+ *
+ * Entries are keyed by the Hash of the form and the Address it was compiled for. Since
+ * expansion and compilation depend on the environment and metadata of that Address and
+ * of the core Account, these are recorded with each entry and checked by identity on lookup.
+ * Any redefinition therefore causes a miss, and the entry is replaced when recompiled.
+ *
+ * Entries are evicted in LRU order. Thread safe.
+ */
+public final class CompileCache {
+
+	/**
+	 * Shared compile cache, used for all top level expansion and compilation
+	 */
+	public static final CompileCache INSTANCE = new CompileCache(Constants.COMPILE_CACHE_SIZE);
+
+	private static final class Key {
+		private final Hash hash;
+		private final Address address;
+
+		private Key(Hash hash, Address address) {
+			this.hash = hash;
+			this.address = address;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key) o;
+			return hash.equals(k.hash) && address.equals(k.address);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash.hashCode() + 31 * address.hashCode();
+		}
+	}
+
+	/**
+	 * Compiled Op together with the environments it was compiled against
+	 */
+	public static final class Entry {
+		private final AHashMap<Symbol, ACell> env;
+		private final AHashMap<Symbol, AHashMap<ACell, ACell>> meta;
+		private final AHashMap<Symbol, ACell> coreEnv;
+		private final AHashMap<Symbol, AHashMap<ACell, ACell>> coreMeta;
+		private final AOp<?> op;
+		private final long juice;
+
+		public Entry(AHashMap<Symbol, ACell> env, AHashMap<Symbol, AHashMap<ACell, ACell>> meta,
+				AHashMap<Symbol, ACell> coreEnv, AHashMap<Symbol, AHashMap<ACell, ACell>> coreMeta, AOp<?> op,
+				long juice) {
+			this.env = env;
+			this.meta = meta;
+			this.coreEnv = coreEnv;
+			this.coreMeta = coreMeta;
+			this.op = op;
+			this.juice = juice;
+		}
+
+		/**
+		 * Checks if this entry was compiled against exactly the given environments
+		 * @return true if valid for the given environments, false otherwise
+		 */
+		private boolean matches(AHashMap<Symbol, ACell> env, AHashMap<Symbol, AHashMap<ACell, ACell>> meta,
+				AHashMap<Symbol, ACell> coreEnv, AHashMap<Symbol, AHashMap<ACell, ACell>> coreMeta) {
+			return (this.env == env) && (this.meta == meta) && (this.coreEnv == coreEnv) && (this.coreMeta == coreMeta);
+		}
+
+		/**
+		 * Gets the compiled Op
+		 * @return Op
+		 */
+		public AOp<?> getOp() {
+			return op;
+		}
+
+		/**
+		 * Gets the juice consumed by expansion and compilation
+		 * @return Juice
+		 */
+		public long getJuice() {
+			return juice;
+		}
+	}
+
+	private final LinkedHashMap<Key, Entry> entries;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * Creates a compile cache
+	 * @param capacity Maximum number of entries
+	 */
+	public CompileCache(int capacity) {
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the entry for a form compiled for a given Address, if it is valid for the given
+	 * environments and can be afforded with the available juice. Counts a hit or miss.
+	 * @param hash Hash of form
+	 * @param address Address the form is compiled for
+	 * @param env Current environment of Address
+	 * @param meta Current metadata of Address
+	 * @param coreEnv Current environment of core Account
+	 * @param coreMeta Current metadata of core Account
+	 * @param juice Juice available
+	 * @return Entry, or null if no usable entry is cached
+	 */
+	public synchronized Entry get(Hash hash, Address address, AHashMap<Symbol, ACell> env,
+			AHashMap<Symbol, AHashMap<ACell, ACell>> meta, AHashMap<Symbol, ACell> coreEnv,
+			AHashMap<Symbol, AHashMap<ACell, ACell>> coreMeta, long juice) {
+		Entry e = entries.get(new Key(hash, address));
+		if ((e == null) || !e.matches(env, meta, coreEnv, coreMeta) || (e.juice > juice)) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return e;
+	}
+
+	/**
+	 * Adds an entry to the cache, evicting the least recently used entry if full
+	 * @param hash Hash of form
+	 * @param address Address the form is compiled for
+	 * @param e Entry to add
+	 */
+	public synchronized void put(Hash hash, Address address, Entry e) {
+		entries.put(new Key(hash, address), e);
+	}
+
+	/**
+	 * Gets the number of entries currently cached
+	 * @return Number of entries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the number of successful cache lookups
+	 * @return Hit count
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of cache lookups that required expansion and compilation
+	 * @return Miss count
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Removes all entries
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+}
@@ -86,19 +86,20 @@ public class Fn<T extends ACell> extends AClosure<T> {
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	public Context<T> invoke(Context context, ACell[] args) {
-		// update local bindings for the duration of this function call
-		final AVector<ACell> savedBindings = context.getLocalBindings();
+		// enter a new frame of local bindings for the duration of this function call
+		final LocalStack savedLocals = context.getLocals();
+		final long mark = savedLocals.mark();
 
 		// update to correct lexical environment, then bind function parameters
-		context = context.withLocalBindings(lexicalEnv);
+		savedLocals.enter(lexicalEnv);
 
 		Context<T> boundContext = context.updateBindings(params, args);
-		if (boundContext.isExceptional()) return boundContext.withLocalBindings(savedBindings);
+		if (boundContext.isExceptional()) return boundContext.restoreLocals(savedLocals, mark);
 
 		Context<T> ctx = boundContext.execute(body);
 
 		// return with restored bindings
-		return ctx.withLocalBindings(savedBindings);
+		return ctx.restoreLocals(savedLocals, mark);
 	}
 
 	@Override
@@ -196,7 +197,7 @@ public class Fn<T extends ACell> extends AClosure<T> {
 		AOp<T> newBody = body.updateRefs(func);
 		AVector<ACell> newLexicalEnv = lexicalEnv.updateRefs(func);
 		if ((params == newParams) && (body == newBody) && (lexicalEnv == newLexicalEnv)) return this;
-		return new Fn<>(newParams, newBody, lexicalEnv);
+		return new Fn<>(newParams, newBody, newLexicalEnv);
 	}
 
 	@Override
@@ -0,0 +1,175 @@
+package convex.core.lang.impl;
+
+import java.util.Arrays;
+
+import convex.core.data.ACell;
+import convex.core.data.AVector;
+
+/**
+ * Mutable stack of local bindings used during CVM execution.
+ *
+ * Local positions are resolved at compile time. Each function call enters a new frame, where
+ * positions below the size of the captured closure environment refer to the (immutable) captured
+ * Vector, and subsequent positions refer to slots in a flat array. A persistent Vector is only
+ * created when a closure captures the current bindings.
+ *
+ * Binding scopes (let, loop, fn, query, eval) take a mark on entry and restore it on exit. Any
+ * changes made with set! since the mark are undone, so that set! never escapes the immediately
+ * surrounding binding form.
+ *
+ * Not thread safe: owned by a single Context.
+ */
+public final class LocalStack {
+
+	private static final int INITIAL_SIZE = 16;
+
+	// Undo codes: >=0 for a slot index, UNDO_CAPTURED for the captured environment,
+	// and <=UNDO_FRAME for a frame (encoding the previous frame base)
+	private static final int UNDO_CAPTURED = -1;
+	private static final int UNDO_FRAME = -2;
+
+	private AVector<ACell> captured;
+	private long capturedCount;
+
+	private ACell[] slots;
+	private int base = 0;
+	private int top = 0;
+
+	private int[] undoCodes;
+	private ACell[] undoValues;
+	private int undoTop = 0;
+
+	/**
+	 * Creates a LocalStack with the given bindings
+	 * @param bindings Initial bindings
+	 */
+	public LocalStack(AVector<ACell> bindings) {
+		setCaptured(bindings);
+	}
+
+	private void setCaptured(AVector<ACell> env) {
+		captured = env;
+		capturedCount = env.count();
+	}
+
+	/**
+	 * Gets the number of bindings in the current frame
+	 * @return Number of bindings
+	 */
+	public long count() {
+		return capturedCount + (top - base);
+	}
+
+	/**
+	 * Gets the binding at the given position in the current frame. Position must be valid.
+	 * @param position Position of binding
+	 * @return Bound value
+	 */
+	public ACell get(long position) {
+		if (position < capturedCount) return captured.get(position);
+		return slots[base + (int) (position - capturedCount)];
+	}
+
+	/**
+	 * Adds a binding to the current frame
+	 * @param value Value to bind
+	 */
+	public void push(ACell value) {
+		if (slots == null) {
+			slots = new ACell[INITIAL_SIZE];
+		} else if (top >= slots.length) {
+			slots = Arrays.copyOf(slots, slots.length * 2);
+		}
+		slots[top++] = value;
+	}
+
+	/**
+	 * Updates the binding at the given position in the current frame. Position must be valid.
+	 * The change is undone when the current binding scope is restored.
+	 * @param position Position of binding
+	 * @param value New value
+	 */
+	public void set(long position, ACell value) {
+		if (position < capturedCount) {
+			pushUndo(UNDO_CAPTURED, captured);
+			setCaptured(captured.assoc(position, value));
+		} else {
+			int ix = base + (int) (position - capturedCount);
+			pushUndo(ix, slots[ix]);
+			slots[ix] = value;
+		}
+	}
+
+	/**
+	 * Enters a new frame with the given captured environment, e.g. for a function call.
+	 * Must be preceded by a mark, which will exit the frame when restored.
+	 * @param env Captured environment for the new frame
+	 */
+	public void enter(AVector<ACell> env) {
+		pushUndo(UNDO_FRAME - base, captured);
+		base = top;
+		setCaptured(env);
+	}
+
+	/**
+	 * Gets a mark for the current binding scope
+	 * @return Mark which can be passed to restore(...)
+	 */
+	public long mark() {
+		return (((long) top) << 32) | undoTop;
+	}
+
+	/**
+	 * Restores the binding scope to a previous mark, discarding any later bindings and undoing
+	 * any later updates.
+	 * @param mark Mark obtained from mark()
+	 */
+	@SuppressWarnings("unchecked")
+	public void restore(long mark) {
+		int markUndo = (int) mark;
+		while (undoTop > markUndo) {
+			undoTop--;
+			int code = undoCodes[undoTop];
+			ACell value = undoValues[undoTop];
+			undoValues[undoTop] = null;
+			if (code >= 0) {
+				slots[code] = value;
+			} else {
+				if (code <= UNDO_FRAME) base = UNDO_FRAME - code;
+				setCaptured((AVector<ACell>) value);
+			}
+		}
+
+		int markTop = (int) (mark >>> 32);
+		if (markTop < top) {
+			// clear discarded slots so values can be garbage collected
+			Arrays.fill(slots, markTop, top, null);
+			top = markTop;
+		}
+	}
+
+	/**
+	 * Gets the bindings of the current frame as a persistent Vector, e.g. for capture by a closure
+	 * @return Vector of bindings
+	 */
+	public AVector<ACell> toVector() {
+		AVector<ACell> result = captured;
+		for (int i = base; i < top; i++) {
+			result = result.conj(slots[i]);
+		}
+		return result;
+	}
+
+	private void pushUndo(int code, ACell value) {
+		if (undoCodes == null) {
+			undoCodes = new int[INITIAL_SIZE];
+			undoValues = new ACell[INITIAL_SIZE];
+		} else if (undoTop >= undoCodes.length) {
+			undoCodes = Arrays.copyOf(undoCodes, undoCodes.length * 2);
+			undoValues = Arrays.copyOf(undoValues, undoValues.length * 2);
+		}
+		undoCodes[undoTop] = code;
+		undoValues[undoTop] = value;
+		undoTop++;
+	}
+}
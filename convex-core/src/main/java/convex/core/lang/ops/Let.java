@@ -15,6 +15,7 @@ import convex.core.lang.Context;
 import convex.core.lang.Juice;
 import convex.core.lang.Ops;
 import convex.core.lang.RT;
+import convex.core.lang.impl.LocalStack;
 import convex.core.lang.impl.RecurValue;
 
 /**
@@ -83,7 +84,8 @@ public class Let<T extends ACell> extends AMultiOp<T> {
 		Context<?> ctx = context.consumeJuice(Juice.LET);
 		if (ctx.isExceptional()) return (Context<T>) ctx;
 
-		AVector<ACell> savedEnv = ctx.getLocalBindings();
+		LocalStack savedLocals = ctx.getLocals();
+		long mark = savedLocals.mark();
 		
 		// execute each operation for bound values in turn
 		for (int i = 0; i < bindingCount; i++) {
@@ -92,7 +94,7 @@ public class Let<T extends ACell> extends AMultiOp<T> {
 			if (ctx.isExceptional()) {
 				// return if exception during initial binding. 
 				// No chance to recur since we didn't enter loop body
-				return ctx.withLocalBindings(savedEnv);
+				return ctx.restoreLocals(savedLocals, mark);
 			}
 		}
 
@@ -112,7 +114,7 @@ public class Let<T extends ACell> extends AMultiOp<T> {
 				}
 
 				// restore old lexical environment, then add back new ones
-				ctx=ctx.withLocalBindings(savedEnv);
+				ctx = ctx.restoreLocals(savedLocals, mark);
 				ctx = ctx.updateBindings(symbols, newArgs);
 				if (ctx.isExceptional()) break;
 
@@ -121,7 +123,7 @@ public class Let<T extends ACell> extends AMultiOp<T> {
 			}
 		}
 		// restore old lexical environment before returning
-		return ctx.withLocalBindings(savedEnv);
+		return ctx.restoreLocals(savedLocals, mark);
 	}
 
 	public Context<?> executeBody(Context<?> ctx) {
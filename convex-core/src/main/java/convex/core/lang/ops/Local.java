@@ -4,7 +4,6 @@ import java.nio.ByteBuffer;
 
 import convex.core.ErrorCodes;
 import convex.core.data.ACell;
-import convex.core.data.AVector;
 import convex.core.data.BlobBuilder;
 import convex.core.data.Format;
 import convex.core.data.IRefFunction;
@@ -14,6 +13,7 @@ import convex.core.lang.AOp;
 import convex.core.lang.Context;
 import convex.core.lang.Juice;
 import convex.core.lang.Ops;
+import convex.core.lang.impl.LocalStack;
 
 /**
  * Op to look up a local value from the lexical environment
@@ -48,12 +48,12 @@ public class Local<T extends ACell> extends AOp<T> {
 	@Override
 	public <R extends ACell> Context<T> execute(Context<R> context) {
 		Context<T> ctx=(Context<T>) context;
-		AVector<ACell> env=ctx.getLocalBindings();
-		long ec=env.count();
+		LocalStack locals=ctx.getLocals();
+		long ec=locals.count();
 		if ((position<0)||(position>=ec)) {
 			return ctx.withError(ErrorCodes.BOUNDS,"Bad position for Local: "+position);
 		}
-		T result = (T)env.get(position);
+		T result = (T)locals.get(position);
 		return (Context<T>) ctx.withResult(Juice.LOOKUP,result);
 	}
 
@@ -4,10 +4,12 @@ import java.nio.ByteBuffer;
 
 import convex.core.ErrorCodes;
 import convex.core.data.ACell;
+import convex.core.data.AHashMap;
 import convex.core.data.Address;
 import convex.core.data.BlobBuilder;
 import convex.core.data.Format;
 import convex.core.data.IRefFunction;
+import convex.core.data.MapEntry;
 import convex.core.data.Ref;
 import convex.core.data.Symbol;
 import convex.core.exceptions.BadFormatException;
@@ -25,6 +27,9 @@ import convex.core.lang.RT;
  * the current environment.
  * 
  * Consumes juice for lookup when executed.
+ * 
+ * Keeps an inline cache of the last resolved environment entry. Environments are immutable, so
+ * the cache is valid whenever the same environment (by identity) is seen again.
  *
  * @param <T> Result type of Op
  */
@@ -32,6 +37,32 @@ public class Lookup<T extends ACell> extends AOp<T> {
 	private final AOp<Address> address;
 	private final Symbol symbol;
 
+	/**
+	 * Inline cache for the last successful lookup. Not part of the encoding. May be 
+	 * replaced concurrently, but each instance is immutable so is always consistent.
+	 */
+	private Cache cache;
+
+	private static final class Cache {
+		/**
+		 * Environment in which lookup was performed
+		 */
+		final AHashMap<Symbol,ACell> env;
+		
+		/**
+		 * Aliased environment in which entry was found, or null if found in env
+		 */
+		final AHashMap<Symbol,ACell> aliasEnv;
+		
+		final MapEntry<Symbol,ACell> entry;
+
+		Cache(AHashMap<Symbol,ACell> env, AHashMap<Symbol,ACell> aliasEnv, MapEntry<Symbol,ACell> entry) {
+			this.env=env;
+			this.aliasEnv=aliasEnv;
+			this.entry=entry;
+		}
+	}
+
 	private Lookup(AOp<Address> address,Symbol symbol) {
 		this.address=address;
 		this.symbol = symbol;
@@ -72,7 +103,46 @@ public class Lookup<T extends ACell> extends AOp<T> {
 		
 		// Do a dynamic lookup, with address if specified or address from current context otherwise
 		namespaceAddress=(address==null)?context.getAddress():namespaceAddress;
-		return rctx.lookupDynamic(namespaceAddress,symbol).consumeJuice(Juice.LOOKUP_DYNAMIC);
+		AHashMap<Symbol,ACell> env=rctx.getEnvironment(namespaceAddress);
+		if (env==null) {
+			rctx=rctx.withError(ErrorCodes.NOBODY,"No account found for: "+symbol.toString());
+			return rctx.consumeJuice(Juice.LOOKUP_DYNAMIC);
+		}
+		
+		MapEntry<Symbol,ACell> entry=lookupEntry(rctx,env);
+		if (entry==null) {
+			rctx=rctx.withError(ErrorCodes.UNDECLARED,symbol.toString());
+		} else {
+			rctx=rctx.withResult(entry.getValue());
+		}
+		return rctx.consumeJuice(Juice.LOOKUP_DYNAMIC);
+	}
+
+	/**
+	 * Resolves the environment entry for this Lookup, using the inline cache if possible
+	 * @param ctx Context in which lookup is performed
+	 * @param env Environment of target Account
+	 * @return Environment entry, or null if undeclared
+	 */
+	private MapEntry<Symbol,ACell> lookupEntry(Context<?> ctx, AHashMap<Symbol,ACell> env) {
+		Cache c=cache;
+		if ((c!=null)&&(c.env==env)) {
+			if (c.aliasEnv==null) return c.entry;
+			
+			// symbol is not defined in env, so valid if aliased environment is unchanged
+			if (c.aliasEnv==ctx.getAliasedEnvironment(env)) return c.entry;
+		}
+		
+		MapEntry<Symbol,ACell> entry=env.getEntry(symbol);
+		AHashMap<Symbol,ACell> aliasEnv=null;
+		if (entry==null) {
+			aliasEnv=ctx.getAliasedEnvironment(env);
+			if (aliasEnv==null) return null;
+			entry=aliasEnv.getEntry(symbol);
+			if (entry==null) return null;
+		}
+		cache=new Cache(env,aliasEnv,entry);
+		return entry;
 	}
 
 	@Override
@@ -14,6 +14,7 @@ import convex.core.lang.AOp;
 import convex.core.lang.Context;
 import convex.core.lang.Juice;
 import convex.core.lang.Ops;
+import convex.core.lang.impl.LocalStack;
 
 /**
  * Op for executing a sequence of child operations in order in query mode (no state changes)
@@ -55,7 +56,8 @@ public class Query<T extends ACell> extends AMultiOp<T> {
 		Context<T> ctx = (Context<T>) context.consumeJuice(Juice.QUERY);
 		if (ctx.isExceptional()) return ctx;
 		
-		AVector<ACell> savedBindings=context.getLocalBindings();
+		LocalStack savedLocals=context.getLocals();
+		long mark=savedLocals.mark();
 
 		// execute each operation in turn
 		// TODO: early return
@@ -68,7 +70,7 @@ public class Query<T extends ACell> extends AMultiOp<T> {
 		}
 		// restore state unconditionally.
 		ctx=ctx.withState(savedState);
-		ctx=ctx.withLocalBindings(savedBindings);
+		ctx=ctx.restoreLocals(savedLocals,mark);
 		return ctx;
 	}
 
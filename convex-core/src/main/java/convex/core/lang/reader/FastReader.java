@@ -0,0 +1,671 @@
+package convex.core.lang.reader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import convex.core.data.ACell;
+import convex.core.data.AHashMap;
+import convex.core.data.AList;
+import convex.core.data.Address;
+import convex.core.data.Blob;
+import convex.core.data.Keyword;
+import convex.core.data.Lists;
+import convex.core.data.Maps;
+import convex.core.data.Sets;
+import convex.core.data.Strings;
+import convex.core.data.Symbol;
+import convex.core.data.Syntax;
+import convex.core.data.Vectors;
+import convex.core.data.prim.AInteger;
+import convex.core.data.prim.CVMBool;
+import convex.core.data.prim.CVMChar;
+import convex.core.data.prim.CVMDouble;
+import convex.core.exceptions.ParseException;
+import convex.core.lang.Symbols;
+import convex.core.util.Utils;
+
+/**
+ * Hand-written single pass reader for Convex Lisp.
+ *
+ * Accepts the same grammar as the ANTLR grammar in Convex.g4 and produces the same
+ * forms as AntlrReader, but scans tokens directly from the source String without
+ * building a token stream or parse tree. Token boundaries follow the ANTLR lexer
+ * rules, i.e. the longest match is taken, with earlier rules winning ties.
+ *
+ * Unlike AntlrReader, characters that are not valid in any token and stray
+ * closing delimiters in readAll are reported as a ParseException rather than
+ * being skipped.
+ */
+public class FastReader {
+
+	// Token types, as defined in Convex.g4
+	private static final int EOF = 0;
+	private static final int LPAREN = 1;
+	private static final int RPAREN = 2;
+	private static final int LBRACKET = 3;
+	private static final int RBRACKET = 4;
+	private static final int LBRACE = 5;
+	private static final int RBRACE = 6;
+	private static final int HASH = 7;
+	private static final int META = 8;
+	private static final int QUOTING = 9;
+	private static final int COMMENTED = 10;
+	private static final int NIL = 11;
+	private static final int BOOL = 12;
+	private static final int DIGITS = 13;
+	private static final int SIGNED_DIGITS = 14;
+	private static final int DOUBLE = 15;
+	private static final int BLOB = 16;
+	private static final int STRING = 17;
+	private static final int CHARACTER = 18;
+	private static final int KEYWORD = 19;
+	private static final int SYMBOL = 20;
+	private static final int SYMBOL_PATH = 21;
+
+	private static final String[] SPECIAL_CHARACTERS = { "newline", "return", "space", "tab", "formfeed", "backspace" };
+
+	private final String source;
+	private final int length;
+
+	/**
+	 * Scan position, i.e. end of current token
+	 */
+	private int pos = 0;
+
+	// Current token
+	private int type;
+	private int start;
+
+	/**
+	 * True if the current STRING token contains escape sequences
+	 */
+	private boolean escaped;
+
+	private FastReader(String source) {
+		this.source = source;
+		this.length = source.length();
+	}
+
+	/**
+	 * Reads a single form from a String. The String must contain exactly one form,
+	 * optionally surrounded by whitespace and comments.
+	 *
+	 * @param source Source String
+	 * @return Parsed form (may be nil)
+	 */
+	public static ACell read(String source) {
+		FastReader r = new FastReader(source);
+		ACell form = r.readForm();
+		r.next();
+		if (r.type != EOF) throw r.error("Unexpected input after form");
+		return form;
+	}
+
+	/**
+	 * Reads a single form from a java.io.Reader
+	 *
+	 * @param source Reader to read source from
+	 * @return Parsed form (may be nil)
+	 * @throws IOException If reading fails
+	 */
+	public static ACell read(java.io.Reader source) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[4096];
+		int n;
+		while ((n = source.read(buf)) > 0) {
+			sb.append(buf, 0, n);
+		}
+		return read(sb.toString());
+	}
+
+	/**
+	 * Reads all forms from a String
+	 *
+	 * @param source Source String
+	 * @return List of parsed forms
+	 */
+	public static AList<ACell> readAll(String source) {
+		FastReader r = new FastReader(source);
+		ArrayList<ACell> forms = r.readForms(EOF);
+		return Lists.create(forms);
+	}
+
+	// ====================================================================
+	// Parser
+
+	/**
+	 * Reads the next form
+	 */
+	private ACell readForm() {
+		next();
+		return form();
+	}
+
+	/**
+	 * Reads forms up to the given closing token, which is consumed. Commented forms are skipped.
+	 */
+	private ArrayList<ACell> readForms(int close) {
+		ArrayList<ACell> elements = new ArrayList<>();
+		while (true) {
+			next();
+			if (type == close) return elements;
+			if (type == COMMENTED) {
+				readForm();
+				continue;
+			}
+			elements.add(form());
+		}
+	}
+
+	/**
+	 * Gets the form starting with the current token
+	 */
+	private ACell form() {
+		switch (type) {
+		case NIL:
+			return null;
+		case BOOL:
+			return (source.charAt(start) == 't') ? CVMBool.TRUE : CVMBool.FALSE;
+		case DIGITS:
+		case SIGNED_DIGITS: {
+			String s = text();
+			try {
+				return AInteger.parse(s);
+			} catch (NumberFormatException e) {
+				throw new ParseException("Unparseable long value: " + s, e);
+			}
+		}
+		case DOUBLE:
+			return CVMDouble.parse(text());
+		case BLOB: {
+			Blob b = Blob.fromHex(source.substring(start + 2, pos));
+			if (b == null) throw error("Invalid Blob syntax: " + text());
+			return b;
+		}
+		case STRING:
+			return Strings.create(escaped ? unescape(start + 1, pos - 1) : source.substring(start + 1, pos - 1));
+		case CHARACTER: {
+			CVMChar c = CVMChar.parse(text());
+			if (c == null) throw error("Bad character literal format: " + text());
+			return c;
+		}
+		case KEYWORD: {
+			Keyword k = Keyword.create(source.substring(start + 1, pos));
+			if (k == null) throw error("Bad keyword format: " + text());
+			return k;
+		}
+		case SYMBOL: {
+			Symbol sym = Symbol.create(text());
+			if (sym == null) throw error("Bad symbol format: " + text());
+			return sym;
+		}
+		case SYMBOL_PATH:
+			return path();
+		case HASH:
+			return hashForm();
+		case LPAREN:
+			return Lists.create(readForms(RPAREN));
+		case LBRACKET:
+			return Vectors.create(readForms(RBRACKET));
+		case LBRACE: {
+			ArrayList<ACell> elements = readForms(RBRACE);
+			if (Utils.isOdd(elements.size())) {
+				throw error("Map requires an even number of forms");
+			}
+			return Maps.create(elements.toArray(new ACell[elements.size()]));
+		}
+		case META: {
+			AHashMap<ACell, ACell> meta = ReaderUtils.interpretMetadata(readForm());
+			ACell value = readForm();
+			return Syntax.create(value, meta);
+		}
+		case QUOTING: {
+			Symbol qsym = quotingSymbol();
+			ACell form = readForm();
+			return Lists.of(qsym, form);
+		}
+		case EOF:
+			throw error("Unexpected end of input");
+		default:
+			throw error("Unexpected token: " + text());
+		}
+	}
+
+	/**
+	 * Gets a form starting with a HASH token: an Address, a special literal or a set
+	 */
+	private ACell hashForm() {
+		next();
+		switch (type) {
+		case DIGITS: {
+			String s = "#" + text();
+			Address addr = Address.parse(s);
+			if (addr == null) throw error("Bad Address format: " + s);
+			return addr;
+		}
+		case HASH: {
+			next();
+			if (type != SYMBOL) throw error("Expected symbol in special literal");
+			String s = "##" + text();
+			ACell special = ReaderUtils.specialLiteral(s);
+			if (special == null) throw error("Invalid special literal: " + s);
+			return special;
+		}
+		case LBRACE:
+			return Sets.fromCollection(readForms(RBRACE));
+		default:
+			throw error("Unexpected token after #: " + text());
+		}
+	}
+
+	private Symbol quotingSymbol() {
+		switch (source.charAt(start)) {
+		case '\'':
+			return Symbols.QUOTE;
+		case '`':
+			return Symbols.QUASIQUOTE;
+		default:
+			return (pos - start == 2) ? Symbols.UNQUOTE_SPLICING : Symbols.UNQUOTE;
+		}
+	}
+
+	/**
+	 * Gets a lookup form for the current SYMBOL_PATH token
+	 */
+	private ACell path() {
+		// path head, either Address or Symbol
+		int p = start;
+		int headEnd = (source.charAt(p) == '#') ? digitsEnd(p + 1) : nameEnd(p);
+		ACell lookup;
+		if (source.charAt(p) == '#') {
+			lookup = Address.parse(source.substring(p, headEnd));
+		} else if (source.charAt(p) == '/') {
+			lookup = null; // a path cannot start with '/'
+		} else {
+			lookup = Symbol.create(source.substring(p, headEnd));
+		}
+		if (lookup == null) throw error("Path must start with Address or Symbol: " + text());
+
+		// path elements, each preceded by '/'
+		p = headEnd;
+		while (p < pos) {
+			int e = nameEnd(p + 1);
+			Symbol sym = Symbol.create(source.substring(p + 1, e));
+			if (sym == null) throw error("Expected path element to be a symbol in: " + text());
+			lookup = Lists.of(Symbols.LOOKUP, lookup, sym);
+			p = e;
+		}
+		return lookup;
+	}
+
+	// ====================================================================
+	// Lexer
+
+	/**
+	 * Scans the next token, skipping whitespace and comments
+	 */
+	private void next() {
+		skipTrash();
+		start = pos;
+		if (pos >= length) {
+			type = EOF;
+			return;
+		}
+
+		char c = source.charAt(pos);
+		switch (c) {
+		case '(': single(LPAREN); return;
+		case ')': single(RPAREN); return;
+		case '[': single(LBRACKET); return;
+		case ']': single(RBRACKET); return;
+		case '{': single(LBRACE); return;
+		case '}': single(RBRACE); return;
+		case '^': single(META); return;
+		case '\'':
+		case '`':
+			single(QUOTING);
+			return;
+		case '~':
+			type = QUOTING;
+			pos += ((pos + 1 < length) && (source.charAt(pos + 1) == '@')) ? 2 : 1;
+			return;
+		case '"':
+			scanString();
+			return;
+		case '\\':
+			scanCharacter();
+			return;
+		case ':':
+			scanKeyword();
+			return;
+		case '#':
+			scanHash();
+			return;
+		}
+
+		if (isDigit(c)) {
+			scanNumber();
+			return;
+		}
+		if ((c == '/') || isSymbolFirst(c)) {
+			scanSymbolic();
+			return;
+		}
+		throw error("Unexpected character '" + c + "'");
+	}
+
+	private void single(int tokenType) {
+		type = tokenType;
+		pos++;
+	}
+
+	private void skipTrash() {
+		while (pos < length) {
+			char c = source.charAt(pos);
+			if ((c == ' ') || (c == '\n') || (c == '\r') || (c == '\t') || (c == ',')) {
+				pos++;
+			} else if (c == ';') {
+				pos++;
+				while ((pos < length) && (source.charAt(pos) != '\n') && (source.charAt(pos) != '\r')) {
+					pos++;
+				}
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Scans a SYMBOL, SYMBOL_PATH, NIL, BOOL, or a negative number
+	 */
+	private void scanSymbolic() {
+		int nameEnd = nameEnd(pos);
+		int pathEnd = pathEnd(nameEnd);
+		if (pathEnd > nameEnd) {
+			type = SYMBOL_PATH;
+			pos = pathEnd;
+			return;
+		}
+
+		// A negative number is also a valid symbol, and wins if the same length
+		if ((source.charAt(pos) == '-') && (pos + 1 < length) && isDigit(source.charAt(pos + 1))) {
+			int numEnd = numberEnd(pos + 1, true);
+			if (numEnd == nameEnd) {
+				pos = numEnd;
+				return;
+			}
+		}
+
+		pos = nameEnd;
+		int n = nameEnd - start;
+		if ((n == 3) && source.startsWith("nil", start)) {
+			type = NIL;
+		} else if (((n == 4) && source.startsWith("true", start)) || ((n == 5) && source.startsWith("false", start))) {
+			type = BOOL;
+		} else {
+			type = SYMBOL;
+		}
+	}
+
+	/**
+	 * Scans DIGITS, DOUBLE or BLOB
+	 */
+	private void scanNumber() {
+		if ((source.charAt(pos) == '0') && (pos + 1 < length) && (source.charAt(pos + 1) == 'x')) {
+			int p = pos + 2;
+			while ((p < length) && isHexDigit(source.charAt(p))) {
+				p++;
+			}
+			type = BLOB;
+			pos = p;
+			return;
+		}
+		pos = numberEnd(pos, false);
+	}
+
+	/**
+	 * Gets the end of a number with digits starting at position p, and sets the token type
+	 */
+	private int numberEnd(int p, boolean negative) {
+		p = digitsEnd(p);
+		boolean isDouble = false;
+
+		// optional DECIMAL
+		if ((p + 1 < length) && (source.charAt(p) == '.') && isDigit(source.charAt(p + 1))) {
+			p = digitsEnd(p + 1);
+			isDouble = true;
+		}
+
+		// optional EPART
+		if ((p < length) && ((source.charAt(p) == 'e') || (source.charAt(p) == 'E'))) {
+			int q = p + 1;
+			if ((q < length) && (source.charAt(q) == '-')) q++;
+			if ((q < length) && isDigit(source.charAt(q))) {
+				p = digitsEnd(q);
+				isDouble = true;
+			}
+		}
+
+		type = isDouble ? DOUBLE : (negative ? SIGNED_DIGITS : DIGITS);
+		return p;
+	}
+
+	/**
+	 * Scans COMMENTED, SYMBOL_PATH starting with an Address, or HASH
+	 */
+	private void scanHash() {
+		int p = pos + 1;
+		if ((p < length) && (source.charAt(p) == '_')) {
+			type = COMMENTED;
+			pos = p + 1;
+			return;
+		}
+		if ((p < length) && isDigit(source.charAt(p))) {
+			int d = digitsEnd(p);
+			int pathEnd = pathEnd(d);
+			if (pathEnd > d) {
+				type = SYMBOL_PATH;
+				pos = pathEnd;
+				return;
+			}
+		}
+		type = HASH;
+		pos = p;
+	}
+
+	private void scanKeyword() {
+		int p = pos;
+		while ((p < length) && (source.charAt(p) == ':')) {
+			p++;
+		}
+		int e = nameEnd(p);
+		if (e < 0) throw error("Bad keyword format");
+		type = KEYWORD;
+		pos = e;
+	}
+
+	private void scanCharacter() {
+		int p = pos + 1;
+		if (p >= length) throw error("Bad character literal format");
+		type = CHARACTER;
+
+		// unicode escape
+		if ((source.charAt(p) == 'u') && (p + 5 <= length) && isHexDigit(source.charAt(p + 1))
+				&& isHexDigit(source.charAt(p + 2)) && isHexDigit(source.charAt(p + 3))
+				&& isHexDigit(source.charAt(p + 4))) {
+			pos = p + 5;
+			return;
+		}
+
+		// named special character
+		for (String name : SPECIAL_CHARACTERS) {
+			if (source.startsWith(name, p)) {
+				pos = p + name.length();
+				return;
+			}
+		}
+
+		// any single code point
+		pos = p + Character.charCount(source.codePointAt(p));
+	}
+
+	private void scanString() {
+		int p = pos + 1;
+		boolean esc = false;
+		while (true) {
+			if (p >= length) throw error("Unterminated string");
+			char c = source.charAt(p);
+			if (c == '"') break;
+			if ((c == '\r') || (c == '\n')) throw error("Line break in string");
+			if (c == '\\') {
+				p = escapeEnd(p);
+				esc = true;
+			} else {
+				p++;
+			}
+		}
+		type = STRING;
+		escaped = esc;
+		pos = p + 1;
+	}
+
+	/**
+	 * Gets the end of a valid string escape sequence starting at position p
+	 */
+	private int escapeEnd(int p) {
+		if (p + 1 >= length) throw error("Unterminated string");
+		char c = source.charAt(p + 1);
+		switch (c) {
+		case 'b': case 't': case 'n': case 'f': case 'r': case '"': case '\'': case '\\':
+			return p + 2;
+		case 'u':
+			for (int i = 2; i < 6; i++) {
+				if ((p + i >= length) || !isHexDigit(source.charAt(p + i))) throw error("Bad unicode escape in string");
+			}
+			return p + 6;
+		}
+		if (isOctalDigit(c)) {
+			int max = (c <= '3') ? 3 : 2;
+			int q = p + 2;
+			while ((q < length) && (q - p - 1 < max) && isOctalDigit(source.charAt(q))) {
+				q++;
+			}
+			return q;
+		}
+		throw error("Bad escape sequence in string: \\" + c);
+	}
+
+	/**
+	 * Unescapes string content between the given positions, which must contain only valid escape
+	 * sequences. Equivalent to ReaderUtils.unescapeString(...)
+	 */
+	private String unescape(int from, int to) {
+		StringBuilder sb = new StringBuilder(to - from);
+		int p = from;
+		while (p < to) {
+			char c = source.charAt(p);
+			if (c != '\\') {
+				sb.append(c);
+				p++;
+				continue;
+			}
+			int e = escapeEnd(p);
+			char k = source.charAt(p + 1);
+			switch (k) {
+			case 'b': sb.append('\b'); break;
+			case 't': sb.append('\t'); break;
+			case 'n': sb.append('\n'); break;
+			case 'f': sb.append('\f'); break;
+			case 'r': sb.append('\r'); break;
+			case 'u': sb.append((char) Integer.parseInt(source.substring(p + 2, e), 16)); break;
+			default:
+				if (isOctalDigit(k)) {
+					sb.append((char) Integer.parseInt(source.substring(p + 1, e), 8));
+				} else {
+					sb.append(k); // quotes and backslash
+				}
+			}
+			p = e;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the end of a NAME starting at position p, or -1 if there is no NAME
+	 */
+	private int nameEnd(int p) {
+		if (p >= length) return -1;
+		char c = source.charAt(p);
+		if (c == '/') return p + 1;
+		if (!isSymbolFirst(c)) return -1;
+		p++;
+		while ((p < length) && isSymbolFollowing(source.charAt(p))) {
+			p++;
+		}
+		return p;
+	}
+
+	/**
+	 * Gets the end of any path elements ('/' NAME)* starting at position p
+	 */
+	private int pathEnd(int p) {
+		while ((p < length) && (source.charAt(p) == '/')) {
+			int e = nameEnd(p + 1);
+			if (e < 0) break;
+			p = e;
+		}
+		return p;
+	}
+
+	private int digitsEnd(int p) {
+		while ((p < length) && isDigit(source.charAt(p))) {
+			p++;
+		}
+		return p;
+	}
+
+	private String text() {
+		return source.substring(start, pos);
+	}
+
+	private ParseException error(String message) {
+		int line = 1;
+		int col = 1;
+		for (int i = 0; (i < start) && (i < length); i++) {
+			if (source.charAt(i) == '\n') {
+				line++;
+				col = 1;
+			} else {
+				col++;
+			}
+		}
+		return new ParseException(message + " at line " + line + ", column " + col);
+	}
+
+	private static boolean isDigit(char c) {
+		return (c >= '0') && (c <= '9');
+	}
+
+	private static boolean isOctalDigit(char c) {
+		return (c >= '0') && (c <= '7');
+	}
+
+	private static boolean isHexDigit(char c) {
+		return ((c >= '0') && (c <= '9')) || ((c >= 'a') && (c <= 'f')) || ((c >= 'A') && (c <= 'F'));
+	}
+
+	private static boolean isSymbolFirst(char c) {
+		if (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'))) return true;
+		switch (c) {
+		case '.': case '*': case '+': case '!': case '-': case '_': case '?':
+		case '$': case '%': case '&': case '=': case '<': case '>':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isSymbolFollowing(char c) {
+		return isSymbolFirst(c) || isDigit(c) || (c == ':') || (c == '#');
+	}
+}
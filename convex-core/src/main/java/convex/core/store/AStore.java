@@ -3,6 +3,7 @@ package convex.core.store;
 import java.io.IOException;
 import java.util.function.Consumer;
 
+import convex.core.Constants;
 import convex.core.data.ACell;
 import convex.core.data.Blob;
 import convex.core.data.Format;
@@ -58,6 +59,27 @@ public abstract class AStore {
 	public abstract <T extends ACell> Ref<T> storeTopRef(Ref<T> ref, int status,Consumer<Ref<ACell>> noveltyHandler);
 
 	
+	/**
+	 * Begins a batch of writes on the current thread. Until the matching call to commitBatch(), 
+	 * the store may buffer writes made by this thread and apply them together, which can be much
+	 * more efficient for large persistence operations. Batches may be nested, in which case 
+	 * writes are applied when the outermost batch is committed.
+	 * 
+	 * Buffered values are visible to the current thread immediately, but may not be visible to
+	 * other threads until the batch is committed. Novelty handlers may be deferred until commit.
+	 */
+	public void beginBatch() {
+		// Default: no batching, writes are applied immediately
+	}
+	
+	/**
+	 * Commits a batch of writes started with beginBatch(). Must be called exactly once for each
+	 * call to beginBatch(), typically in a finally block.
+	 */
+	public void commitBatch() {
+		// Default: no batching, writes are applied immediately
+	}
+
 	/**
 	 * Gets the stored Ref for a given hash value, or null if not found.
 	 * 
@@ -103,7 +125,15 @@ public abstract class AStore {
 	 */
 	public abstract void close();
 	
-	protected final BlobCache blobCache=BlobCache.create(100000);
+	protected final BlobCache blobCache=BlobCache.create(Constants.BLOB_CACHE_SIZE);
+	
+	/**
+	 * Gets the cache used for decoding cells in this Store, e.g. to inspect cache statistics
+	 * @return BlobCache instance
+	 */
+	public BlobCache getBlobCache() {
+		return blobCache;
+	}
 	
 	/**
 	 * Decodes a Cell from an Encoding. Looks up Cell in cache if available. Otherwise
@@ -117,6 +147,31 @@ public abstract class AStore {
 		ACell cached=blobCache.getCell(encoding);
 		if (cached!=null) return cached;
 		
+		return decodeAndCache(encoding);
+	}
+	
+	/**
+	 * Decodes a Cell from an Encoding held in a transient buffer, e.g. a reusable receive 
+	 * buffer or scratch array. Looks up Cell in cache if available, in which case no data
+	 * is copied.
+	 * 
+	 * The view is never retained: it is copied only if a new Cell must be decoded, since
+	 * decoded Cells keep their Encoding. The caller may therefore reuse the underlying buffer 
+	 * as soon as this method returns.
+	 * 
+	 * @param view View of Encoding of Cell, valid only for the duration of this call
+	 * @return Decoded Cell (may be a a null value)
+	 * 
+	 * @throws BadFormatException If cell encoding is invalid
+	 */
+	public final ACell decodeTransient(Blob view) throws BadFormatException {
+		ACell cached=blobCache.getCell(view);
+		if (cached!=null) return cached;
+		
+		return decodeAndCache(Blob.wrap(view.getBytes()));
+	}
+	
+	private ACell decodeAndCache(Blob encoding) throws BadFormatException {
 		ACell decoded=Format.read(encoding);
 		if (decoded==null) return decoded; // handle null value
 		
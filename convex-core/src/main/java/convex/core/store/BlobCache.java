@@ -1,67 +1,315 @@
 package convex.core.store;
 
-import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
-import convex.core.data.ABlob;
 import convex.core.data.ACell;
 import convex.core.data.Blob;
 
 /**
- * In-memory cache for Blob decoding. Should be used in the context of a specific Store
+ * In-memory cache for Blob decoding. Should be used in the context of a specific Store.
+ *
+ * The cache holds decoded Cells up to a budget in bytes, estimated from the length of each
+ * encoding. Entries are divided between segments by a hash of the encoding, each with its own
+ * lock, LRU order and share of the budget.
+ *
+ * When a segment is full, a new Cell is only admitted if its encoding has been looked up more
+ * often than the LRU entry it would replace, as estimated by a small frequency sketch (TinyLFU).
+ * This stops one-off decodes from flushing frequently used Cells out of the cache.
+ *
+ * Thread safe.
  */
 public final class BlobCache {
 
-	private SoftReference<ACell>[] cache;
-	private int size;
-	
-	@SuppressWarnings("unchecked")
-	private BlobCache(int size) {
-		this.size=size;
-		this.cache=new SoftReference[size];
-	};
-	
-	public static BlobCache create(int size) {
-		return new BlobCache(size);
-	}
-	
-	int getSize() {
-		return size;
-	}
-	
+	/**
+	 * Estimated memory overhead of a cache entry in bytes, in addition to the encoding length
+	 */
+	static final int ENTRY_OVERHEAD = 64;
+
+	private static final int SEGMENT_BITS = 4;
+	private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+
+	private final Segment[] segments;
+	private final long budget;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+
+	private BlobCache(long budget) {
+		this.budget = budget;
+		long segmentBudget = budget / SEGMENT_COUNT;
+		segments = new Segment[SEGMENT_COUNT];
+		for (int i = 0; i < SEGMENT_COUNT; i++) {
+			segments[i] = new Segment(segmentBudget);
+		}
+	}
+
+	/**
+	 * Creates a BlobCache
+	 * @param budget Maximum size of cached Cells in bytes (approximate)
+	 * @return New BlobCache
+	 */
+	public static BlobCache create(long budget) {
+		return new BlobCache(budget);
+	}
+
 	/**
 	 * Gets the Cached Cell for a given Blob Encoding, or null if not cached.
 	 * @param encoding Encoding of Cell to look up in cache
 	 * @return Cached Cell, or null if not found
 	 */
 	public ACell getCell(Blob encoding) {
-		int ix=calcIndex(encoding);
-		SoftReference<ACell> ref=cache[ix];
-		if (ref==null) return null;
-		ACell cell=ref.get();
-		if (cell!=null) {
-			if (encoding.equals(cell.getEncoding())) {
-				return cell;
-			}
-			return null; // cached value not the same as this encoding
+		int hash = calcHash(encoding);
+		Segment seg = segmentFor(hash);
+		ACell cell;
+		synchronized (seg) {
+			seg.sketch.increment(hash);
+			cell = seg.entries.get(new Key(encoding, hash));
+		}
+		if (cell != null) {
+			hits.increment();
+		} else {
+			misses.increment();
 		}
-		cache[ix]=null;
-		return null;
+		return cell;
 	}
-	
+
 	/**
-	 * Stores a cell in the cache
+	 * Stores a cell in the cache, if admitted
 	 * @param cell Cell to store
 	 */
 	public void putCell(ACell cell) {
-		int ix=calcIndex(cell.getEncoding());
-		cache[ix]=new SoftReference<>(cell);
+		Blob encoding = cell.getEncoding();
+		int hash = calcHash(encoding);
+		Segment seg = segmentFor(hash);
+		long size = entrySize(encoding);
+		if (size > seg.budget) {
+			rejections.increment();
+			return;
+		}
+
+		Key key = new Key(encoding, hash);
+		synchronized (seg) {
+			if (seg.entries.containsKey(key)) return;
+
+			// make space, provided the new entry is used more often than the entries it replaces
+			long excess = seg.bytes + size - seg.budget;
+			if (excess > 0) {
+				int freq = seg.sketch.frequency(hash);
+				Iterator<Key> it = seg.entries.keySet().iterator();
+				for (long freed = 0; freed < excess;) {
+					Key victim = it.next();
+					if (seg.sketch.frequency(victim.hash) >= freq) {
+						rejections.increment();
+						return;
+					}
+					freed += entrySize(victim.encoding);
+				}
+
+				it = seg.entries.keySet().iterator();
+				while (seg.bytes + size > seg.budget) {
+					Key victim = it.next();
+					it.remove();
+					seg.bytes -= entrySize(victim.encoding);
+					evictions.increment();
+				}
+			}
+
+			seg.entries.put(key, cell);
+			seg.bytes += size;
+		}
+	}
+
+	/**
+	 * Gets the number of cache lookups that found a Cell
+	 * @return Hit count
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of cache lookups that did not find a Cell
+	 * @return Miss count
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the number of Cells evicted to make space for others
+	 * @return Eviction count
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Gets the number of Cells not admitted to the cache
+	 * @return Rejection count
+	 */
+	public long getRejections() {
+		return rejections.sum();
+	}
+
+	/**
+	 * Gets the number of Cells currently cached
+	 * @return Number of cached Cells
+	 */
+	public long getCount() {
+		long result = 0;
+		for (Segment seg : segments) {
+			synchronized (seg) {
+				result += seg.entries.size();
+			}
+		}
+		return result;
 	}
 
-	private int calcIndex(ABlob encoding) {
-		int hash=Long.hashCode(encoding.longValue());
-		int ix=Math.floorMod(hash, size);
-		return ix;
+	/**
+	 * Gets the estimated size of all currently cached Cells
+	 * @return Size in bytes
+	 */
+	public long getBytes() {
+		long result = 0;
+		for (Segment seg : segments) {
+			synchronized (seg) {
+				result += seg.bytes;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the byte budget of this cache
+	 * @return Budget in bytes
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	private Segment segmentFor(int hash) {
+		return segments[hash >>> (32 - SEGMENT_BITS)];
 	}
 
+	private static long entrySize(Blob encoding) {
+		return encoding.count() + ENTRY_OVERHEAD;
+	}
 
+	private static int calcHash(Blob encoding) {
+		byte[] bs = encoding.getInternalArray();
+		int off = encoding.getInternalOffset();
+		int n = (int) encoding.count();
+		int h = n;
+		for (int i = 0; i < n; i++) {
+			h = 31 * h + bs[off + i];
+		}
+		// spread bits, since high bits select the segment
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	/**
+	 * Cache key for an encoding, with precomputed hash
+	 */
+	private static final class Key {
+		private final Blob encoding;
+		private final int hash;
+
+		private Key(Blob encoding, int hash) {
+			this.encoding = encoding;
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key) o;
+			return (hash == k.hash) && encoding.equals(k.encoding);
+		}
+	}
+
+	/**
+	 * Segment of the cache. All fields are guarded by the segment's lock.
+	 */
+	private static final class Segment {
+		private final LinkedHashMap<Key, ACell> entries = new LinkedHashMap<>(16, 0.75f, true);
+		private final FrequencySketch sketch;
+		private final long budget;
+		private long bytes = 0;
+
+		private Segment(long budget) {
+			this.budget = budget;
+			this.sketch = new FrequencySketch(budget / (ENTRY_OVERHEAD * 2));
+		}
+	}
+
+	/**
+	 * Approximate counts of recent lookups, using a count-min sketch of small saturating counters. Counts are
+	 * periodically halved, so that the sketch reflects recent usage.
+	 */
+	static final class FrequencySketch {
+		private static final int MAX_COUNT = 15;
+		private static final int DEPTH = 4;
+
+		private final byte[] counters;
+		private final int mask;
+		private final int sampleSize;
+		private int additions = 0;
+
+		FrequencySketch(long expectedEntries) {
+			int width = Integer.highestOneBit((int) Math.max(64, Math.min(expectedEntries, 1 << 24)) - 1) << 1;
+			counters = new byte[width];
+			mask = width - 1;
+			sampleSize = 10 * width;
+		}
+
+		private int index(int hash, int i) {
+			int h = (hash + i) * (0x9E3779B9 + 2 * i);
+			h ^= (h >>> 15);
+			return h & mask;
+		}
+
+		/**
+		 * Gets the estimated count for a hash
+		 * @param hash Hash of item
+		 * @return Estimated count, up to a maximum of 15
+		 */
+		int frequency(int hash) {
+			int result = MAX_COUNT;
+			for (int i = 0; i < DEPTH; i++) {
+				result = Math.min(result, counters[index(hash, i)]);
+			}
+			return result;
+		}
+
+		/**
+		 * Increments the count for a hash
+		 * @param hash Hash of item
+		 */
+		void increment(int hash) {
+			int min = frequency(hash);
+			if (min >= MAX_COUNT) return;
+			for (int i = 0; i < DEPTH; i++) {
+				int ix = index(hash, i);
+				if (counters[ix] == min) counters[ix]++;
+			}
+			if (++additions >= sampleSize) {
+				for (int i = 0; i < counters.length; i++) {
+					counters[i] >>= 1;
+				}
+				additions = 0;
+			}
+		}
+	}
 }
@@ -8,6 +8,8 @@ public class Counters {
 	public static volatile long sendCount = 0;
 	public static volatile long beliefMerge = 0;
 	public static volatile long applyBlock = 0;
+	public static volatile long speculationCommits = 0;
+	public static volatile long speculationRetries = 0;
 	
 	public static volatile long etchRead = 0;
 	public static volatile long etchWrite = 0;
@@ -5,13 +5,20 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.FileLock;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,9 +27,11 @@ import convex.core.Constants;
 import convex.core.data.AArrayBlob;
 import convex.core.data.ACell;
 import convex.core.data.Blob;
+import convex.core.data.Format;
 import convex.core.data.Hash;
 import convex.core.data.Ref;
 import convex.core.data.RefSoft;
+import convex.core.exceptions.BadFormatException;
 import convex.core.util.Counters;
 import convex.core.util.Shutdown;
 import convex.core.util.Utils;
@@ -43,7 +52,7 @@ import convex.core.util.Utils;
  * in unused space in index blocks. Once there is no more space, chains are collapsed to a new index block.
  *
  * Header of file is 42 bytes as follows:
- * - Magic number 0xe7c6 (2 bytes)
+ * - Magic number 0xe7c7 (2 bytes). The final byte identifies the format version.
  * - Database length in bytes (8 bytes)
  * - Root hash (32 bytes)
  * 
@@ -53,19 +62,32 @@ import convex.core.util.Utils;
  * - 10 high bits: start of chained entry list
  * - 11 high bits: continuation of chained entry list
  *
+ * Chains are never built in the root index block, so each root slot heads an independent subtree. 
+ * Writers are serialised per subtree (i.e. by first byte of key), so writes to different subtrees 
+ * can proceed concurrently.
+ * 
+ * Readers never take locks. Data is always fully written before the index slot pointing to it is
+ * published, and index slots are written with release / read with acquire semantics. Readers may
+ * briefly miss a key while a writer restructures a subtree, so a miss is confirmed against a per-subtree 
+ * version number and retried if the subtree was modified concurrently. 
+ *
  * Data is stored as:
  * - 32 bytes key
  * - X bytes monotonic label of which
  *    - 1 byte status
  *    - 8 bytes Memory Size (TODO: might be negative for unknown?)
- * - 2 bytes data length N (a short)
+ * - VLC encoded data length N (1 or more bytes)
  * - N byes actual data
+ * 
+ * Files in the legacy format (magic number 0xe7c6) store the data length as a 2 byte short, 
+ * limiting values to 32767 bytes. These are opened read-only in compatibility mode. They can be 
+ * migrated to the current format with EtchStore.migrate(), or by copying live data with 
+ * EtchStore.collectGarbage()
  */
 public class Etch {
 	// structural constants for data block
 	private static final int KEY_SIZE=32;
 	private static final int LABEL_SIZE=1+8; // Flags (byte) plus Memory Size (long)
-	private static final int LENGTH_SIZE=2;
 	private static final int POINTER_SIZE=8;
 
 	/**
@@ -77,10 +99,20 @@ public class Etch {
 	private static final int MAX_REGION_SIZE=1<<30; // 1GB seems reasonable
 	private static final int REGION_MARGIN=65536; // 64k margin for writes past end of current buffer
 
+	/**
+	 * Number of independent write stripes, one for each subtree of the root index block
+	 */
+	private static final int WRITE_STRIPES=256;
+
 	/**
 	 * Magic number for Etch files, must be first 2 bytes
 	 */
-	private static final byte[] MAGIC_NUMBER=Utils.hexToBytes("e7c6");
+	private static final byte[] MAGIC_NUMBER=Utils.hexToBytes("e7c7");
+
+	/**
+	 * Magic number for legacy Etch files with 2 byte data lengths
+	 */
+	private static final byte[] MAGIC_NUMBER_LEGACY=Utils.hexToBytes("e7c6");
 
 	private static final int SIZE_HEADER_MAGIC=2;
 	private static final int SIZE_HEADER_FILESIZE=8;
@@ -126,31 +158,66 @@ public class Etch {
 	 */
 	private static long tempIndex=0;
 
-	private final File file;
-	private final String fileName;
+	private File file;
+	private String fileName;
 	private final RandomAccessFile data;
 
 	/**
-	 * List of MappedByteBuffers for each region of the database file.
+	 * Array of MappedByteBuffers for each region of the database file. Replaced atomically
+	 * (copy on write) whenever a region is mapped, so readers never need a lock.
+	 */
+	private final AtomicReference<MappedByteBuffer[]> regionMap=new AtomicReference<>(new MappedByteBuffer[0]);
+
+	/**
+	 * Scratch buffer for reading encodings, so that no array is allocated for cells which are
+	 * already in the decode cache. Contents are only valid until the next read on the same thread.
 	 */
-	private final ArrayList<MappedByteBuffer> regionMap=new ArrayList<>();
+	private static final ThreadLocal<byte[]> readBuffer=ThreadLocal.withInitial(()->new byte[Format.LIMIT_ENCODING_LENGTH]);
 
-	private long dataLength=0;
+	/**
+	 * Length of database, i.e. position at which new data will be appended.
+	 */
+	private final AtomicLong dataLength=new AtomicLong(0);
+
+	/**
+	 * Locks for writers, one per write stripe
+	 */
+	private final Object[] writeLocks=new Object[WRITE_STRIPES];
+
+	/**
+	 * Version numbers for each write stripe. Odd while a write to the stripe is in progress.
+	 */
+	private final AtomicLongArray stripeVersions=new AtomicLongArray(WRITE_STRIPES);
+
+	/**
+	 * Count of users holding this Etch open, including the owner. The file is closed when
+	 * this reaches zero. See {@link #acquire()} and {@link #release()}
+	 */
+	private final AtomicInteger users=new AtomicInteger(1);
 
 	private boolean BUILD_CHAINS=true;
 	private EtchStore store;
 
+	/**
+	 * True if this Etch file is in the legacy format, in which case it is read-only
+	 */
+	private final boolean legacy;
+
 	private Etch(File dataFile) throws IOException {
 		// Ensure we have a RandomAccessFile that exists
 		this.file=dataFile;
 		if (!dataFile.exists()) dataFile.createNewFile();
-		this.data=new RandomAccessFile(dataFile,"rw");
+		
+		// Legacy files are opened read-only, so that they are never modified
+		this.legacy=isLegacyFile(dataFile);
+		this.data=new RandomAccessFile(dataFile,legacy?"r":"rw");
 
 		this.fileName = dataFile.getCanonicalPath();
+		for (int i=0; i<WRITE_STRIPES; i++) writeLocks[i]=new Object();
 
-		// Try to exclusively lock the Etch database file
+		// Try to exclusively lock the Etch database file. A read-only file can only have a shared lock.
 		FileChannel fileChannel=this.data.getChannel();
-		FileLock lock=fileChannel.tryLock();
+		FileLock lock=fileChannel.tryLock(0L,Long.MAX_VALUE,legacy);
 		if (lock==null) {
 			log.error("Unable to obtain lock on file: {}",dataFile);
 			throw new IOException("File lock failed");
@@ -167,7 +234,7 @@ public class Etch {
 			int headerZeros=SIZE_HEADER_FILESIZE+SIZE_HEADER_ROOT;
 			byte[] temp=new byte[headerZeros];
 			mbb.put(temp,0,headerZeros);
-			dataLength=SIZE_HEADER; // advance past initial long
+			dataLength.set(SIZE_HEADER); // advance past initial long
 
 			// add an index block
 			long indexStart=appendNewIndexBlock();
@@ -175,18 +242,25 @@ public class Etch {
 
 			// ensure data length is initially correct
 			mbb=seekMap(SIZE_HEADER_MAGIC);
-			mbb.putLong(dataLength);
+			mbb.putLong(dataLength.get());
 		} else {
 			// existing file, so need to read the length pointer
 			MappedByteBuffer mbb=seekMap(0);
 			byte[] check=new byte[2];
 			mbb.get(check);
-			if(!Arrays.equals(MAGIC_NUMBER, check)) {
+			if (Arrays.equals(MAGIC_NUMBER, check)) {
+				// current format
+			} else if (legacy) {
+				log.warn("Legacy Etch file opened read-only: {}",dataFile);
+			} else {
 				throw new IOException("Bad magic number! Probably not an Etch file: "+dataFile);
 			}
 
 			long length = mbb.getLong();
-			dataLength=length;
+			dataLength.set(length);
+			
+			// Files from older versions may have chains in the root index block
+			if (!legacy) collapseRootChains();
 		}
 
 		// shutdown hook to close file / release lock
@@ -197,6 +271,18 @@ public class Etch {
 		});
 	}
 
+	/**
+	 * Checks if an existing file starts with the magic number for the legacy format
+	 */
+	private static boolean isLegacyFile(File dataFile) throws IOException {
+		if (dataFile.length()<SIZE_HEADER_MAGIC) return false;
+		try (RandomAccessFile raf=new RandomAccessFile(dataFile,"r")) {
+			byte[] check=new byte[SIZE_HEADER_MAGIC];
+			raf.readFully(check);
+			return Arrays.equals(MAGIC_NUMBER_LEGACY, check);
+		}
+	}
+
 	/**
 	 * Create an Etch instance using a temporary file.
 	 * @return The new Etch instance
@@ -228,7 +314,7 @@ public class Etch {
 	 */
 	public static Etch create(File file) throws IOException {
 		Etch etch= new Etch(file);
-		log.debug("Etch created on file: {} with data length: {}", file, etch.dataLength);
+		log.debug("Etch created on file: {} with data length: {}", file, etch.getDataLength());
 		return etch;
 	}
 
@@ -243,14 +329,16 @@ public class Etch {
 	private MappedByteBuffer seekMap(long position) throws IOException {
 		position=slotPointer(position); // ensure we don't have any pesky type bits
 
-		if ((position<0)||(position>dataLength)) {
-			throw new Error("Seek out of range in Etch file: position="+Utils.toHexString(position)+ " dataLength="+Utils.toHexString(dataLength)+" file="+file.getName());
+		long length=dataLength.get();
+		if ((position<0)||(position>length)) {
+			throw new Error("Seek out of range in Etch file: position="+Utils.toHexString(position)+ " dataLength="+Utils.toHexString(length)+" file="+file.getName());
 		}
 		int mapIndex=Utils.checkedInt(position/MAX_REGION_SIZE); // 1GB chunks
+		int offset=Utils.checkedInt(position-MAX_REGION_SIZE*(long)mapIndex);
 
-		MappedByteBuffer mbb=(MappedByteBuffer)((ByteBuffer)getInternalBuffer(mapIndex)).duplicate();
+		MappedByteBuffer mbb=(MappedByteBuffer)((ByteBuffer)getInternalBuffer(mapIndex,offset)).duplicate();
 
-		mbb.position(Utils.checkedInt(position-MAX_REGION_SIZE*(long)mapIndex));
+		mbb.position(offset);
 		return mbb;
 	}
 
@@ -258,16 +346,18 @@ public class Etch {
 	 * Gets the internal mapped byte buffer for the specified region of the Etch database
 	 * 
 	 * @param regionIndex Index of region 
+	 * @param offset Offset into region that must be accessible, including margin for writes
 	 * @return Mapped Byte Buffer for specified region
 	 * @throws IOException
 	 */
-	private MappedByteBuffer getInternalBuffer(int regionIndex) throws IOException {
+	private MappedByteBuffer getInternalBuffer(int regionIndex, int offset) throws IOException {
 		// Get current mapped region, or null if out of range
-		int regionMapSize=regionMap.size();
-		MappedByteBuffer mbb=(regionIndex<regionMapSize)?regionMap.get(regionIndex):null;
+		MappedByteBuffer[] regions=regionMap.get();
+		MappedByteBuffer mbb=(regionIndex<regions.length)?regions[regionIndex]:null;
 
 		// Call createBuffer if mapped region does not exist, or is too small
-		if ((mbb==null)||(mbb.capacity()<dataLength+REGION_MARGIN)) mbb=createBuffer(regionIndex);
+		// A read-only legacy file never grows, so an existing mapping always covers it
+		if ((mbb==null)||(!legacy&&(mbb.capacity()<(long)offset+REGION_MARGIN))) mbb=createBuffer(regionIndex);
 
 		return mbb;
 	}
@@ -275,45 +365,143 @@ public class Etch {
 	/**
 	 * Create a MappedByteBuffer at the specified region index position.
 	 *
-	 * CONCURRENCY: should be the only place where regionMap is modified.
+	 * CONCURRENCY: should be the only place where regionMap is modified. Lock free, if multiple
+	 * threads race to map the same region the largest mapping wins.
 	 *
 	 * @param regionIndex Index of database file region
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized MappedByteBuffer createBuffer(int regionIndex) throws IOException {
-		while(regionMap.size()<=regionIndex) regionMap.add(null);
-
+	private MappedByteBuffer createBuffer(int regionIndex) throws IOException {
 		long pos=regionIndex*(long)MAX_REGION_SIZE;
 
 		// Expand region size until big enough for current database plus appropriate margin
+		long required=dataLength.get()+REGION_MARGIN;
 		int length=1<<16;
-		while((length<MAX_REGION_SIZE)&&((pos+length)<(dataLength+REGION_MARGIN))) {
+		while((length<MAX_REGION_SIZE)&&((pos+length)<required)) {
 			length*=2;
 		}
 
 		length+=REGION_MARGIN; // include margin in buffer length
-		MappedByteBuffer mbb= data.getChannel().map(MapMode.READ_WRITE, pos, length);
-		regionMap.set(regionIndex, mbb);
-		return mbb;
+		MappedByteBuffer mbb;
+		if (legacy) {
+			// Map only existing file content, since a read-only file can't be extended
+			length=(int)Math.min(length, data.length()-pos);
+			mbb= data.getChannel().map(MapMode.READ_ONLY, pos, length);
+		} else {
+			mbb= data.getChannel().map(MapMode.READ_WRITE, pos, length);
+		}
+		
+		while (true) {
+			MappedByteBuffer[] regions=regionMap.get();
+			MappedByteBuffer existing=(regionIndex<regions.length)?regions[regionIndex]:null;
+			if ((existing!=null)&&(existing.capacity()>=length)) return existing;
+			
+			MappedByteBuffer[] newRegions=Arrays.copyOf(regions, Math.max(regions.length, regionIndex+1));
+			newRegions[regionIndex]=mbb;
+			if (regionMap.compareAndSet(regions, newRegions)) return mbb;
+		}
 	}
 
 	/**
 	 * Writes a key / value pair to the immutable store.
 	 *
-	 * CONCURRENCY: Hold a lock for a single writer
+	 * CONCURRENCY: Holds the lock for the write stripe of the key. Writes to other stripes
+	 * may proceed concurrently.
 	 *
 	 * @param key A key value (typically the Hash)
 	 * @param value Value data to associate with the key
 	 * @return Ref after writing to store
 	 * @throws IOException If an IO error occurs
 	 */
-	public synchronized Ref<ACell> write(AArrayBlob key, Ref<ACell> value) throws IOException {
+	public Ref<ACell> write(AArrayBlob key, Ref<ACell> value) throws IOException {
+		checkWritable();
 		Counters.etchWrite++;
-		return write(key,0,value,INDEX_START);
+		int stripe=key.byteAt(0)&0xFF;
+		synchronized(writeLocks[stripe]) {
+			stripeVersions.incrementAndGet(stripe); // odd while writing
+			try {
+				return write(key,0,value,INDEX_START,-1L);
+			} finally {
+				stripeVersions.incrementAndGet(stripe);
+			}
+		}
+	}
+
+	/**
+	 * Writes a batch of Refs to the store, keyed by their hashes. Significantly more efficient than
+	 * individual writes for large numbers of Refs: data for all new values is appended in one 
+	 * contiguous run, and index updates are performed in key order so that each index block is 
+	 * touched in a single pass, acquiring each write stripe lock only once.
+	 *
+	 * @param refs Refs to write. Will be sorted in place by hash.
+	 * @throws IOException If an IO error occurs
+	 */
+	public void writeBatch(List<Ref<ACell>> refs) throws IOException {
+		int n=refs.size();
+		if (n==0) return;
+		checkWritable();
+		Counters.etchWrite+=n;
+		refs.sort(null);
+
+		// Find new values, and the total size of data needed to store them
+		long[] pointers=new long[n];
+		long totalSize=0;
+		for (int i=0; i<n; i++) {
+			Ref<ACell> ref=refs.get(i);
+			if (seekPosition(ref.getHash())>=0) {
+				pointers[i]=-1L; // already stored, will update in place
+			} else {
+				pointers[i]=totalSize; // relative position in new data run
+				totalSize+=dataSize(ref);
+			}
+		}
+
+		// Append all new data in a single run
+		if (totalSize>0) {
+			long start=allocate(totalSize);
+			for (int i=0; i<n; i++) {
+				if (pointers[i]<0) continue;
+				long position=start+pointers[i];
+				Ref<ACell> ref=refs.get(i);
+				writeData(position,ref.getHash(),ref);
+				pointers[i]=position;
+			}
+		}
+
+		// Update index, one stripe at a time
+		int i=0;
+		while (i<n) {
+			int stripe=refs.get(i).getHash().byteAt(0)&0xFF;
+			synchronized(writeLocks[stripe]) {
+				stripeVersions.incrementAndGet(stripe); // odd while writing
+				try {
+					Ref<ACell> ref=refs.get(i);
+					while (true) {
+						write(ref.getHash(),0,ref,INDEX_START,pointers[i]);
+						i++;
+						if (i>=n) break;
+						ref=refs.get(i);
+						if ((ref.getHash().byteAt(0)&0xFF)!=stripe) break;
+					}
+				} finally {
+					stripeVersions.incrementAndGet(stripe);
+				}
+			}
+		}
 	}
 
-	private Ref<ACell> write(AArrayBlob key, int keyOffset, Ref<ACell> ref, long indexPosition) throws IOException {
+	/**
+	 * Writes a key / value pair to an index block, recursively.
+	 * @param key Key to write
+	 * @param keyOffset Offset into key for this index block
+	 * @param ref Ref to write
+	 * @param indexPosition Position of index block
+	 * @param dataPointer Pointer to data already written, or -1 to append data if required
+	 * @return Ref after writing to store
+	 * @throws IOException
+	 */
+	private Ref<ACell> write(AArrayBlob key, int keyOffset, Ref<ACell> ref, long indexPosition, long dataPointer) throws IOException {
 		if (keyOffset>=KEY_SIZE) {
 			throw new Error("Offset exceeded for key: "+key);
 		}
@@ -324,12 +512,12 @@ public class Etch {
 
 		if (slotValue==0L) {
 			// empty location, so simply write new value
-			return writeNewData(indexPosition,digit,key,ref,PTR_PLAIN);
+			return writeNewData(indexPosition,digit,key,ref,PTR_PLAIN,dataPointer);
 
 		} else if (type==PTR_INDEX) {
 			// recursively check next level of index
 			long newIndexPosition=slotPointer(slotValue); // clear high bits
-			return write(key,keyOffset+1,ref,newIndexPosition);
+			return write(key,keyOffset+1,ref,newIndexPosition,dataPointer);
 
 		} else if (type==PTR_PLAIN) {
 			// existing data pointer (non-zero)
@@ -344,13 +532,13 @@ public class Etch {
 			int nextDigit=digit+1;
 			long nextSlotValue=readSlot(indexPosition,nextDigit);
 
-			// if next slot is empty, we can make a chain!
-			if (BUILD_CHAINS&&(nextSlotValue==0L)) {
+			// if next slot is empty, we can make a chain! Not in root block, since chains would cross write stripes
+			if (BUILD_CHAINS&&(keyOffset>0)&&(nextSlotValue==0L)) {
 				// update current slot to be the start of a chain
 				writeSlot(indexPosition,digit,slotValue|PTR_START);
 
 				// write new data pointer to next slot
-				long newDataPointer=appendData(key,ref);
+				long newDataPointer=ensureData(key,ref,dataPointer);
 				writeSlot(indexPosition,nextDigit,newDataPointer|PTR_CHAIN);
 
 				return ref;
@@ -368,7 +556,7 @@ public class Etch {
 			writeSlot(indexPosition,digit,newIndexPosition|PTR_INDEX);
 
 			// recursively write this key
-			return write(key,keyOffset+1,ref,newIndexPosition);
+			return write(key,keyOffset+1,ref,newIndexPosition,dataPointer);
 		} else if (type==PTR_START) {
 			// first check if the start pointer is the right value. if so, bail out with nothing to do
 			if (checkMatchingKey(key, slotValue)) {
@@ -382,7 +570,7 @@ public class Etch {
 
 				// if we reach an empty location simply write new value as a chain continuation (PTR_CHAIN)
 				if (slotValue==0L) {
-					return writeNewData(indexPosition,digit+i,key,ref,PTR_CHAIN);
+					return writeNewData(indexPosition,digit+i,key,ref,PTR_CHAIN,dataPointer);
 				}
 
 				// if we are not in a chain, we have reached the maximum chain length. Exit loop and compress.
@@ -400,7 +588,7 @@ public class Etch {
 			// System.out.println("Compressing chain, offset="+keyOffset+" chain length="+i+" with key "+key+ " indexDat= "+readBlob(indexPosition,2048));
 
 			// first we build a new index block, containing our new data
-			long newDataPointer=appendData(key,ref);
+			long newDataPointer=ensureData(key,ref,dataPointer);
 			long newIndexPos=appendLeafIndex(key.byteAt(keyOffset+1),newDataPointer);
 
 			// for each element in chain, move existing data to new index block. i is the length of chain
@@ -409,38 +597,103 @@ public class Etch {
 				long movingSlotValue=readSlot(indexPosition,movingDigit);
 				long dp=slotPointer(movingSlotValue); // just the raw pointer
 				writeExistingData(newIndexPos,keyOffset+1,dp);
-				if (j!=0) writeSlot(indexPosition,movingDigit,0L); // clear the old chain
 			}
 
-			// finally update this index with the new index pointer
+			// update this index with the new index pointer, then clear the old chain
 			writeSlot(indexPosition,digit,newIndexPos|PTR_INDEX);
+			clearSlots(indexPosition,digit+1,i-1);
 			return ref;
 		} else if (type==PTR_CHAIN) {
 			// need to collapse existing chain
 			int chainStartDigit=seekChainStart(indexPosition,digit);
 			if (chainStartDigit==digit) throw new Error("Can't start chain at this digit? "+digit);
-			int chainEndDigit=seekChainEnd(indexPosition,digit);
-
-			int n=(chainStartDigit==chainEndDigit)?256:(chainEndDigit-chainStartDigit)&0xFF;
-			long newIndexPos=appendNewIndexBlock();
-			for (int j=0; j<n; j++) {
-				int movingDigit=chainStartDigit+j;
-				long movingSlotValue=readSlot(indexPosition,movingDigit);
-				long dp=slotPointer(movingSlotValue); // just the raw pointer
-				writeExistingData(newIndexPos,keyOffset+1,dp);
-				if (j!=0) writeSlot(indexPosition,movingDigit,0L); // clear the old chain
-			}
-
-			writeSlot(indexPosition,chainStartDigit,newIndexPos|PTR_INDEX);
+			collapseChain(indexPosition,keyOffset,chainStartDigit);
 
 			// write to the current slot
-			return writeNewData(indexPosition,digit,key,ref,PTR_PLAIN);
+			return writeNewData(indexPosition,digit,key,ref,PTR_PLAIN,dataPointer);
 		} else {
 			throw new Error("Unexpected type: "+type);
 		}
 	}
 
 
+	/**
+	 * Collapses a chain into a new index block
+	 * @param indexPosition Position of index block containing chain
+	 * @param keyOffset Key offset of index block
+	 * @param chainStartDigit Digit of chain start
+	 * @throws IOException
+	 */
+	private void collapseChain(long indexPosition, int keyOffset, int chainStartDigit) throws IOException {
+		int chainEndDigit=seekChainEnd(indexPosition,chainStartDigit);
+
+		int n=(chainStartDigit==chainEndDigit)?256:(chainEndDigit-chainStartDigit)&0xFF;
+		long newIndexPos=appendNewIndexBlock();
+		for (int j=0; j<n; j++) {
+			int movingDigit=chainStartDigit+j;
+			long movingSlotValue=readSlot(indexPosition,movingDigit);
+			long dp=slotPointer(movingSlotValue); // just the raw pointer
+			writeExistingData(newIndexPos,keyOffset+1,dp);
+		}
+
+		// publish new index block before clearing the old chain, so readers can always find entries
+		writeSlot(indexPosition,chainStartDigit,newIndexPos|PTR_INDEX);
+		clearSlots(indexPosition,chainStartDigit+1,n-1);
+	}
+
+	/**
+	 * Collapses any chains in the root index block. Needed for files created by older versions
+	 * of Etch, since root chains would cross write stripes.
+	 * @throws IOException
+	 */
+	private void collapseRootChains() throws IOException {
+		for (int digit=0; digit<256; digit++) {
+			long slotValue=readSlot(INDEX_START,digit);
+			if (slotType(slotValue)==PTR_START) {
+				collapseChain(INDEX_START,0,digit);
+			}
+		}
+	}
+
+	/**
+	 * Copies all data in this Etch to another Etch, e.g. to migrate a file in the legacy format.
+	 * The root hash is not copied.
+	 * @param dest Destination Etch
+	 * @throws IOException If an IO error occurs
+	 */
+	void copyTo(Etch dest) throws IOException {
+		copyIndex(dest,INDEX_START);
+	}
+
+	private void copyIndex(Etch dest, long indexPosition) throws IOException {
+		byte[] bs=new byte[KEY_SIZE];
+		for (int digit=0; digit<256; digit++) {
+			long slotValue=readSlot(indexPosition,digit);
+			if (slotValue==0) continue;
+			if (slotType(slotValue)==PTR_INDEX) {
+				copyIndex(dest,slotPointer(slotValue));
+			} else {
+				// every other slot type points to a data block starting with its key
+				readBytes(slotPointer(slotValue),bs,0,KEY_SIZE);
+				Hash key=Hash.wrap(bs.clone());
+				dest.write(key, read(key));
+			}
+		}
+	}
+
+	/**
+	 * Clears a number of consecutive slots in an index block
+	 * @param indexPosition Position of index block
+	 * @param digit First digit to clear (wraps around)
+	 * @param n Number of slots to clear
+	 * @throws IOException
+	 */
+	private void clearSlots(long indexPosition, int digit, int n) throws IOException {
+		for (int j=0; j<n; j++) {
+			writeSlot(indexPosition,digit+j,0L);
+		}
+	}
+
 	/**
 	 * Finds the start digit of a chain, stepping backwards from the given digit
 	 * @param indexPosition
@@ -534,6 +787,46 @@ public class Etch {
 		return Blob.wrap(bs);
 	}
 
+	/**
+	 * Reads bytes from storage into an array. Handles values of any length, including
+	 * those which span the boundary of a mapped region.
+	 * @param position Position in storage
+	 * @param bs Destination array
+	 * @param offset Offset into destination array
+	 * @param length Number of bytes to read
+	 * @throws IOException
+	 */
+	private void readBytes(long position, byte[] bs, int offset, int length) throws IOException {
+		while (length>0) {
+			MappedByteBuffer mbb=seekMap(position);
+			int n=Math.min(length, mbb.remaining());
+			mbb.get(bs,offset,n);
+			position+=n;
+			offset+=n;
+			length-=n;
+		}
+	}
+
+	/**
+	 * Writes bytes from an array to storage. Handles values of any length, including
+	 * those which span the boundary of a mapped region. Space must already be allocated.
+	 * @param position Position in storage
+	 * @param bs Source array
+	 * @param offset Offset into source array
+	 * @param length Number of bytes to write
+	 * @throws IOException
+	 */
+	private void writeBytes(long position, byte[] bs, int offset, int length) throws IOException {
+		while (length>0) {
+			MappedByteBuffer mbb=seekMap(position);
+			int n=Math.min(length, mbb.remaining());
+			mbb.put(bs,offset,n);
+			position+=n;
+			offset+=n;
+			length-=n;
+		}
+	}
+
 	/**
 	 * Gets the type of a slot, given the slot value
 	 * @param slotValue
@@ -551,10 +844,32 @@ public class Etch {
 	protected void truncateFile() throws FileNotFoundException, IOException {
 		try (FileOutputStream fos=new FileOutputStream(file, true)) {
 			FileChannel outChan = fos.getChannel() ;
-			outChan.truncate(dataLength);
+			outChan.truncate(dataLength.get());
+		}
+	}
+
+	/**
+	 * Acquires this Etch for use by a reader, preventing it from being closed by {@link #release()}
+	 * until the reader calls release() in turn.
+	 * 
+	 * @return true if acquired, false if this Etch has already been released by its owner
+	 */
+	boolean acquire() {
+		while (true) {
+			int n=users.get();
+			if (n<=0) return false;
+			if (users.compareAndSet(n, n+1)) return true;
 		}
 	}
 
+	/**
+	 * Releases this Etch. The owner holds the initial reference, so the file is closed once the 
+	 * owner and all readers that have acquired it have released it.
+	 */
+	void release() {
+		if (users.decrementAndGet()==0) close();
+	}
+
 	/**
 	 * Close all files resources with this Etch store, including writing the final
 	 * data length.
@@ -563,17 +878,17 @@ public class Etch {
 		if (!(data.getChannel().isOpen())) return; // already closed
 		try {
 			// Update data length
-			writeDataLength();
+			if (!legacy) writeDataLength();
 
 			// Send writes to disk
 			flush();
 			
-			regionMap.clear();
+			regionMap.set(new MappedByteBuffer[0]);
 			System.gc();
 
 			data.close();
 
-			log.debug("Etch closed on file: "+ getFileName() +" with data length: "+dataLength);
+			log.debug("Etch closed on file: "+ getFileName() +" with data length: "+getDataLength());
 		} catch (IOException e) {
 			log.error("Error closing Etch file: "+file);
 			e.printStackTrace();
@@ -585,7 +900,7 @@ public class Etch {
 	 * @return Current data size in bytes
 	 */
 	public long getDataLength() {
-		return dataLength;
+		return dataLength.get();
 	}
 
 	/**
@@ -595,7 +910,7 @@ public class Etch {
 	protected void writeDataLength() throws IOException {
 		// write final data length
 		MappedByteBuffer mbb=seekMap(OFFSET_FILE_SIZE);
-		mbb.putLong(dataLength);
+		mbb.putLong(dataLength.get());
 		mbb=null;
 	}
 
@@ -635,15 +950,13 @@ public class Etch {
 	 * @throws IOException
 	 */
 	private long appendLeafIndex(int digit, long dataPointer) throws IOException {
-		long position=dataLength;
+		long position=allocate(INDEX_BLOCK_SIZE);
 		byte[] temp=tempArray.get();
 		Arrays.fill(temp, (byte)0x00);
 		int ix=POINTER_SIZE*(digit&0xFF);
 		Utils.writeLong(temp, ix,dataPointer); // single node
 		MappedByteBuffer mbb=seekMap(position);
 		mbb.put(temp); // write full index block
-		// set the datalength to the last available byte in the file
-		setDataLength(position+INDEX_BLOCK_SIZE);
 		return position;
 	}
 
@@ -664,21 +977,43 @@ public class Etch {
 
 		// seek to correct position, skipping over key
 		MappedByteBuffer mbb=seekMap(pointer+KEY_SIZE);
+		int labelStart=mbb.position();
 
-		// get flags byte
+		// get flags byte. Memory size is written before flags, so safe to read after acquire
 		byte flagByte=mbb.get();
+		VarHandle.acquireFence();
 
-		// Get memory size
+		// Get memory size, only valid if persisted
 		long memorySize=mbb.getLong();
+		if ((flagByte&Ref.STATUS_MASK)<Ref.PERSISTED) memorySize=0L;
 
 		// get Data length
-		short length=mbb.getShort();
-		byte[] bs=new byte[length];
-		mbb.get(bs);
-		Blob encoding= Blob.wrap(bs);
+		int length;
+		if (legacy) {
+			length=mbb.getShort();
+		} else {
+			try {
+				length=Utils.checkedInt(Format.readVLCLong(mbb));
+			} catch (BadFormatException e) {
+				throw new Error("Bad data length in etch store at pointer = "+Utils.toHexString(pointer),e);
+			}
+		}
+		long dataPosition=pointer+KEY_SIZE+(mbb.position()-labelStart);
+		Blob encoding;
+		boolean transientEncoding=(length<=Format.LIMIT_ENCODING_LENGTH);
+		if (transientEncoding) {
+			// read into scratch buffer, copied by decode only if not already cached
+			byte[] bs=readBuffer.get();
+			readBytes(dataPosition,bs,0,length);
+			encoding=Blob.wrap(bs,0,length);
+		} else {
+			byte[] bs=new byte[length];
+			readBytes(dataPosition,bs,0,length);
+			encoding=Blob.wrap(bs);
+		}
 		try {
 			Hash hash=Hash.wrap(key);
-			ACell cell=store.decode(encoding);
+			ACell cell=transientEncoding?store.decodeTransient(encoding):store.decode(encoding);
 			cell.getEncoding().attachContentHash(hash);
 
 			if (memorySize>0) {
@@ -700,7 +1035,8 @@ public class Etch {
 	 * @throws IOException If an IO error occurs
 	 */
 	public synchronized void flush() throws IOException {
-		for (MappedByteBuffer mbb: regionMap) {
+		if (legacy) return; // nothing to write
+		for (MappedByteBuffer mbb: regionMap.get()) {
 			if (mbb!=null) mbb.force();
 		}
 		data.getChannel().force(false);
@@ -713,7 +1049,22 @@ public class Etch {
 	 * @throws IOException
 	 */
 	private long seekPosition(AArrayBlob key) throws IOException {
-		return seekPosition(key,0,INDEX_START);
+		int stripe=key.byteAt(0)&0xFF;
+		while (true) {
+			long version=stripeVersions.get(stripe);
+			try {
+				long pointer=seekPosition(key,0,INDEX_START);
+				// a hit is always valid, since data is never moved once written
+				if (pointer>=0) return pointer;
+			} catch (Exception | Error e) {
+				// may be caused by reading an index that is being modified, if so retry
+				if (version==stripeVersions.get(stripe)) throw e;
+				continue;
+			}
+			// A miss is only valid if there was no concurrent write to the stripe
+			if (((version&1)==0)&&(version==stripeVersions.get(stripe))) return -1;
+			Thread.onSpinWait();
+		}
 	}
 
 	/**
@@ -727,6 +1078,7 @@ public class Etch {
 		long pointerIndex=indexPosition+POINTER_SIZE*(digit&0xFF);
 		MappedByteBuffer mbb=seekMap(pointerIndex);
 		long pointer=mbb.getLong();
+		VarHandle.acquireFence(); // ensure we see data published by slot
 		return pointer;
 	}
 
@@ -740,8 +1092,8 @@ public class Etch {
 	 * @return
 	 * @throws IOException
 	 */
-	private Ref<ACell> writeNewData(long indexPosition, int digit, AArrayBlob key, Ref<ACell> value, long type) throws IOException {
-		long newDataPointer=appendData(key,value)|type;
+	private Ref<ACell> writeNewData(long indexPosition, int digit, AArrayBlob key, Ref<ACell> value, long type, long dataPointer) throws IOException {
+		long newDataPointer=ensureData(key,value,dataPointer)|type;
 		writeSlot(indexPosition, digit, newDataPointer);
 		return value;
 	}
@@ -765,15 +1117,17 @@ public class Etch {
 
 		if (currentFlags==newFlags) return ref;
 
-		// We have a status change, need to increase status of store
-		mbb=seekMap(position+KEY_SIZE);
-		mbb.put((byte)newFlags);
-
-		// maybe update size, if not already persisted
+		// maybe update size, if not already persisted. Must be done before publishing flags
 		if ((currentSize==0L)&&((newFlags&Ref.STATUS_MASK)>=Ref.PERSISTED)) {
+			mbb=seekMap(position+KEY_SIZE+1);
 			mbb.putLong(ref.getValue().getMemorySize());
 		}
 
+		// We have a status change, need to increase status of store
+		VarHandle.releaseFence();
+		mbb=seekMap(position+KEY_SIZE);
+		mbb.put((byte)newFlags);
+
 		return ref.withFlags(newFlags);	// reflect merged flags
 	}
 
@@ -788,6 +1142,7 @@ public class Etch {
 	private void writeSlot(long indexPosition, int digit, long slotValue) throws IOException {
 		long position=indexPosition+(digit&0xFF)*POINTER_SIZE;
 		MappedByteBuffer mbb=seekMap(position);
+		VarHandle.releaseFence(); // ensure anything the slot points to is visible first
 		mbb.putLong(slotValue);
 	}
 
@@ -821,18 +1176,16 @@ public class Etch {
 			// continuation of chain from some previous index, therefore key can't be present
 			return -1;
 		} else if (type==PTR_START) {
-			synchronized (this) {
-				// start of chain, so scan chain of entries
-				int i=0;
-				while (i<256) {
-					long ptr=slotValue&(~TYPE_MASK);
-					if (checkMatchingKey(key,ptr)) return ptr;
-
-					i++; // advance to next position
-					slotValue=readSlot(indexPosition,digit+i);
-					type=(slotValue&TYPE_MASK);
-					if (!(type==PTR_CHAIN)) return -1; // reached end of chain
-				}
+			// start of chain, so scan chain of entries
+			int i=0;
+			while (i<256) {
+				long ptr=slotValue&(~TYPE_MASK);
+				if (checkMatchingKey(key,ptr)) return ptr;
+
+				i++; // advance to next position
+				slotValue=readSlot(indexPosition,digit+i);
+				type=(slotValue&TYPE_MASK);
+				if (!(type==PTR_CHAIN)) return -1; // reached end of chain
 			}
 			return -1;
 		} else {
@@ -847,13 +1200,11 @@ public class Etch {
 	 * @throws IOException
 	 */
 	private long appendNewIndexBlock() throws IOException {
-		long position=dataLength;
+		long position=allocate(INDEX_BLOCK_SIZE);
 		byte[] temp=tempArray.get();
 		MappedByteBuffer mbb=seekMap(position);
 		Arrays.fill(temp,(byte)0);
 		mbb.put(temp);
-		// set the datalength to the last available byte in the file
-		setDataLength(position+INDEX_BLOCK_SIZE);
 		return position;
 	}
 
@@ -866,6 +1217,62 @@ public class Etch {
 	 * @throws IOException
 	 */
 	private long appendData(AArrayBlob key,Ref<ACell> ref) throws IOException {
+		// position ready for append
+		final long position=allocate(dataSize(ref));
+		writeData(position,key,ref);
+
+		// return file position for added data
+		return position;
+	}
+
+	/**
+	 * Gets a pointer to data for a key / value pair, appending the data if not already written
+	 * @param key The key to include in the data block
+	 * @param ref Ref to value
+	 * @param dataPointer Pointer to data already written, or -1 if not yet written
+	 * @return The position of the data block
+	 * @throws IOException
+	 */
+	private long ensureData(AArrayBlob key,Ref<ACell> ref, long dataPointer) throws IOException {
+		if (dataPointer>=0) return dataPointer;
+		return appendData(key,ref);
+	}
+
+	/**
+	 * Gets the length of the encoding to be stored for a Ref
+	 * @param ref Ref to value
+	 * @return Encoding length in bytes
+	 */
+	private static int encodingLength(Ref<ACell> ref) {
+		ACell cell=ref.getValue();
+		int length=Utils.checkedInt(cell.getEncoding().count());
+		if (length==0) {
+			// Blob b=cell.createEncoding();
+			throw new Error("Etch trying to write zero length encoding for: "+Utils.getClassName(cell));
+		}
+		return length;
+	}
+
+	/**
+	 * Gets the total size of the data block to be stored for a Ref, including key and label
+	 * @param ref Ref to value
+	 * @return Data block size in bytes
+	 */
+	private static long dataSize(Ref<ACell> ref) {
+		int length=encodingLength(ref);
+		return KEY_SIZE+LABEL_SIZE+Format.getVLCLength(length)+length;
+	}
+
+	/**
+	 * Writes a key / value data block at the specified position. Space must already
+	 * be allocated.
+	 *
+	 * @param position Position of start of data block
+	 * @param key The key to include in the data block
+	 * @param ref Ref to the value
+	 * @throws IOException
+	 */
+	private void writeData(long position, AArrayBlob key,Ref<ACell> ref) throws IOException {
 		assert(key.count()==KEY_SIZE);
 
 		// Get relevant values for writing
@@ -878,9 +1285,9 @@ public class Etch {
 		if (status>=Ref.PERSISTED) {
 			memorySize=cell.getMemorySize();
 		}
+		int length=encodingLength(ref);
 
-		// position ready for append
-		final long position=dataLength;
+		// header is small enough to always fit within the margin of the mapped region
 		MappedByteBuffer mbb=seekMap(position);
 
 		// append key
@@ -894,42 +1301,60 @@ public class Etch {
 		mbb.putLong(memorySize);
 
 		// append blob length
-		short length=Utils.checkedShort(encoding.count());
-		if (length==0) {
-			// Blob b=cell.createEncoding();
-			throw new Error("Etch trying to write zero length encoding for: "+Utils.getClassName(cell));
-		}
-		mbb.putShort(length);
+		Format.writeVLCLong(mbb,length);
 
-		// append blob value
-		mbb.put(encoding.getInternalArray(),encoding.getInternalOffset(),length);
+		// append blob value, which may be larger than the mapped margin
+		long dataPosition=position+KEY_SIZE+LABEL_SIZE+Format.getVLCLength(length);
+		writeBytes(dataPosition,encoding.getInternalArray(),encoding.getInternalOffset(),length);
+	}
 
-		// set the datalength to the last available byte in the file
-		setDataLength(position+KEY_SIZE+LABEL_SIZE+LENGTH_SIZE+length);
+	/**
+	 * Checks that this Etch instance is writable
+	 * @throws IOException If the Etch file is read-only
+	 */
+	private void checkWritable() throws IOException {
+		if (legacy) throw new IOException("Etch file is read-only in legacy format: "+fileName);
+	}
 
-		// return file position for added data
-		return position;
+	/**
+	 * Checks if this Etch instance is read-only. This is the case for files in the legacy format.
+	 * @return true if read-only, false otherwise
+	 */
+	public boolean isReadOnly() {
+		return legacy;
 	}
 
 	/**
-	 * Sets the total db dataLength in memory. This is the last position in the database
-	 * that new data can be written too.
+	 * Allocates space at the end of the database for new data. This is the only way that
+	 * the data length can change, and it can never go back.
 	 *
-	 * @param value The new data length to be set
+	 * CONCURRENCY: safe for concurrent writers, each allocation is unique.
 	 *
+	 * @param size Number of bytes to allocate
+	 * @return Position of allocated space
 	 */
-	private void setDataLength(long value) {
-		// we can never go back! If we do then we will be corrupting the database
-		if (value < dataLength) {
-			throw new Error("PANIC! New data length is less than the old data length");
-		}
-		dataLength = value;
+	private long allocate(long size) {
+		return dataLength.getAndAdd(size);
 	}
 
 	public File getFile() {
 		return file;
 	}
 
+	/**
+	 * Atomically moves the underlying database file to a new location, replacing any existing file.
+	 * The Etch instance remains open and usable throughout, since the file lock and memory mapped
+	 * regions stay attached to the open file.
+	 *
+	 * @param dest Destination file
+	 * @throws IOException If the file cannot be moved, e.g. if the file system does not support atomic replacement
+	 */
+	synchronized void moveTo(File dest) throws IOException {
+		Files.move(file.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		this.file=dest;
+		this.fileName=dest.getCanonicalPath();
+	}
+
 	public String getFileName() {
 		return fileName;
 	}
@@ -947,6 +1372,7 @@ public class Etch {
 	 * @throws IOException If IO Error occurs
 	 */
 	public synchronized void setRootHash(Hash h) throws IOException {
+		checkWritable();
 		MappedByteBuffer mbb=seekMap(OFFSET_ROOT_HASH);
 		byte[] bs=h.getBytes();
 		assert(bs.length==Hash.LENGTH);
@@ -2,7 +2,12 @@ package etch;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -25,7 +30,8 @@ import convex.core.util.Utils;
  * Objects are keyed by cryptographic hash. That solves naming. Objects are
  * immutable. That solves cache invalidation.
  *
- * Garbage collection is left as an exercise for the reader.
+ * Garbage collection is performed by copying: live Cells are copied into a new
+ * Etch file which then replaces the current one. See {@link #collectGarbage(Collection)}
  */
 public class EtchStore extends AStore {
 	private static final Logger log = LoggerFactory.getLogger(EtchStore.class.getName());
@@ -33,12 +39,48 @@ public class EtchStore extends AStore {
 	/**
 	 * Etch file instance for the current store
 	 */
-	private Etch etch;
+	private volatile Etch etch;
 	
 	/**
 	 * Etch file instance for GC destination
 	 */
-	private Etch target;
+	private volatile Etch target;
+	
+	/**
+	 * Gate for writers. Writers hold the read lock while writing, so GC can take the write lock
+	 * to drain in-flight writes before redirecting writes to the target or swapping in a new Etch.
+	 */
+	private final ReentrantReadWriteLock gate=new ReentrantReadWriteLock();
+	
+	/**
+	 * Pending batch of writes for the current thread, or null if not in a batch
+	 */
+	private final ThreadLocal<WriteBatch> batch=new ThreadLocal<>();
+	
+	/**
+	 * Number of pending Refs at which a batch is flushed early, to bound memory held by large batches
+	 */
+	private static final int BATCH_FLUSH_COUNT=10000;
+	
+	/**
+	 * Total encoding length of pending Refs at which a batch is flushed early
+	 */
+	private static final long BATCH_FLUSH_BYTES=16*1024*1024;
+	
+	/**
+	 * Writes buffered by a single thread between beginBatch() and commitBatch()
+	 */
+	private static class WriteBatch {
+		private int depth=0;
+		private final HashMap<Hash,Ref<ACell>> refs=new HashMap<>();
+		
+		// total encoding length of pending refs
+		private long bytes=0;
+		
+		// novel Refs and handlers to call on commit, in order of persistence
+		private final ArrayList<Ref<ACell>> novelty=new ArrayList<>();
+		private final ArrayList<Consumer<Ref<ACell>>> handlers=new ArrayList<>();
+	}
 
 	public EtchStore(Etch etch) {
 		this.etch = etch;
@@ -53,17 +95,210 @@ public class EtchStore extends AStore {
 	 */
 	public synchronized void startGC() throws IOException {
 		if (target!=null) throw new Error("Already collecting!");
+		Etch newTarget=createReplacement();
+		
+		// Drain in-flight writers, so that no further writes go to the current Etch once copying starts
+		gate.writeLock().lock();
+		try {
+			// copy across current root hash
+			newTarget.setRootHash(etch.getRootHash());
+			target=newTarget;
+		} finally {
+			gate.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Runs a complete compacting GC cycle. All Cells reachable from the current root data, plus
+	 * any additional roots given, are copied into a new Etch file which then atomically replaces
+	 * the current file. Anything else is discarded.
+	 * 
+	 * Other threads may continue to read and write this store while the GC is running, so this can be
+	 * called from a background thread on a live Peer. Any Cells written during the GC are retained.
+	 * 
+	 * A store opened from a file in the legacy format is migrated to the current format, keeping the 
+	 * legacy file as a backup as with {@link #migrate()}.
+	 * 
+	 * @param roots Additional Cell roots to retain. Should already be persisted in this store.
+	 * @throws IOException If an IO exception occurs
+	 */
+	public void collectGarbage(Collection<ACell> roots) throws IOException {
+		collectGarbage(roots,Collections.emptyList());
+	}
+	
+	/**
+	 * Runs a complete compacting GC cycle, as {@link #collectGarbage(Collection)}, additionally retaining
+	 * stored Cells which are only referenced by Hash.
+	 * 
+	 * @param roots Additional Cell roots to retain. Should already be persisted in this store.
+	 * @param rootHashes Hashes of additional stored Cells to retain
+	 * @throws IOException If an IO exception occurs
+	 */
+	public void collectGarbage(Collection<ACell> roots, Collection<Hash> rootHashes) throws IOException {
+		if (etch.isReadOnly()) backupLegacy(etch);
+		startGC();
+		Etch source=etch;
+		Etch dest=target;
+		
+		// Copy live data. This is the expensive part, and runs concurrently with other store users
+		copyLive(source,dest,source.getRootHash());
+		for (ACell cell: roots) {
+			if (cell==null) continue;
+			copyLive(source,dest,cell.getRef());
+		}
+		for (Hash hash: rootHashes) {
+			copyLive(source,dest,hash);
+		}
+		
+		// Exclude writers while the new Etch is swapped in. All writes have been going to the destination 
+		// since the start of the GC cycle, but root data may have been updated during GC
+		gate.writeLock().lock();
+		try {
+			copyLive(source,dest,dest.getRootHash());
+			replaceEtch(source,dest);
+			target=null;
+		} finally {
+			gate.writeLock().unlock();
+		}
+		
+		log.info("Etch GC complete, data length reduced from {} to {}",source.getDataLength(),dest.getDataLength());
+		
+		// Old Etch is closed once any readers still using it are done
+		source.release();
+	}
+	
+	/**
+	 * Creates a new Etch in a temporary file alongside the current one, to replace it after copying data
+	 */
+	private Etch createReplacement() throws IOException {
 		File temp=new File(etch.getFile().getCanonicalPath()+"~");
-		target=Etch.create(temp);
+		if (temp.exists()) temp.delete(); // left over from a failed GC or migration
+		Etch newEtch=Etch.create(temp);
+		newEtch.setStore(this);
+		return newEtch;
+	}
+	
+	/**
+	 * Replaces the current Etch file with a new Etch containing copied data
+	 */
+	private void replaceEtch(Etch source, Etch dest) throws IOException {
+		dest.writeDataLength();
+		dest.flush();
+		dest.moveTo(source.getFile());
+		etch=dest;
+	}
+	
+	/**
+	 * Preserves an Etch file in the legacy format as a backup before it is replaced. Safe to call 
+	 * without excluding writers, since a legacy Etch is read-only.
+	 */
+	private void backupLegacy(Etch source) throws IOException {
+		File backup=getLegacyBackupFile(source.getFile());
+		Files.copy(source.getFile().toPath(), backup.toPath());
+		log.info("Legacy Etch file {} preserved as {}",source.getFile(),backup);
+	}
+	
+	/**
+	 * Gets the backup file used to preserve an Etch file in the legacy format when it is migrated
+	 * @param file Etch file
+	 * @return Backup file for the legacy data
+	 */
+	public static File getLegacyBackupFile(File file) {
+		return new File(file.getPath()+".legacy");
+	}
+	
+	/**
+	 * Migrates a store opened from an Etch file in the legacy format to the current format, making it 
+	 * writable. All data is copied into a new file, which then atomically replaces the legacy file. 
+	 * The legacy file is kept as a backup, see {@link #getLegacyBackupFile(File)}.
+	 * 
+	 * Garbage collection also migrates a legacy file, retaining only live data.
+	 * 
+	 * @return True if the store was migrated, false if it is already in the current format
+	 * @throws IOException If an IO exception occurs, including if the backup file already exists
+	 */
+	public synchronized boolean migrate() throws IOException {
+		Etch source=etch;
+		if (!source.isReadOnly()) return false;
+		if (target!=null) throw new Error("Can't migrate during GC");
+		
+		// No writers to exclude while copying, since the legacy Etch is read-only
+		backupLegacy(source);
+		Etch dest=createReplacement();
+		source.copyTo(dest);
+		dest.setRootHash(source.getRootHash());
+		gate.writeLock().lock();
+		try {
+			replaceEtch(source,dest);
+		} finally {
+			gate.writeLock().unlock();
+		}
+		log.info("Migrated legacy Etch file {} to current format",getFileName());
 		
-		// copy across current root hash
-		target.setRootHash(etch.getRootHash());
+		// Old Etch is closed once any readers still using it are done
+		source.release();
+		return true;
 	}
 	
-	private Etch getWriteEtch() {
-		if (target!=null) synchronized(this) {
-			if (target!=null) return target;
+	/**
+	 * Copies a stored Cell and all its stored descendants from a source Etch to a destination Etch.
+	 * 
+	 * Children are always copied before their parent, so a persisted Cell in the destination can be
+	 * assumed to have all its descendants present.
+	 * 
+	 * @param source Source Etch
+	 * @param dest Destination Etch
+	 * @param hash Hash of Cell to copy
+	 * @throws IOException If an IO exception occurs
+	 */
+	private void copyLive(Etch source, Etch dest, Hash hash) throws IOException {
+		Ref<ACell> existing=dest.read(hash);
+		if ((existing!=null)&&(existing.getStatus()>=Ref.PERSISTED)) return; // already copied
+
+		Ref<ACell> ref=source.read(hash);
+		if (ref==null) return; // not in source, so nothing to copy
+		
+		ACell cell=ref.getValue();
+		copyChildren(source,dest,cell);
+		dest.write(hash, ref);
+	}
+	
+	private void copyLive(Etch source, Etch dest, Ref<ACell> ref) throws IOException {
+		if (ref.isEmbedded()) {
+			// embedded values are not stored independently, but may have non-embedded children
+			copyChildren(source,dest,ref.getValue());
+		} else {
+			copyLive(source,dest,ref.getHash());
+		}
+	}
+	
+	private void copyChildren(Etch source, Etch dest, ACell cell) throws IOException {
+		if (cell==null) return;
+		int n=cell.getRefCount();
+		for (int i=0; i<n; i++) {
+			copyLive(source,dest,cell.getRef(i));
+		}
+	}
+	
+	/**
+	 * Ensures that a stored Ref is retained by any GC in progress. Needed because data already
+	 * persisted in the current Etch may become reachable from new data written to the GC target.
+	 * @param ref Ref to retain
+	 */
+	private void retain(Ref<ACell> ref) {
+		// Writers hold the gate, so the GC cannot complete during the copy
+		Etch dest=target;
+		if (dest==null) return;
+		try {
+			copyLive(etch,dest,ref);
+		} catch (IOException e) {
+			throw Utils.sneakyThrow(e);
 		}
+	}
+	
+	private Etch getWriteEtch() {
+		Etch gcTarget=target;
+		if (gcTarget!=null) return gcTarget;
 		return etch;
 	}
 
@@ -71,7 +306,7 @@ public class EtchStore extends AStore {
 	 * Creates an EtchStore using a specified file.
 	 *
 	 * @param file File to use for storage. Will be created it it does not already
-	 *             exist.
+	 *             exist. A file in the legacy Etch format is opened read-only, see {@link #migrate()}
 	 * @return EtchStore instance
 	 * @throws IOException If an IO error occurs
 	 */
@@ -124,22 +359,116 @@ public class EtchStore extends AStore {
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends ACell> Ref<T> refForHash(Hash hash) {
+		WriteBatch b=batch.get();
+		if (b!=null) {
+			Ref<ACell> pending=b.refs.get(hash);
+			if (pending!=null) return (Ref<T>) pending;
+		}
+		
+		Etch current=etch;
+		
+		// Etch may have been swapped and released by GC, in which case retry with the new one
+		if (!current.acquire()) return refForHash(hash);
 		try {
-			Ref<ACell> existing = etch.read(hash);
+			Etch gcTarget=target;
+			if (gcTarget!=null) {
+				Ref<ACell> existing = gcTarget.read(hash);
+				if (existing!=null) return (Ref<T>) existing;
+			}
+			Ref<ACell> existing = current.read(hash);
 			return (Ref<T>) existing;
 		} catch (IOException e) {
 			throw Utils.sneakyThrow(e);
+		} finally {
+			current.release();
 		}
 	}
 
 	@Override
 	public <T extends ACell> Ref<T> storeRef(Ref<T> ref, int status, Consumer<Ref<ACell>> noveltyHandler) {
-		return storeRef(ref, noveltyHandler, status, false);
+		return storeBatched(ref, noveltyHandler, status, false);
 	}
 
 	@Override
 	public <T extends ACell> Ref<T> storeTopRef(Ref<T> ref, int status, Consumer<Ref<ACell>> noveltyHandler) {
-		return storeRef(ref, noveltyHandler, status, true);
+		return storeBatched(ref, noveltyHandler, status, true);
+	}
+	
+	/**
+	 * Stores a Ref, batching writes if the persistence might be deep
+	 */
+	private <T extends ACell> Ref<T> storeBatched(Ref<T> ref, Consumer<Ref<ACell>> noveltyHandler, int requiredStatus, boolean topLevel) {
+		// No benefit from batching if we only write a single cell
+		if (requiredStatus<=Ref.STORED) {
+			gate.readLock().lock();
+			try {
+				return storeRef(ref, noveltyHandler, requiredStatus, topLevel);
+			} finally {
+				gate.readLock().unlock();
+			}
+		}
+		
+		beginBatch();
+		try {
+			return storeRef(ref, noveltyHandler, requiredStatus, topLevel);
+		} finally {
+			commitBatch();
+		}
+	}
+	
+	@Override
+	public void beginBatch() {
+		WriteBatch b=batch.get();
+		if (b==null) {
+			// Batch holds the gate until commit, since it may retain data for a GC in progress
+			gate.readLock().lock();
+			b=new WriteBatch();
+			batch.set(b);
+		}
+		b.depth++;
+	}
+	
+	@Override
+	public void commitBatch() {
+		WriteBatch b=batch.get();
+		if (b==null) throw new IllegalStateException("Not in a batch");
+		if (--b.depth>0) return;
+		
+		try {
+			// Pending refs must remain visible to this thread during the write
+			writeBatch(b);
+		} finally {
+			batch.remove();
+			gate.readLock().unlock();
+		}
+		announceNovelty(b);
+	}
+	
+	/**
+	 * Writes all pending Refs in a batch to the Etch, and clears them from the batch
+	 */
+	private void writeBatch(WriteBatch b) {
+		try {
+			getWriteEtch().writeBatch(new ArrayList<>(b.refs.values()));
+		} catch (IOException e) {
+			throw Utils.sneakyThrow(e);
+		}
+		b.refs.clear();
+		b.bytes=0;
+	}
+	
+	/**
+	 * Calls novelty handlers for written Refs in a batch, in order of persistence
+	 */
+	private void announceNovelty(WriteBatch b) {
+		ArrayList<Ref<ACell>> novelty=new ArrayList<>(b.novelty);
+		ArrayList<Consumer<Ref<ACell>>> handlers=new ArrayList<>(b.handlers);
+		b.novelty.clear();
+		b.handlers.clear();
+		int n=novelty.size();
+		for (int i=0; i<n; i++) {
+			handlers.get(i).accept(novelty.get(i));
+		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -148,7 +477,10 @@ public class EtchStore extends AStore {
 		// first check if the Ref is already persisted to required level
 		if (ref.getStatus() >= requiredStatus) {
 			// we are done as long as not top level
-			if (!topLevel) return ref;
+			if (!topLevel) {
+				retain((Ref<ACell>) ref);
+				return ref;
+			}
 		}
 
 		ACell cell = ref.getValue();
@@ -166,6 +498,7 @@ public class EtchStore extends AStore {
 			if (existing != null) {
 				// Return existing ref if status is sufficient
 				if (existing.getStatus() >= requiredStatus) {
+					retain((Ref<ACell>) existing);
 					return existing;
 				}
 			}
@@ -202,7 +535,27 @@ public class EtchStore extends AStore {
 				// ensure status is set when we write to store
 				ref = ref.withMinimumStatus(requiredStatus);
 				cell.attachRef(ref); // make sure we are using current ref within cell
-				result = etch.write(fHash, (Ref<ACell>) ref);
+				WriteBatch b=batch.get();
+				if (b!=null) {
+					result=(Ref<ACell>) ref;
+					b.refs.put(fHash, result);
+					b.bytes+=cell.getEncodingLength();
+					
+					// defer novelty handler until written
+					if ((noveltyHandler != null)&&(!embedded)) {
+						b.novelty.add(result);
+						b.handlers.add(noveltyHandler);
+					}
+					
+					// flush early if the batch is large. Children are always pending before their parents, 
+					// so anything written is complete
+					if ((b.refs.size()>=BATCH_FLUSH_COUNT)||(b.bytes>=BATCH_FLUSH_BYTES)) {
+						writeBatch(b);
+						announceNovelty(b);
+					}
+					return (Ref<T>) result;
+				}
+				result = getWriteEtch().write(fHash, (Ref<ACell>) ref);
 			} catch (IOException e) {
 				throw Utils.sneakyThrow(e);
 			}
@@ -236,6 +589,8 @@ public class EtchStore extends AStore {
 
 	public void close() {
 		etch.close();
+		Etch target=this.target;
+		if (target!=null) target.close();
 	}
 
 	/**
@@ -243,9 +598,14 @@ public class EtchStore extends AStore {
 	 * @throws IOException If an IO error occurs
 	 */
 	public void flush() throws IOException  {
-		etch.flush();
-		Etch target=this.target;
-		if (target!=null) target.flush();
+		gate.readLock().lock();
+		try {
+			etch.flush();
+			Etch target=this.target;
+			if (target!=null) target.flush();
+		} finally {
+			gate.readLock().unlock();
+		}
 	}
 
 	public File getFile() {
@@ -254,7 +614,12 @@ public class EtchStore extends AStore {
 
 	@Override
 	public Hash getRootHash() throws IOException {
-		return getWriteEtch().getRootHash();
+		gate.readLock().lock();
+		try {
+			return getWriteEtch().getRootHash();
+		} finally {
+			gate.readLock().unlock();
+		}
 	}
 
 	@Override
@@ -262,9 +627,14 @@ public class EtchStore extends AStore {
 		// Ensure data if persisted at sufficient level
 		Ref<ACell> ref=storeTopRef(data.getRef(), Ref.PERSISTED,null);
 		Hash h=ref.getHash();
-		Etch etch=getWriteEtch();
-		etch.setRootHash(h);
-		etch.writeDataLength(); // ensure data length updated for root data addition
+		gate.readLock().lock();
+		try {
+			Etch etch=getWriteEtch();
+			etch.setRootHash(h);
+			etch.writeDataLength(); // ensure data length updated for root data addition
+		} finally {
+			gate.readLock().unlock();
+		}
 	}
 
 	/**
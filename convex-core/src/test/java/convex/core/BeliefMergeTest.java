@@ -3,10 +3,13 @@ package convex.core;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
 
 import org.junit.jupiter.api.Test;
@@ -145,6 +148,90 @@ public class BeliefMergeTest {
 		return result;
 	}
 
+	@Test
+	public void testIncrementalVoteTally() {
+		Map<AccountKey, Double> stakes = INITIAL_STATE.getStakes();
+		assertSame(stakes, INITIAL_STATE.getStakes());
+		assertEquals(INITIAL_STATE.computeStakes(), stakes);
+
+		Order[] candidates = new Order[3];
+		candidates[0] = Order.create();
+		candidates[1] = candidates[0].append(KEY_PAIRS[0].signData(Block.of(TEST_TIMESTAMP)));
+		candidates[2] = candidates[0].append(KEY_PAIRS[1].signData(Block.of(TEST_TIMESTAMP + 1)));
+
+		Random r = new Random(1234);
+		BlobMap<AccountKey, SignedData<Order>> orders = BlobMaps.empty();
+		VoteTally tally = VoteTally.create(orders, stakes);
+		for (int i = 0; i < 100; i++) {
+			int p = r.nextInt(NUM_PEERS);
+			int c = r.nextInt(candidates.length + 1);
+			if (c == candidates.length) {
+				orders = (BlobMap<AccountKey, SignedData<Order>>) orders.dissoc(KEYS[p]);
+			} else {
+				orders = orders.assoc(KEYS[p], KEY_PAIRS[p].signData(candidates[c]));
+			}
+			tally = tally.update(orders, stakes);
+
+			HashMap<Order, Double> expected = new HashMap<>();
+			double expectedStake = Belief.prepareStakedOrders(orders, stakes, expected);
+			assertEquals(expected, tally.getStakedOrders());
+			assertEquals(expectedStake, tally.getConsideredStake());
+		}
+
+		// unchanged Orders and stakes should give the same tally
+		assertSame(tally, tally.update(orders, stakes));
+
+		// different stakes should cause a full recount
+		HashMap<AccountKey, Double> doubled = new HashMap<>();
+		stakes.forEach((k, v) -> doubled.put(k, v * 2));
+		VoteTally recounted = tally.update(orders, doubled);
+		assertEquals(2 * tally.getConsideredStake(), recounted.getConsideredStake());
+	}
+
+	@Test
+	public void testVoteTallyLargeStakes() {
+		// stakes beyond 2^53 cannot all be represented exactly as doubles
+		long big = (1L << 60);
+		HashMap<AccountKey, Double> stakes = new HashMap<>();
+		long[] peerStakes = new long[] { big, 1, 3, big + 4096, 7 };
+		for (int i = 0; i < peerStakes.length; i++) {
+			stakes.put(KEYS[i], (double) peerStakes[i]);
+		}
+
+		Order[] candidates = new Order[2];
+		candidates[0] = Order.create();
+		candidates[1] = candidates[0].append(KEY_PAIRS[0].signData(Block.of(TEST_TIMESTAMP)));
+
+		Random r = new Random(5678);
+		int[] held = new int[peerStakes.length];
+		BlobMap<AccountKey, SignedData<Order>> orders = BlobMaps.empty();
+		VoteTally tally = VoteTally.create(orders, stakes);
+		for (int i = 0; i < 1000; i++) {
+			int p = r.nextInt(peerStakes.length);
+			int c = r.nextInt(candidates.length + 1);
+			if (c == candidates.length) {
+				orders = (BlobMap<AccountKey, SignedData<Order>>) orders.dissoc(KEYS[p]);
+			} else {
+				orders = orders.assoc(KEYS[p], KEY_PAIRS[p].signData(candidates[c]));
+			}
+			held[p] = c;
+			tally = tally.update(orders, stakes);
+
+			// incremental tally should exactly match a recount
+			long considered = 0;
+			for (int j = 0; j < candidates.length; j++) {
+				long expected = 0;
+				for (int k = 0; k < peerStakes.length; k++) {
+					if (orders.containsKey(KEYS[k]) && (held[k] == j)) expected += peerStakes[k];
+				}
+				assertEquals(expected, tally.getStake(candidates[j]));
+				considered += expected;
+			}
+			assertEquals((double) considered, tally.getConsideredStake());
+			assertEquals(VoteTally.create(orders, stakes).getStakedOrders(), tally.getStakedOrders());
+		}
+	}
+
 	@Test
 	public void testBasicMerge() throws BadSignatureException, InvalidDataException {
 		Peer b0 = initialPeerState(0);
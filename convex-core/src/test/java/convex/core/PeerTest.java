@@ -1,21 +1,34 @@
 package convex.core;
 
+import static convex.test.Assertions.assertError;
+import static convex.test.Assertions.assertJuiceError;
 import static convex.test.Assertions.assertNobodyError;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
+import convex.core.crypto.AKeyPair;
+import convex.core.data.ACell;
 import convex.core.data.AccountKey;
+import convex.core.data.Hash;
 import convex.core.data.PeerStatus;
 import convex.core.data.RecordTest;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadSignatureException;
+import convex.core.init.Init;
 import convex.core.init.InitTest;
 import convex.core.lang.RT;
 import convex.core.lang.Reader;
+import convex.core.store.AStore;
+import convex.core.store.Stores;
 import convex.test.Samples;
+import etch.EtchStore;
 
 public class PeerTest {
 	static State STATE=InitTest.STATE;
@@ -60,6 +73,21 @@ public class PeerTest {
 		assertNobodyError(p.executeQuery(Reader.read("(+ 2 3)"),Samples.BAD_ADDRESS));
 	}
 
+	@Test
+	public void testQueryTimeout() throws BadSignatureException {
+		Peer p = Peer.create(InitTest.FIRST_PEER_KEYPAIR, STATE);
+		ACell loop=Reader.read("(loop [] (recur))");
+
+		// without a timeout, runs until out of juice
+		assertJuiceError(p.executeQuery(loop,InitTest.HERO));
+
+		// timeout stops execution before juice is exhausted
+		assertError(ErrorCodes.TIMEOUT,p.executeQuery(loop,InitTest.HERO,1));
+
+		// quick queries unaffected
+		assertEquals(RT.cvm(3L),p.executeQuery(Reader.read("(+ 1 2)"),InitTest.HERO,10000).getResult());
+	}
+
 	@Test
 	public void testStakeAccess() {
 		// use peer address from first peer for testing
@@ -115,4 +143,93 @@ public class PeerTest {
 		assertEquals(5, p.asOfRange(initialTimestamp, 1000 * 60, 5).count());
 	}
 
+	@Test
+	public void testHistory() throws Exception {
+		AKeyPair kp = AKeyPair.createSeeded(1234);
+		State genesis = Init.createState(List.of(kp.getAccountKey()));
+		Peer p = Peer.create(kp, genesis).withHistoryLimit(2);
+		Peer full = Peer.create(kp, genesis);
+		long ts = genesis.getTimeStamp().longValue();
+
+		// single Peer reaches consensus on each proposed Block
+		int n = 10;
+		for (int i = 1; i <= n; i++) {
+			p = p.proposeBlock(Block.of(ts + i * 1000));
+			p = p.mergeBeliefs();
+			full = full.proposeBlock(Block.of(ts + i * 1000));
+			full = full.mergeBeliefs();
+			
+			// history index hash doesn't depend on the history limit
+			assertEquals(full.getHistoryIndexHash(), p.getHistoryIndexHash());
+		}
+		assertEquals(n, p.getConsensusPoint());
+		assertEquals(n + 1, p.getStateCount());
+		assertEquals(0, full.getHistoryStart());
+		assertNotEquals(Peer.create(kp, genesis).getHistoryIndexHash(), p.getHistoryIndexHash());
+
+		// old States are dropped from memory but still available
+		long start = p.getHistoryStart();
+		assertTrue(start > 0);
+		assertTrue(p.getStates().count() <= 4);
+		assertEquals(genesis.getHash(), p.getNetworkID());
+		assertEquals(genesis, p.getState(0));
+		assertEquals(p.getConsensusState(), p.getState(n));
+		for (int i = 0; i < n; i++) {
+			assertEquals(p.getState(i + 1), p.getBlockResult(i).getState());
+		}
+
+		// timestamp queries span retained and dropped States
+		assertNull(p.asOf(CVMLong.create(ts - 1)));
+		assertEquals(genesis, p.asOf(CVMLong.create(ts + 999)));
+		assertEquals(p.getState(3), p.asOf(CVMLong.create(ts + 3000)));
+		assertEquals(p.getState(n), p.asOf(CVMLong.create(ts + 1000000)));
+		assertEquals(n + 1, p.asOfRange(genesis.getTimeStamp(), 1000, n + 1).count());
+		assertEquals(p.getState(start - 1), p.asOfRange(genesis.getTimeStamp(), 1000, n + 1).get(start - 1));
+
+		// history survives persistence and restore
+		p = p.persistState(null);
+		Peer p2 = Peer.fromData(kp, p.toData());
+		assertEquals(start, p2.getHistoryStart());
+		assertEquals(full.getHistoryIndexHash(), p2.getHistoryIndexHash());
+		assertEquals(p.getState(1), p2.getState(1));
+		assertEquals(genesis.getHash(), p2.getNetworkID());
+	}
+
+	@Test
+	public void testHistoryGarbageCollection() throws Exception {
+		AKeyPair kp = AKeyPair.createSeeded(1234);
+		State genesis = Init.createState(List.of(kp.getAccountKey()));
+		long ts = genesis.getTimeStamp().longValue();
+		EtchStore es = EtchStore.createTemp("peer-gc");
+		AStore oldStore = Stores.current();
+		try {
+			Stores.setCurrent(es);
+			Peer p = Peer.create(kp, genesis).withHistoryLimit(2);
+			for (int i = 1; i <= 10; i++) {
+				p = p.proposeBlock(Block.of(ts + i * 1000));
+				p = p.mergeBeliefs();
+			}
+			p = p.persistState(null);
+			long start = p.getHistoryStart();
+			assertTrue(start > 1);
+			assertEquals(2 * start, p.getHistoryHashes().size());
+			Hash oldState = p.getState(1).getHash();
+			Hash oldResult = p.getBlockResult(1).getHash();
+
+			// dropped States are only retained by GC if history hashes are given as roots
+			es.collectGarbage(List.of(p.toData()), p.getHistoryHashes());
+			assertNotNull(es.refForHash(oldState));
+			assertNotNull(es.refForHash(oldResult));
+
+			// restored Peer can still load old States from the compacted store
+			Peer p2 = Peer.fromData(kp, p.toData());
+			assertEquals(oldState, p2.getState(1).getHash());
+			assertEquals(genesis.getHash(), p2.getState(0).getHash());
+			assertEquals(oldResult, p2.getBlockResult(1).getHash());
+			assertEquals(p.getState(3).getHash(), p2.asOf(CVMLong.create(ts + 3000)).getHash());
+		} finally {
+			Stores.setCurrent(oldStore);
+			es.close();
+		}
+	}
 }
@@ -10,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import convex.core.crypto.AKeyPair;
 import convex.core.data.ACell;
 import convex.core.data.AVector;
+import convex.core.data.Address;
 import convex.core.data.AccountStatus;
 import convex.core.data.Blob;
 import convex.core.data.Format;
@@ -18,6 +19,7 @@ import convex.core.data.RecordTest;
 import convex.core.data.Ref;
 import convex.core.data.Refs;
 import convex.core.data.Refs.RefTreeStats;
+import convex.core.data.Vectors;
 import convex.core.exceptions.BadFormatException;
 import convex.core.exceptions.InvalidDataException;
 import convex.core.init.Init;
@@ -49,6 +51,21 @@ public class StateTest {
 		RecordTest.doRecordTests(s);
 	}
 
+	@Test
+	public void testChangedAccounts() {
+		State s = INIT_STATE;
+		assertEquals(Vectors.empty(), s.getChangedAccounts(s));
+
+		Address a1 = InitTest.HERO;
+		Address a2 = InitTest.VILLAIN;
+		State s2 = s.withBalance(a2, 1000).withBalance(a1, 2000);
+		AVector<Address> expected = (a1.longValue() < a2.longValue()) ? Vectors.of(a1, a2) : Vectors.of(a2, a1);
+		assertEquals(expected, s2.getChangedAccounts(s));
+
+		State s3 = s.addActor();
+		assertEquals(Vectors.of(Address.create(s.getAccounts().count())), s3.getChangedAccounts(s));
+	}
+
 	@Test
 	public void testRoundTrip() throws BadFormatException {
 		State s = INIT_STATE;
@@ -7,6 +7,10 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
 import org.junit.jupiter.api.Test;
 
 import convex.core.crypto.AKeyPair;
@@ -27,6 +31,7 @@ import convex.core.lang.TestState;
 import convex.core.transactions.ATransaction;
 import convex.core.transactions.Invoke;
 import convex.core.transactions.Transfer;
+import convex.core.util.Counters;
 import convex.core.util.Utils;
 
 /**
@@ -313,4 +318,69 @@ public class StateTransitionsTest {
 
 	}
 
+
+	@Test
+	public void testParallelBlocks() throws BadSignatureException {
+		State s = TestState.STATE;
+		AKeyPair kp = InitTest.HERO_KEYPAIR;
+		Random r = new Random(1234);
+
+		// Shared actor, called by many transactions
+		ATransaction deploy = Invoke.create(InitTest.HERO,1,Reader.read(
+				"(deploy '(do (def n 0) (defn incr ^{:callable? true} [] (def n (inc n)))))"));
+		BlockResult dbr = s.applyBlock(Block.of(s.getTimeStamp().longValue(), kp.signData(deploy)));
+		assertFalse(dbr.isError(0),dbr.getResult(0).toString());
+		Address actor = (Address) dbr.getResult(0).getValue();
+		s = dbr.getState();
+
+		// User accounts sharing a key pair, spread over many chunks of the accounts Vector
+		int NUM_USERS = 100;
+		Address[] users = new Address[NUM_USERS];
+		for (int i = 0; i < NUM_USERS; i++) {
+			users[i] = s.nextAddress();
+			AccountStatus as = AccountStatus.create(100000000L, kp.getAccountKey());
+			if (i % 2 == 0) as = as.withMemory(1000000); // others must buy memory from the pool
+			s = s.putAccount(users[i], as);
+		}
+
+		long commits = Counters.speculationCommits;
+		for (int round = 0; round < 20; round++) {
+			HashMap<Address, Long> sequences = new HashMap<>();
+			int n = 10 + r.nextInt(30);
+			ArrayList<SignedData<ATransaction>> txs = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				Address origin = users[r.nextInt(NUM_USERS)];
+				long seq = sequences.getOrDefault(origin, s.getAccount(origin).getSequence()) + 1;
+				if (r.nextInt(20) == 0) {
+					seq += 5; // bad sequence number
+				} else {
+					sequences.put(origin, seq);
+				}
+				Address target = users[r.nextInt(NUM_USERS)];
+				ATransaction t;
+				switch (r.nextInt(10)) {
+				case 0: t = Transfer.create(origin, seq, target, r.nextInt(1000)); break;
+				case 1: t = Invoke.create(origin, seq, Reader.read("(def x " + r.nextInt(100) + ")")); break;
+				case 2: t = Invoke.create(origin, seq, Reader.read("(create-account *key*)")); break;
+				case 3: t = Invoke.create(origin, seq, Reader.read("(call " + actor + " (incr))")); break;
+				case 4: t = Invoke.create(origin, seq, Reader.read("(count (get *state* :accounts))")); break;
+				case 5: t = Invoke.create(origin, seq, Reader.read("(do (transfer " + target + " 100) (rollback 1))")); break;
+				case 6: t = Invoke.create(origin, seq, Reader.read("(deploy '(def a 1))")); break;
+				case 7: t = Invoke.create(origin, seq, Reader.read("(set-memory " + r.nextInt(10000) + ")")); break;
+				case 8: t = Invoke.create(origin, seq, Reader.read("(schedule (+ *timestamp* 1000) (def z 1))")); break;
+				default: t = Invoke.create(origin, seq, Reader.read("(balance " + target + ")")); break;
+				}
+				txs.add(kp.signData(t));
+			}
+			Block b = Block.create(s.getTimeStamp().longValue() + 10, txs);
+
+			BlockResult seq = s.applyBlock(b, false);
+			BlockResult par = s.applyBlock(b, true);
+			assertEquals(seq.getResults(), par.getResults());
+			assertEquals(seq.getState().getHash(), par.getState().getHash());
+			assertEquals(seq.getHash(), par.getHash());
+			s = seq.getState();
+		}
+		assertTrue(Counters.speculationCommits > commits);
+	}
 }
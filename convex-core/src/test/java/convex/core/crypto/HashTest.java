@@ -1,18 +1,27 @@
 package convex.core.crypto;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Random;
+
 import org.bouncycastle.util.Arrays;
 import org.junit.jupiter.api.Test;
 
+import convex.core.data.ACell;
 import convex.core.data.Address;
 import convex.core.data.Blob;
 import convex.core.data.Hash;
 import convex.core.data.Ref;
 import convex.core.data.Strings;
 import convex.core.data.Tag;
+import convex.core.data.Vectors;
+import convex.core.data.prim.CVMLong;
 import convex.core.util.Utils;
 
 /**
@@ -41,6 +50,75 @@ public class HashTest {
 				h3.toHexString().toUpperCase());
 	}
 	
+	@Test
+	void testBasicSHA3() {
+		assertEquals("a7ffc6f8bf1ed76651c14756a061d662f580ff4de43b49fa82d80a4b80f8434a", Hashing.sha3(Utils.EMPTY_BYTES).toHexString());
+		assertEquals("3a985da74fe225b2045c172d6bd390bd855f086e3e9d525b46bfe24511431532", Hashing.sha3("abc").toHexString());
+		
+		// Keccak256 uses original padding, as used by Ethereum
+		MessageDigest kd=Hashing.getKeccak256Digest();
+		assertEquals("c5d2460186f7233c927e7db2dcc703c0e500b653ca82273b7bfad8045d85a470", Blob.wrap(kd.digest()).toHexString());
+	}
+	
+	@Test
+	void testSHA3Implementation() throws DigestException {
+		MessageDigest provider=Hashing.createProviderSHA3Digest();
+		KeccakDigest md=KeccakDigest.createSHA3();
+		Random r=new Random(1234);
+		
+		// lengths either side of block boundaries (rate = 136 bytes)
+		for (int len=0; len<700; len+=(len<300)?1:13) {
+			byte[] data=new byte[len];
+			r.nextBytes(data);
+			byte[] expected=provider.digest(data);
+			
+			assertArrayEquals(expected,md.digest(data));
+			
+			// updates in uneven pieces, including single bytes
+			int pos=0;
+			while (pos<len) {
+				int n=Math.min(len-pos, r.nextInt(20));
+				if (n==1) {
+					md.update(data[pos]);
+				} else {
+					md.update(data, pos, n);
+				}
+				pos+=n;
+			}
+			byte[] dest=new byte[40];
+			md.digest(dest, 5, 32);
+			assertArrayEquals(expected,java.util.Arrays.copyOfRange(dest, 5, 37));
+			
+			// ByteBuffer updates, heap and direct
+			md.update(ByteBuffer.wrap(data));
+			assertArrayEquals(expected,md.digest());
+			ByteBuffer direct=ByteBuffer.allocateDirect(len);
+			direct.put(data).flip();
+			md.update(direct);
+			assertArrayEquals(expected,md.digest());
+		}
+	}
+	
+	@Test
+	void testBatchHash() {
+		Blob[] blobs=new Blob[100];
+		for (int i=0; i<blobs.length; i++) {
+			blobs[i]=Blob.createRandom(new Random(i), i*3);
+		}
+		Hash[] hashes=Hashing.sha3(blobs);
+		for (int i=0; i<blobs.length; i++) {
+			assertEquals(Hashing.sha3(blobs[i].getBytes()),hashes[i]);
+		}
+		
+		// batch hashing of cells attaches hashes to encodings
+		ACell[] cells=new ACell[] {CVMLong.create(17),null,Strings.create("foo"),Vectors.of(1,2,3)};
+		ACell.computeHashes(cells);
+		for (ACell c: cells) {
+			if (c==null) continue;
+			assertEquals(Hashing.sha3(c.getEncoding().getBytes()),c.getHash());
+		}
+	}
+	
 	@Test
 	void testHashString() {
 		String hex="0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
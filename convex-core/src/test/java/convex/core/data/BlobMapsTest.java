@@ -9,6 +9,10 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.stream.Collectors;
+
 import org.junit.jupiter.api.Test;
 
 import convex.core.data.prim.CVMLong;
@@ -296,4 +300,28 @@ public class BlobMapsTest {
 
 		CollectionsTest.doMapTests(m);
 	}
+
+	@Test
+	public void testBulkCreate() throws InvalidDataException {
+		Random r = new Random(1234);
+		int SIZE = 1000;
+		ArrayList<MapEntry<Blob, CVMLong>> entries = new ArrayList<>();
+		BlobMap<Blob, CVMLong> expected = BlobMaps.empty();
+		for (int i = 0; i < SIZE; i++) {
+			// short keys, so that many are repeated or prefixes of others
+			Blob k = Blob.createRandom(r, r.nextInt(3));
+			CVMLong v = RT.cvm((long) i);
+			entries.add(MapEntry.create(k, v));
+			expected = expected.assoc(k, v);
+		}
+
+		BlobMap<Blob, CVMLong> m = BlobMaps.create(entries);
+		m.validate();
+		assertEquals(expected, m);
+		assertEquals(expected.getEncoding(), m.getEncoding());
+		assertEquals(RT.cvm(999L), m.get(entries.get(SIZE - 1).getKey())); // later entry wins
+		doBlobMapTests(m);
+
+		assertEquals(Samples.INT_BLOBMAP_256, BlobMaps.create(Samples.INT_BLOBMAP_256.entryStream().collect(Collectors.toList())));
+	}
 }
@@ -9,6 +9,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.Random;
 
 import org.junit.jupiter.api.Test;
@@ -480,6 +481,19 @@ public class BlobsTest {
 		ABlob b=Blob.wrap(a.getBytes()).toCanonical();
 		assertEquals(a.count(),b.count());
 		
+		if (n<=Blob.CHUNK_LENGTH*100) {
+			// chunk iterator should cover whole Blob in order
+			Iterator<Blob> chunks=a.chunkIterator();
+			long chunkIndex=0;
+			long total=0;
+			while (chunks.hasNext()) {
+				Blob chunk=chunks.next();
+				assertEquals(a.getChunk(chunkIndex++),chunk);
+				total+=chunk.count();
+			}
+			assertEquals(n,total);
+		}
+		
 		BlobBuilder bb=new BlobBuilder(a);
 
 		if (a.isRegularBlob()) {
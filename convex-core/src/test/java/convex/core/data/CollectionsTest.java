@@ -8,9 +8,12 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
 import convex.core.lang.RT;
 
@@ -99,6 +102,18 @@ public class CollectionsTest {
 		Iterator<T> it = a.iterator();
 		assertThrows(Throwable.class, () -> it.remove());
 
+		long n = a.count();
+		if (n <= MAX_ITERATION_COUNT) {
+			ArrayList<T> expected = new ArrayList<>();
+			for (long i = 0; i < n; i++) {
+				expected.add(a.get(i));
+			}
+			ArrayList<T> iterated = new ArrayList<>();
+			a.iterator().forEachRemaining(iterated::add);
+			assertEquals(expected, iterated);
+			doSpliteratorTests(a.spliterator(), expected);
+		}
+
 		doDataStructureTests(a);
 	}
 
@@ -137,12 +152,57 @@ public class CollectionsTest {
 			assertSame(a.empty(),t);
 		}
 		
+		if (n <= MAX_ITERATION_COUNT) {
+			ArrayList<MapEntry<K, V>> expected = new ArrayList<>();
+			for (long i = 0; i < n; i++) {
+				expected.add(a.entryAt(i));
+			}
+			ArrayList<MapEntry<K, V>> iterated = new ArrayList<>();
+			Iterator<MapEntry<K, V>> it = a.entryIterator();
+			it.forEachRemaining(iterated::add);
+			assertEquals(expected, iterated);
+			assertThrows(NoSuchElementException.class, () -> it.next());
+			doSpliteratorTests(a.entrySpliterator(), expected);
+		}
+
 		assertThrows(IndexOutOfBoundsException.class, () -> a.entryAt(-1));
 		assertThrows(IndexOutOfBoundsException.class, () -> a.entryAt(n));
 
 		doDataStructureTests(a);
 	}
 
+	/**
+	 * Largest count for which generic tests traverse every element
+	 */
+	static final long MAX_ITERATION_COUNT = 10000;
+
+	/**
+	 * Checks that a Spliterator produces the expected elements in order, both when
+	 * traversed directly and when split recursively
+	 * @param s Spliterator to test
+	 * @param expected Expected elements
+	 */
+	public static <T> void doSpliteratorTests(Spliterator<T> s, java.util.List<T> expected) {
+		assertEquals(expected.size(), s.estimateSize());
+		ArrayList<T> results = new ArrayList<>();
+		splitAll(s, results);
+		assertEquals(expected, results);
+	}
+
+	private static <T> void splitAll(Spliterator<T> s, ArrayList<T> results) {
+		long size = s.estimateSize();
+		Spliterator<T> prefix = s.trySplit();
+		if (prefix == null) {
+			int start = results.size();
+			s.forEachRemaining(results::add);
+			assertEquals(size, results.size() - start);
+		} else {
+			assertEquals(size, prefix.estimateSize() + s.estimateSize());
+			splitAll(prefix, results);
+			splitAll(s, results);
+		}
+	}
+
 	/**
 	 * Generic tests for any set
 	 * @param a Any Set
@@ -0,0 +1,149 @@
+package convex.core.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.data.Diffs.Change;
+import convex.core.data.prim.CVMLong;
+import convex.core.lang.RT;
+import convex.core.util.Utils;
+import convex.test.Samples;
+
+/**
+ * Tests for structural diffs between values
+ */
+public class DiffsTest {
+
+	@Test
+	public void testIdentical() {
+		assertTrue(changes(null, null).isEmpty());
+		assertTrue(changes(Samples.INT_VECTOR_300, Samples.INT_VECTOR_300).isEmpty());
+		assertTrue(changes(Samples.LONG_MAP_100, Maps.create(Samples.LONG_MAP_100.entryStream().collect(Collectors.toList()))).isEmpty());
+	}
+
+	@Test
+	public void testValues() {
+		assertEquals(Set.of("UPDATED [] 1 2"), changes(RT.cvm(1L), RT.cvm(2L)));
+		assertEquals(Set.of("UPDATED [] nil 2"), changes(null, RT.cvm(2L)));
+		assertEquals(Set.of("UPDATED [] [1] {1 2}"), changes(Vectors.of(1L), Maps.of(1L, 2L)));
+	}
+
+	@Test
+	public void testVectors() {
+		AVector<CVMLong> a = Samples.INT_VECTOR_300;
+		assertEquals(Set.of("UPDATED [17] 17 100"), changes(a, a.assoc(17, RT.cvm(100L))));
+		assertEquals(Set.of("ADDED [300] nil 7"), changes(a, a.conj(RT.cvm(7L))));
+		assertEquals(Set.of("REMOVED [299] 299 nil", "UPDATED [0] 1 0"), changes(a.assoc(0, RT.cvm(1L)), a.slice(0, 299)));
+
+		// vectors of various sizes, including across chunk and tree boundaries
+		AVector<CVMLong> big = Vectors.empty();
+		for (int i = 0; i < 5000; i++) {
+			big = big.conj(RT.cvm((long) i));
+		}
+		for (long n : new long[] { 16, 255, 256, 257, 4095, 4096, 4100 }) {
+			AVector<CVMLong> v = big.slice(0, n);
+			AVector<CVMLong> w = v.assoc(n / 2, RT.cvm(-1L)).conj(RT.cvm(-2L));
+			assertEquals(Set.of("UPDATED [" + (n / 2) + "] " + (n / 2) + " -1", "ADDED [" + n + "] nil -2"), changes(v, w));
+		}
+	}
+
+	@Test
+	public void testHashMaps() {
+		AHashMap<CVMLong, CVMLong> a = Samples.LONG_MAP_100;
+		CVMLong k = a.entryAt(5).getKey();
+		AHashMap<CVMLong, CVMLong> b = a.assoc(k, RT.cvm(-1L)).dissoc(a.entryAt(7).getKey()).assoc(RT.cvm(1000L), null);
+		assertEquals(expectedMapChanges(a, b), changes(a, b));
+		assertEquals(expectedMapChanges(b, a), changes(b, a));
+
+		AHashMap<CVMLong, CVMLong> c = Maps.of(1L, 2L, 3L, 4L);
+		assertEquals(expectedMapChanges(a, c), changes(a, c));
+		assertEquals(expectedMapChanges(c, a), changes(c, a));
+	}
+
+	@Test
+	public void testBlobMaps() {
+		Random r = new Random(5678);
+		for (int i = 0; i < 20; i++) {
+			BlobMap<Blob, CVMLong> a = randomBlobMap(r, r.nextInt(100));
+			BlobMap<Blob, CVMLong> b = a;
+			for (int j = r.nextInt(10); j > 0; j--) {
+				Blob key = Blob.createRandom(r, r.nextInt(4));
+				b = r.nextBoolean() ? b.assoc(key, RT.cvm(r.nextLong())) : (BlobMap<Blob, CVMLong>) b.dissoc(key);
+			}
+			assertEquals(expectedMapChanges(a, b), changes(a, b));
+			BlobMap<Blob, CVMLong> c = randomBlobMap(r, r.nextInt(100));
+			assertEquals(expectedMapChanges(a, c), changes(a, c));
+		}
+	}
+
+	@Test
+	public void testSets() {
+		ASet<CVMLong> a = Sets.create(Samples.INT_VECTOR_300);
+		ASet<CVMLong> b = a.exclude(RT.cvm(17L)).include(RT.cvm(1000L));
+		assertEquals(Set.of("REMOVED [17] 17 nil", "ADDED [1000] nil 1000"), changes(a, b));
+	}
+
+	@Test
+	public void testNested() {
+		AHashMap<ACell, ACell> a = Maps.of(1L, Samples.INT_VECTOR_300, 2L, Maps.of(3L, Vectors.of(4L, 5L)));
+		AHashMap<ACell, ACell> b = a.assoc(RT.cvm(2L), Maps.of(3L, Vectors.of(4L, 6L)));
+		assertEquals(Set.of("UPDATED [2 3 1] 5 6"), changes(a, b));
+
+		AccountStatus as = AccountStatus.create(10, null);
+		AccountStatus as2 = as.withBalance(20);
+		assertEquals(Set.of("UPDATED [:balance] 10 20"), changes(as, as2));
+	}
+
+	private static BlobMap<Blob, CVMLong> randomBlobMap(Random r, int n) {
+		BlobMap<Blob, CVMLong> m = BlobMaps.empty();
+		for (int i = 0; i < n; i++) {
+			m = m.assoc(Blob.createRandom(r, r.nextInt(4)), RT.cvm((long) i));
+		}
+		return m;
+	}
+
+	/**
+	 * Computes expected changes between two maps of simple values by brute force
+	 */
+	private static <K extends ACell, V extends ACell> Set<String> expectedMapChanges(AMap<K, V> a, AMap<K, V> b) {
+		HashSet<String> result = new HashSet<>();
+		Iterator<MapEntry<K, V>> it = a.entryIterator();
+		while (it.hasNext()) {
+			MapEntry<K, V> e = it.next();
+			MapEntry<K, V> be = b.getEntry(e.getKey());
+			if (be == null) {
+				result.add(describe(Change.REMOVED, Vectors.of(e.getKey()), e.getValue(), null));
+			} else if (!Utils.equals(e.getValue(), be.getValue())) {
+				result.add(describe(Change.UPDATED, Vectors.of(e.getKey()), e.getValue(), be.getValue()));
+			}
+		}
+		it = b.entryIterator();
+		while (it.hasNext()) {
+			MapEntry<K, V> e = it.next();
+			if (!a.containsKey(e.getKey())) {
+				result.add(describe(Change.ADDED, Vectors.of(e.getKey()), null, e.getValue()));
+			}
+		}
+		return result;
+	}
+
+	private static Set<String> changes(ACell a, ACell b) {
+		HashSet<String> result = new HashSet<>();
+		Diffs.diff(a, b, (change, path, oldValue, newValue) -> {
+			assertTrue(result.add(describe(change, path, oldValue, newValue)), "Duplicate change");
+		});
+		return result;
+	}
+
+	private static String describe(Change change, AVector<ACell> path, ACell oldValue, ACell newValue) {
+		return change + " " + RT.print(path) + " " + RT.print(oldValue) + " " + RT.print(newValue);
+	}
+}
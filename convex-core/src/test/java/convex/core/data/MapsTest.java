@@ -10,6 +10,7 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.function.Predicate;
 
 import org.junit.jupiter.api.Test;
@@ -352,4 +353,62 @@ public class MapsTest {
 		CollectionsTest.doMapTests(m);
 		CollectionsTest.doMapTests(m2);
 	}
+
+	@Test
+	public void testBulkCreate() throws InvalidDataException {
+		int SIZE = 1000;
+		ArrayList<MapEntry<CVMLong, CVMLong>> entries = new ArrayList<>();
+		AHashMap<CVMLong, CVMLong> expected = Maps.empty();
+		for (long i = 0; i < SIZE; i++) {
+			CVMLong k = RT.cvm(i % 700); // some keys repeated
+			CVMLong v = RT.cvm(i);
+			entries.add(MapEntry.create(k, v));
+			expected = expected.assoc(k, v);
+		}
+
+		AHashMap<CVMLong, CVMLong> m = Maps.create(entries);
+		m.validate();
+		assertEquals(700, m.count());
+		assertEquals(expected, m);
+		assertEquals(expected.getEncoding(), m.getEncoding());
+		assertEquals(RT.cvm(999L), m.get(RT.cvm(299L))); // later entry wins
+
+		// small maps should be identical to those built by assoc
+		assertEquals(Maps.empty().assoc(RT.cvm(1L), RT.cvm(2L)), Maps.of(1L, 2L));
+		assertSame(Maps.empty(), Maps.create(new ArrayList<MapEntry<CVMLong, CVMLong>>()));
+	}
+
+	@Test
+	public void testMergeSharedSubtrees() throws InvalidDataException {
+		AHashMap<CVMLong, CVMLong> a = Samples.LONG_MAP_100;
+		assertSame(a, a.merge(a));
+		assertSame(a, a.merge(Maps.empty()));
+		AHashMap<CVMLong, CVMLong> e = Maps.empty();
+		assertSame(a, e.merge(a));
+
+		// b shares most subtrees with a
+		AHashMap<CVMLong, CVMLong> b = a.assoc(RT.cvm(1000L), RT.cvm(1L)).assoc(RT.cvm(3L), null);
+		doMergeTest(a, b);
+		doMergeTest(b, a);
+
+		AHashMap<CVMLong, CVMLong> c = Maps.of(1L, 17L, 2000L, 18L, 3000L, null);
+		doMergeTest(a, c);
+		doMergeTest(c, a);
+		doMergeTest(c, c.assoc(RT.cvm(1L), RT.cvm(19L)));
+
+		AHashMap<CVMLong, CVMLong> d = Samples.LONG_MAP_10;
+		doMergeTest(a, d);
+		doMergeTest(d, a);
+	}
+
+	private <K extends ACell, V extends ACell> void doMergeTest(AHashMap<K, V> a, AHashMap<K, V> b) throws InvalidDataException {
+		AHashMap<K, V> expected = a;
+		long n = b.count();
+		for (long i = 0; i < n; i++) {
+			expected = expected.assocEntry(b.entryAt(i));
+		}
+		AHashMap<K, V> m = a.merge(b);
+		m.validate();
+		assertEquals(expected, m);
+	}
 }
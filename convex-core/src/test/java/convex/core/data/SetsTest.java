@@ -206,4 +206,44 @@ public class SetsTest {
 		
 		CollectionsTest.doSetTests(a);
 	}
+
+	@Test
+	public void testBulkCreate() throws InvalidDataException {
+		int SIZE = 1000;
+		ACell[] elements = new ACell[SIZE];
+		ASet<CVMLong> expected = Sets.empty();
+		for (int i = 0; i < SIZE; i++) {
+			CVMLong v = RT.cvm((long) (i % 700)); // some elements repeated
+			elements[i] = v;
+			expected = expected.include(v);
+		}
+
+		ASet<CVMLong> s = Sets.of(elements);
+		s.validate();
+		assertEquals(700, s.count());
+		assertEquals(expected, s);
+		assertEquals(expected.getEncoding(), s.getEncoding());
+		assertEquals(expected, Sets.create(Vectors.create(elements)));
+
+		assertEquals(Sets.empty().include(RT.cvm(1L)), Sets.of(1L, 1L));
+		assertSame(Sets.empty(), Sets.of());
+	}
+
+	@Test
+	public void testSharedSubtreeOps() {
+		ASet<CVMLong> a = Sets.create(Samples.INT_VECTOR_300);
+		ASet<CVMLong> b = a.include(RT.cvm(1000L));
+		ASet<CVMLong> c = a.exclude(RT.cvm(17L));
+
+		assertSame(a, a.includeAll(a));
+		assertSame(a, a.intersectAll(a));
+		assertTrue(a.excludeAll(a).isEmpty());
+
+		assertEquals(b, a.includeAll(b));
+		assertEquals(b, b.includeAll(c));
+		assertEquals(a, b.intersectAll(a));
+		assertEquals(c, b.intersectAll(c));
+		assertEquals(Sets.of(1000L), b.excludeAll(a));
+		assertEquals(Sets.of(17L, 1000L), b.excludeAll(c));
+	}
 }
@@ -8,6 +8,8 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+
 import org.junit.jupiter.api.Test;
 
 import convex.core.crypto.AKeyPair;
@@ -51,6 +53,35 @@ public class SignedDataTest {
 		ObjectsTest.doAnyValueTests(sd1);
 	}
 
+	@Test
+	public void testBatchCheck() {
+		AKeyPair kp = InitTest.HERO_KEYPAIR;
+		ArrayList<SignedData<CVMLong>> items=new ArrayList<>();
+		int n=40;
+		for (int i=0; i<n; i++) {
+			Ref<CVMLong> dref = Ref.get(RT.cvm(i));
+			// every third item signed with the wrong hash
+			Hash signed=(i%3==0)?RT.cvm(i+1).getHash():dref.getHash();
+			SignedData<CVMLong> sd = SignedData.create(kp.getAccountKey(), kp.sign(signed), dref);
+			assertFalse(sd.isSignatureChecked());
+			items.add(sd);
+		}
+		
+		SignedData.checkSignatures(items);
+		for (int i=0; i<n; i++) {
+			SignedData<CVMLong> sd=items.get(i);
+			assertTrue(sd.isSignatureChecked());
+			int flags=sd.getRef().getFlags();
+			if (i%3==0) {
+				assertTrue((flags&Ref.BAD_MASK)!=0);
+				assertFalse(sd.checkSignature());
+			} else {
+				assertTrue((flags&Ref.VERIFIED_MASK)!=0);
+				assertTrue(sd.checkSignature());
+			}
+		}
+	}
+
 	@Test
 	public void testEmbeddedSignature() throws BadSignatureException {
 		CVMLong cl=RT.cvm(158587);
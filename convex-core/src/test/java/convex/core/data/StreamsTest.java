@@ -1,8 +1,11 @@
 package convex.core.data;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
+import java.util.Spliterator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -11,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.InvalidDataException;
 import convex.core.exceptions.ValidationException;
+import convex.core.lang.RT;
 import convex.test.Samples;
 
 public class StreamsTest {
@@ -30,4 +34,51 @@ public class StreamsTest {
 
 	}
 
+	@Test
+	public void testParallelStreams() {
+		int n = 10000;
+		long expectedSum = ((long) n * (n - 1)) / 2;
+		AVector<CVMLong> v = Vectors.empty();
+		for (int i = 0; i < n; i++) {
+			v = v.conj(RT.cvm(i));
+		}
+
+		assertEquals(expectedSum, v.stream().parallel().mapToLong(CVMLong::longValue).sum());
+		assertEquals(v, Vectors.create(v.stream().parallel().collect(Collectors.toList())));
+
+		ASet<CVMLong> set = Sets.create(v);
+		assertEquals(expectedSum, set.stream().parallel().mapToLong(CVMLong::longValue).sum());
+
+		AHashMap<CVMLong, CVMLong> map = Maps.empty();
+		for (int i = 0; i < n; i++) {
+			map = map.assoc(RT.cvm(i), RT.cvm(i * 2));
+		}
+		assertEquals(expectedSum * 2, map.entryStream().parallel().mapToLong(e -> e.getValue().longValue()).sum());
+
+		BlobMap<ABlob, CVMLong> bm = Samples.INT_BLOBMAP_256;
+		assertEquals(255 * 128, bm.entryStream().parallel().mapToLong(e -> e.getValue().longValue()).sum());
+	}
+
+	@Test
+	public void testSplitAlongChildren() {
+		AVector<CVMLong> v = Vectors.empty();
+		for (int i = 0; i < 4096; i++) {
+			v = v.conj(RT.cvm(i));
+		}
+		assertEquals(VectorTree.class, v.getClass());
+
+		// 16 children of 256 elements, should split evenly
+		Spliterator<CVMLong> s = v.spliterator();
+		Spliterator<CVMLong> prefix = s.trySplit();
+		assertNotNull(prefix);
+		assertEquals(2048, prefix.estimateSize());
+		assertEquals(2048, s.estimateSize());
+		assertTrue(s.hasCharacteristics(Spliterator.SUBSIZED));
+
+		// starting part way through a child
+		Spliterator<CVMLong> mid = v.spliterator(1000);
+		assertEquals(3096, mid.estimateSize());
+		mid.tryAdvance(x -> assertEquals(1000, x.longValue()));
+		assertEquals(3095, mid.estimateSize());
+	}
 }
@@ -9,14 +9,17 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Spliterator;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadFormatException;
+import convex.core.exceptions.InvalidDataException;
 import convex.core.lang.RT;
 import convex.test.Samples;
 
@@ -255,6 +258,25 @@ public class VectorsTest {
 		
 		AVector<CVMLong> v=vb.toVector();
 		assertEquals(1023,v.count());
+		
+		vb.append(CVMLong.ONE);
+		assertEquals(v.conj(CVMLong.ONE),vb.toVector());
+	}
+	
+	@Test
+	public void testAppendAll() throws InvalidDataException {
+		AVector<CVMLong> v=Samples.INT_VECTOR_23;
+		List<CVMLong> list=Samples.INT_VECTOR_300.stream().collect(Collectors.toList());
+		AVector<CVMLong> expected=v;
+		for (CVMLong x: list) {
+			expected=expected.conj(x);
+		}
+		
+		AVector<CVMLong> r=v.appendAll(list);
+		r.validate();
+		assertEquals(expected,r);
+		assertEquals(v.conj(CVMLong.ONE),v.appendAll(List.of(CVMLong.ONE)));
+		assertSame(v,v.appendAll(List.of()));
 	}
 
 	@Test
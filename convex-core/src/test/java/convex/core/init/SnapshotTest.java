@@ -0,0 +1,102 @@
+package convex.core.init;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.State;
+import convex.core.crypto.AKeyPair;
+import convex.core.data.ACell;
+import convex.core.data.AVector;
+import convex.core.data.AccountKey;
+import convex.core.data.Blob;
+import convex.core.data.Hash;
+import convex.core.exceptions.BadFormatException;
+import convex.core.lang.Context;
+import convex.core.lang.Core;
+
+public class SnapshotTest {
+
+	@Test
+	public void testSnapshotAvailable() {
+		// generated at build time, so should always be present in tests
+		Snapshot snapshot = Snapshot.get();
+		assertNotNull(snapshot);
+		assertEquals(Core.ENVIRONMENT, snapshot.getCoreEnvironment());
+		assertEquals(Core.METADATA, snapshot.getCoreMetadata());
+	}
+
+	@Test
+	public void testCoreEnvironment() throws IOException {
+		Context<?> ctx = Core.bootstrap();
+		assertEquals(ctx.getEnvironment().getHash(), Core.ENVIRONMENT.getHash());
+		assertEquals(ctx.getMetadata().getHash(), Core.METADATA.getHash());
+	}
+
+	@Test
+	public void testGenesisState() {
+		AccountKey key = AKeyPair.createSeeded(101).getAccountKey();
+		State built = Init.buildState(List.of(key));
+		State s = Init.createState(List.of(key));
+		assertEquals(built.getHash(), s.getHash());
+		assertEquals(built, s);
+	}
+
+	@Test
+	public void testEncodeDecode() throws BadFormatException {
+		State s = Init.createBaseState(List.of(AKeyPair.createSeeded(102).getAccountKey()));
+		Blob data = Snapshot.encode(s);
+		ACell decoded = Snapshot.decode(data);
+		assertEquals(s, decoded);
+
+		// corrupt a byte in the last cell, so root hash will not match
+		byte[] bs = data.getBytes();
+		bs[bs.length - 1] ^= 1;
+		assertThrows(BadFormatException.class, () -> Snapshot.decode(Blob.wrap(bs)));
+	}
+
+	@Test
+	public void testLoadFallbacks() throws IOException {
+		State genesis = Init.createBaseState(List.of(AKeyPair.createSeeded(103).getAccountKey()));
+		AVector<ACell> root = Snapshot.createRoot(genesis);
+		Blob data = Snapshot.encode(root);
+		Snapshot snapshot = Snapshot.load(data);
+		assertNotNull(snapshot);
+		assertEquals(Core.ENVIRONMENT, snapshot.getCoreEnvironment());
+
+		// fingerprint does not match current sources
+		Blob stale = Snapshot.encode(root.assoc(0, Hash.NULL_HASH));
+		assertNull(Snapshot.load(stale));
+
+		// corrupt or truncated snapshot data
+		byte[] bs = data.getBytes();
+		bs[bs.length / 2] ^= 1;
+		assertNull(Snapshot.load(Blob.wrap(bs)));
+		assertNull(Snapshot.load(data.slice(0, data.count() - 1)));
+		assertNull(Snapshot.load(Blob.EMPTY));
+	}
+
+	@Test
+	public void testDisabled() {
+		AccountKey key = AKeyPair.createSeeded(104).getAccountKey();
+		State expected = Init.createState(List.of(key));
+		try {
+			System.setProperty("convex.snapshot", "false");
+			assertFalse(Snapshot.isEnabled());
+			assertNull(Snapshot.get());
+
+			// falls back to the interpreted path with the same result
+			assertEquals(expected, Init.createState(List.of(key)));
+		} finally {
+			System.clearProperty("convex.snapshot");
+		}
+		assertNotNull(Snapshot.get());
+	}
+}
@@ -13,6 +13,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -701,4 +702,43 @@ public class CompilerTest extends ACVMTest {
 		// def should be a special form, and evaluate to a symbol
 		assertEquals(Symbols.DEF,eval("def"));
 	}
+
+	@Test
+	public void testCompileCache() {
+		Context<?> ctx=context();
+		ACell form=Reader.read("(if (= 1 2) :foo (inc 7))");
+
+		// top level compilation of the same form uses the cache, with the same juice cost
+		Context<?> c1=ctx.fork().expandCompile(form);
+		Context<?> c2=ctx.fork().expandCompile(form);
+		assertSame(c1.getResult(),c2.getResult());
+		assertEquals(c1.getJuice(),c2.getJuice());
+		assertEquals(8L,evalL(ctx,"(if (= 1 2) :foo (inc 7))"));
+
+		// redefinition in the current environment is respected
+		ctx=step(ctx,"(defmacro if [& args] 42)");
+		assertEquals(42L,evalL(ctx,"(if (= 1 2) :foo (inc 7))"));
+
+		// expansion with user expanders is never cached, since they can read or change State
+		ctx=step(ctx,"(def n 0)");
+		ctx=step(ctx,"(defexpander ex [x e] (def n (inc n)) n)");
+		ctx=step(ctx,"(ex)");
+		ctx=step(ctx,"(ex)");
+		assertEquals(2L,evalL(ctx,"n"));
+		assertNotSame(compile(ctx,"(ex)"),compile(ctx,"(ex)"));
+
+		// user expanders may also depend on State outside the environment
+		ctx=step(ctx,"(defexpander bal [x e] *balance*)");
+		long b1=evalL(ctx,"(bal)");
+		ctx=step(ctx,"(transfer "+VILLAIN+" 1000)");
+		assertEquals(b1-1000,evalL(ctx,"(bal)"));
+
+		// expansion with side effects (declare) is never cached
+		ctx=step(ctx,"(declare foo)");
+		assertNotError(ctx);
+		ctx=step(ctx,"(undef foo)");
+		assertUndeclaredError(step(ctx,"foo"));
+		ctx=step(ctx,"(declare foo)");
+		assertNull(eval(ctx,"foo"));
+	}
 }
@@ -2,6 +2,7 @@ package convex.core.lang;
 
 import static convex.test.Assertions.assertCVMEquals;
 import static convex.test.Assertions.assertDepthError;
+import static convex.test.Assertions.assertError;
 import static convex.test.Assertions.assertJuiceError;
 import static convex.test.Assertions.assertUndeclaredError;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -16,14 +17,18 @@ import org.junit.jupiter.api.Test;
 
 import convex.core.Constants;
 import convex.core.ErrorCodes;
+import convex.core.State;
 import convex.core.data.ACell;
+import convex.core.data.AHashMap;
 import convex.core.data.AVector;
+import convex.core.data.AccountStatus;
 import convex.core.data.Address;
 import convex.core.data.BlobMaps;
 import convex.core.data.Keyword;
 import convex.core.data.Strings;
 import convex.core.data.Symbol;
 import convex.core.data.Vectors;
+import convex.core.data.prim.CVMLong;
 import convex.core.init.InitTest;
 import convex.core.lang.ops.Special;
 
@@ -48,6 +53,65 @@ public class ContextTest extends ACVMTest {
 		assertUndeclaredError(c2.lookup(Symbol.create("some-bad-symbol")));
 	}
 
+	@Test
+	public void testDefineState() {
+		Context<?> c = context();
+		State s0 = c.getState();
+		Symbol a = Symbol.create("the-test-symbol");
+		Symbol b = Symbol.create("another-test-symbol");
+
+		c = c.define(a, CVMLong.ONE).define(b, CVMLong.create(2)).define(a, CVMLong.create(3));
+		assertCVMEquals(3L, c.lookup(a).getResult());
+
+		// Definitions are reflected in the State once observed
+		State s1 = c.getState();
+		assertSame(s1, c.getState());
+		AccountStatus as0 = s0.getAccount(ADDR);
+		AHashMap<Symbol, ACell> env = as0.getEnvironment().assoc(b, CVMLong.create(2)).assoc(a, CVMLong.create(3));
+		assertEquals(s0.putAccount(ADDR, as0.withEnvironment(env)), s1);
+
+		// State changes after pending definitions are applied on top of them
+		Context<?> c2 = c.define(b, CVMLong.create(4)).transfer(InitTest.VILLAIN, 100);
+		AccountStatus as2 = c2.getState().getAccount(ADDR);
+		assertCVMEquals(4L, as2.getEnvironment().get(b));
+		assertEquals(as0.getBalance() - 100, as2.getBalance());
+	}
+
+	@Test
+	public void testAccountEdits() {
+		Context<?> c = context();
+		State s0 = c.getState();
+		Context<?> forked = c.fork();
+		Symbol a = Symbol.create("the-test-symbol");
+
+		// Interleaved definitions, transfers and holdings are visible before the State is rebuilt
+		c = c.define(a, CVMLong.ONE).transfer(VILLAIN, 100);
+		c = c.setHolding(VILLAIN, CVMLong.create(7)).transfer(VILLAIN, 50).define(a, CVMLong.create(2));
+		assertEquals(VILLAIN_BALANCE + 150, c.getBalance(VILLAIN));
+		assertCVMEquals(7L, c.getAccountStatus(VILLAIN).getHolding(ADDR));
+		assertCVMEquals(2L, c.lookup(a).getResult());
+
+		AccountStatus as0 = s0.getAccount(ADDR);
+		AccountStatus v0 = s0.getAccount(VILLAIN);
+		State expected = s0.putAccount(ADDR, as0.withBalance(as0.getBalance() - 150).withEnvironment(as0.getEnvironment().assoc(a, CVMLong.create(2))));
+		expected = expected.putAccount(VILLAIN, v0.withBalance(v0.getBalance() + 150).withHolding(ADDR, CVMLong.create(7)));
+		assertEquals(expected, c.getState());
+
+		// forked Context is unaffected
+		assertSame(s0, forked.getState());
+
+		// many distinct Accounts, beyond the edit buffer size
+		Context<?> c2 = context();
+		long n = s0.getAccounts().count();
+		State s2 = s0;
+		for (long i = 0; i < n; i++) {
+			Address target = Address.create(i);
+			c2 = c2.setHolding(target, CVMLong.create(i));
+			s2 = s2.putAccount(target, s2.getAccount(target).withHolding(ADDR, CVMLong.create(i)));
+		}
+		assertEquals(s2, c2.getState());
+	}
+
 	@Test
 	public void testQuery() {
 		Context<?> c2 = context();
@@ -108,6 +172,24 @@ public class ContextTest extends ACVMTest {
 		assertFalse(c.consumeJuice(c.getJuice()).isExceptional());
 	}
 
+	@Test
+	public void testDeadline() {
+		Context<?> c=context();
+		assertFalse(c.isTimedOut());
+
+		c=context().withDeadline(System.currentTimeMillis()+100000);
+		assertFalse(c.isTimedOut());
+		assertCVMEquals(3L,c.eval(Reader.read("(+ 1 2)")).getResult());
+
+		// deadline already passed
+		c=context().withDeadline(1);
+		assertTrue(c.isTimedOut());
+		assertFalse(c.checkJuice(1));
+		assertTrue(c.fork().isTimedOut());
+		assertError(ErrorCodes.TIMEOUT,c.consumeJuice(1));
+		assertEquals(0L,c.getJuice());
+	}
+
 	@Test
 	public void testDepth() {
 		Context<?> c=context();
@@ -3752,6 +3752,13 @@ public class CoreTest extends ACVMTest {
 		// set! cannot alter value within query
 		assertEquals(5L,evalL("(let [a 5] (query (set! a 6)) a)"));
 
+		// closures capture values at the time of creation
+		assertEquals(Vectors.of(1L,2L),eval("(let [a 1 f (fn [] a)] (set! a 2) [(f) a])"));
+
+		// set! within a loop body is visible to recur, and parameters can be set! in nested bindings
+		assertEquals(510L,evalL("(loop [i 0 acc 0] (if (< i 5) (do (set! acc (+ acc 100)) (recur (inc i) (+ acc i))) acc))"));
+		assertEquals(21L,evalL("(let [f (fn [x] (let [y (* x 2)] (set! x 1) (+ x y)))] (f 10))"));
+
 		// TODO: reconsider this
 		// set! doesn't work outside eval boundary?
 		assertCompileError(step ("(let [a 5] (eval `(set! a 7)) a)"));
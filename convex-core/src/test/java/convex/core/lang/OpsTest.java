@@ -266,6 +266,37 @@ public class OpsTest extends ACVMTest {
 		doOpTest(l2);
 	}
 
+	@Test
+	public void testLookupCache() {
+		Context<?> c=context();
+		Symbol sym=Symbol.create("count");
+		Lookup<?> op=Lookup.create(sym);
+		long JUICE=c.getJuice();
+
+		// resolved from core environment, then from cache
+		ACell coreCount=c.execute(op).getResult();
+		assertEquals(Core.COUNT,coreCount);
+		c=c.execute(op);
+		assertEquals(Core.COUNT,c.getResult());
+		assertEquals(JUICE-2*Juice.LOOKUP_DYNAMIC,c.getJuice());
+
+		// definition in current environment shadows cached core entry
+		c=c.define(sym, CVMLong.ONE);
+		assertEquals(CVMLong.ONE,c.execute(op).getResult());
+		c=c.define(sym, CVMLong.ZERO);
+		assertEquals(CVMLong.ZERO,c.execute(op).getResult());
+
+		// undefined again
+		c=c.undefine(sym);
+		assertEquals(Core.COUNT,c.execute(op).getResult());
+		
+		// undeclared lookups are not cached
+		Lookup<?> op2=Lookup.create("some-undeclared-symbol");
+		assertUndeclaredError(c.fork().execute(op2));
+		c=c.define(Symbol.create("some-undeclared-symbol"), CVMLong.ONE);
+		assertEquals(CVMLong.ONE,c.execute(op2).getResult());
+	}
+
 	@Test
 	public void testLocal() throws InvalidDataException {
 		Context<?> c=Context.createFake(State.EMPTY);
@@ -0,0 +1,168 @@
+package convex.core.lang.reader;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.junit.jupiter.api.Test;
+
+import convex.core.data.ACell;
+import convex.core.data.AList;
+import convex.core.exceptions.ParseException;
+import convex.core.lang.reader.antlr.ConvexLexer;
+import convex.core.lang.reader.antlr.ConvexParser;
+
+/**
+ * Differential tests checking that FastReader produces the same results as AntlrReader
+ */
+public class FastReaderTest {
+
+	private static final String[] VALID = {
+		"nil", "true", "false", "nils", "falsey", "true-exp", "nil/foo",
+		"0", "17", "-2", "001", "9223372036854775808", "-9223372036854775809", "999999999999999999999999999999",
+		"1.0", "-17.0E2", "1e3", "1e-3", "12e0", "00.1", "-1.5",
+		"0x", "0xcaFEBAbe", "#17", "#0001", "# 17", "##NaN", "##Inf", " ##-Inf", "# # NaN",
+		"\\a", "\\tab", "\\newline", "\\u0061", "\\|", "\\ ", "\\\u1234",
+		"\"\"", "\"bar\"", "\"ba\\nr\"", "\"\\\"bar\\\"\"", "\"\\123\"", "\"\\477\"", "\"\\0123\"", "\"\\u0053\"", "\"'\"",
+		"\"\\b\\t\\f\\r\\'\\\\\"", "\"caf\u00e9 \u1234\"",
+		":foo", "::foo", ":/", ":foo:bar", ":foo.bar",
+		"foo", "/", "+", "-", ".bar", ".56", "+a", "-abc", "a*+!-_?<>=!", "foo#bar", "a:b", "reg-123",
+		"foo/bar", "foo/bar/baz", "#0/foo", "#0//", "#1/foo/bar", "foo//", "foo///x", "foo////", "-1/foo",
+		"()", "[]", "{}", "#{}", "(1 2)", "[1 -2]", "{1 2}", "#{1 2}", "{:foo :bar}", "{1,2}",
+		"([][])", "([]13)", "(set[])", "[1():foo,bar]", "(fn[] )", "(+ 1)", "( +a )", "(/)",
+		"[1-2]", "[1abc]", "[-1abc]", "[1.5x]", "[-1.5x]", "[1e5x]", "[1e+5]", "[1.]", "[1.5.5]", "[0xg]", "[00x1]",
+		"[1/2]", "[\\newlinex]", "[\\uABCDEF]", "[\\u004]", "[:foo/bar]", "[#12abc]", "[#12 /foo]", "[#12/]", "[a#{1 2}]",
+		"^{} 1", "^:foo 3.23", "^{:foo :bar} [:a nil 3]", "^foo bar", "^{} nil",
+		"'0", "'foo", "''[]", "'~foo", "~@(foo)", "`[foo bar]", "~ foo",
+		";comment\n 1 \n", "[#_foo 2]", "[3 #_foo]", "[#_ #{1} 4]", "(def ^{:foo 2} a 1)",
+		"{5 6,1 2,3 4,7 8}", "[1 :foo #{} \\a 0x 9.0 100.0 ##Inf]"
+	};
+
+	private static final String[] INVALID = {
+		"", "  ", "1 2", ":", " : ", ":0", "0x0", "0x123", "0xgg", "(", ")", "[", "]", "{", "}", "((", "#{",
+		"#-1", "#-3", "#1/#2", "#-1/foo", "1.0e0.1234", "{:foobar}", "(42))))", "##foo", "##nil", "#_ 1",
+		"#9999999999999999999999999999999999999999999999999999999", "//foo", "///", "^{}", "'", "#",
+	};
+
+	@Test
+	public void testValid() {
+		for (String s : VALID) {
+			assertEquals(AntlrReader.read(s), FastReader.read(s), () -> "Reading: " + s);
+			assertEquals(AntlrReader.readAll(s), FastReader.readAll(s), () -> "Reading all: " + s);
+		}
+	}
+
+	@Test
+	public void testInvalid() {
+		for (String s : INVALID) {
+			// AntlrReader does not always throw a ParseException
+			assertThrows(RuntimeException.class, () -> AntlrReader.read(s), () -> "ANTLR reading: " + s);
+			assertThrows(ParseException.class, () -> FastReader.read(s), () -> "Reading: " + s);
+		}
+	}
+
+	@Test
+	public void testReadAll() {
+		assertEquals(AntlrReader.readAll(""), FastReader.readAll(""));
+		assertEquals(AntlrReader.readAll(" 1 2 ;foo"), FastReader.readAll(" 1 2 ;foo"));
+		assertEquals(AntlrReader.readAll("#_1 2 #_3"), FastReader.readAll("#_1 2 #_3"));
+		assertThrows(ParseException.class, () -> FastReader.readAll("1 2 ("));
+
+		// AntlrReader skips these, but they are not valid input
+		assertThrows(ParseException.class, () -> FastReader.readAll("() : ()"));
+		assertThrows(ParseException.class, () -> FastReader.readAll("1 ) 2"));
+		assertThrows(ParseException.class, () -> FastReader.read("foo@"));
+		assertThrows(ParseException.class, () -> FastReader.read("(bar~)"));
+	}
+
+	@Test
+	public void testJavaReader() throws IOException {
+		assertEquals(FastReader.read("[1 2 3]"), FastReader.read(new StringReader("[1 2 3]")));
+	}
+
+	@Test
+	public void testSources() throws IOException {
+		List<Path> files;
+		try (Stream<Path> s = Stream.concat(Files.walk(Paths.get("src/main/cvx")), Files.walk(Paths.get("src/test/cvx")))) {
+			files = s.filter(p -> p.toString().endsWith(".cvx")).collect(Collectors.toList());
+		}
+		assertTrue(files.size() > 10);
+		for (Path p : files) {
+			String source = new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
+			AList<ACell> expected = AntlrReader.readAll(source);
+			assertEquals(expected, FastReader.readAll(source), () -> "Reading source: " + p);
+		}
+	}
+
+	/**
+	 * Reads a form with the ANTLR parser, failing on any syntax error. AntlrReader itself
+	 * recovers from some errors, e.g. "(bar~)" is read as ((unquote bar)).
+	 */
+	private static ACell strictRead(String s) {
+		ConvexLexer lexer = new ConvexLexer(CharStreams.fromString(s));
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(new BaseErrorListener() {
+			@Override
+			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int col, String msg,
+					RecognitionException e) {
+				throw new ParseException(msg);
+			}
+		});
+		ConvexParser parser = new ConvexParser(new CommonTokenStream(lexer));
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+
+		AntlrReader.CRListener listener = new AntlrReader.CRListener();
+		ParseTreeWalker.DEFAULT.walk(listener, parser.singleForm());
+		List<ACell> top = listener.popList();
+		if (top.size() != 1) throw new ParseException("Bad parse output: " + top);
+		return top.get(0);
+	}
+
+	private static final String[] FRAGMENTS = {
+		"(", ")", "[", "]", "{", "}", "#", "#{", "#_", "^", "'", "`", "~", "~@", "/", "::k", "-", ".", "e", "E",
+		"0", "1", "23", "0x", "a1", "ff", "nil", "true", "false", "foo", "bar", "+", "*", "?", "!", "<", "=", "#7",
+		"\"x\"", "\"\\n\"", "\\a", "\\u0041", "\\space", ":k", "##", "NaN", "Inf", " ", " ", ",", "\n", ";c\n"
+	};
+
+	@Test
+	public void testRandomFragments() {
+		Random r = new Random(1234);
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int n = 1 + r.nextInt(8);
+			for (int j = 0; j < n; j++) {
+				sb.append(FRAGMENTS[r.nextInt(FRAGMENTS.length)]);
+			}
+			String s = sb.toString();
+			ACell expected;
+			try {
+				expected = strictRead(s);
+			} catch (RuntimeException e) {
+				assertThrows(ParseException.class, () -> FastReader.read(s), () -> "Expected parse error: " + s);
+				continue;
+			}
+			ACell actual = assertDoesNotThrow(() -> FastReader.read(s), () -> "Reading: " + s);
+			assertEquals(expected, actual, () -> "Reading: " + s);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package convex.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.data.ACell;
+import convex.core.data.Blob;
+import convex.core.data.Format;
+import convex.core.data.prim.CVMLong;
+import convex.core.exceptions.BadFormatException;
+import convex.core.store.BlobCache;
+
+public class BlobCacheTest {
+
+	private static ACell decode(long i) throws BadFormatException {
+		Blob enc = Format.encodedBlob(CVMLong.create(i));
+		return Format.read(enc);
+	}
+
+	@Test
+	public void testGetPut() throws BadFormatException {
+		BlobCache cache = BlobCache.create(1000000);
+		ACell a = decode(1234567);
+		Blob enc = a.getEncoding();
+
+		assertNull(cache.getCell(enc));
+		cache.putCell(a);
+		assertSame(a, cache.getCell(enc));
+		assertSame(a, cache.getCell(Blob.wrap(enc.getBytes()))); // equal encoding, different Blob
+
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getCount());
+		assertTrue(cache.getBytes() > enc.count());
+	}
+
+	@Test
+	public void testBudget() throws BadFormatException {
+		long budget = 100000;
+		BlobCache cache = BlobCache.create(budget);
+		int n = 10000;
+		for (int i = 0; i < n; i++) {
+			ACell a = decode(i);
+			if (cache.getCell(a.getEncoding()) == null) cache.putCell(a);
+		}
+		assertTrue(cache.getBytes() <= budget);
+		assertEquals(n, cache.getMisses());
+		assertEquals(n, cache.getCount() + cache.getEvictions() + cache.getRejections());
+		assertTrue(cache.getEvictions() > 0);
+	}
+
+	@Test
+	public void testAdmission() throws BadFormatException {
+		BlobCache cache = BlobCache.create(100000);
+
+		// frequently used cells
+		ArrayList<ACell> hot = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			ACell a = decode(i);
+			hot.add(a);
+			cache.putCell(a);
+			for (int j = 0; j < 5; j++) {
+				cache.getCell(a.getEncoding());
+			}
+		}
+
+		// a scan of cells used only once should not displace frequently used cells
+		for (int i = 1000; i < 100000; i++) {
+			ACell a = decode(i);
+			if (cache.getCell(a.getEncoding()) == null) cache.putCell(a);
+			if ((i % 1000) == 0) {
+				for (ACell h : hot) cache.getCell(h.getEncoding());
+			}
+		}
+
+		int retained = 0;
+		for (ACell h : hot) {
+			if (cache.getCell(h.getEncoding()) == h) retained++;
+		}
+		assertTrue(retained > 90, "Hot cells retained: " + retained);
+		assertTrue(cache.getRejections() > 0);
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		BlobCache cache = BlobCache.create(50000);
+		AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				try {
+					for (int i = 0; i < 20000; i++) {
+						ACell a = decode(i % 3000);
+						ACell c = cache.getCell(a.getEncoding());
+						if (c == null) {
+							cache.putCell(a);
+						} else if (!c.equals(a)) {
+							errors.incrementAndGet();
+						}
+					}
+				} catch (Exception e) {
+					errors.incrementAndGet();
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) t.join();
+
+		assertEquals(0, errors.get());
+		assertTrue(cache.getBytes() <= cache.getBudget());
+		assertEquals(4 * 20000, cache.getHits() + cache.getMisses());
+	}
+}
@@ -11,7 +11,11 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
@@ -33,6 +37,7 @@ import convex.core.data.Lists;
 import convex.core.data.Maps;
 import convex.core.data.Ref;
 import convex.core.data.Refs;
+import convex.core.data.Strings;
 import convex.core.data.Vectors;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadFormatException;
@@ -45,6 +50,7 @@ import convex.core.transactions.Invoke;
 import convex.core.transactions.Transfer;
 import convex.core.util.Utils;
 import convex.test.Samples;
+import etch.Etch;
 import etch.EtchStore;
 
 public class EtchStoreTest {
@@ -229,6 +235,26 @@ public class EtchStoreTest {
 		assertSame(cell,cell2);
 	}
 
+	@Test public void testDecodeTransient() throws BadFormatException {
+		AVector<ACell> v=Vectors.of(Strings.create("transient"),Symbols.FOO,Address.create(17));
+		Blob enc=v.getEncoding();
+
+		// view into a buffer which will be overwritten after decoding
+		byte[] buffer=new byte[(int)enc.count()+10];
+		enc.getBytes(buffer, 5);
+		Blob view=Blob.wrap(buffer,5,(int)enc.count());
+		ACell cell=store.decodeTransient(view);
+		Arrays.fill(buffer, (byte)0);
+		assertEquals(v,cell);
+		assertEquals(enc,cell.getEncoding());
+
+		// decoding an equal encoding should now be a cache hit with no copying needed
+		long hits=store.getBlobCache().getHits();
+		enc.getBytes(buffer, 5);
+		assertSame(cell,store.decodeTransient(view));
+		assertEquals(hits+1,store.getBlobCache().getHits());
+	}
+
 	@Test
 	public void testReopen() throws IOException {
 		File file=File.createTempFile("etch",null);
@@ -241,4 +267,178 @@ public class EtchStoreTest {
 		ACell data=es2.getRootData();
 		assertEquals(CVMLong.ONE,data);
 	}
+
+	@Test
+	public void testGarbageCollection() throws IOException {
+		File file=File.createTempFile("etch-gc",null);
+		file.deleteOnExit();
+		EtchStore es=EtchStore.create(file);
+		AStore oldStore = Stores.current();
+		AVector<Blob> live=Vectors.of(Blob.createRandom(new Random(), 100),Blob.createRandom(new Random(), 100));
+		AVector<Blob> extra=Vectors.of(Blob.createRandom(new Random(), 1000));
+		AVector<Blob> garbage=Vectors.of(Blob.createRandom(new Random(), 2000));
+		AVector<Blob> after=Vectors.of(Blob.createRandom(new Random(), 100));
+		try {
+			Stores.setCurrent(es);
+			es.setRootData(live);
+			ACell.createPersisted(extra);
+			ACell.createPersisted(garbage);
+			assertNotNull(es.refForHash(garbage.getHash()));
+			long oldLength=es.getEtch().getDataLength();
+			
+			es.collectGarbage(java.util.List.of(extra));
+			
+			assertEquals(live,es.getRootData());
+			assertEquals(extra.get(0),es.refForHash(extra.get(0).getHash()).getValue());
+			assertNull(es.refForHash(garbage.getHash()));
+			assertNull(es.refForHash(garbage.get(0).getHash()));
+			assertTrue(es.getEtch().getDataLength()<oldLength);
+			assertEquals(file.getCanonicalPath(),es.getFileName());
+			
+			// store should still be writable after GC
+			es.setRootData(after);
+			assertEquals(after,es.getRootData());
+		} finally {
+			Stores.setCurrent(oldStore);
+		}
+		es.close();
+
+		// compacted file should replace the original
+		EtchStore es2=EtchStore.create(file);
+		assertNull(es2.refForHash(garbage.getHash()));
+		assertEquals(after,es2.getRootData());
+		es2.close();
+	}
+
+	@Test
+	public void testWriteDuringGarbageCollection() throws Exception {
+		File file=File.createTempFile("etch-gc-concurrent",null);
+		file.deleteOnExit();
+		AtomicBoolean started=new AtomicBoolean(false);
+		AtomicBoolean done=new AtomicBoolean(false);
+		EtchStore es=new EtchStore(Etch.create(file)) {
+			@Override
+			public synchronized void startGC() throws IOException {
+				super.startGC();
+				started.set(true);
+			}
+		};
+		
+		// live data for the GC to copy, and stored data which is only retained if referenced by new writes
+		AVector<Blob> live=Vectors.empty();
+		AVector<Blob> old=Vectors.empty();
+		for (int i=0; i<10000; i++) {
+			live=live.conj(Blob.createRandom(new Random(i), 100));
+			old=old.conj(Blob.createRandom(new Random(-i), 200));
+		}
+		es.setRootData(live);
+		for (Blob b: old) {
+			es.storeTopRef(b.getRef(), Ref.PERSISTED, null);
+		}
+		
+		ConcurrentLinkedQueue<ACell> written=new ConcurrentLinkedQueue<>();
+		ConcurrentLinkedQueue<Throwable> errors=new ConcurrentLinkedQueue<>();
+		ArrayList<Thread> writers=new ArrayList<>();
+		for (int t=0; t<4; t++) {
+			final int seed=t;
+			final AVector<Blob> referenced=old;
+			Thread w=new Thread(()-> {
+				AStore oldStore = Stores.current();
+				Stores.setCurrent(es);
+				try {
+					Random r=new Random(seed);
+					while (!started.get()) Thread.onSpinWait();
+					while (!done.get()) {
+						// new data referencing a fresh copy of data already stored
+						Blob child=Blob.wrap(referenced.get(r.nextInt(10000)).getBytes());
+						ACell cell=Vectors.of(Blob.createRandom(r, 100),child);
+						ACell.createPersisted(cell);
+						written.add(cell);
+						assertEquals(cell,es.refForHash(cell.getHash()).getValue());
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				} finally {
+					Stores.setCurrent(oldStore);
+				}
+			});
+			writers.add(w);
+			w.start();
+		}
+		
+		es.collectGarbage(List.of());
+		done.set(true);
+		for (Thread w: writers) w.join();
+		
+		// everything written since the GC started must be retained
+		assertTrue(errors.isEmpty());
+		assertTrue(written.size()>0);
+		for (ACell cell: written) {
+			Ref<ACell> ref=es.refForHash(cell.getHash());
+			assertNotNull(ref);
+			assertEquals(cell,ref.getValue());
+			Blob child=(Blob)((AVector<?>)cell).get(1);
+			assertEquals(child,es.refForHash(child.getHash()).getValue());
+		}
+		assertEquals(live,es.getRootData());
+		es.close();
+	}
+
+	@Test
+	public void testBatchWrite() throws Exception {
+		AStore oldStore = Stores.current();
+		ArrayList<Ref<ACell>> novelty = new ArrayList<>();
+		try {
+			Stores.setCurrent(store);
+			AVector<Blob> data = Vectors.of(Blob.createRandom(new Random(), 1000),Blob.createRandom(new Random(), 1000));
+			Hash hash=data.getHash();
+			
+			store.beginBatch();
+			ACell.createPersisted(data,r->novelty.add(r));
+			
+			// visible to this thread, but not yet written or announced as novelty
+			assertNotNull(store.refForHash(hash));
+			assertNull(store.getEtch().read(hash));
+			assertEquals(0,novelty.size());
+			
+			store.commitBatch();
+			assertTrue(novelty.size()>0);
+			Ref<ACell> stored=store.getEtch().read(hash);
+			assertEquals(data,stored.getValue());
+			assertEquals(Ref.PERSISTED,stored.getStatus());
+			assertEquals(data.get(0),store.getEtch().read(data.get(0).getHash()).getValue());
+		} finally {
+			Stores.setCurrent(oldStore);
+		}
+	}
+
+	@Test
+	public void testLargeBatchFlush() throws Exception {
+		AStore oldStore = Stores.current();
+		ArrayList<Ref<ACell>> novelty = new ArrayList<>();
+		try {
+			Stores.setCurrent(store);
+			Random r=new Random(1234);
+			AVector<Blob> data = Vectors.empty();
+			for (int i=0; i<20000; i++) {
+				data=data.conj(Blob.createRandom(r, 200));
+			}
+			Blob first=data.get(0);
+			
+			store.beginBatch();
+			ACell.createPersisted(data,n->novelty.add(n));
+			
+			// large batch should be partially written before commit, with novelty announced
+			assertNotNull(store.getEtch().read(first.getHash()));
+			assertTrue(novelty.size()>0);
+			assertNull(store.getEtch().read(data.getHash()));
+			assertEquals(data,store.refForHash(data.getHash()).getValue());
+			
+			store.commitBatch();
+			assertEquals(data,store.getEtch().read(data.getHash()).getValue());
+			assertEquals(data,novelty.get(novelty.size()-1).getValue());
+		} finally {
+			Stores.setCurrent(oldStore);
+		}
+	}
 }
@@ -1,19 +1,35 @@
 package etch.api;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 
 import convex.core.data.ACell;
 import convex.core.data.AVector;
+import convex.core.data.Blob;
+import convex.core.data.Format;
 import convex.core.data.Hash;
 import convex.core.data.Ref;
+import convex.core.data.RefDirect;
+import convex.core.data.Tag;
 import convex.core.data.Vectors;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadFormatException;
@@ -73,6 +89,132 @@ public class TestEtch {
 		}
 	}
 
+	/**
+	 * Builds a legacy format file with a single value in the root index block, which is also the root hash
+	 */
+	private static byte[] createLegacyFile(File file, Blob b) throws IOException {
+		Hash h=b.getHash();
+		Blob enc=b.getEncoding();
+		long dataPos=42+2048;
+		ByteBuffer bb=ByteBuffer.allocate((int)dataPos+32+1+8+2+(int)enc.count());
+		bb.put((byte)0xe7).put((byte)0xc6);
+		bb.putLong(bb.capacity());
+		bb.put(h.getBytes()); // root hash
+		bb.position(42+8*(h.byteAt(0)&0xFF));
+		bb.putLong(dataPos);
+		bb.position((int)dataPos);
+		bb.put(h.getBytes());
+		bb.put((byte)Ref.STORED);
+		bb.putLong(0L);
+		bb.putShort((short)enc.count());
+		bb.put(enc.getBytes());
+		try (RandomAccessFile raf=new RandomAccessFile(file,"rw")) {
+			raf.write(bb.array());
+		}
+		return bb.array();
+	}
+
+	@Test
+	public void testLegacyFormat() throws IOException {
+		Blob b=Blob.createRandom(new Random(1234), 1000);
+		Hash h=b.getHash();
+		File file=File.createTempFile("etch-legacy-", null);
+		file.deleteOnExit();
+		File backup=EtchStore.getLegacyBackupFile(file);
+		backup.deleteOnExit();
+		byte[] legacyBytes=createLegacyFile(file,b);
+
+		// Legacy file is opened read-only in compatibility mode
+		EtchStore store=EtchStore.create(file);
+		Etch etch=store.getEtch();
+		assertTrue(etch.isReadOnly());
+		assertEquals(b,etch.read(h).getValue());
+		assertEquals(h,store.getRootHash());
+		assertThrows(IOException.class,()->etch.write(h, b.getRef()));
+		assertThrows(IOException.class,()->store.setRootData(b));
+		store.close();
+		
+		// Opening doesn't modify the file
+		assertArrayEquals(legacyBytes,Files.readAllBytes(file.toPath()));
+		assertFalse(backup.exists());
+
+		// Explicit migration copies all data to the current format, keeping the legacy file
+		EtchStore legacyStore=EtchStore.create(file);
+		assertTrue(legacyStore.migrate());
+		assertFalse(legacyStore.migrate());
+		Etch migrated=legacyStore.getEtch();
+		assertFalse(migrated.isReadOnly());
+		assertEquals(b,migrated.read(h).getValue());
+		assertEquals(h,legacyStore.getRootHash());
+		assertArrayEquals(legacyBytes,Files.readAllBytes(backup.toPath()));
+		Blob b2=Blob.createRandom(new Random(5678), 1000);
+		legacyStore.setRootData(b2);
+		assertEquals(b2,legacyStore.getRootData());
+		legacyStore.close();
+
+		EtchStore reopened=EtchStore.create(file);
+		assertFalse(reopened.getEtch().isReadOnly());
+		assertEquals(b2,reopened.getRootData());
+		assertEquals(b,reopened.refForHash(h).getValue());
+		reopened.close();
+		
+		// Backup is still a readable legacy file
+		EtchStore restored=EtchStore.create(backup);
+		assertTrue(restored.getEtch().isReadOnly());
+		assertEquals(b,restored.refForHash(h).getValue());
+		restored.close();
+	}
+
+	@Test
+	public void testLegacyGC() throws IOException {
+		Blob b=Blob.createRandom(new Random(1234), 1000);
+		File file=File.createTempFile("etch-legacy-", null);
+		file.deleteOnExit();
+		File backup=EtchStore.getLegacyBackupFile(file);
+		backup.deleteOnExit();
+		byte[] legacyBytes=createLegacyFile(file,b);
+
+		// Garbage collection migrates live data to the current format, keeping the legacy file
+		EtchStore store=EtchStore.create(file);
+		store.collectGarbage(List.of());
+		assertFalse(store.getEtch().isReadOnly());
+		assertEquals(b,store.getRootData());
+		assertArrayEquals(legacyBytes,Files.readAllBytes(backup.toPath()));
+		Blob b2=Blob.createRandom(new Random(5678), 1000);
+		store.setRootData(b2);
+		assertEquals(b2,store.getRootData());
+		store.close();
+	}
+
+	@Test
+	public void testLargeEncoding() throws IOException {
+		EtchStore store=EtchStore.createTemp();
+		Etch etch = store.getEtch();
+
+		// No canonical cell has an encoding this large, so attach a flat Blob encoding and 
+		// supply the decoded value from the decode cache. The read can only find it in the cache
+		// if the full encoding is stored and read back intact.
+		byte[] data=new byte[0x20000];
+		new Random(1234).nextBytes(data);
+		ByteBuffer bb=ByteBuffer.allocate(1+Format.getVLCLength(data.length)+data.length);
+		bb.put(Tag.BLOB);
+		Format.writeVLCLong(bb, data.length);
+		bb.put(data);
+		Blob big=Blob.wrap(data);
+		Blob enc=Blob.wrap(bb.array());
+		big.attachEncoding(enc);
+		store.getBlobCache().putCell(big);
+		Hash h=enc.getContentHash();
+		
+		etch.write(h, RefDirect.create(big, h));
+		Blob small=Blob.createRandom(new Random(5678), 1000);
+		etch.write(small.getHash(), small.getRef());
+		
+		assertEquals(big.toCanonical(),etch.read(h).getValue());
+		assertEquals(small,etch.read(small.getHash()).getValue());
+		store.close();
+	}
+
 	@Test
 	public void testLargeStore() throws IOException {
 		EtchStore store=EtchStore.createTemp();
@@ -87,6 +229,44 @@ public class TestEtch {
 		}
 	}
 
+	@Test
+	public void testConcurrentReadWrite() throws Exception {
+		EtchStore store=EtchStore.createTemp();
+		Etch etch = store.getEtch();
+		int THREADS=8;
+		int COUNT=2000;
+
+		ExecutorService ex=Executors.newFixedThreadPool(THREADS);
+		try {
+			ArrayList<Future<?>> results=new ArrayList<>();
+			for (int t=0; t<THREADS; t++) {
+				final long base=t*(long)COUNT;
+				results.add(ex.submit(() -> {
+					for (int i=0; i<COUNT; i++) {
+						AVector<CVMLong> v=Vectors.of(base+i);
+						Hash key=v.getHash();
+						etch.write(key, v.getRef());
+
+						// our own write must always be visible
+						assertEquals(v,etch.read(key).getValue());
+
+						// concurrent reads of values written by other threads should never fail
+						etch.read(Vectors.of(i).getHash());
+					}
+					return null;
+				}));
+			}
+			for (Future<?> f: results) f.get();
+		} finally {
+			ex.shutdown();
+		}
+
+		for (long i=0; i<THREADS*(long)COUNT; i++) {
+			AVector<CVMLong> v=Vectors.of(i);
+			assertEquals(v,etch.read(v.getHash()).getValue());
+		}
+	}
+
 	private void doStoreWrite(Etch etch, Random random) throws IOException {
 		AVector<CVMLong> v=Vectors.of(random.nextLong());
 		Hash key = v.getHash();
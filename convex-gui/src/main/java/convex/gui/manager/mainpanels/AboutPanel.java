@@ -73,7 +73,7 @@ public class AboutPanel extends JPanel {
 		sb.append("  juice-price:        " + lpad(Text.toFriendlyBalance(s.getJuicePrice().longValue())) + "\n");
 		sb.append("\n");
 		sb.append("Total funds:          " + lpad(Text.toFriendlyBalance(s.computeTotalFunds())) + "\n");
-		sb.append("Total stake:          " + lpad(Text.toFriendlyBalance(s.computeStakes().get(null))) + "\n");
+		sb.append("Total stake:          " + lpad(Text.toFriendlyBalance(s.getStakes().get(null))) + "\n");
 
 		textArea.setText(sb.toString());
 	}
@@ -2,6 +2,8 @@ package convex.api;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -12,6 +14,7 @@ import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import convex.core.Constants;
 import convex.core.Result;
 import convex.core.State;
 import convex.core.crypto.AKeyPair;
@@ -37,6 +40,11 @@ public class ConvexRemote extends Convex {
 	
 	private static final Logger log = LoggerFactory.getLogger(ConvexRemote.class.getName());
 
+	/**
+	 * Number of missing data requests to keep in flight when acquiring data
+	 */
+	protected int acquireWindow = Constants.DEFAULT_ACQUIRE_WINDOW;
+
 	
 	/**
 	 * Gets the Internet address of the currently connected remote
@@ -217,14 +225,18 @@ public class ConvexRemote extends Convex {
 			public void run() {
 				Stores.setCurrent(store); // use store for calling thread
 				try {
-					Ref<T> ref = store.refForHash(hash);
 					HashSet<Hash> missingSet = new HashSet<>();
+					
+					// Hashes requested and not yet received, with time of request
+					HashMap<Hash, Long> inFlight = new HashMap<>();
+					ArrayList<Hash> batch = new ArrayList<>();
 
 					// Loop until future is complete or cancelled
-					long LIMIT=1000; // limit of missing data elements to query at any time
+					long LIMIT=1000; // limit of missing data elements to scan for at any time
 					while (!f.isDone()) {
+						int maxInFlight = acquireWindow * Constants.MISSING_DATA_MAX_HASHES;
+						Ref<T> ref = store.refForHash(hash);
 						missingSet.clear();
-
 						if (ref == null) {
 							missingSet.add(hash);
 						} else {
@@ -234,34 +246,39 @@ public class ConvexRemote extends Convex {
 								return;
 							}
 							ref.findMissing(missingSet,LIMIT);
+							if (missingSet.isEmpty()) {
+								// maybe complete, but not sure
+								try {
+									ref = ref.persist();
+									f.complete(ref.getValue());
+									return;
+								} catch (MissingDataException e) {
+									missingSet.add(e.getMissingHash());
+								}
+							}
 						}
+
+						// send missing data requests until we fill the window
+						long now = Utils.getCurrentTimestamp();
 						for (Hash h : missingSet) {
-							// send missing data requests until we fill pipeline
-							log.debug("Request missing data: {}", h);
-							boolean sent = connection.sendMissingData(h);
-							if (!sent) {
-								log.debug("Send Queue full!");
-								break;
+							if (inFlight.size() >= maxInFlight) break;
+							Long requested = inFlight.get(h);
+							if ((requested != null) && (now - requested < Constants.ACQUIRE_RETRY_INTERVAL)) continue;
+							inFlight.put(h, now);
+							batch.add(h);
+							if (batch.size() == Constants.MISSING_DATA_MAX_HASHES) {
+								if (!sendMissing(batch, inFlight)) break;
 							}
 						}
-						// if too low, can send multiple requests, and then block the peer
-						Thread.sleep(100);
-						ref = store.refForHash(hash);
-						if (ref != null) {
-							if (ref.getStatus() >= Ref.PERSISTED) {
-								// we have everything!
-								f.complete(ref.getValue());
-								return;
-							}
-							// maybe complete, but not sure
-							try {
-								ref = ref.persist();
-								f.complete(ref.getValue());
-							} catch (MissingDataException e) {
-								Hash missing = e.getMissingHash();
-								log.debug("Still missing: {}", missing);
-								connection.sendMissingData(missing);
-							}
+						if (!batch.isEmpty()) sendMissing(batch, inFlight);
+
+						// wait until responses free up at least half the window, or requests time out
+						while (!f.isDone()) {
+							Thread.sleep(10);
+							inFlight.keySet().removeIf(h -> store.refForHash(h) != null);
+							long ts = Utils.getCurrentTimestamp();
+							inFlight.values().removeIf(t -> ts - t >= Constants.ACQUIRE_RETRY_INTERVAL);
+							if (inFlight.size() <= maxInFlight / 2) break;
 						}
 					}
 				} catch (Throwable t) {
@@ -272,6 +289,43 @@ public class ConvexRemote extends Convex {
 		}).start();
 		return f;
 	}
+
+	/**
+	 * Sends a batch of missing data requests, clearing the batch. If the send buffer is full, the 
+	 * hashes are removed from the in-flight set so that they can be requested again.
+	 * 
+	 * @return true if sent, false otherwise
+	 */
+	private boolean sendMissing(ArrayList<Hash> batch, HashMap<Hash, Long> inFlight) throws IOException {
+		log.debug("Request missing data for {} hashes", batch.size());
+		boolean sent = connection.sendMissingData(batch);
+		if (!sent) {
+			log.debug("Send Queue full!");
+			inFlight.keySet().removeAll(batch);
+		}
+		batch.clear();
+		return sent;
+	}
+
+	/**
+	 * Gets the number of missing data requests kept in flight when acquiring data
+	 * @return Window size in requests
+	 */
+	public int getAcquireWindow() {
+		return acquireWindow;
+	}
+
+	/**
+	 * Sets the number of missing data requests kept in flight when acquiring data. 
+	 * Larger values reduce the number of round trips needed for large data structures, 
+	 * at the cost of more load on the remote Peer.
+	 * 
+	 * @param window Window size in requests, must be at least 1
+	 */
+	public void setAcquireWindow(int window) {
+		if (window < 1) throw new IllegalArgumentException("Acquire window must be at least 1");
+		this.acquireWindow = window;
+	}
 	
 	/**
 	 * Disconnects the client from the network, closing the underlying connection.
@@ -12,7 +12,9 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
@@ -26,6 +28,7 @@ import convex.core.data.ACell;
 import convex.core.data.AccountKey;
 import convex.core.data.AVector;
 import convex.core.data.Address;
+import convex.core.data.Blob;
 import convex.core.data.Format;
 import convex.core.data.Hash;
 import convex.core.data.IRefFunction;
@@ -87,6 +90,11 @@ public class Connection {
 	 */
 	private final ByteBuffer frameBuf = ByteBuffer.allocateDirect(Format.LIMIT_ENCODING_LENGTH + 20);
 
+	/**
+	 * Maximum length of the cell data in a DATA_BATCH message, allowing for the message type byte
+	 */
+	private static final int MAX_BATCH_LENGTH = Format.LIMIT_ENCODING_LENGTH - 1;
+
 	private final MessageReceiver receiver;
 	private final MessageSender sender;
 
@@ -275,6 +283,58 @@ public class Connection {
 		return sendBuffer(MessageType.DATA, buf);
 	}
 
+	/**
+	 * Sends a collection of cells on this connection, packing as many cell encodings
+	 * as possible into each DATA_BATCH Message. 
+	 * 
+	 * Does not send embedded values.
+	 *
+	 * @param values Cells to send, typically in order of dependency (children first)
+	 * @return true if all buffered successfully, false otherwise (some not sent)
+	 * @throws IOException If IO error occurs
+	 */
+	public boolean sendDataBatch(Iterable<? extends ACell> values) throws IOException {
+		boolean sent = true;
+		ByteBuffer buf = null;
+		ACell first = null; // first cell in current batch
+		int count = 0; // number of cells in current batch
+		for (ACell value : values) {
+			if (Format.isEmbedded(value)) continue;
+			Blob enc = value.getEncoding();
+			int n = (int) enc.count();
+			int size = Format.getVLCLength(n) + n;
+			if (size > MAX_BATCH_LENGTH) {
+				// too big to include in a batch, so send separately
+				sent &= sendData(value);
+				continue;
+			}
+			if ((buf != null) && (buf.position() + size > MAX_BATCH_LENGTH)) {
+				sent &= sendBatchBuffer(buf, first, count);
+				buf = null;
+			}
+			if (buf == null) {
+				buf = ByteBuffer.allocate(MAX_BATCH_LENGTH);
+				first = value;
+				count = 0;
+			}
+			Format.writeVLCLong(buf, n);
+			buf.put(enc.getInternalArray(), enc.getInternalOffset(), n);
+			count++;
+		}
+		if (buf != null) sent &= sendBatchBuffer(buf, first, count);
+		return sent;
+	}
+
+	/**
+	 * Sends a buffer containing a batch of cell encodings. A batch of only one cell is sent
+	 * as a regular DATA Message.
+	 */
+	private boolean sendBatchBuffer(ByteBuffer buf, ACell first, int count) throws IOException {
+		if (count == 1) return sendData(first);
+		buf.flip();
+		return sendBuffer(MessageType.DATA_BATCH, buf);
+	}
+
 	/**
 	 * Sends a DATA Message on this connection.
 	 *
@@ -287,6 +347,23 @@ public class Connection {
 		return sendObject(MessageType.MISSING_DATA, value);
 	}
 
+	/**
+	 * Sends a MISSING_DATA Message requesting multiple hashes on this connection.
+	 *
+	 * @param hashes Hashes of missing data, at most Constants.MISSING_DATA_MAX_HASHES
+	 * @return true if buffered successfully, false otherwise (not sent)
+	 * @throws IOException If IO error occurs
+	 */
+	public boolean sendMissingData(List<Hash> hashes) throws IOException {
+		int n = hashes.size();
+		if (n == 1) return sendMissingData(hashes.get(0));
+		if (n > Constants.MISSING_DATA_MAX_HASHES) {
+			throw new IllegalArgumentException("Too many hashes in missing data request: " + n);
+		}
+		log.trace("Requested missing data for {} hashes with store {}", n, Stores.current());
+		return sendObject(MessageType.MISSING_DATA, Vectors.create(hashes));
+	}
+
 	/**
 	 * Sends a QUERY Message on this connection with a null Address
 	 *
@@ -474,7 +551,12 @@ public class Connection {
 	 * @throws IOException If IO error occurs
 	 */
 	public boolean sendMessage(Message msg) throws IOException {
-		return sendObject(msg.getType(), msg.getPayload());
+		MessageType type = msg.getType();
+		if (type == MessageType.DATA_BATCH) {
+			AVector<ACell> cells = msg.getPayload();
+			return sendDataBatch(cells);
+		}
+		return sendObject(type, msg.getPayload());
 	}
 
 	/**
@@ -491,17 +573,15 @@ public class Connection {
 
 		// Need to ensure message is persisted at least, so we can respond to missing
 		// data messages using the current thread store
-		// We pre-send any novelty to the destination
+		// We pre-send any novelty to the destination, batched into as few messages as possible
 		ACell sendVal = payload;
+		ArrayList<ACell> novelty = new ArrayList<>();
 		ACell.createPersisted(sendVal, r -> {
-			try {
-				ACell data = r.getValue();
-				if (data==sendVal) return; // skip sending top payload
-				if (!Format.isEmbedded(data)) sendData(data);
-			} catch (IOException e) {
-				throw Utils.sneakyThrow(e);
-			}
+			ACell data = r.getValue();
+			if (data==sendVal) return; // skip sending top payload
+			if (!Format.isEmbedded(data)) novelty.add(data);
 		});
+		if (!novelty.isEmpty()) sendDataBatch(novelty);
 
 		ByteBuffer buf = Format.encodedBuffer(sendVal);
 		if (log.isTraceEnabled()) {
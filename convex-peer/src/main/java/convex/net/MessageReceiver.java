@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -11,9 +12,12 @@ import org.slf4j.LoggerFactory;
 
 import convex.core.Constants;
 import convex.core.data.ACell;
+import convex.core.data.AVector;
 import convex.core.data.Blob;
 import convex.core.data.Format;
+import convex.core.data.Vectors;
 import convex.core.exceptions.BadFormatException;
+import convex.core.store.AStore;
 import convex.net.message.Message;
 
 /**
@@ -130,10 +134,9 @@ public class MessageReceiver {
 		byte mType=buffer.get();
 		MessageType type=MessageType.decode(mType);
 		
-		byte[] bs=new byte[len-1]; // message length after type byte
-		buffer.get(bs);
-		assert(!buffer.hasRemaining()); // should consume entire buffer!
-		Blob encoding=Blob.wrap(bs);
+		// view of message content after type byte. Only valid until the buffer is cleared, 
+		// so decoding must copy anything retained
+		Blob encoding=Blob.wrap(buffer.array(), buffer.arrayOffset()+buffer.position(), len-1);
 
 		receiveMessage(type, encoding);
 
@@ -153,11 +156,17 @@ public class MessageReceiver {
 	 *
 	 * SECURITY: Gets called on NIO server thread
 	 *
+	 * @param type Message type
+	 * @param encoding Transient view of message content, which must not be retained
 	 * @throws BadFormatException if the message is incorrectly formatted`
 	 */
 	private void receiveMessage(MessageType type, Blob encoding) throws BadFormatException {
-		
-		ACell payload = connection.getStore().decode(encoding);
+		ACell payload;
+		if (type==MessageType.DATA_BATCH) {
+			payload = decodeBatch(encoding);
+		} else {
+			payload = connection.getStore().decodeTransient(encoding);
+		}
 
 		Message message = Message.create(connection, type, payload);
 		receivedMessageCount++;
@@ -174,4 +183,27 @@ public class MessageReceiver {
 		}
 	}
 
+	/**
+	 * Decodes the content of a DATA_BATCH message, which is a sequence of cell encodings
+	 * each preceded by a VLC encoded length.
+	 *
+	 * @param encoding Transient view of message content after type byte
+	 * @return Vector of decoded cells
+	 * @throws BadFormatException if any cell encoding is invalid
+	 */
+	private AVector<ACell> decodeBatch(Blob encoding) throws BadFormatException {
+		AStore store=connection.getStore();
+		ArrayList<ACell> cells=new ArrayList<>();
+		int n=(int)encoding.count();
+		int pos=0;
+		while (pos<n) {
+			long clen=Format.readVLCLong(encoding, pos);
+			pos+=Format.getVLCLength(clen);
+			if ((clen<=0)||(pos+clen>n)) throw new BadFormatException("Invalid cell length in DATA_BATCH: "+clen);
+			cells.add(store.decodeTransient(encoding.slice(pos, pos+clen)));
+			pos+=(int)clen;
+		}
+		return Vectors.create(cells);
+	}
+
 }
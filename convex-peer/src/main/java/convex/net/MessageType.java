@@ -44,10 +44,12 @@ public enum MessageType {
 	 * Excessive invalid missing data requests may be considered a DoS attack by
 	 * peers. Peers under load may need to ignore missing data requests.
 	 *
-	 * Payload is the missing data hash.
+	 * Payload is the missing data hash, or a Vector of up to 
+	 * Constants.MISSING_DATA_MAX_HASHES missing data hashes.
 	 *
-	 * Receiver should respond with a DATA message if the specified data is
-	 * available in their store.
+	 * Receiver should respond with DATA or DATA_BATCH messages containing the
+	 * specified data if available in their store, and may include descendants
+	 * of the specified data that the requester is likely to be missing.
 	 */
 	MISSING_DATA(5),
 
@@ -101,7 +103,16 @@ public enum MessageType {
 	 *
 	 * Expected Result is a Vector: [signed-belief-hash states-hash initial-state-hash peer-key consensus-state-hash]
 	 */
-	STATUS(11);
+	STATUS(11),
+
+	/**
+	 * A message relaying multiple cells at once, typically novelty sent ahead of
+	 * another message.
+	 *
+	 * Wire format is a sequence of cell encodings, each preceded by its VLC encoded
+	 * length. Received as a Vector of the decoded cells.
+	 */
+	DATA_BATCH(12);
 
 	private final byte messageCode;
 
@@ -133,6 +144,8 @@ public enum MessageType {
 			return GOODBYE;
 		case 11:
 			return STATUS;
+		case 12:
+			return DATA_BATCH;
 		}
 		throw new BadFormatException("Invalid message code: " + i);
 	}
@@ -14,7 +14,6 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,7 +21,6 @@ import org.slf4j.LoggerFactory;
 import convex.core.Constants;
 import convex.core.exceptions.BadFormatException;
 import convex.core.store.Stores;
-import convex.net.message.Message;
 import convex.peer.Server;
 
 /**
@@ -42,28 +40,25 @@ public class NIOServer implements Closeable {
 
 	private ServerSocketChannel ssc = null;
 
-	private BlockingQueue<Message> receiveQueue;
-
 	private Selector selector = null;
 
 	private boolean running = false;
 
 	private final Server server;
 
-	private NIOServer(Server server, BlockingQueue<Message> receiveQueue) {
+	private NIOServer(Server server) {
 		this.server = server;
-		this.receiveQueue = receiveQueue;
 	}
 
 	/**
-	 * Creates a new unlaunched NIO server
+	 * Creates a new unlaunched NIO server. Received messages are passed to the
+	 * receive action of the Server.
 	 * 
 	 * @param server       Peer Server instance for this NIOServer
-	 * @param receiveQueue Queue for received messages
 	 * @return New NIOServer instance
 	 */
-	public static NIOServer create(Server server, BlockingQueue<Message> receiveQueue) {
-		return new NIOServer(server, receiveQueue);
+	public static NIOServer create(Server server) {
+		return new NIOServer(server);
 	}
 
 	public void launch(Integer port) {
@@ -211,12 +206,12 @@ public class NIOServer implements Closeable {
 			return pc;
 		SocketChannel sc = (SocketChannel) key.channel();
 		assert (!sc.isBlocking());
-		pc = createPC(sc, receiveQueue);
+		pc = createPC(sc);
 		key.attach(pc);
 		return pc;
 	}
 
-	private Connection createPC(SocketChannel sc, BlockingQueue<Message> queue) throws IOException {
+	private Connection createPC(SocketChannel sc) throws IOException {
 		return Connection.create(sc, server.getReceiveAction(), server.getStore(), null);
 	}
 
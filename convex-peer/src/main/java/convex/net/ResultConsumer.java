@@ -2,6 +2,7 @@ package convex.net;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -9,10 +10,11 @@ import org.slf4j.LoggerFactory;
 
 import convex.core.Result;
 import convex.core.data.ACell;
+import convex.core.data.AVector;
 import convex.core.data.Hash;
 import convex.core.data.Ref;
+import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.MissingDataException;
-import convex.core.lang.RT;
 import convex.core.store.Stores;
 import convex.core.util.Utils;
 import convex.net.message.Message;
@@ -36,6 +38,10 @@ public abstract class ResultConsumer implements Consumer<Message> {
 					handleDataProvided(m);
 					break;
 				}
+				case DATA_BATCH: {
+					handleDataBatchProvided(m);
+					break;
+				}
 				case MISSING_DATA: {
 					handleMissingDataRequest(m);
 					break;
@@ -68,16 +74,27 @@ public abstract class ResultConsumer implements Consumer<Message> {
 		}
 	}
 
+	private void handleDataBatchProvided(Message m) {
+		AVector<ACell> cells = m.getPayload();
+		for (ACell o : cells) {
+			Ref<?> r = Ref.get(o);
+			r.persistShallow();
+			unbuffer(r.getHash());
+		}
+	}
+
 	private void handleMissingDataRequest(Message m) {
 		// try to be helpful by returning sent data
-		Hash h = RT.ensureHash(m.getPayload());
-		if (h==null) return; // not a valid payload so ignore
+		List<Hash> hashes = m.getRequestedHashes();
+		if (hashes==null) return; // not a valid payload so ignore
 		
-		Ref<?> r = Stores.current().refForHash(h);
-		if (r != null) try {
-			m.sendData(r.getValue());
-		} catch (Exception e) {
-			log.debug("Error replying to MISSING DATA request",e);
+		for (Hash h : hashes) {
+			Ref<?> r = Stores.current().refForHash(h);
+			if (r != null) try {
+				m.sendData(r.getValue());
+			} catch (Exception e) {
+				log.debug("Error replying to MISSING DATA request",e);
+			}
 		}
 	}
 
@@ -120,8 +137,16 @@ public abstract class ResultConsumer implements Consumer<Message> {
 		try {
 			ACell.createPersisted(result);
 
+			// Results without an ID are not correlated with any request, e.g. LOAD errors
+			// from a peer that dropped a MISSING_DATA request
+			CVMLong mid=m.getID();
+			if (mid==null) {
+				log.warn("Received uncorrelated result: {} : {}", result.getErrorCode(), result.getValue());
+				return;
+			}
+
 			// we now have the full result, so notify those interested
-			long id=m.getID().longValue();
+			long id=mid.longValue();
 			handleResult(id,result);
 		} catch (MissingDataException e) {
 			// If there is missing data, re-buffer the message
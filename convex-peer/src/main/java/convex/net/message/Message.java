@@ -1,9 +1,13 @@
 package convex.net.message;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import convex.core.Belief;
+import convex.core.Constants;
 import convex.core.Result;
 import convex.core.data.ACell;
 import convex.core.data.AVector;
@@ -11,8 +15,10 @@ import convex.core.data.Blob;
 import convex.core.data.Format;
 import convex.core.data.Hash;
 import convex.core.data.SignedData;
+import convex.core.data.Vectors;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadFormatException;
+import convex.core.lang.RT;
 import convex.core.util.Utils;
 import convex.net.Connection;
 import convex.net.MessageType;
@@ -53,6 +59,15 @@ public abstract class Message {
 		return create(null,MessageType.DATA,o);
 	}
 
+	/**
+	 * Creates a DATA_BATCH message for sending multiple cells at once
+	 * @param cells Cells to send. Embedded values will be skipped.
+	 * @return New Message instance
+	 */
+	public static Message createDataBatch(List<ACell> cells) {
+		return create(null,MessageType.DATA_BATCH,Vectors.create(cells));
+	}
+
 	public static Message createBelief(SignedData<Belief> sb) {
 		return create(null,MessageType.BELIEF,sb);
 	}
@@ -149,6 +164,38 @@ public abstract class Message {
 	 */
 	public abstract boolean sendData(ACell data);
 
+	/**
+	 * Sends a batch of cells to the connected Peer
+	 * @param cells Cells to send
+	 * @return true if all data sent, false otherwise
+	 */
+	public abstract boolean sendDataBatch(List<ACell> cells);
+
+	/**
+	 * Gets the hashes requested by a MISSING_DATA message. The payload may be either
+	 * a single Hash or a Vector of Hashes.
+	 * 
+	 * @return List of requested hashes, or null if the payload is not valid
+	 */
+	public List<Hash> getRequestedHashes() {
+		ensurePayload();
+		if (payload instanceof AVector) {
+			AVector<?> v = (AVector<?>) payload;
+			long n = v.count();
+			if ((n == 0) || (n > Constants.MISSING_DATA_MAX_HASHES)) return null;
+			ArrayList<Hash> result = new ArrayList<>((int) n);
+			for (long i = 0; i < n; i++) {
+				Hash h = RT.ensureHash(v.get(i));
+				if (h == null) return null;
+				result.add(h);
+			}
+			return result;
+		}
+		Hash h = RT.ensureHash(payload);
+		if (h == null) return null;
+		return List.of(h);
+	}
+
 	/**
 	 * Sends a missing data request to the connected Peer
 	 * @param hash HAsh of missing data
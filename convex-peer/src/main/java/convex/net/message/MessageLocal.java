@@ -1,5 +1,6 @@
 package convex.net.message;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 import convex.core.Result;
@@ -63,6 +64,14 @@ public class MessageLocal extends Message {
 		return true;
 	}
 
+	@Override
+	public boolean sendDataBatch(List<ACell> cells) {
+		for (ACell data : cells) {
+			sendData(data);
+		}
+		return true;
+	}
+
 	@Override
 	public boolean sendMissingData(Hash hash) {
 		Ref<ACell> ref=server.getStore().refForHash(hash);
@@ -1,6 +1,7 @@
 package convex.net.message;
 
 import java.io.IOException;
+import java.util.List;
 
 import convex.core.Result;
 import convex.core.data.ACell;
@@ -90,6 +91,17 @@ public class MessageRemote extends Message {
 		return true;
 	}
 
+	@Override
+	public boolean sendDataBatch(List<ACell> cells) {
+		Connection pc=getConnection();
+		if (pc==null) return false;
+		try {
+			return pc.sendDataBatch(cells);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
 	@Override
 	public boolean sendMissingData(Hash hash) {
 		Connection pc=getConnection();
@@ -51,6 +51,11 @@ public class API {
 	 * <li>:url (optional, String) - public URL for server. If provided, peer will set its public on-chain address based on this, and the bind-address to 0.0.0.0.
 	 * <li>:auto-manage (optional Boolean) - set to true for peer to auto-manage own account. Defaults to true.
      * <li>:bind-address (optional String) - IP address of the ethernet device to bind too. For public peers set too 0.0.0.0. Default to 127.0.0.1.
+	 * <li>:history-limit (optional, Integer) - Number of recent States to retain in memory. Older States are reloaded from the store. Default 1000.
+	 * <li>:query-timeout (optional, Long) - Maximum time in milliseconds for execution of a client query. Queries exceeding this fail with a :TIMEOUT error. Default 10000.
+	 * <li>:query-limit (optional, Integer) - Maximum number of queries executing concurrently for each client connection. Queries beyond this fail with a :LOAD error. Capped at one less than the number of query threads (the larger of 4 and the number of processors). Default 4.
+	 * <li>:receive-queue-sizes (optional, Map of MessageType to Integer) - Capacity of the receive queue for each message type, overriding the defaults: 5000 for DATA, 1000 for all other types. Messages received while the queue for their type is full are dropped, with a :LOAD error Result sent for requests, except BELIEF where the oldest queued Belief is evicted instead.
+	 * <li>:gc-interval (optional, Long) - Interval in milliseconds between online compactions of the Peer's Etch store, run on a background thread. Zero or absent disables compaction (the default).
 	 * </ul>
 	 *
 	 * @param peerConfig Config map for the new Peer
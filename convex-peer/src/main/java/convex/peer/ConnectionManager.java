@@ -182,7 +182,7 @@ public class ConnectionManager {
 
 		int targetPeerCount=getTargetPeerCount();
 		int currentPeerCount=connections.size();
-		double totalStake=s.computeStakes().get(null);
+		double totalStake=s.getStakes().get(null);
 
 		AccountKey[] peers = connections.keySet().toArray(new AccountKey[currentPeerCount]);
 		for (AccountKey p: peers) {
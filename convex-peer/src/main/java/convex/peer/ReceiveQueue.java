@@ -0,0 +1,174 @@
+package convex.peer;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import convex.net.MessageType;
+import convex.net.message.Message;
+
+/**
+ * Queue for messages received by a Server, with a separate bounded queue for each MessageType.
+ *
+ * Messages are taken using a smooth weighted round robin across all non-empty queues, so that
+ * consensus traffic (Beliefs etc.) is favoured without starving any message type.
+ *
+ * Adding messages never blocks: if the queue for a message type is full, the message is rejected
+ * so that the caller can shed load appropriately, or alternatively the oldest queued message of
+ * the same type can be evicted to make room (see {@link #offerEvictOldest(Message)}).
+ *
+ * CONCURRENCY: safe for multiple producers. Intended for a single consumer.
+ */
+public class ReceiveQueue {
+
+	/**
+	 * Default capacity for queues of message types with no specific default
+	 */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	private static final MessageType[] TYPES = MessageType.values();
+
+	private final ArrayBlockingQueue<Message>[] queues;
+	private final int[] weights;
+
+	/**
+	 * Current scheduling credit for each queue (smooth weighted round robin)
+	 */
+	private final int[] credits;
+
+	/**
+	 * Number of messages available to take. Released for every message added.
+	 */
+	private final Semaphore available = new Semaphore(0);
+
+	/**
+	 * Creates a ReceiveQueue with default capacities, overridden by any specified capacities.
+	 * @param capacities Map of MessageType to queue capacity. May be null.
+	 */
+	@SuppressWarnings("unchecked")
+	public ReceiveQueue(Map<MessageType, Integer> capacities) {
+		int n = TYPES.length;
+		queues = new ArrayBlockingQueue[n];
+		weights = new int[n];
+		credits = new int[n];
+		for (int i = 0; i < n; i++) {
+			MessageType type = TYPES[i];
+			Integer capacity = (capacities == null) ? null : capacities.get(type);
+			if (capacity == null) capacity = defaultCapacity(type);
+			queues[i] = new ArrayBlockingQueue<>(capacity);
+			weights[i] = weight(type);
+		}
+	}
+
+	/**
+	 * Gets the default queue capacity for a message type
+	 * @param type Message type
+	 * @return Default capacity
+	 */
+	public static int defaultCapacity(MessageType type) {
+		switch (type) {
+		case DATA: return 5000;
+		case DATA_BATCH: return 1000;
+		case BELIEF: return 1000;
+		case TRANSACT: return 1000;
+		case QUERY: return 1000;
+		case MISSING_DATA: return 1000;
+		default: return DEFAULT_CAPACITY;
+		}
+	}
+
+	/**
+	 * Gets the scheduling weight for a message type. Consensus traffic has the highest weight.
+	 * @param type Message type
+	 * @return Weight (relative share of processing when queues are busy)
+	 */
+	static int weight(MessageType type) {
+		switch (type) {
+		case BELIEF: return 16;
+		case CHALLENGE: case RESPONSE: case GOODBYE: return 8;
+		case DATA: case DATA_BATCH: case MISSING_DATA: return 4;
+		case TRANSACT: return 4;
+		case STATUS: return 2;
+		case QUERY: return 1;
+		default: return 1;
+		}
+	}
+
+	/**
+	 * Adds a message to the queue for its type, without blocking
+	 * @param m Message to add
+	 * @return true if added, false if the queue for the message type is full
+	 */
+	public boolean offer(Message m) {
+		if (!queues[m.getType().ordinal()].offer(m)) return false;
+		available.release();
+		return true;
+	}
+
+	/**
+	 * Adds a message to the queue for its type, evicting the oldest queued message of the same
+	 * type if the queue is full. Useful where only the latest messages are relevant.
+	 * @param m Message to add
+	 * @return Evicted message, or null if no message was evicted
+	 */
+	public synchronized Message offerEvictOldest(Message m) {
+		ArrayBlockingQueue<Message> q = queues[m.getType().ordinal()];
+		Message evicted = null;
+		while (!q.offer(m)) {
+			Message old = q.poll();
+			if (old == null) continue; // drained concurrently, retry
+			evicted = old;
+
+			// Remove the permit for the evicted message. If the consumer already holds it, the
+			// consumer may find no message to take, in which case poll returns null.
+			available.tryAcquire();
+		}
+		available.release();
+		return evicted;
+	}
+
+	/**
+	 * Takes the next message to process, waiting if necessary
+	 * @param timeout Maximum time to wait
+	 * @param unit Unit of timeout
+	 * @return Next message, or null if none available before the timeout
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+		if (!available.tryAcquire(timeout, unit)) return null;
+
+		synchronized (this) {
+			// Smooth weighted round robin over non-empty queues
+			int n = queues.length;
+			int best = -1;
+			int total = 0;
+			for (int i = 0; i < n; i++) {
+				if (queues[i].isEmpty()) continue;
+				credits[i] += weights[i];
+				total += weights[i];
+				if ((best < 0) || (credits[i] > credits[best])) best = i;
+			}
+			if (best < 0) return null; // message evicted after permit was acquired
+			credits[best] -= total;
+			return queues[best].poll();
+		}
+	}
+
+	/**
+	 * Gets the number of messages waiting in the queue for a given type
+	 * @param type Message type
+	 * @return Number of queued messages
+	 */
+	public int size(MessageType type) {
+		return queues[type.ordinal()].size();
+	}
+
+	/**
+	 * Gets the total number of messages waiting
+	 * @return Number of queued messages
+	 */
+	public int size() {
+		return available.availablePermits();
+	}
+}
@@ -3,14 +3,24 @@ package convex.peer;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -59,9 +69,12 @@ import convex.core.transactions.ATransaction;
 import convex.core.transactions.Invoke;
 import convex.core.util.Shutdown;
 import convex.core.util.Utils;
+import convex.net.Connection;
 import convex.net.MessageType;
 import convex.net.NIOServer;
 import convex.net.message.Message;
+import convex.net.message.MessageRemote;
+import etch.EtchStore;
 
 
 /**
@@ -69,7 +82,11 @@ import convex.net.message.Message;
  *
  * Server creates the following threads:
  * - A ReceiverThread that processes message from the Server's receive Queue
+ * - A TransactionVerifyThread that forwards client transactions in order once signatures are verified
+ * - A pool of verifier threads that check transaction signatures in parallel
+ * - A pool of query threads that execute client queries against a snapshot of the Peer
  * - An UpdateThread that handles Belief updates and transaction processing
+ * - A GC thread that periodically compacts the store, if a :gc-interval is configured
  * - A ConnectionManager thread, via the ConnectionManager
  *
  * "Programming is a science dressed up as art, because most of us don't
@@ -86,14 +103,22 @@ import convex.net.message.Message;
 public class Server implements Closeable {
 	public static final int DEFAULT_PORT = 18888;
 
-	private static final int RECEIVE_QUEUE_SIZE = 10000;
-
 	/**
 	 * Default size for incoming client transaction queue
 	 * Note: this limits TPS for client transactions, will send failures if overloaded
 	 */
 	private static final int TRANSACTION_QUEUE_SIZE = 500;
 	
+	/**
+	 * Size of queue for transactions awaiting signature verification
+	 */
+	private static final int VERIFY_QUEUE_SIZE = 1000;
+
+	/**
+	 * Number of threads used for parallel transaction signature verification
+	 */
+	private static final int VERIFY_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
 	/**
 	 * Size of incoming Belief queue
 	 */
@@ -110,15 +135,57 @@ public class Server implements Closeable {
 	// private static final Level LEVEL_MESSAGE = Level.FINER;
 
 	/**
-	 * Queue for received messages to be processed by this Peer Server
+	 * Queue for received messages to be processed by this Peer Server, with a separate
+	 * bounded queue for each message type
 	 */
-	private BlockingQueue<Message> receiveQueue = new ArrayBlockingQueue<Message>(RECEIVE_QUEUE_SIZE);
+	private final ReceiveQueue receiveQueue;
 
 	/**
 	 * Queue for received Transactions submitted for clients of this Peer
 	 */
 	private BlockingQueue<SignedData<ATransaction>> transactionQueue;
 	
+	/**
+	 * Queue for received Transactions awaiting signature verification, in order of receipt
+	 */
+	private BlockingQueue<PendingTransaction> verifyQueue;
+
+	/**
+	 * Executor for parallel verification of transaction signatures
+	 */
+	private ExecutorService verifyExecutor;
+
+	/**
+	 * Executor for client queries, so that queries do not hold up the receiver thread
+	 */
+	private ExecutorService queryExecutor;
+
+	/**
+	 * Number of queries currently executing for each client connection
+	 */
+	private final ConcurrentHashMap<Object, Integer> activeQueries = new ConcurrentHashMap<>();
+
+	/**
+	 * Timeout in milliseconds for query execution
+	 */
+	private long queryTimeout = Constants.DEFAULT_QUERY_TIMEOUT;
+
+	/**
+	 * Maximum number of concurrent queries for each client connection. Capped below the
+	 * size of the query pool, so that a single client cannot occupy every query thread.
+	 */
+	private int queryLimit = Constants.DEFAULT_QUERY_LIMIT;
+
+	/**
+	 * Interval in milliseconds between store compactions, or zero if disabled
+	 */
+	private long gcInterval = 0;
+
+	/**
+	 * Number of completed store compactions
+	 */
+	private final AtomicLong compactionCount = new AtomicLong();
+
 	/**
 	 * Queue for received events (Beliefs, Transactions) to be processed
 	 */
@@ -169,7 +236,9 @@ public class Server implements Closeable {
 
 	private NIOServer nio;
 	private Thread receiverThread = null;
+	private Thread verifyThread = null;
 	private Thread beliefMergeThread = null;
+	private Thread gcThread = null;
 
 	/**
 	 * The Peer instance current state for this server. Will be updated based on peer events.
@@ -213,6 +282,10 @@ public class Server implements Closeable {
 
 		this.rootKey = (ACell)config.get(Keywords.ROOT_KEY);
 
+		@SuppressWarnings("unchecked")
+		Map<MessageType, Integer> queueSizes = (Map<MessageType, Integer>) config.get(Keywords.RECEIVE_QUEUE_SIZES);
+		this.receiveQueue = new ReceiveQueue(queueSizes);
+
 		AStore configStore = (AStore) config.get(Keywords.STORE);
 		this.store = (configStore == null) ? Stores.current() : configStore;
 
@@ -226,6 +299,7 @@ public class Server implements Closeable {
 		
 		// Set up Queue. TODO: use config if provided
 		transactionQueue = new ArrayBlockingQueue<>(TRANSACTION_QUEUE_SIZE);
+		verifyQueue = new ArrayBlockingQueue<>(VERIFY_QUEUE_SIZE);
 		beliefQueue = new ArrayBlockingQueue<>(BELIEF_QUEUE_SIZE);
 		
 		// Switch to use the configured store for setup, saving the caller store
@@ -238,10 +312,12 @@ public class Server implements Closeable {
 			this.propagator = new BeliefPropagator(this);
 
 			this.peer = establishPeer();
+			Object historyLimit=config.get(Keywords.HISTORY_LIMIT);
+			if (historyLimit!=null) this.peer=peer.withHistoryLimit(Utils.toInt(historyLimit));
 
 			establishController();
 
-			nio = NIOServer.create(this, receiveQueue);
+			nio = NIOServer.create(this);
 
 		} finally {
 			Stores.setCurrent(savedStore);
@@ -421,15 +497,64 @@ public class Server implements Closeable {
 			// Start connection manager loop
 			manager.start();
 
+			Object qt = config.get(Keywords.QUERY_TIMEOUT);
+			if (qt != null) queryTimeout = Utils.toInt(qt);
+			Object ql = config.get(Keywords.QUERY_LIMIT);
+			if (ql != null) queryLimit = Utils.toInt(ql);
+
+			// Start query pool, needed before receiving queries
+			// At least a few threads, so that clients can have concurrent queries on small machines
+			final int queryThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+			int maxQueryLimit = queryThreads - 1;
+			if (queryLimit > maxQueryLimit) {
+				log.warn("Configured {} of {} exceeds maximum for {} query threads, using {}", Keywords.QUERY_LIMIT, queryLimit, queryThreads, maxQueryLimit);
+				queryLimit = maxQueryLimit;
+			}
+			queryLimit = Math.max(1, queryLimit);
+			final String queryName = "Query Executor on port: " + port;
+			final AtomicInteger queryCount = new AtomicInteger(0);
+			queryExecutor = Executors.newFixedThreadPool(queryThreads, r -> {
+				Thread t = new Thread(r, queryName + " #" + queryCount.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			});
+
+			// Start transaction verification pool, needed before receiving transactions
+			final String verifierName = "Transaction Verifier on port: " + port;
+			final AtomicInteger verifierCount = new AtomicInteger(0);
+			verifyExecutor = Executors.newFixedThreadPool(VERIFY_THREADS, r -> {
+				Thread t = new Thread(r, verifierName + " #" + verifierCount.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			});
+
 			receiverThread = new Thread(receiverLoop, "Receive Loop on port: " + port);
 			receiverThread.setDaemon(true);
 			receiverThread.start();
 
+			// Start transaction forwarding thread
+			verifyThread = new Thread(transactionVerifyLoop, "Transaction Verify Loop on port: " + port);
+			verifyThread.setDaemon(true);
+			verifyThread.start();
+
 			// Start Peer update thread
 			beliefMergeThread = new Thread(beliefMergeLoop, "Belief Merge Loop on port: " + port);
 			beliefMergeThread.setDaemon(true);
 			beliefMergeThread.start();
 
+			// Start store GC thread if configured
+			Object gi = config.get(Keywords.GC_INTERVAL);
+			if (gi != null) gcInterval = Utils.toInt(gi);
+			if (gcInterval > 0) {
+				if (store instanceof EtchStore) {
+					gcThread = new Thread(gcLoop, "Store GC Loop on port: " + port);
+					gcThread.setDaemon(true);
+					gcThread.start();
+				} else {
+					log.warn("Ignoring {} since store is not an Etch store: {}", Keywords.GC_INTERVAL, store);
+				}
+			}
+
 
 			// Close server on shutdown, should be before Etch stores in priority
 			Shutdown.addHook(Shutdown.SERVER, new Runnable() {
@@ -494,6 +619,9 @@ public class Server implements Closeable {
 			case DATA:
 				processData(m);
 				break;
+			case DATA_BATCH:
+				processDataBatch(m);
+				break;
 			case MISSING_DATA:
 				processMissingData(m);
 				break;
@@ -540,25 +668,72 @@ public class Server implements Closeable {
 	 * @throws BadFormatException
 	 */
 	private void processMissingData(Message m) throws BadFormatException {
-		// payload for a missing data request should be a valid Hash
-		Hash h = RT.ensureHash(m.getPayload());
-		if (h == null) throw new BadFormatException("Hash required for missing data message");
+		// payload for a missing data request should be a valid Hash or Vector of Hashes
+		List<Hash> hashes = m.getRequestedHashes();
+		if (hashes == null) throw new BadFormatException("Hash or Vector of Hashes required for missing data message");
 
-		Ref<?> r = store.refForHash(h);
-		if (r != null) {
-			try {
-				ACell data = r.getValue();
-				boolean sent = m.sendData(data);
-				// log.trace( "Sent missing data for hash: {} with type {}",Utils.getClassName(data));
-				if (!sent) {
-					log.debug("Can't send missing data for hash {} due to full buffer",h);
+		ArrayList<ACell> cells = collectMissingData(hashes, Constants.MISSING_DATA_RESPONSE_LIMIT);
+		if (cells.isEmpty()) return;
+		try {
+			boolean sent = m.sendDataBatch(cells);
+			if (!sent) {
+				log.debug("Can't send all missing data for {} hashes due to full buffer", hashes.size());
+			}
+		} catch (Exception e) {
+			log.warn("Unable to deliver missing data for {} due to exception: {}", hashes, e);
+		}
+	}
+
+	/**
+	 * Collects cells to send in response to a missing data request. Includes all requested cells
+	 * available in the store, followed by their descendants in breadth-first order until the
+	 * byte limit is reached. A Peer missing a cell is usually missing its descendants too, so
+	 * this saves a round trip for each level of the tree.
+	 *
+	 * @param hashes Requested hashes
+	 * @param limit Approximate limit in bytes for encodings of descendants
+	 * @return List of non-embedded cells to send
+	 */
+	private ArrayList<ACell> collectMissingData(List<Hash> hashes, long limit) {
+		ArrayList<ACell> result = new ArrayList<>();
+		HashSet<Hash> included = new HashSet<>();
+		ArrayDeque<Ref<ACell>> queue = new ArrayDeque<>();
+		long size = 0;
+		for (Hash h : hashes) {
+			Ref<ACell> r = store.refForHash(h);
+			if (r == null) {
+				log.debug("Unable to provide missing data for {} from store: {}", h,Stores.current());
+				continue;
+			}
+			if (!included.add(h)) continue;
+			ACell data = r.getValue();
+			result.add(data);
+			size += data.getEncodingLength();
+			queue.add(r);
+		}
+
+		while (!queue.isEmpty() && (size < limit)) {
+			ACell data = queue.poll().getValue();
+			if (data == null) continue;
+			int n = data.getRefCount();
+			for (int i = 0; i < n; i++) {
+				Ref<ACell> child = data.getRef(i);
+				if (child.isMissing()) continue; // we don't have it either
+				if (child.isEmbedded()) {
+					// embedded values are sent with their parent, but may have non-embedded children
+					queue.add(child);
+					continue;
 				}
-			} catch (Exception e) {
-				log.warn("Unable to deliver missing data for {} due to exception: {}", h, e);
+				if (!included.add(child.getHash())) continue;
+				ACell c = child.getValue();
+				long length = c.getEncodingLength();
+				if (size + length > limit) return result;
+				size += length;
+				result.add(c);
+				queue.add(child);
 			}
-		} else {
-			log.debug("Unable to provide missing data for {} from store: {}", h,Stores.current());
 		}
+		return result;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -573,7 +748,55 @@ public class Server implements Closeable {
 		// If we already have the transaction persisted, will get signature status
 		ACell.createPersisted(sd);
 
-		if (!sd.checkSignature()) {
+		// Verify signature in parallel. Results are forwarded in order of receipt by the verify loop.
+		Future<Boolean> verified = verifyExecutor.submit(() -> {
+			Stores.setCurrent(getStore()); // signature status may be cached in this Server's store
+			return sd.checkSignature();
+		});
+		try {
+			verifyQueue.put(new PendingTransaction(m, sd, verified));
+		} catch (InterruptedException e) {
+			log.warn("Unexpected interruption adding transaction to verify queue!");
+		}
+	}
+
+	/**
+	 * A received client transaction awaiting the result of signature verification
+	 */
+	private static class PendingTransaction {
+		final Message m;
+		final SignedData<ATransaction> sd;
+		final Future<Boolean> verified;
+
+		PendingTransaction(Message m, SignedData<ATransaction> sd, Future<Boolean> verified) {
+			this.m = m;
+			this.sd = sd;
+			this.verified = verified;
+		}
+	}
+
+	/**
+	 * Forwards a transaction to the transaction queue once its signature is verified,
+	 * or reports an error Result to the client if the signature is bad.
+	 *
+	 * Runs on transaction verify thread
+	 *
+	 * @param pt Pending transaction
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	private void forwardTransaction(PendingTransaction pt) throws InterruptedException {
+		Message m = pt.m;
+		SignedData<ATransaction> sd = pt.sd;
+
+		boolean ok;
+		try {
+			ok = pt.verified.get();
+		} catch (ExecutionException e) {
+			log.warn("Exception verifying transaction signature: {}", e.getCause());
+			ok = false;
+		}
+
+		if (!ok) {
 			// terminate the connection, dishonest client?
 			try {
 				// TODO: throttle?
@@ -593,11 +816,7 @@ public class Server implements Closeable {
 		}
 
 		registerInterest(sd.getHash(), m);
-		try {
-			transactionQueue.put(sd);
-		} catch (InterruptedException e) {
-			log.warn("Unexpected interruption adding transaction to event queue!");
-		}
+		transactionQueue.put(sd);
 	}
 
 	/**
@@ -717,23 +936,32 @@ public class Server implements Closeable {
 	private long beliefBroadcastCount=0L;
 	private long beliefReceivedCount=0L;
 
+	/**
+	 * Count of received messages dropped or evicted because a receive queue was full
+	 */
+	private final AtomicLong droppedMessageCount=new AtomicLong();
+
 	private void broadcastBelief(Peer peer) {
 		Belief belief=peer.getBelief();
 		
 		// At this point we know something updated our belief, so we want to rebroadcast
 		// belief to network
+		ArrayList<ACell> novelty = new ArrayList<>();
 		Consumer<Ref<ACell>> noveltyHandler = r -> {
 			ACell o = r.getValue();
 			if (o == belief) return; // skip sending data for belief cell itself, will be BELIEF payload
-			Message msg = Message.createData(o);
-            // broadcast to all peers trusted or not
-			manager.broadcast(msg, false);
+			if (!Format.isEmbedded(o)) novelty.add(o);
 		};
 
 		// persist the state of the Peer, announcing the new Belief
 		// (ensure we can handle missing data requests etc.)
 		peer=peer.persistState(noveltyHandler);
 
+		// broadcast novelty to all peers trusted or not, packed into as few messages as possible
+		if (!novelty.isEmpty()) {
+			manager.broadcast(Message.createDataBatch(novelty), false);
+		}
+
 		// Broadcast latest Belief to connected Peers
 		SignedData<Belief> sb = peer.getSignedBelief();
 
@@ -760,6 +988,22 @@ public class Server implements Closeable {
 		return beliefReceivedCount;
 	}
 
+	/**
+	 * Gets the number of store compactions completed by this Peer
+	 * @return Count of compactions for this Server instance
+	 */
+	public long getCompactionCount() {
+		return compactionCount.get();
+	}
+
+	/**
+	 * Gets the number of received messages dropped by this Peer because a receive queue was full
+	 * @return Count of dropped messages for this Server instance
+	 */
+	public long getDroppedMessageCount() {
+		return droppedMessageCount.get();
+	}
+
 
 	private long lastBlockPublishedTime=0L;
 
@@ -831,12 +1075,43 @@ public class Server implements Closeable {
 	}
 	
 	/**
-	 * Queues a message for processing by this Server. May block briefly.
+	 * Queues a message for processing by this Server. Never blocks: if the queue for the 
+	 * message type is full, load is shed according to the message type:
+	 * - Beliefs evict the oldest queued Belief, since only the latest Beliefs matter
+	 * - Requests (QUERY, TRANSACT, STATUS, MISSING_DATA, CHALLENGE) are dropped with a LOAD error Result sent to the sender
+	 * - Other messages are dropped
 	 * @param m Message to queue
 	 * @throws InterruptedException If thread is interrupted
 	 */
 	public void queueMessage(Message m) throws InterruptedException {
-		receiveQueue.put(m);
+		MessageType type = m.getType();
+		if (type==MessageType.BELIEF) {
+			if (receiveQueue.offerEvictOldest(m)==null) return;
+			long dropped=droppedMessageCount.incrementAndGet();
+			log.warn("Receive queue full for BELIEF, evicted oldest Belief (total dropped messages: {})", dropped);
+			return;
+		}
+		
+		if (receiveQueue.offer(m)) return;
+
+		long dropped=droppedMessageCount.incrementAndGet();
+		switch (type) {
+		case QUERY:
+		case TRANSACT:
+		case STATUS:
+		case MISSING_DATA:
+		case CHALLENGE:
+			try {
+				Result r = Result.create(m.getID(), Strings.create("Peer overloaded: " + type + " queue full"), ErrorCodes.LOAD);
+				m.reportResult(r);
+			} catch (Exception e) {
+				// Ignore, probably a bad message or connection gone
+			}
+			break;
+		default:
+			break;
+		}
+		log.warn("Receive queue full, dropped message of type {} (total dropped messages: {})", type, dropped);
 	}
 	
 	/**
@@ -959,7 +1234,7 @@ public class Server implements Closeable {
 	/**
 	 * Gets the status vector for the Peer
 	 * 0 = latest signed belief hash
-	 * 1 = states vector hash
+	 * 1 = history index hash, covering all States since genesis (see Peer.getHistoryIndexHash())
 	 * 2 = genesis state hash
 	 * 3 = peer key
 	 * 4 = consensus state
@@ -973,8 +1248,8 @@ public class Server implements Closeable {
 		SignedData<Belief> signedBelief = peer.getSignedBelief();
 		
 		Hash beliefHash=signedBelief.getHash();
-		Hash statesHash=peer.getStates().getHash();
-		Hash genesisHash=peer.getStates().get(0).getHash();
+		Hash historyHash=peer.getHistoryIndexHash();
+		Hash genesisHash=peer.getNetworkID();
 		AccountKey peerKey=getPeerKey();
 		Hash consensusHash=peer.getConsensusState().getHash();
 		
@@ -983,7 +1258,7 @@ public class Server implements Closeable {
 		CVMLong pp = CVMLong.create(order.getProposalPoint()) ;
 		CVMLong op = CVMLong.create(order.getBlockCount()) ;
 
-		AVector<ACell> reply=Vectors.of(beliefHash,statesHash,genesisHash,peerKey,consensusHash, cp,pp,op);
+		AVector<ACell> reply=Vectors.of(beliefHash,historyHash,genesisHash,peerKey,consensusHash, cp,pp,op);
 		return reply;
 	}
 
@@ -1005,23 +1280,67 @@ public class Server implements Closeable {
 			// extract the Address, might be null
 			Address address = RT.ensureAddress(v.get(2));
 
+			// Limit concurrent queries for each client
+			Object origin = getQueryOrigin(m);
+			int active = activeQueries.merge(origin, 1, Integer::sum);
+			if (active > queryLimit) {
+				releaseQuery(origin);
+				m.reportResult(Result.create(id, Strings.create("Too many concurrent queries"), ErrorCodes.LOAD));
+				return;
+			}
+
 			log.debug( "Processing query: {} with address: {}" , form, address);
-			// log.log(LEVEL_MESSAGE, "Processing query: " + form + " with address: " +
-			// address);
-			Context<ACell> resultContext = peer.executeQuery(form, address);
-			
-			// Report result back to message sender
-			boolean resultReturned= m.reportResult(Result.fromContext(id, resultContext));
 
-			if (!resultReturned) {
-				log.warn("Failed to send query result back to client with ID: {}", id);
-			}
+			// Peer is immutable, so we can safely execute the query against the current snapshot
+			// The timeout is enforced by the query Context, starting when the query runs
+			final Peer snapshot = peer;
+			CompletableFuture.supplyAsync(() -> {
+				try {
+					Stores.setCurrent(getStore());
+					Context<ACell> resultContext = snapshot.executeQuery(form, address, queryTimeout);
+					return Result.fromContext(id, resultContext);
+				} finally {
+					releaseQuery(origin);
+				}
+			}, queryExecutor).whenComplete((result, e) -> {
+				if (e != null) {
+					log.warn("Query Error: {}", e);
+					return;
+				}
 
+				// Report result back to message sender
+				boolean resultReturned = m.reportResult(result);
+				if (!resultReturned) {
+					log.warn("Failed to send query result back to client with ID: {}", id);
+				}
+			});
 		} catch (Throwable t) {
 			log.warn("Query Error: {}", t);
 		}
 	}
 
+	/**
+	 * Gets the origin of a query for the purpose of limiting concurrent queries,
+	 * i.e. the client connection if available
+	 * @param m Query message
+	 * @return Origin object
+	 */
+	private static Object getQueryOrigin(Message m) {
+		if (m instanceof MessageRemote) {
+			Connection conn = ((MessageRemote) m).getConnection();
+			if (conn != null) return conn;
+		}
+		return m;
+	}
+
+	/**
+	 * Releases a query slot for the given origin
+	 * @param origin Origin object
+	 */
+	private void releaseQuery(Object origin) {
+		activeQueries.computeIfPresent(origin, (k, n) -> (n <= 1) ? null : n - 1);
+	}
+
 	private void processData(Message m) {
 		ACell payload = m.getPayload();
 
@@ -1038,6 +1357,37 @@ public class Server implements Closeable {
 		maybeProcessPartial(r.getHash());
 	}
 
+	private void processDataBatch(Message m) {
+		AVector<ACell> cells = m.getPayload();
+		long n = cells.count();
+		Hash[] hashes = new Hash[(int) n];
+
+		// hash all cells together, before persisting
+		ACell[] cellArray = new ACell[(int) n];
+		for (int i = 0; i < n; i++) {
+			cellArray[i] = cells.get(i);
+		}
+		ACell.computeHashes(cellArray);
+
+		// persist all cells in a single store batch
+		AStore s = Stores.current();
+		s.beginBatch();
+		try {
+			for (int i = 0; i < n; i++) {
+				Ref<?> r = Ref.get(cellArray[i]).persistShallow();
+				hashes[i] = r.getHash();
+			}
+		} finally {
+			s.commitBatch();
+		}
+		log.trace("Processed DATA_BATCH with {} cells", n);
+
+		// if our data satisfies any missing data objects, need to process them
+		for (Hash h : hashes) {
+			maybeProcessPartial(h);
+		}
+	}
+
 	/**
 	 * Process an incoming message that represents a Belief
 	 *
@@ -1055,7 +1405,8 @@ public class Server implements Closeable {
 
 			@SuppressWarnings("unchecked")
 			SignedData<Belief> receivedBelief = (SignedData<Belief>) o;
-			receivedBelief.validateSignature();
+
+			// Signature is checked in a batch with other received Beliefs before merge
 
 			// TODO: validate trusted connection?
 			// TODO: can drop Beliefs if under pressure?
@@ -1074,13 +1425,39 @@ public class Server implements Closeable {
 		} catch (ClassCastException e) {
 			// bad message?
 			log.warn("Exception due to bad message from peer? {}" ,e);
-		} catch (BadSignatureException e) {
-			// we got sent a bad signature.
-			// TODO: Probably need to slash peer? but ignore for now
-			log.warn("Bad signed belief from peer: " + Utils.print(o));
 		} 
 	}
 
+	/*
+	 * Loop to periodically compact the store
+	 */
+	private Runnable gcLoop = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				log.debug("Store GC thread started for peer at {}", getHostAddress());
+
+				while (isRunning) {
+					// Wait rather than sleep, so close() can wake us without an interrupt, which 
+					// could otherwise close the store's file channel during compaction
+					long due = System.currentTimeMillis() + gcInterval;
+					synchronized (this) {
+						long wait;
+						while (isRunning && ((wait = due - System.currentTimeMillis()) > 0)) {
+							this.wait(wait);
+						}
+					}
+					if (!isRunning) break;
+					compactStore();
+				}
+
+				log.debug("Store GC thread terminated normally for peer {}", this);
+			} catch (InterruptedException e) {
+				log.debug("Store GC thread interrupted for peer {}", this);
+			}
+		}
+	};
+
 	/*
 	 * Loop to process messages from the receive queue
 	 */
@@ -1109,6 +1486,30 @@ public class Server implements Closeable {
 		}
 	};
 
+	/*
+	 * Loop to forward verified transactions, preserving the order in which they were received
+	 */
+	private final Runnable transactionVerifyLoop = new Runnable() {
+		@Override
+		public void run() {
+			Stores.setCurrent(getStore()); // ensure the loop uses this Server's store
+
+			try {
+				while (isRunning) { // loop until server terminated
+					PendingTransaction pt = verifyQueue.poll(100, TimeUnit.MILLISECONDS);
+					if (pt != null) {
+						forwardTransaction(pt);
+					}
+				}
+			} catch (InterruptedException e) {
+				log.debug("Transaction verify thread interrupted for peer {}", this);
+			} catch (Throwable e) {
+				log.error("Peer Server FAILED: Transaction verify thread terminated abnormally" + e.getMessage());
+				e.printStackTrace();
+			}
+		}
+	};
+
 	/*
 	 * Runnable loop for managing Server belief merges
 	 */
@@ -1155,8 +1556,17 @@ public class Server implements Closeable {
 		ArrayList<SignedData<Belief>> allBeliefs=new ArrayList<>();
 		allBeliefs.add(firstEvent);
 		beliefQueue.drainTo(allBeliefs);
+		
+		// Check all signatures in a single batch
+		SignedData.checkSignatures(allBeliefs);
 		for (SignedData<Belief> signedEvent: allBeliefs) {
 			SignedData<Belief> receivedBelief=(SignedData<Belief>)signedEvent;
+			if (!receivedBelief.checkSignature()) {
+				// we got sent a bad signature.
+				// TODO: Probably need to slash peer? but ignore for now
+				log.warn("Bad signed belief from peer: " + Utils.print(receivedBelief));
+				continue;
+			}
 			AccountKey addr = receivedBelief.getAccountKey();
 			SignedData<Belief> current = newBeliefs.get(addr);
 			
@@ -1242,6 +1652,42 @@ public class Server implements Closeable {
 		}
 	}
 
+	/**
+	 * Compacts the store for this Server, discarding any data not reachable from the current
+	 * Peer data, Peer history or pending Beliefs. Only supported for Etch stores.
+	 * 
+	 * Runs on the calling thread, and may take a long time for a large store. The Server continues 
+	 * to operate normally while compaction is in progress. Called periodically by the Server if 
+	 * a :gc-interval is configured.
+	 * 
+	 * @return True if the store was successfully compacted, false otherwise
+	 */
+	public synchronized boolean compactStore() {
+		if (!(store instanceof EtchStore)) return false;
+		if (!persistPeerData()) return false;
+		
+		Peer peer=this.peer;
+		ArrayList<ACell> roots=new ArrayList<>();
+		roots.add(peer.toData());
+		synchronized (newBeliefs) {
+			roots.addAll(newBeliefs.values());
+		}
+		
+		AStore tempStore = Stores.current();
+		try {
+			Stores.setCurrent(store);
+			// States dropped from Peer memory are only referenced by Hash from the history index
+			((EtchStore)store).collectGarbage(roots,peer.getHistoryHashes());
+			compactionCount.incrementAndGet();
+			return true;
+		} catch (Throwable e) {
+			log.warn("Failed to compact store: {}" ,e.getMessage());
+			return false;
+		} finally {
+			Stores.setCurrent(tempStore);
+		}
+	}
+
 	@Override
 	public void close() {
 		// persist peer state if necessary
@@ -1273,6 +1719,30 @@ public class Server implements Closeable {
 				// Ignore
 			}
 		}
+		if (gcThread != null) {
+			synchronized (gcLoop) {
+				gcLoop.notifyAll();
+			}
+			try {
+				gcThread.join(100);
+			} catch (InterruptedException e) {
+				// Ignore
+			}
+		}
+		if (verifyThread != null) {
+			verifyThread.interrupt();
+			try {
+				verifyThread.join(100);
+			} catch (InterruptedException e) {
+				// Ignore
+			}
+		}
+		if (verifyExecutor != null) {
+			verifyExecutor.shutdownNow();
+		}
+		if (queryExecutor != null) {
+			queryExecutor.shutdownNow();
+		}
 		manager.close();
 		nio.close();
 		// Note we don't do store.close(); because we don't own the store.
@@ -5,10 +5,14 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Random;
 
 import org.junit.Test;
 
 import convex.core.data.ACell;
+import convex.core.data.AVector;
+import convex.core.data.Blob;
+import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadFormatException;
 import convex.core.lang.RT;
 import convex.core.store.Stores;
@@ -53,4 +57,36 @@ public class MessageReceiverTest {
 		Message m1 = received.get(0);
 		assertEquals(MessageType.DATA, m1.getType());
 	}
+
+	@Test
+	public void testDataBatch() throws IOException, BadFormatException {
+		final ArrayList<Message> received = new ArrayList<>();
+
+		MemoryByteChannel chan = MemoryByteChannel.create(100000);
+		Connection pc = Connection.create(chan, null, Stores.current(), null);
+		MessageReceiver mr = new MessageReceiver(a -> received.add(a), pc);
+
+		// enough non-embedded cells that they need more than one frame
+		ArrayList<ACell> cells = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			cells.add(Blob.createRandom(new Random(i), 200 + i));
+		}
+		cells.add(CVMLong.ONE); // embedded, should be skipped
+		assertTrue(pc.sendDataBatch(cells));
+		assertTrue(pc.flushBytes());
+
+		int count = 0;
+		while (mr.receiveFromChannel(chan) > 0) {
+			// keep receiving until channel drained
+		}
+		for (Message m : received) {
+			assertEquals(MessageType.DATA_BATCH, m.getType());
+			AVector<ACell> batch = m.getPayload();
+			for (ACell c : batch) {
+				assertEquals(cells.get(count++), c);
+			}
+		}
+		assertEquals(100, count);
+		assertTrue(received.size() > 1);
+	}
 }
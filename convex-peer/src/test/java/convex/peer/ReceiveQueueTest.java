@@ -0,0 +1,87 @@
+package convex.peer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.data.Vectors;
+import convex.core.data.prim.CVMLong;
+import convex.net.MessageType;
+import convex.net.message.Message;
+
+public class ReceiveQueueTest {
+
+	private static Message query(long id) {
+		return Message.create(null, MessageType.QUERY, Vectors.of(id, 1L));
+	}
+
+	@Test
+	public void testCapacity() throws InterruptedException {
+		ReceiveQueue q = new ReceiveQueue(Map.of(MessageType.QUERY, 2));
+		assertTrue(q.offer(query(1)));
+		assertTrue(q.offer(query(2)));
+		assertFalse(q.offer(query(3)));
+
+		// Other message types are unaffected
+		assertTrue(q.offer(Message.createData(CVMLong.ONE)));
+		assertEquals(3, q.size());
+		assertEquals(2, q.size(MessageType.QUERY));
+
+		// FIFO within a message type
+		int queries = 0;
+		for (int i = 0; i < 3; i++) {
+			Message m = q.poll(100, TimeUnit.MILLISECONDS);
+			if (m.getType() == MessageType.QUERY) {
+				queries++;
+				assertEquals(CVMLong.create(queries), m.getID());
+			}
+		}
+		assertEquals(2, queries);
+		assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testEvictOldest() throws InterruptedException {
+		ReceiveQueue q = new ReceiveQueue(Map.of(MessageType.BELIEF, 2));
+		for (int i = 1; i <= 2; i++) {
+			assertNull(q.offerEvictOldest(Message.create(null, MessageType.BELIEF, CVMLong.create(i))));
+		}
+
+		// Full queue evicts the oldest message to make room for the newest
+		Message evicted = q.offerEvictOldest(Message.create(null, MessageType.BELIEF, CVMLong.create(3)));
+		assertEquals(CVMLong.create(1), evicted.getPayload());
+		assertEquals(2, q.size());
+		assertEquals(2, q.size(MessageType.BELIEF));
+
+		assertEquals(CVMLong.create(2), q.poll(100, TimeUnit.MILLISECONDS).getPayload());
+		assertEquals(CVMLong.create(3), q.poll(100, TimeUnit.MILLISECONDS).getPayload());
+		assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testWeightedScheduling() throws InterruptedException {
+		ReceiveQueue q = new ReceiveQueue(null);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(q.offer(query(i)));
+			assertTrue(q.offer(Message.createData(CVMLong.create(i))));
+		}
+
+		// DATA has a higher weight than QUERY, so should be favoured while both are queued
+		int data = 0;
+		for (int i = 0; i < 50; i++) {
+			if (q.poll(100, TimeUnit.MILLISECONDS).getType() == MessageType.DATA) data++;
+		}
+		assertEquals(50 * ReceiveQueue.weight(MessageType.DATA) / (ReceiveQueue.weight(MessageType.DATA) + ReceiveQueue.weight(MessageType.QUERY)), data);
+
+		// Queries are not starved, everything is eventually delivered
+		int remaining = 0;
+		while (q.poll(10, TimeUnit.MILLISECONDS) != null) remaining++;
+		assertEquals(150, remaining);
+	}
+}
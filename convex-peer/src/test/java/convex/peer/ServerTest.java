@@ -3,13 +3,18 @@ package convex.peer;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -21,16 +26,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import convex.api.Convex;
+import convex.api.ConvexRemote;
 import convex.core.Belief;
 import convex.core.Coin;
 import convex.core.ErrorCodes;
 import convex.core.Result;
 import convex.core.State;
 import convex.core.crypto.AKeyPair;
+import convex.core.data.ABlob;
 import convex.core.data.ACell;
 import convex.core.data.AVector;
 import convex.core.data.AccountKey;
 import convex.core.data.Address;
+import convex.core.data.Blobs;
 import convex.core.data.Hash;
 import convex.core.data.Keyword;
 import convex.core.data.Keywords;
@@ -235,6 +243,29 @@ public class ServerTest {
 		}
 	}
 	
+	@Test
+	public void testConcurrentQueries() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		Convex convex=Convex.connect(network.SERVER.getHostAddress(),network.VILLAIN,network.VILLAIN_KEYPAIR);
+
+		ArrayList<Future<convex.core.Result>> futures=new ArrayList<>();
+		for (int i=0; i<100; i++) {
+			futures.add(convex.query(Reader.read("(+ 1 "+i+")")));
+		}
+		
+		// Each query either succeeds or is rejected due to the per-connection limit
+		int ok=0;
+		for (int i=0; i<100; i++) {
+			convex.core.Result r=futures.get(i).get(5000,TimeUnit.MILLISECONDS);
+			if (r.isError()) {
+				assertEquals(ErrorCodes.LOAD,r.getErrorCode());
+			} else {
+				assertEquals(CVMLong.create(i+1),r.getValue());
+				ok++;
+			}
+		}
+		assertTrue(ok>0);
+	}
+
 	@Test
 	public void testQueryStrings() throws TimeoutException, IOException {
 		Convex convex=network.CONVEX;
@@ -253,6 +284,74 @@ public class ServerTest {
 		}
 	}
 
+	@Test
+	public void testAcquireStateFreshStore() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		synchronized(network.SERVER) {
+			// Acquire into an empty store so that the whole State tree must be requested
+			AStore store=EtchStore.createTemp();
+			ConvexRemote convex=Convex.connect(network.SERVER.getHostAddress(),network.VILLAIN,network.VILLAIN_KEYPAIR,store);
+			convex.setAcquireWindow(2);
+			assertThrows(IllegalArgumentException.class,()->convex.setAcquireWindow(0));
+
+			State state=network.SERVER.getPeer().getConsensusState();
+			State s=convex.<State>acquire(state.getHash(),store).get(30000,TimeUnit.MILLISECONDS);
+			assertEquals(state,s);
+			assertTrue(store.refForHash(state.getHash()).getStatus()>=Ref.PERSISTED);
+			convex.close();
+		}
+	}
+
+	@Test
+	public void testStoreCompaction() throws IOException, InterruptedException, TimeoutException {
+		AKeyPair kp=AKeyPair.generate();
+		State genesis=Init.createState(List.of(kp.getAccountKey()));
+		Address hero=Init.GENESIS_ADDRESS;
+		EtchStore store=EtchStore.createTemp();
+
+		HashMap<Keyword,Object> config=new HashMap<>();
+		config.put(Keywords.KEYPAIR,kp);
+		config.put(Keywords.STATE,genesis);
+		config.put(Keywords.STORE,store);
+		config.put(Keywords.GC_INTERVAL,100);
+		Server server=API.launchPeer(config);
+		try {
+			Convex convex=Convex.connect(server,hero,kp);
+			assertEquals(hero,convex.transactSync(Invoke.create(hero,0,Symbols.STAR_ADDRESS)).getValue());
+
+			// Garbage written to the store should be discarded by the next complete compaction
+			ABlob garbage=Blobs.createRandom(1000);
+			AStore saved=Stores.current();
+			try {
+				Stores.setCurrent(store);
+				ACell.createPersisted(garbage);
+			} finally {
+				Stores.setCurrent(saved);
+			}
+			assertNotNull(store.refForHash(garbage.getHash()));
+			long count=server.getCompactionCount();
+			long start=System.currentTimeMillis();
+			while (server.getCompactionCount()<count+2) {
+				assertTrue(System.currentTimeMillis()<start+10000,"Timeout waiting for compaction");
+				Thread.sleep(20);
+			}
+			assertNull(store.refForHash(garbage.getHash()));
+
+			// Peer continues to operate on the compacted store
+			assertNotNull(store.refForHash(server.getPeer().getConsensusState().getHash()));
+			assertEquals(hero,convex.transactSync(Invoke.create(hero,0,Symbols.STAR_ADDRESS)).getValue());
+			convex.close();
+		} finally {
+			server.close();
+		}
+		
+		// GC thread stops with the Server, once any compaction in progress is complete
+		Thread.sleep(300);
+		long count=server.getCompactionCount();
+		Thread.sleep(300);
+		assertEquals(count,server.getCompactionCount());
+		store.close();
+	}
+
 	public long checkSent(Connection pc,SignedData<ATransaction> st) throws IOException {
 		long x=pc.sendTransaction(st);
 		assertTrue(x>=0);
@@ -299,4 +398,60 @@ public class ServerTest {
 		}
 	}
 
+	@Test
+	public void testConcurrentSignedTransactions() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		synchronized(network.SERVER) {
+			InetSocketAddress hostAddress=network.SERVER.getHostAddress();
+			final int CLIENTS=4;
+			final int NUM=20;
+
+			// Fresh funded accounts, so sequence numbers are known
+			Address[] addrs=new Address[CLIENTS];
+			AKeyPair[] kps=new AKeyPair[CLIENTS];
+			for (int i=0; i<CLIENTS; i++) {
+				kps[i]=AKeyPair.generate();
+				addrs[i]=network.CONVEX.createAccountSync(kps[i].getAccountKey());
+				assertFalse(network.CONVEX.transferSync(addrs[i], 1000000000L).isError());
+			}
+			AKeyPair badKey=AKeyPair.generate();
+
+			// Each client interleaves good and badly signed transactions. Good transactions
+			// must be forwarded in order of receipt, otherwise sequence numbers would fail.
+			long[][] goodIDs=new long[CLIENTS][NUM];
+			long[][] badIDs=new long[CLIENTS][NUM];
+			ArrayList<Future<?>> senders=new ArrayList<>();
+			ExecutorService ex=Executors.newFixedThreadPool(CLIENTS);
+			try {
+				for (int i=0; i<CLIENTS; i++) {
+					final int c=i;
+					senders.add(ex.submit(()->{
+						Connection pc = Connection.connect(hostAddress, handler, Stores.current());
+						for (int j=0; j<NUM; j++) {
+							goodIDs[c][j]=checkSent(pc,kps[c].signData(Invoke.create(addrs[c], j+1, Reader.read(Integer.toString(j)))));
+							badIDs[c][j]=checkSent(pc,badKey.signData(Invoke.create(addrs[c], j+2, Reader.read("(def a 1)"))));
+						}
+						return null;
+					}));
+				}
+				for (Future<?> f: senders) f.get(10000,TimeUnit.MILLISECONDS);
+			} finally {
+				ex.shutdownNow();
+			}
+
+			// wait for all results to come back
+			for (int i=0; i<CLIENTS; i++) {
+				long last=goodIDs[i][NUM-1];
+				assertFalse(Utils.timeout(10000, () -> results.containsKey(last)));
+			}
+
+			for (int i=0; i<CLIENTS; i++) {
+				for (int j=0; j<NUM; j++) {
+					assertEquals(RT.cvm((long)j), results.get(goodIDs[i][j]));
+					assertEquals(ErrorCodes.SIGNATURE, results.get(badIDs[i][j]));
+				}
+				assertEquals(NUM,network.SERVER.getPeer().getConsensusState().getAccount(addrs[i]).getSequence());
+			}
+		}
+	}
+
 }
@@ -12,6 +12,7 @@ import convex.core.crypto.AKeyPair;
 import convex.core.crypto.AProvider;
 import convex.core.crypto.ASignature;
 import convex.core.crypto.bc.BCProvider;
+import convex.core.data.AArrayBlob;
 import convex.core.data.AccountKey;
 import convex.core.data.Blob;
 
@@ -48,4 +49,27 @@ public class ProviderComparisonTest {
 		assertFalse(BCPROVIDER.verify(sig1, Blob.EMPTY, pubKey));
 
 	}
+	
+	@Test
+	public void testVerifyBatch() {
+		AKeyPair kp=BCPROVIDER.create(Blob.createRandom(new Random(456), 32));
+		int n=50;
+		ASignature[] sigs=new ASignature[n];
+		AArrayBlob[] msgs=new AArrayBlob[n];
+		AccountKey[] keys=new AccountKey[n];
+		for (int i=0; i<n; i++) {
+			Blob msg=Blob.createRandom(new Random(i), 100);
+			sigs[i]=kp.sign(msg);
+			// every fifth message altered, so signature should fail
+			msgs[i]=(i%5==0)?Blob.createRandom(new Random(i+1000), 100):msg;
+			keys[i]=kp.getAccountKey();
+		}
+		
+		boolean[] r1=SDPROVIDER.verifyBatch(sigs, msgs, keys);
+		boolean[] r2=BCPROVIDER.verifyBatch(sigs, msgs, keys);
+		for (int i=0; i<n; i++) {
+			assertEquals(i%5!=0,r1[i]);
+			assertEquals(i%5!=0,r2[i]);
+		}
+	}
 }